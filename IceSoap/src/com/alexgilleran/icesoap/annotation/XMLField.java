@@ -41,7 +41,9 @@ public @interface XMLField {
 	/**
 	 * The processor to use for this field - entirely optional. If a processor
 	 * is specified, ensure that it returns the same Type as that of the field
-	 * that recieves the processed value.
+	 * that recieves the processed value. One instance of the processor is
+	 * shared by every parse of the field, including concurrent ones, so it must
+	 * be stateless or thread-safe.
 	 */
 	@SuppressWarnings("rawtypes")
 	Class<? extends Processor> processor() default Processor.class;
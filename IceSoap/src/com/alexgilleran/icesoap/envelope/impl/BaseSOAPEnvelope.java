@@ -1,10 +1,12 @@
 package com.alexgilleran.icesoap.envelope.impl;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.xmlpull.v1.XmlSerializer;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.impl.PullParserFactory;
 import com.alexgilleran.icesoap.xml.XMLNode;
 import com.alexgilleran.icesoap.xml.XMLParentNode;
 import com.alexgilleran.icesoap.xml.impl.XMLParentNodeImpl;
@@ -67,6 +69,28 @@ public abstract class BaseSOAPEnvelope extends XMLParentNodeImpl implements SOAP
 		cereal.endDocument();
 	}
 
+	/**
+	 * Serializes the envelope straight to a stream in its encoding (see
+	 * {@link #getEncoding()}), without building the whole document as a String
+	 * first - this is how the envelope is written to the network, so large
+	 * envelopes never need to be held in memory as text.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to - this is flushed but not closed.
+	 * @throws IOException
+	 *             If the stream can't be written to, or the encoding is
+	 *             unsupported.
+	 */
+	public void serialize(OutputStream outputStream) throws IOException {
+		XmlSerializer cereal = PullParserFactory.getInstance().buildSerializer();
+
+		cereal.setOutput(outputStream, encoding);
+
+		serialize(cereal);
+
+		cereal.flush();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,374 @@
+package com.alexgilleran.icesoap.envelope.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import com.alexgilleran.icesoap.parser.impl.PullParserFactory;
+import com.alexgilleran.icesoap.xml.XMLAttribute;
+import com.alexgilleran.icesoap.xml.XMLElement;
+import com.alexgilleran.icesoap.xml.XMLNode;
+import com.alexgilleran.icesoap.xml.XMLParentNode;
+import com.alexgilleran.icesoap.xml.XMLTextNode;
+
+/**
+ * A read-only copy of an XML node, made by {@link SOAPEnvelopeTemplate} from
+ * what its prototype envelope wrote to a serializer. Serializing the copy
+ * makes exactly the same calls as the original did, and nothing about it can
+ * be changed - so templates can hand these out without anyone being able to
+ * change what the template writes.
+ *
+ * @author Alex Gilleran
+ *
+ */
+abstract class ReadOnlyXMLNode implements XMLNode {
+	/** Message for attempts to change the node. */
+	private static final String MESSAGE_READ_ONLY = "Nodes from a template are read-only copies";
+
+	/** The namespace of the node. */
+	private final String namespace;
+	/** The name of the node. */
+	private final String name;
+	/** The prefixes declared before the node, mapped to their namespaces. */
+	private final Map<String, String> declaredPrefixes;
+	/** The attributes of the node, in the order they were written. */
+	private final List<XMLAttribute> attributes;
+	/** The elements under the node, in the order they were written. */
+	private final List<XMLElement> childNodes;
+
+	/**
+	 * Creates a new node.
+	 *
+	 * @param namespace
+	 *            The namespace of the node.
+	 * @param name
+	 *            The name of the node.
+	 * @param declaredPrefixes
+	 *            The prefixes declared before the node, in the order they
+	 *            were declared.
+	 * @param attributes
+	 *            The attributes of the node.
+	 * @param childNodes
+	 *            The elements under the node, which must be read-only
+	 *            themselves.
+	 */
+	ReadOnlyXMLNode(String namespace, String name, Map<String, String> declaredPrefixes,
+			List<XMLAttribute> attributes, List<XMLElement> childNodes) {
+		this.namespace = namespace;
+		this.name = name;
+		this.declaredPrefixes = declaredPrefixes;
+		this.attributes = Collections.unmodifiableList(attributes);
+		this.childNodes = Collections.unmodifiableList(childNodes);
+	}
+
+	/**
+	 * Creates a read-only copy of a node that's been written to a
+	 * serializer.
+	 *
+	 * @param namespace
+	 *            The namespace of the node.
+	 * @param name
+	 *            The name of the node.
+	 * @param declaredPrefixes
+	 *            The prefixes declared before the node, in the order they
+	 *            were declared.
+	 * @param attributes
+	 *            The attributes of the node.
+	 * @param childNodes
+	 *            The elements under the node, which must be read-only
+	 *            themselves.
+	 * @return A text node if the node's only content is text, otherwise a
+	 *         parent node.
+	 */
+	static ReadOnlyXMLNode create(String namespace, String name, Map<String, String> declaredPrefixes,
+			List<XMLAttribute> attributes, List<XMLElement> childNodes) {
+		if (childNodes.size() == 1 && !(childNodes.get(0) instanceof XMLNode)) {
+			return new TextNode(namespace, name, declaredPrefixes, attributes, childNodes);
+		}
+
+		return new ParentNode(namespace, name, declaredPrefixes, attributes, childNodes);
+	}
+
+	/**
+	 * Creates a read-only attribute.
+	 *
+	 * @param namespace
+	 *            The namespace of the attribute.
+	 * @param name
+	 *            The name of the attribute.
+	 * @param value
+	 *            The value of the attribute.
+	 * @return The attribute.
+	 */
+	static XMLAttribute createAttribute(String namespace, String name, String value) {
+		return new Attribute(namespace, name, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void serialize(XmlSerializer serializer) throws IllegalArgumentException, IllegalStateException,
+			IOException {
+		for (Map.Entry<String, String> prefix : declaredPrefixes.entrySet()) {
+			serializer.setPrefix(prefix.getKey(), prefix.getValue());
+		}
+
+		serializer.startTag(namespace, name);
+
+		for (XMLAttribute attribute : attributes) {
+			serializer.attribute(attribute.getNamespace(), attribute.getName(), attribute.getValue());
+		}
+
+		for (XMLElement element : childNodes) {
+			element.serialize(serializer);
+		}
+
+		serializer.endTag(namespace, name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		try {
+			XmlSerializer cereal = PullParserFactory.getInstance().buildSerializer();
+			StringWriter writer = new StringWriter();
+
+			cereal.setOutput(writer);
+
+			serialize(cereal);
+
+			cereal.flush();
+
+			return writer.toString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return The elements under the node, in the order they were written.
+	 */
+	List<XMLElement> getContent() {
+		return childNodes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<XMLAttribute> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * Not supported - the node is read-only.
+	 */
+	@Override
+	public XMLAttribute addAttribute(String namespace, String name, String value) {
+		throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+	}
+
+	/**
+	 * Not supported - the node is read-only.
+	 */
+	@Override
+	public void setType(String type) {
+		throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+	}
+
+	/**
+	 * Not supported - the node is read-only.
+	 */
+	@Override
+	public void declarePrefix(String prefix, String namespace) {
+		throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Not supported - the node is read-only.
+	 */
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNamespace() {
+		return namespace;
+	}
+
+	/**
+	 * Not supported - the node is read-only.
+	 */
+	@Override
+	public void setNamespace(String namespace) {
+		throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+	}
+
+	/**
+	 * A read-only copy of a node with other elements under it.
+	 */
+	static class ParentNode extends ReadOnlyXMLNode implements XMLParentNode {
+		/**
+		 * Creates a new node - use
+		 * {@link ReadOnlyXMLNode#create(String, String, Map, List, List)}.
+		 *
+		 * @see ReadOnlyXMLNode#ReadOnlyXMLNode(String, String, Map, List, List)
+		 */
+		private ParentNode(String namespace, String name, Map<String, String> declaredPrefixes,
+				List<XMLAttribute> attributes, List<XMLElement> childNodes) {
+			super(namespace, name, declaredPrefixes, attributes, childNodes);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public List<XMLElement> getChildNodes() {
+			return getContent();
+		}
+
+		/**
+		 * Not supported - the node is read-only.
+		 */
+		@Override
+		public XMLParentNode addNode(String namespace, String name) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+
+		/**
+		 * Not supported - the node is read-only.
+		 */
+		@Override
+		public XMLElement addElement(XMLElement node) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+
+		/**
+		 * Not supported - the node is read-only.
+		 */
+		@Override
+		public XMLTextNode addTextNode(String namespace, String name, String value) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+	}
+
+	/**
+	 * A read-only copy of a node with only text under it.
+	 */
+	static class TextNode extends ReadOnlyXMLNode implements XMLTextNode {
+		/**
+		 * Creates a new node - use
+		 * {@link ReadOnlyXMLNode#create(String, String, Map, List, List)}.
+		 *
+		 * @see ReadOnlyXMLNode#ReadOnlyXMLNode(String, String, Map, List, List)
+		 */
+		private TextNode(String namespace, String name, Map<String, String> declaredPrefixes,
+				List<XMLAttribute> attributes, List<XMLElement> childNodes) {
+			super(namespace, name, declaredPrefixes, attributes, childNodes);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getValue() {
+			return getContent().get(0).toString();
+		}
+	}
+
+	/**
+	 * A read-only copy of an attribute.
+	 */
+	private static class Attribute implements XMLAttribute {
+		/** The namespace of the attribute. */
+		private final String namespace;
+		/** The name of the attribute. */
+		private final String name;
+		/** The value of the attribute. */
+		private final String value;
+
+		/**
+		 * Creates a new attribute.
+		 *
+		 * @param namespace
+		 *            The namespace of the attribute.
+		 * @param name
+		 *            The name of the attribute.
+		 * @param value
+		 *            The value of the attribute.
+		 */
+		private Attribute(String namespace, String name, String value) {
+			this.namespace = namespace;
+			this.name = name;
+			this.value = value;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getNamespace() {
+			return namespace;
+		}
+
+		/**
+		 * Not supported - the attribute is read-only.
+		 */
+		@Override
+		public void setNamespace(String namespace) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Not supported - the attribute is read-only.
+		 */
+		@Override
+		public void setName(String name) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getValue() {
+			return value;
+		}
+
+		/**
+		 * Not supported - the attribute is read-only.
+		 */
+		@Override
+		public void setValue(String value) {
+			throw new UnsupportedOperationException(MESSAGE_READ_ONLY);
+		}
+	}
+}
@@ -0,0 +1,623 @@
+package com.alexgilleran.icesoap.envelope.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.impl.PullParserFactory;
+import com.alexgilleran.icesoap.xml.XMLAttribute;
+import com.alexgilleran.icesoap.xml.XMLElement;
+import com.alexgilleran.icesoap.xml.XMLParentNode;
+import com.alexgilleran.icesoap.xml.impl.XMLTextElement;
+
+/**
+ * A precompiled {@link SOAPEnvelope} with named slots for the values that
+ * change between requests. The envelope is serialized once when the template
+ * is created, and each {@link TemplatedSOAPEnvelope} made from it is written
+ * out by copying those bytes and splicing in its escaped slot values, rather
+ * than by building and serializing a new tree.
+ *
+ * To make a template, build an envelope as normal, putting
+ * {@link #slot(String)} wherever a text or attribute value should be filled
+ * in later:
+ *
+ * <pre>
+ * SOAPEnvelope prototype = new BaseSOAP11Envelope();
+ * prototype.getBody().addNode(NS, &quot;GetQuote&quot;).addTextNode(NS, &quot;symbol&quot;, SOAPEnvelopeTemplate.slot(&quot;symbol&quot;));
+ * SOAPEnvelopeTemplate template = new SOAPEnvelopeTemplate(prototype);
+ *
+ * TemplatedSOAPEnvelope envelope = template.newEnvelope();
+ * envelope.setSlot(&quot;symbol&quot;, &quot;GOOG&quot;);
+ * </pre>
+ *
+ * Templates are immutable and can be shared between threads. The prototype
+ * envelope is copied when the template is made, so changing it afterwards
+ * doesn't affect the template.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class SOAPEnvelopeTemplate {
+	/** Marks the start of a slot in a prototype envelope. */
+	private static final String SLOT_START = "{{icesoap-slot:";
+	/** Marks the end of a slot in a prototype envelope. */
+	private static final String SLOT_END = "}}";
+	/** Pattern for valid slot names. */
+	private static final Pattern SLOT_NAME = Pattern.compile("[A-Za-z0-9_.\\-]+");
+	/** Pattern that finds slots in serialized envelopes. */
+	static final Pattern SLOT_PATTERN = Pattern.compile(Pattern.quote(SLOT_START) + "(" + SLOT_NAME.pattern()
+			+ ")" + Pattern.quote(SLOT_END));
+
+	/** A read-only copy of the envelope the template was made from. */
+	private final ReadOnlyXMLNode envelope;
+	/** The copy's header, or null if the prototype didn't have one. */
+	private final XMLParentNode header;
+	/** The copy's body, or null if the prototype didn't have one. */
+	private final XMLParentNode body;
+	/** Whether the prototype wrote itself as a whole document. */
+	private final boolean document;
+	/** The encoding the prototype declared when starting its document. */
+	private final String documentEncoding;
+	/** The standalone flag the prototype declared when starting its document. */
+	private final Boolean documentStandalone;
+	/** The encoding the template is written in. */
+	private final String encoding;
+	/**
+	 * The encoding of everything but the first segment - the same as
+	 * {@link #encoding}, except without a byte order mark.
+	 */
+	private final String continuationEncoding;
+	/** The invariant parts of the envelope, in order, between the slots. */
+	private final byte[][] segments;
+	/** The index of the slot that comes after each segment but the last. */
+	private final int[] segmentSlots;
+	/** The index of each slot by name. */
+	private final Map<String, Integer> slotIndexes = new HashMap<String, Integer>();
+	/** The names of each slot by index. */
+	private final List<String> slotNames = new ArrayList<String>();
+
+	/**
+	 * Creates a new template by serializing a prototype envelope.
+	 *
+	 * @param prototype
+	 *            An envelope containing {@link #slot(String)} markers where
+	 *            values will be filled in. This is written in its own
+	 *            encoding.
+	 * @throws UnsupportedEncodingException
+	 *             If the prototype's encoding isn't supported.
+	 */
+	public SOAPEnvelopeTemplate(SOAPEnvelope prototype) throws UnsupportedEncodingException {
+		Copier copier = new Copier();
+		try {
+			prototype.serialize(copier.getSerializer());
+		} catch (IOException e) {
+			// The copier doesn't write anywhere
+			throw new RuntimeException(e);
+		}
+
+		if (copier.root == null) {
+			throw new IllegalArgumentException("The prototype envelope didn't write anything");
+		}
+
+		this.envelope = copier.root;
+		this.header = findCopy(prototype.getHeader());
+		this.body = findCopy(prototype.getBody());
+		this.document = copier.document;
+		this.documentEncoding = copier.documentEncoding;
+		this.documentStandalone = copier.documentStandalone;
+		this.encoding = prototype.getEncoding();
+		this.continuationEncoding = withoutByteOrderMark(encoding);
+
+		String serialized = serializeToString();
+		Matcher matcher = SLOT_PATTERN.matcher(serialized);
+		List<byte[]> segmentList = new ArrayList<byte[]>();
+		List<Integer> slotList = new ArrayList<Integer>();
+		int start = 0;
+
+		while (matcher.find()) {
+			segmentList.add(encode(serialized.substring(start, matcher.start()), segmentList.isEmpty()));
+			slotList.add(getOrAddSlot(matcher.group(1)));
+			start = matcher.end();
+		}
+		segmentList.add(encode(serialized.substring(start), segmentList.isEmpty()));
+
+		this.segments = segmentList.toArray(new byte[segmentList.size()][]);
+		this.segmentSlots = new int[slotList.size()];
+		for (int i = 0; i < segmentSlots.length; i++) {
+			segmentSlots[i] = slotList.get(i);
+		}
+	}
+
+	/**
+	 * Gets the marker to put in a prototype envelope's text or attribute
+	 * value where a slot's value should go. The marker can be the whole value
+	 * or part of it, and the same slot can be used more than once.
+	 *
+	 * @param name
+	 *            The name of the slot - letters, digits, '_', '.' and '-'
+	 *            only.
+	 * @return The marker.
+	 */
+	public static String slot(String name) {
+		if (!SLOT_NAME.matcher(name).matches()) {
+			throw new IllegalArgumentException("Invalid slot name: " + name);
+		}
+
+		return SLOT_START + name + SLOT_END;
+	}
+
+	/**
+	 * Creates a new envelope from this template, with all of its slots
+	 * unset.
+	 *
+	 * @return The new envelope.
+	 */
+	public TemplatedSOAPEnvelope newEnvelope() {
+		return new TemplatedSOAPEnvelope(this);
+	}
+
+	/**
+	 * Gets the names of the slots in this template.
+	 *
+	 * @return The slot names, in the order they first appear.
+	 */
+	public List<String> getSlotNames() {
+		return Collections.unmodifiableList(slotNames);
+	}
+
+	/**
+	 * @return A read-only copy of the envelope the template was made from,
+	 *         with slot markers rather than values.
+	 */
+	ReadOnlyXMLNode getEnvelope() {
+		return envelope;
+	}
+
+	/**
+	 * @return A read-only copy of the prototype's header, or null if it
+	 *         didn't have one.
+	 */
+	XMLParentNode getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return A read-only copy of the prototype's body, or null if it didn't
+	 *         have one.
+	 */
+	XMLParentNode getBody() {
+		return body;
+	}
+
+	/**
+	 * Writes the copy of the prototype to a serializer, the same way the
+	 * prototype would have written itself.
+	 *
+	 * @param serializer
+	 *            The serializer to write to.
+	 * @throws IOException
+	 *             If the serializer can't be written to.
+	 */
+	void serialize(XmlSerializer serializer) throws IOException {
+		if (document) {
+			serializer.startDocument(documentEncoding, documentStandalone);
+		}
+
+		envelope.serialize(serializer);
+
+		if (document) {
+			serializer.endDocument();
+		}
+	}
+
+	/**
+	 * @return The encoding the template is written in.
+	 */
+	String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * @return The encoding of slot values.
+	 */
+	String getContinuationEncoding() {
+		return continuationEncoding;
+	}
+
+	/**
+	 * @return The invariant parts of the envelope, between the slots.
+	 */
+	byte[][] getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return The index of the slot that comes after each segment but the
+	 *         last.
+	 */
+	int[] getSegmentSlots() {
+		return segmentSlots;
+	}
+
+	/**
+	 * Gets the index of a slot.
+	 *
+	 * @param name
+	 *            The name of the slot.
+	 * @return The index, or null if there's no slot with that name.
+	 */
+	Integer getSlotIndex(String name) {
+		return slotIndexes.get(name);
+	}
+
+	/**
+	 * @return The number of slots in the template.
+	 */
+	int getSlotCount() {
+		return slotNames.size();
+	}
+
+	/**
+	 * Escapes a slot value so that it can go in either text or an attribute.
+	 *
+	 * @param value
+	 *            The value to escape.
+	 * @return The escaped value.
+	 */
+	static String escape(String value) {
+		StringBuilder escaped = null;
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String replacement;
+
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = "&quot;";
+				break;
+			case '\'':
+				replacement = "&apos;";
+				break;
+			case '\t':
+			case '\n':
+			case '\r':
+				replacement = "&#" + (int) c + ";";
+				break;
+			default:
+				if (c < ' ') {
+					throw new IllegalArgumentException("Character 0x" + Integer.toHexString(c)
+							+ " can't be represented in XML");
+				}
+				replacement = null;
+			}
+
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+			}
+
+			if (replacement != null) {
+				escaped.append(replacement);
+			} else if (escaped != null) {
+				escaped.append(c);
+			}
+		}
+
+		return escaped == null ? value : escaped.toString();
+	}
+
+	/**
+	 * Wraps a serializer so that slot markers in text and attribute values
+	 * are replaced with slot values - used to write templated envelopes to
+	 * serializers other than their own.
+	 *
+	 * @param serializer
+	 *            The serializer to write to.
+	 * @param values
+	 *            The value of each slot by index.
+	 * @return The wrapped serializer.
+	 */
+	XmlSerializer fillingSerializer(final XmlSerializer serializer, final String[] values) {
+		return (XmlSerializer) Proxy.newProxyInstance(XmlSerializer.class.getClassLoader(),
+				new Class<?>[] { XmlSerializer.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+
+						if (args != null && ("text".equals(name) || "attribute".equals(name))) {
+							int valueIndex = args.length - 1;
+
+							if (args[valueIndex] instanceof String) {
+								args[valueIndex] = fill((String) args[valueIndex], values);
+							}
+						}
+
+						try {
+							Object result = method.invoke(serializer, args);
+
+							// Keep chained calls going through the wrapper
+							return result == serializer ? proxy : result;
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Replaces the slot markers in a value with slot values.
+	 *
+	 * @param value
+	 *            The value containing markers.
+	 * @param values
+	 *            The value of each slot by index.
+	 * @return The filled value.
+	 */
+	private String fill(String value, String[] values) {
+		Matcher matcher = SLOT_PATTERN.matcher(value);
+
+		if (!matcher.find()) {
+			return value;
+		}
+
+		StringBuffer filled = new StringBuffer();
+		do {
+			matcher.appendReplacement(filled, Matcher.quoteReplacement(values[slotIndexes.get(matcher.group(1))]));
+		} while (matcher.find());
+		matcher.appendTail(filled);
+
+		return filled.toString();
+	}
+
+	/**
+	 * Gets the index of a slot, adding it if it hasn't been seen before.
+	 *
+	 * @param name
+	 *            The name of the slot.
+	 * @return The index.
+	 */
+	private int getOrAddSlot(String name) {
+		Integer index = slotIndexes.get(name);
+
+		if (index == null) {
+			index = slotNames.size();
+			slotIndexes.put(name, index);
+			slotNames.add(name);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Encodes part of the serialized envelope.
+	 *
+	 * @param text
+	 *            The text to encode.
+	 * @param first
+	 *            Whether this is the start of the document, and so should
+	 *            have a byte order mark if the encoding uses one.
+	 * @return The encoded bytes.
+	 * @throws UnsupportedEncodingException
+	 *             If the encoding isn't supported.
+	 */
+	private byte[] encode(String text, boolean first) throws UnsupportedEncodingException {
+		return text.getBytes(first ? encoding : continuationEncoding);
+	}
+
+	/**
+	 * Finds the copy of one of the prototype's top-level nodes.
+	 *
+	 * @param node
+	 *            The prototype's node, or null.
+	 * @return The first node of the copy's with the same namespace and name,
+	 *         or null if there isn't one.
+	 */
+	private XMLParentNode findCopy(XMLParentNode node) {
+		if (node == null) {
+			return null;
+		}
+
+		for (XMLElement element : envelope.getContent()) {
+			if (element instanceof XMLParentNode) {
+				XMLParentNode copy = (XMLParentNode) element;
+
+				if (equal(node.getNamespace(), copy.getNamespace()) && equal(node.getName(), copy.getName())) {
+					return copy;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Null-safe equality check.
+	 *
+	 * @param first
+	 *            A string, or null.
+	 * @param second
+	 *            A string, or null.
+	 * @return true if both are null or they're equal.
+	 */
+	private static boolean equal(String first, String second) {
+		return first == null ? second == null : first.equals(second);
+	}
+
+	/**
+	 * Serializes the copy of the prototype to a String, the same way it
+	 * would be written to a stream.
+	 *
+	 * @return The serialized envelope.
+	 */
+	private String serializeToString() {
+		try {
+			XmlSerializer cereal = PullParserFactory.getInstance().buildSerializer();
+			StringWriter writer = new StringWriter();
+
+			cereal.setOutput(writer);
+			serialize(cereal);
+			cereal.flush();
+
+			return writer.toString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gets the variant of an encoding that doesn't write a byte order mark,
+	 * so that parts of a document can be encoded separately.
+	 *
+	 * @param encoding
+	 *            The encoding.
+	 * @return The encoding without a byte order mark.
+	 */
+	private static String withoutByteOrderMark(String encoding) {
+		String upper = encoding.toUpperCase();
+
+		// Java writes these big-endian after the mark
+		if ("UTF-16".equals(upper) || "UTF-32".equals(upper)) {
+			return upper + "BE";
+		}
+
+		return encoding;
+	}
+
+	/**
+	 * Builds a read-only copy of whatever's written to its serializer. Only
+	 * the document, prefixes, tags, attributes and text are recorded - the
+	 * only things envelopes write - and anything else, like setting the
+	 * output or flushing, is ignored.
+	 */
+	private static class Copier implements InvocationHandler {
+		/** The nodes that have been started but not ended, innermost last. */
+		private final List<NodeCopy> open = new ArrayList<NodeCopy>();
+		/** The prefixes declared since the last node was started. */
+		private Map<String, String> declaredPrefixes = new LinkedHashMap<String, String>();
+		/** The copy of the outermost node, once it's been ended. */
+		private ReadOnlyXMLNode root;
+		/** Whether a document was started. */
+		private boolean document = false;
+		/** The encoding the document was started with. */
+		private String documentEncoding;
+		/** The standalone flag the document was started with. */
+		private Boolean documentStandalone;
+
+		/**
+		 * @return A serializer that records what's written to it.
+		 */
+		public XmlSerializer getSerializer() {
+			return (XmlSerializer) Proxy.newProxyInstance(XmlSerializer.class.getClassLoader(),
+					new Class<?>[] { XmlSerializer.class }, this);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			NodeCopy current = open.isEmpty() ? null : open.get(open.size() - 1);
+
+			if ("startDocument".equals(name)) {
+				document = true;
+				documentEncoding = (String) args[0];
+				documentStandalone = (Boolean) args[1];
+			} else if ("setPrefix".equals(name)) {
+				declaredPrefixes.put((String) args[0], (String) args[1]);
+			} else if ("startTag".equals(name)) {
+				open.add(new NodeCopy((String) args[0], (String) args[1], declaredPrefixes));
+				declaredPrefixes = new LinkedHashMap<String, String>();
+			} else if ("attribute".equals(name) && current != null) {
+				current.attributes.add(ReadOnlyXMLNode.createAttribute((String) args[0], (String) args[1],
+						(String) args[2]));
+			} else if ("text".equals(name) && current != null) {
+				String text = args.length == 1 ? (String) args[0] : new String((char[]) args[0],
+						(Integer) args[1], (Integer) args[2]);
+				current.childNodes.add(new XMLTextElement(text));
+			} else if ("endTag".equals(name) && current != null) {
+				open.remove(open.size() - 1);
+				ReadOnlyXMLNode node = current.build();
+
+				if (open.isEmpty()) {
+					root = node;
+				} else {
+					open.get(open.size() - 1).childNodes.add(node);
+				}
+			}
+
+			Class<?> returnType = method.getReturnType();
+			if (returnType == XmlSerializer.class) {
+				return proxy;
+			} else if (returnType == boolean.class) {
+				return Boolean.FALSE;
+			} else if (returnType == int.class) {
+				return Integer.valueOf(0);
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * A node that's being copied by a {@link Copier}.
+	 */
+	private static class NodeCopy {
+		/** The namespace of the node. */
+		private final String namespace;
+		/** The name of the node. */
+		private final String name;
+		/** The prefixes declared before the node. */
+		private final Map<String, String> declaredPrefixes;
+		/** The attributes written so far. */
+		private final List<XMLAttribute> attributes = new ArrayList<XMLAttribute>();
+		/** The elements written under the node so far. */
+		private final List<XMLElement> childNodes = new ArrayList<XMLElement>();
+
+		/**
+		 * Starts copying a node.
+		 *
+		 * @param namespace
+		 *            The namespace of the node.
+		 * @param name
+		 *            The name of the node.
+		 * @param declaredPrefixes
+		 *            The prefixes declared before the node.
+		 */
+		private NodeCopy(String namespace, String name, Map<String, String> declaredPrefixes) {
+			this.namespace = namespace;
+			this.name = name;
+			this.declaredPrefixes = declaredPrefixes;
+		}
+
+		/**
+		 * @return The finished, read-only copy.
+		 */
+		private ReadOnlyXMLNode build() {
+			return ReadOnlyXMLNode.create(namespace, name, declaredPrefixes, attributes, childNodes);
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.alexgilleran.icesoap.envelope.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.List;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.impl.PullParserFactory;
+import com.alexgilleran.icesoap.xml.XMLAttribute;
+import com.alexgilleran.icesoap.xml.XMLElement;
+import com.alexgilleran.icesoap.xml.XMLParentNode;
+import com.alexgilleran.icesoap.xml.XMLTextNode;
+
+/**
+ * A {@link SOAPEnvelope} made from a {@link SOAPEnvelopeTemplate}, which can
+ * be sent like any other envelope. Its structure is fixed by the template -
+ * the only thing that can be changed is the value of each slot, set with
+ * {@link #setSlot(String, String)}. Every slot must be set before the envelope
+ * is serialized.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class TemplatedSOAPEnvelope implements SOAPEnvelope {
+	/** Message for attempts to change the structure of the envelope. */
+	private static final String MESSAGE_IMMUTABLE = "Templated envelopes can't be modified - set their slots instead";
+
+	/** The template this envelope was made from. */
+	private final SOAPEnvelopeTemplate template;
+	/** The escaped value of each slot by index, encoded. */
+	private final byte[][] encodedValues;
+	/** The unescaped value of each slot by index. */
+	private final String[] values;
+
+	/**
+	 * Creates a new envelope - use {@link SOAPEnvelopeTemplate#newEnvelope()}.
+	 *
+	 * @param template
+	 *            The template to make the envelope from.
+	 */
+	TemplatedSOAPEnvelope(SOAPEnvelopeTemplate template) {
+		this.template = template;
+		this.encodedValues = new byte[template.getSlotCount()][];
+		this.values = new String[template.getSlotCount()];
+	}
+
+	/**
+	 * Sets the value of a slot. The value is escaped, so it can contain any
+	 * characters that can be represented in XML.
+	 *
+	 * @param name
+	 *            The name of the slot.
+	 * @param value
+	 *            The value of the slot.
+	 * @throws IllegalArgumentException
+	 *             If there's no slot with that name, or the value contains
+	 *             characters that can't be represented in XML.
+	 */
+	public void setSlot(String name, String value) {
+		Integer index = template.getSlotIndex(name);
+
+		if (index == null) {
+			throw new IllegalArgumentException("No slot named " + name);
+		}
+
+		try {
+			encodedValues[index] = SOAPEnvelopeTemplate.escape(value).getBytes(template.getContinuationEncoding());
+		} catch (IOException e) {
+			// The template has already encoded everything else this way
+			throw new RuntimeException(e);
+		}
+		values[index] = value;
+	}
+
+	/**
+	 * Gets the value of a slot.
+	 *
+	 * @param name
+	 *            The name of the slot.
+	 * @return The value, or null if it hasn't been set.
+	 */
+	public String getSlot(String name) {
+		Integer index = template.getSlotIndex(name);
+
+		return index == null ? null : values[index];
+	}
+
+	/**
+	 * Serializes the envelope straight to a stream in its encoding, by copying
+	 * the template's precompiled bytes and the slot values.
+	 *
+	 * @param outputStream
+	 *            The stream to write to - this is flushed but not closed.
+	 * @throws IOException
+	 *             If the stream can't be written to.
+	 * @throws IllegalStateException
+	 *             If a slot hasn't been set.
+	 */
+	public void serialize(OutputStream outputStream) throws IOException {
+		checkSlotsSet();
+
+		byte[][] segments = template.getSegments();
+		int[] segmentSlots = template.getSegmentSlots();
+
+		for (int i = 0; i < segmentSlots.length; i++) {
+			outputStream.write(segments[i]);
+			outputStream.write(encodedValues[segmentSlots[i]]);
+		}
+		outputStream.write(segments[segments.length - 1]);
+
+		outputStream.flush();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * This is slower than {@link #serialize(OutputStream)}, as it goes
+	 * through the template's tree.
+	 */
+	@Override
+	public void serialize(XmlSerializer serializer) throws IllegalArgumentException, IllegalStateException,
+			IOException {
+		checkSlotsSet();
+
+		template.serialize(template.fillingSerializer(serializer, values));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		try {
+			XmlSerializer cereal = PullParserFactory.getInstance().buildSerializer();
+			StringWriter writer = new StringWriter();
+
+			cereal.setOutput(writer);
+
+			serialize(cereal);
+
+			cereal.flush();
+
+			return writer.toString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Makes sure every slot has a value before serializing.
+	 */
+	private void checkSlotsSet() {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null) {
+				throw new IllegalStateException("Slot " + template.getSlotNames().get(i) + " hasn't been set");
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getEncoding() {
+		return template.getEncoding();
+	}
+
+	/**
+	 * Not supported - the encoding is fixed by the template.
+	 */
+	@Override
+	public void setEncoding(String encoding) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * This is a read-only copy of the template's header, with slot markers
+	 * rather than values.
+	 */
+	@Override
+	public XMLParentNode getHeader() {
+		return template.getHeader();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * This is a read-only copy of the template's body, with slot markers
+	 * rather than values.
+	 */
+	@Override
+	public XMLParentNode getBody() {
+		return template.getBody();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * These are read-only copies of the template's nodes, with slot markers
+	 * rather than values.
+	 */
+	@Override
+	public List<XMLElement> getChildNodes() {
+		return template.getEnvelope().getContent();
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public XMLParentNode addNode(String namespace, String name) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public XMLElement addElement(XMLElement node) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public XMLTextNode addTextNode(String namespace, String name, String value) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * These are read-only copies of the template's attributes.
+	 */
+	@Override
+	public Collection<XMLAttribute> getAttributes() {
+		return template.getEnvelope().getAttributes();
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public XMLAttribute addAttribute(String namespace, String name, String value) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public void setType(String type) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public void declarePrefix(String prefix, String namespace) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return template.getEnvelope().getName();
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getNamespace() {
+		return template.getEnvelope().getNamespace();
+	}
+
+	/**
+	 * Not supported - the structure is fixed by the template.
+	 */
+	@Override
+	public void setNamespace(String namespace) {
+		throw new UnsupportedOperationException(MESSAGE_IMMUTABLE);
+	}
+}
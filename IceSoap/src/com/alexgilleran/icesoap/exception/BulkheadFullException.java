@@ -0,0 +1,19 @@
+package com.alexgilleran.icesoap.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request when the maximum number of concurrent
+ * requests to its endpoint are already in progress, so that one slow
+ * endpoint can't tie up every thread available for requests.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class BulkheadFullException extends IOException {
+	private static final long serialVersionUID = 6135846215350792464L;
+
+	public BulkheadFullException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,19 @@
+package com.alexgilleran.icesoap.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request when the circuit breaker for its
+ * endpoint is open - i.e. the endpoint has been failing or responding slowly,
+ * so requests to it are failing fast until it's had time to recover.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class CircuitOpenException extends IOException {
+	private static final long serialVersionUID = -4502539913360327281L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
@@ -1,7 +1,7 @@
 package com.alexgilleran.icesoap.observer.registry;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.alexgilleran.icesoap.observer.SOAP11Observer;
 import com.alexgilleran.icesoap.observer.SOAPListObserver;
@@ -22,7 +22,7 @@ import com.alexgilleran.icesoap.request.Request;
  */
 public class ListObserverRegistry<TypeToReturn, SOAPFaultType> extends ObserverRegistry<List<TypeToReturn>, SOAPFaultType> {
 	/** A list of observers that are specifically list-based. */
-	private List<SOAPListObserver<TypeToReturn, SOAPFaultType>> listObservers = new ArrayList<SOAPListObserver<TypeToReturn, SOAPFaultType>>();
+	private List<SOAPListObserver<TypeToReturn, SOAPFaultType>> listObservers = new CopyOnWriteArrayList<SOAPListObserver<TypeToReturn, SOAPFaultType>>();
 
 	/**
 	 * Adds a list observer. Node that this observer will receive all events on
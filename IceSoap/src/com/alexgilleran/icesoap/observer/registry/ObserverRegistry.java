@@ -1,7 +1,7 @@
 package com.alexgilleran.icesoap.observer.registry;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.alexgilleran.icesoap.exception.SOAPException;
 import com.alexgilleran.icesoap.observer.SOAPObserver;
@@ -22,7 +22,7 @@ import com.alexgilleran.icesoap.request.Request;
  */
 public class ObserverRegistry<TypeToReturn, SOAPFaultType> {
 	/** The observers that will be notified of new events */
-	private List<SOAPObserver<TypeToReturn, SOAPFaultType>> observers = new ArrayList<SOAPObserver<TypeToReturn, SOAPFaultType>>();
+	private List<SOAPObserver<TypeToReturn, SOAPFaultType>> observers = new CopyOnWriteArrayList<SOAPObserver<TypeToReturn, SOAPFaultType>>();
 
 	/**
 	 * Registers an observer - when any notify events are called, this will be
@@ -1,7 +1,10 @@
 package com.alexgilleran.icesoap.parser;
 
+import java.io.InputStream;
 import java.util.List;
 
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
 /**
  * Extension of {@link IceSoapParser} that allows the ability to register
  * special observers that will be called every time a new item is passed.
@@ -31,4 +34,21 @@ public interface IceSoapListParser<ReturnType> extends
 	 *            The observer instance to de-register.
 	 */
 	void deregisterItemObserver(ItemObserver<ReturnType> observer);
+
+	/**
+	 * Starts parsing the provided {@link InputStream}, returning a
+	 * {@link ListCursor} that parses one item at a time as it's asked for.
+	 * Unlike {@link #parse(InputStream)}, items aren't accumulated into a
+	 * list, so memory use doesn't grow with the size of the response.
+	 * 
+	 * Registered {@link ItemObserver}s are still notified as each item is
+	 * parsed.
+	 * 
+	 * @param inputStream
+	 *            A stream containing the XML to parse.
+	 * @return A cursor over the items in the stream.
+	 * @throws XMLParsingException
+	 *             If the stream can't be read.
+	 */
+	ListCursor<ReturnType> parseItems(InputStream inputStream) throws XMLParsingException;
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.alexgilleran.icesoap.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+/**
+ * Pull-style access to the items of a list as they're parsed - the XML is only
+ * read as far as the next item each time {@link #next()} is called, and items
+ * aren't kept once they've been returned, so lists of any size can be
+ * processed in constant memory at whatever pace the caller likes.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <ItemType>
+ *            The type of the items in the list.
+ */
+public interface ListCursor<ItemType> extends Closeable {
+	/**
+	 * Determines whether there are any more items in the list, parsing ahead
+	 * to the next item if necessary.
+	 *
+	 * @return true if {@link #next()} will return another item.
+	 * @throws XMLParsingException
+	 *             If invalid XML is encountered while parsing ahead.
+	 */
+	boolean hasNext() throws XMLParsingException;
+
+	/**
+	 * Gets the next item in the list. Note that this will be null for items
+	 * that are marked as xsi:nil.
+	 *
+	 * @return The next item.
+	 * @throws XMLParsingException
+	 *             If invalid XML is encountered while parsing the item.
+	 * @throws java.util.NoSuchElementException
+	 *             If there are no more items.
+	 */
+	ItemType next() throws XMLParsingException;
+
+	/**
+	 * Stops parsing and closes the underlying stream.
+	 *
+	 * @throws IOException
+	 *             If the stream can't be closed.
+	 */
+	@Override
+	void close() throws IOException;
+}
@@ -9,6 +9,8 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.xpath.XPathTracker;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -49,6 +51,20 @@ public interface XPathPullParser {
 	 */
 	String getCurrentValue();
 
+	/**
+	 * Gets the value of the current node as characters, in the same way as
+	 * {@link XmlPullParser#getTextCharacters(int[])} - for a text node this is
+	 * the parser's own buffer, so large values can be read without copying
+	 * them into a {@link String}. The buffer is only valid until the next
+	 * event.
+	 * 
+	 * @param holderForStartAndLength
+	 *            An array of at least 2 ints, which is set to the index of
+	 *            the first character of the value and its length.
+	 * @return The buffer holding the value, or null if there isn't one.
+	 */
+	char[] getCurrentValueCharacters(int[] holderForStartAndLength);
+
 	/**
 	 * Delegates to {@link XmlPullParser#next()} - gets the next event from the
 	 * pull parser.
@@ -64,13 +80,40 @@ public interface XPathPullParser {
 	 */
 	int next() throws XMLParsingException;
 
+	/**
+	 * Skips the rest of the current element, including all of its attributes
+	 * and children, without reporting them as events. Afterwards the parser
+	 * will be at the {@link #END_TAG} event of the element that was current,
+	 * exactly as though {@link #next()} had been called until it got there.
+	 * 
+	 * This must only be called on a {@link #START_TAG} or {@link #ATTRIBUTE}
+	 * event.
+	 * 
+	 * @throws XMLParsingException
+	 *             If an error is encountered in the XML.
+	 */
+	void skipSubtree() throws XMLParsingException;
+
 	/**
 	 * Gets the current element being passed, as an {@link XPathElement}.
 	 * 
+	 * Implementations may reuse the returned element for later events, so it
+	 * should be {@link XPathElement#clone() cloned} if it needs to be kept
+	 * after the parser has moved on.
+	 * 
 	 * @return the current XPath
 	 */
 	XPathElement getCurrentElement();
 
+	/**
+	 * Gets the {@link XPathTracker} that follows the elements this parser is
+	 * currently inside, for resolving lookups in an
+	 * {@link XPathTrieRepository} without matching the whole current xpath.
+	 * 
+	 * @return The tracker for this parser.
+	 */
+	XPathTracker getTracker();
+
 	/**
 	 * Gets the type of the current event. Be aware that although this delegates
 	 * to {@link XmlPullParser#getEventType()} in most cases, on attribute
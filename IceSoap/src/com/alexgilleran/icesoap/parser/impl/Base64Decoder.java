@@ -0,0 +1,203 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+/**
+ * Decodes base64 straight from the characters of a text node, without
+ * building a {@link String} of them first. Whitespace is skipped, so
+ * line-wrapped base64 is fine.
+ *
+ * @author Alex Gilleran
+ *
+ */
+final class Base64Decoder {
+	/** Marks characters that aren't part of the base64 alphabet. */
+	private static final byte INVALID = -1;
+	/** Marks whitespace, which is skipped. */
+	private static final byte WHITESPACE = -2;
+	/** Marks the padding character. */
+	private static final byte PADDING = -3;
+	/** Size of the buffer used when decoding to a stream. */
+	private static final int STREAM_BUFFER_SIZE = 8192;
+	/** The value of each character - indexed by the character. */
+	private static final byte[] VALUES = new byte[128];
+
+	static {
+		for (int i = 0; i < VALUES.length; i++) {
+			VALUES[i] = INVALID;
+		}
+
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+
+		VALUES[' '] = WHITESPACE;
+		VALUES['\t'] = WHITESPACE;
+		VALUES['\n'] = WHITESPACE;
+		VALUES['\r'] = WHITESPACE;
+		VALUES['='] = PADDING;
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private Base64Decoder() {
+	}
+
+	/**
+	 * Decodes base64 characters into an array of exactly the right size.
+	 *
+	 * @param chars
+	 *            The buffer holding the characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param length
+	 *            The number of characters.
+	 * @return The decoded bytes.
+	 * @throws XMLParsingException
+	 *             If the characters aren't valid base64.
+	 */
+	static byte[] decode(char[] chars, int start, int length) throws XMLParsingException {
+		byte[] out = new byte[getDecodedLength(chars, start, length)];
+
+		try {
+			decode(chars, start, length, out, null);
+		} catch (IOException e) {
+			// Not writing to a stream, so can't happen
+			throw new RuntimeException(e);
+		}
+
+		return out;
+	}
+
+	/**
+	 * Decodes base64 characters to a stream, a buffer at a time.
+	 *
+	 * @param chars
+	 *            The buffer holding the characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param length
+	 *            The number of characters.
+	 * @param stream
+	 *            The stream to write to - this isn't closed.
+	 * @throws XMLParsingException
+	 *             If the characters aren't valid base64.
+	 * @throws IOException
+	 *             If the stream can't be written to.
+	 */
+	static void decode(char[] chars, int start, int length, OutputStream stream) throws XMLParsingException,
+			IOException {
+		decode(chars, start, length, new byte[STREAM_BUFFER_SIZE], stream);
+	}
+
+	/**
+	 * Works out how many bytes some base64 characters decode to.
+	 *
+	 * @param chars
+	 *            The buffer holding the characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param length
+	 *            The number of characters.
+	 * @return The decoded length.
+	 */
+	private static int getDecodedLength(char[] chars, int start, int length) {
+		long sextets = 0;
+
+		for (int i = start; i < start + length; i++) {
+			char c = chars[i];
+
+			if (c < VALUES.length && VALUES[c] >= 0) {
+				sextets++;
+			}
+		}
+
+		return (int) (sextets * 6 / 8);
+	}
+
+	/**
+	 * Decodes base64 characters into a buffer, writing the buffer to a stream
+	 * each time it fills up if there is one.
+	 *
+	 * @param chars
+	 *            The buffer holding the characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param length
+	 *            The number of characters.
+	 * @param out
+	 *            The buffer to decode into - if there's no stream, this must
+	 *            be exactly the decoded length.
+	 * @param stream
+	 *            The stream to write to, or null.
+	 * @throws XMLParsingException
+	 *             If the characters aren't valid base64.
+	 * @throws IOException
+	 *             If the stream can't be written to.
+	 */
+	private static void decode(char[] chars, int start, int length, byte[] out, OutputStream stream)
+			throws XMLParsingException, IOException {
+		int quantum = 0;
+		int sextets = 0;
+		int outPos = 0;
+		boolean padded = false;
+
+		for (int i = start; i < start + length; i++) {
+			char c = chars[i];
+			byte value = c < VALUES.length ? VALUES[c] : INVALID;
+
+			if (value == WHITESPACE) {
+				continue;
+			} else if (value == PADDING) {
+				padded = true;
+				continue;
+			} else if (value == INVALID || padded) {
+				throw new XMLParsingException("Invalid base64 character '" + c + "' at index " + (i - start));
+			}
+
+			quantum = (quantum << 6) | value;
+
+			if (++sextets == 4) {
+				if (stream != null && outPos + 3 > out.length) {
+					stream.write(out, 0, outPos);
+					outPos = 0;
+				}
+
+				out[outPos++] = (byte) (quantum >> 16);
+				out[outPos++] = (byte) (quantum >> 8);
+				out[outPos++] = (byte) quantum;
+				quantum = 0;
+				sextets = 0;
+			}
+		}
+
+		if (stream != null && outPos + 2 > out.length) {
+			stream.write(out, 0, outPos);
+			outPos = 0;
+		}
+
+		// Whatever's left over is a partial quantum at the end
+		switch (sextets) {
+		case 0:
+			break;
+		case 2:
+			out[outPos++] = (byte) (quantum >> 4);
+			break;
+		case 3:
+			out[outPos++] = (byte) (quantum >> 10);
+			out[outPos++] = (byte) (quantum >> 2);
+			break;
+		default:
+			throw new XMLParsingException("Truncated base64 value");
+		}
+
+		if (stream != null) {
+			stream.write(out, 0, outPos);
+		}
+	}
+}
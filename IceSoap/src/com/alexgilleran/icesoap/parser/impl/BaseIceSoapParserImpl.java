@@ -16,8 +16,10 @@ import com.alexgilleran.icesoap.exception.XPathParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
 import com.alexgilleran.icesoap.request.Request;
+import com.alexgilleran.icesoap.xpath.PredicateNames;
 import com.alexgilleran.icesoap.xpath.XPathFactory;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -34,6 +36,8 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 * start parsing at the start of these nodes, and stop parsing at the end.
 	 */
 	private XPathRepository<XPathElement> rootXPaths;
+	/** {@link #rootXPaths}, compiled for faster lookups while parsing. */
+	private XPathTrieRepository<XPathElement> rootXPathTrie;
 
 	/**
 	 * Instantiates a new {@link BaseIceSoapParserImpl}
@@ -63,6 +67,10 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 		this.rootXPaths = rootXPaths;
 
 		checkIfXPathsRelative(rootXPaths);
+
+		if (rootXPaths != null) {
+			rootXPathTrie = new XPathTrieRepository<XPathElement>(rootXPaths);
+		}
 	}
 
 	/**
@@ -99,14 +107,7 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 */
 	@Override
 	public ReturnType parse(InputStream inputStream) throws XMLParsingException {
-		XPathPullParserImpl parser = new XPathPullParserImpl();
-		try {
-			parser.setInput(inputStream, null);
-		} catch (XmlPullParserException e) {
-			throw new XMLParsingException(e);
-		}
-
-		return parse(parser);
+		return parse(newPullParser(inputStream));
 	}
 
 	/**
@@ -146,44 +147,96 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 * 
 	 */
 	protected final ReturnType parse(XPathPullParser parser, ReturnType objectToModify) throws XMLParsingException {
-		boolean isInRootElement = false;
+		ParseState<ReturnType> state = new ParseState<ReturnType>(parser, objectToModify);
+
+		while (step(state)) {
+			// Keep going until the end of the root element or document
+		}
+
+		// At this point we're either at the end of the root element or the
+		// document, so the object should be completely parsed - return it.
+		return state.objectToModify;
+	}
+
+	/**
+	 * Handles the event that the parse is currently at, then moves on to the
+	 * next one. Calling this repeatedly until it returns false does exactly
+	 * the same thing as {@link #parse(XPathPullParser, Object)}, but lets
+	 * subclasses stop in between events to hand results back to the caller.
+	 * 
+	 * @param state
+	 *            The state of the parse, which is updated by this method.
+	 * @return true if there are more events to handle, false if the end of the
+	 *         root element or document has been reached.
+	 * @throws XMLParsingException
+	 *             If a problem is encountered with the underlying
+	 *             {@link XmlPullParser} - usually as a result of poorly-formed
+	 *             XML.
+	 */
+	protected final boolean step(ParseState<ReturnType> state) throws XMLParsingException {
+		XPathPullParser parser = state.parser;
 
 		try {
-			while (true) {
-				if (rootXPaths == null) {
-					// No root xpath is specified - just parse every element
-					// that comes along.
-					objectToModify = parseElement(parser, objectToModify);
+			if (rootXPaths == null) {
+				// No root xpath is specified - just parse every element
+				// that comes along.
+				if (parser.getEventType() == XPathPullParser.START_TAG && canSkip(parser)) {
+					parser.skipSubtree();
 				} else {
-					if (isInRootElement == false && enteringRootElement(parser)) {
-						isInRootElement = true;
-					} else if (isInRootElement == true && exitingRootElement(parser)) {
-						isInRootElement = false;
-
-						// No need to keep parsing with this parser
-						break;
-					}
-
-					if (isInRootElement && isEventTypeParseable(parser.getEventType())) {
-						objectToModify = parseElement(parser, objectToModify);
-					}
+					state.objectToModify = parseElement(parser, state.objectToModify);
+				}
+			} else {
+				if (state.isInRootElement == false && enteringRootElement(parser)) {
+					state.isInRootElement = true;
+				} else if (state.isInRootElement == true && exitingRootElement(parser)) {
+					state.isInRootElement = false;
+
+					// No need to keep parsing with this parser
+					return false;
+				} else if (parser.getEventType() == XPathPullParser.START_TAG
+						&& (state.isInRootElement ? canSkip(parser) : rootXPathTrie.isDeadEnd(parser.getTracker()))) {
+					// Nothing this parser is interested in can be under
+					// this element, so don't bother going through it.
+					parser.skipSubtree();
 				}
 
-				// If we're at the end of the document, break out, otherwise
-				// keep parsing.
-				if (parser.getEventType() != XmlPullParser.END_DOCUMENT) {
-					parser.next();
-				} else {
-					break;
+				if (state.isInRootElement && isEventTypeParseable(parser.getEventType())) {
+					state.objectToModify = parseElement(parser, state.objectToModify);
 				}
 			}
 
-			// At this point we're either at the end of the root element or the
-			// document, so the object should be completely parsed - return it.
-			return objectToModify;
+			// If we're at the end of the document, stop, otherwise keep
+			// parsing.
+			if (parser.getEventType() != XmlPullParser.END_DOCUMENT) {
+				parser.next();
+				return true;
+			} else {
+				return false;
+			}
+		} catch (XmlPullParserException e) {
+			throw new XMLParsingException(e);
+		}
+	}
+
+	/**
+	 * Creates a new {@link XPathPullParser} for reading the passed stream.
+	 * 
+	 * @param inputStream
+	 *            The stream of XML to parse.
+	 * @return A pull parser that's ready to go.
+	 * @throws XMLParsingException
+	 *             If the stream can't be read.
+	 */
+	protected XPathPullParser newPullParser(InputStream inputStream) throws XMLParsingException {
+		// Only predicates used by compiled xpaths need to be captured
+		XPathPullParserImpl parser = new XPathPullParserImpl(PredicateNames.getInstance());
+		try {
+			parser.setInput(inputStream, null);
 		} catch (XmlPullParserException e) {
 			throw new XMLParsingException(e);
 		}
+
+		return parser;
 	}
 
 	/**
@@ -210,7 +263,7 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 *             If a problem is encountered in the {@link XmlPullParser}
 	 */
 	private boolean enteringRootElement(XPathPullParser parser) throws XmlPullParserException {
-		return parser.getEventType() == XPathPullParser.START_TAG && rootXPaths.contains(parser.getCurrentElement());
+		return parser.getEventType() == XPathPullParser.START_TAG && rootXPathTrie.contains(parser.getTracker());
 	}
 
 	/**
@@ -224,7 +277,24 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 *             If a problem is encountered in the {@link XmlPullParser}
 	 */
 	private boolean exitingRootElement(XPathPullParser parser) throws XmlPullParserException {
-		return parser.getEventType() == XPathPullParser.END_TAG && rootXPaths.contains(parser.getCurrentElement());
+		return parser.getEventType() == XPathPullParser.END_TAG && rootXPathTrie.contains(parser.getTracker());
+	}
+
+	/**
+	 * Determines whether the element that the passed parser has just started
+	 * can be skipped in its entirety, because neither it, its attributes nor
+	 * anything below it can affect the parsed object. This is never asked
+	 * about the element that matched the parser's root xpath.
+	 * 
+	 * By default nothing is skipped.
+	 * 
+	 * @param pullParser
+	 *            The parser, positioned at a {@link XPathPullParser#START_TAG}
+	 *            event.
+	 * @return true if the element's subtree can be skipped.
+	 */
+	protected boolean canSkip(XPathPullParser pullParser) {
+		return false;
 	}
 
 	/**
@@ -427,4 +497,51 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 		}
 	}
 
+
+	/**
+	 * Keeps track of how far a parse has got, so that it can be carried out
+	 * one event at a time with {@link BaseIceSoapParserImpl#step(ParseState)}.
+	 * 
+	 * @param <ReturnType>
+	 *            The type of object being parsed.
+	 */
+	protected static class ParseState<ReturnType> {
+		/** The pull parser being read. */
+		private final XPathPullParser parser;
+		/** The object being parsed into - null until it's initialized. */
+		private ReturnType objectToModify;
+		/** Whether the parse is inside its root element. */
+		private boolean isInRootElement = false;
+
+		/**
+		 * Creates a new state for a parse that hasn't started yet.
+		 * 
+		 * @param parser
+		 *            The pull parser to read.
+		 * @param objectToModify
+		 *            The object to parse into, or null to initialize a new one.
+		 */
+		public ParseState(XPathPullParser parser, ReturnType objectToModify) {
+			this.parser = parser;
+			this.objectToModify = objectToModify;
+		}
+
+		/**
+		 * Gets the pull parser being read.
+		 * 
+		 * @return The pull parser.
+		 */
+		public XPathPullParser getParser() {
+			return parser;
+		}
+
+		/**
+		 * Gets the object being parsed into.
+		 * 
+		 * @return The object, or null if nothing's been parsed into it yet.
+		 */
+		public ReturnType getObjectToModify() {
+			return objectToModify;
+		}
+	}
 }
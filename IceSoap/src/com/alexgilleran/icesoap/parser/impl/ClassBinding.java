@@ -0,0 +1,104 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+
+/**
+ * The binding plan for a class that can be parsed by {@link IceSoapParserImpl}
+ * - a {@link FieldBinding} for every {@link XMLField}-annotated field in the
+ * class and its superclasses.
+ *
+ * Plans are built once per class and cached, so that creating a new parser
+ * for a class that's been parsed before doesn't need to go through its fields
+ * again.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <TargetType>
+ *            The class being bound.
+ */
+public class ClassBinding<TargetType> {
+	/** Cache of binding plans that have already been built. */
+	private static final ConcurrentMap<Class<?>, ClassBinding<?>> CACHE = new ConcurrentHashMap<Class<?>, ClassBinding<?>>();
+
+	/** The class being bound. */
+	private final Class<TargetType> targetClass;
+	/** The bindings for each annotated field in the class. */
+	private final List<FieldBinding> fieldBindings;
+
+	/**
+	 * Creates a new binding plan - use {@link #forClass(Class)} to get a cached
+	 * one.
+	 *
+	 * @param targetClass
+	 *            The class to bind.
+	 */
+	private ClassBinding(Class<TargetType> targetClass) {
+		this.targetClass = targetClass;
+
+		List<FieldBinding> bindings = new ArrayList<FieldBinding>();
+		Class<?> currentClass = targetClass;
+
+		while (!currentClass.equals(Object.class)) {
+			for (Field field : currentClass.getDeclaredFields()) {
+				if (field.getAnnotation(XMLField.class) != null) {
+					bindings.add(new FieldBinding(field));
+				}
+			}
+
+			currentClass = currentClass.getSuperclass();
+		}
+
+		this.fieldBindings = Collections.unmodifiableList(bindings);
+	}
+
+	/**
+	 * Gets the binding plan for a class, building it if this is the first time
+	 * it's been asked for.
+	 *
+	 * @param targetClass
+	 *            The class to get the binding plan for.
+	 * @return The binding plan.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <TargetType> ClassBinding<TargetType> forClass(Class<TargetType> targetClass) {
+		ClassBinding<TargetType> binding = (ClassBinding<TargetType>) CACHE.get(targetClass);
+
+		if (binding == null) {
+			binding = new ClassBinding<TargetType>(targetClass);
+
+			ClassBinding<TargetType> existing = (ClassBinding<TargetType>) CACHE.putIfAbsent(targetClass, binding);
+
+			if (existing != null) {
+				binding = existing;
+			}
+		}
+
+		return binding;
+	}
+
+	/**
+	 * Gets the class being bound.
+	 *
+	 * @return The class.
+	 */
+	public Class<TargetType> getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Gets the bindings for each {@link XMLField}-annotated field in the class
+	 * and its superclasses.
+	 *
+	 * @return An unmodifiable list of field bindings.
+	 */
+	public List<FieldBinding> getFieldBindings() {
+		return fieldBindings;
+	}
+}
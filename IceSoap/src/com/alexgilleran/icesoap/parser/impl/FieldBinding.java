@@ -0,0 +1,525 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.ClassDefException;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.processor.Processor;
+
+/**
+ * The precompiled binding for a single {@link XMLField}-annotated field.
+ *
+ * All the reflective work needed to set a value on the field - reading the
+ * annotation, working out whether the field is a {@link List}, finding the
+ * list's item type, instantiating the field's {@link Processor} and picking a
+ * converter for text values - is done once when the binding is created, so
+ * that the parse loop only ever has to call {@link #convert(String)} and
+ * {@link #setValue(Object, Object)}.
+ *
+ * Bindings are shared between all parsers of the same class (see
+ * {@link ClassBinding}), and so are safe to use from multiple threads.
+ *
+ * @author Alex Gilleran
+ */
+public class FieldBinding {
+	/** The field that this binding sets. */
+	private final Field field;
+	/** The annotation on the field. */
+	private final XMLField annotation;
+	/** Whether the field is a {@link List} that values are appended to. */
+	private final boolean list;
+	/**
+	 * The class of the value to set - the field's type, or the list's item
+	 * type if the field is a list.
+	 */
+	private final Class<?> valueClass;
+	/** The processor specified in the annotation, or null if there isn't one. */
+	private final Processor<?> processor;
+	/** Converts text values to {@link #valueClass}. */
+	private final TextConverter converter;
+	/**
+	 * Whether the field's value has to be parsed with another parser rather
+	 * than being set from a text value.
+	 */
+	private final boolean needsParser;
+	/** The value to set when the field is nil - not null for primitives. */
+	private final Object nullValue;
+	/**
+	 * Date format for the field, if it's a {@link Date}. A
+	 * {@link SimpleDateFormat} isn't thread-safe, so one is kept per thread.
+	 */
+	private final ThreadLocal<SimpleDateFormat> dateFormat;
+
+	/**
+	 * Creates a new binding for a field.
+	 *
+	 * @param field
+	 *            The field to bind - must be annotated with {@link XMLField}.
+	 */
+	public FieldBinding(Field field) {
+		this.field = field;
+		this.annotation = field.getAnnotation(XMLField.class);
+
+		field.setAccessible(true);
+
+		list = List.class.isAssignableFrom(field.getType());
+		valueClass = list ? getListItemClass(field) : field.getType();
+		processor = buildProcessor();
+		converter = TextConverter.forClass(valueClass);
+		needsParser = converter == null && processor == null;
+		nullValue = getNullValue(field.getType());
+
+		if (converter == TextConverter.DATE) {
+			final String format = annotation.dateFormat();
+
+			dateFormat = new ThreadLocal<SimpleDateFormat>() {
+				@Override
+				protected SimpleDateFormat initialValue() {
+					return new SimpleDateFormat(format);
+				}
+			};
+		} else {
+			dateFormat = null;
+		}
+	}
+
+	/**
+	 * Instantiates the {@link Processor} specified by the field's annotation.
+	 * This instance is shared by every parse of the field on every thread, as
+	 * the {@link Processor} contract allows.
+	 *
+	 * @return The processor, or null if the annotation doesn't specify one.
+	 */
+	private Processor<?> buildProcessor() {
+		if (annotation.processor().equals(Processor.class)) {
+			return null;
+		}
+
+		try {
+			return annotation.processor().newInstance();
+		} catch (InstantiationException e) {
+			throw buildProcessorException(e);
+		} catch (IllegalAccessException e) {
+			throw buildProcessorException(e);
+		}
+	}
+
+	/**
+	 * Builds the exception to throw when the field's processor can't be
+	 * instantiated.
+	 *
+	 * @param cause
+	 *            The root exception.
+	 * @return A {@link ClassDefException}.
+	 */
+	private ClassDefException buildProcessorException(Throwable cause) {
+		return new ClassDefException("Could not instantiate processor " + annotation.processor().getName()
+				+ " for field " + field.toString() + " - processors must have a public zero-arg constructor", cause);
+	}
+
+	/**
+	 * Gets the generic type of the items in a list field.
+	 *
+	 * @param listField
+	 *            The field, which must be a parameterized {@link List}.
+	 * @return The class of the list items.
+	 */
+	private static Class<?> getListItemClass(Field listField) {
+		ParameterizedType paramType = (ParameterizedType) listField.getGenericType();
+
+		return (Class<?>) paramType.getActualTypeArguments()[0];
+	}
+
+	/**
+	 * Gets the value to set to a field of the passed type in order to null it,
+	 * substituting equivalent values for primitives that can't be null.
+	 *
+	 * @param type
+	 *            The type of the field.
+	 * @return The null value.
+	 */
+	private static Object getNullValue(Class<?> type) {
+		if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0l;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == boolean.class) {
+			return false;
+		} else if (type == char.class) {
+			return '\0';
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the field that this binding sets.
+	 *
+	 * @return The field.
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the class of the value that gets set to the field - this is the
+	 * item type if the field is a {@link List}.
+	 *
+	 * @return The class of the value.
+	 */
+	public Class<?> getValueClass() {
+		return valueClass;
+	}
+
+	/**
+	 * Whether the field's value has to be parsed by another parser, rather
+	 * than being set from a text value.
+	 *
+	 * @return true if a parser is needed.
+	 */
+	public boolean needsParser() {
+		return needsParser;
+	}
+
+	/**
+	 * Converts a text value from the XML to the type of the field, either
+	 * using the field's {@link Processor} or its precomputed converter.
+	 *
+	 * @param textValue
+	 *            The text value.
+	 * @return The converted value.
+	 * @throws XMLParsingException
+	 *             If the value couldn't be converted.
+	 */
+	public Object convert(String textValue) throws XMLParsingException {
+		if (processor != null) {
+			return processor.process(textValue);
+		}
+
+		return converter.convert(this, textValue);
+	}
+
+	/**
+	 * Whether the field holds binary data that's decoded from base64 - if so,
+	 * it should be set with {@link #convert(char[], int, int)} so that the
+	 * text never has to be copied into a {@link String}.
+	 *
+	 * @return true if the field is binary.
+	 */
+	public boolean isBinary() {
+		return processor == null && converter != null && converter.isBinary();
+	}
+
+	/**
+	 * Converts a text value from the XML to the type of the field, reading it
+	 * straight from a character buffer.
+	 *
+	 * @param chars
+	 *            The buffer holding the value.
+	 * @param start
+	 *            The index of the first character of the value.
+	 * @param length
+	 *            The number of characters in the value.
+	 * @return The converted value.
+	 * @throws XMLParsingException
+	 *             If the value couldn't be converted.
+	 */
+	public Object convert(char[] chars, int start, int length) throws XMLParsingException {
+		if (processor != null) {
+			return processor.process(new String(chars, start, length));
+		}
+
+		return converter.convert(this, chars, start, length);
+	}
+
+	/**
+	 * Sets the field to null, or the equivalent value if it's a primitive.
+	 *
+	 * @param target
+	 *            The object to set the field on.
+	 */
+	public void setToNull(Object target) {
+		setValue(target, nullValue);
+	}
+
+	/**
+	 * Sets the field on the passed object to the passed value - if the field
+	 * is a {@link List}, the value is added to it instead, creating the list
+	 * if necessary.
+	 *
+	 * @param target
+	 *            The object to set the field on.
+	 * @param value
+	 *            The value to set.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setValue(Object target, Object value) {
+		try {
+			if (list) {
+				List<Object> existingList = (List<Object>) field.get(target);
+
+				if (existingList != null) {
+					existingList.add(value);
+					return;
+				}
+
+				List<Object> newList = new ArrayList<Object>();
+				newList.add(value);
+				value = newList;
+			}
+
+			field.set(target, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Converts text values to the basic types that can be set straight from a
+	 * text node or attribute, including binary types that are decoded from
+	 * base64 - byte[], {@link ByteBuffer}, {@link File} (a new temporary file
+	 * that the caller is responsible for deleting) and {@link InputStream}.
+	 */
+	private enum TextConverter {
+		INT {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return Integer.parseInt(value);
+			}
+		},
+		LONG {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return Long.parseLong(value);
+			}
+		},
+		FLOAT {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return Float.parseFloat(value);
+			}
+		},
+		DOUBLE {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return Double.parseDouble(value);
+			}
+		},
+		BOOLEAN {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return Boolean.parseBoolean(value);
+			}
+		},
+		BIG_DECIMAL {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return new BigDecimal(value);
+			}
+		},
+		DATE {
+			@Override
+			Object convert(FieldBinding binding, String value) throws XMLParsingException {
+				try {
+					return binding.dateFormat.get().parse(value);
+				} catch (ParseException e) {
+					throw new XMLParsingException("Encountered date parsing exception when parsing "
+							+ binding.field.toString() + " with format " + binding.annotation.dateFormat()
+							+ " for value " + value, e);
+				}
+			}
+		},
+		STRING {
+			@Override
+			Object convert(FieldBinding binding, String value) {
+				return value;
+			}
+		},
+		BYTES {
+			@Override
+			Object convert(FieldBinding binding, char[] chars, int start, int length) throws XMLParsingException {
+				return Base64Decoder.decode(chars, start, length);
+			}
+		},
+		BYTE_BUFFER {
+			@Override
+			Object convert(FieldBinding binding, char[] chars, int start, int length) throws XMLParsingException {
+				return ByteBuffer.wrap(Base64Decoder.decode(chars, start, length));
+			}
+		},
+		FILE {
+			@Override
+			Object convert(FieldBinding binding, char[] chars, int start, int length) throws XMLParsingException {
+				return decodeToTempFile(binding, chars, start, length);
+			}
+		},
+		INPUT_STREAM {
+			@Override
+			Object convert(FieldBinding binding, char[] chars, int start, int length) throws XMLParsingException {
+				File file = decodeToTempFile(binding, chars, start, length);
+
+				try {
+					InputStream stream = new FileInputStream(file);
+
+					// The open stream keeps the data around on Android and
+					// other unix-like systems, so the file can go now.
+					if (!file.delete()) {
+						file.deleteOnExit();
+					}
+
+					return stream;
+				} catch (IOException e) {
+					throw new XMLParsingException("Could not open decoded value of " + binding.field.toString(), e);
+				}
+			}
+		};
+
+		/** Prefix of temporary files that binary values are decoded to. */
+		private static final String TEMP_FILE_PREFIX = "icesoap";
+		/** Suffix of temporary files that binary values are decoded to. */
+		private static final String TEMP_FILE_SUFFIX = ".bin";
+
+		/**
+		 * Converts the value.
+		 *
+		 * @param binding
+		 *            The binding of the field being converted for.
+		 * @param value
+		 *            The text value.
+		 * @return The converted value.
+		 * @throws XMLParsingException
+		 *             If the value couldn't be converted.
+		 */
+		Object convert(FieldBinding binding, String value) throws XMLParsingException {
+			return convert(binding, value.toCharArray(), 0, value.length());
+		}
+
+		/**
+		 * Converts a value held in a character buffer - binary converters
+		 * override this to decode it without copying it into a String.
+		 *
+		 * @param binding
+		 *            The binding of the field being converted for.
+		 * @param chars
+		 *            The buffer holding the value.
+		 * @param start
+		 *            The index of the first character of the value.
+		 * @param length
+		 *            The number of characters in the value.
+		 * @return The converted value.
+		 * @throws XMLParsingException
+		 *             If the value couldn't be converted.
+		 */
+		Object convert(FieldBinding binding, char[] chars, int start, int length) throws XMLParsingException {
+			return convert(binding, new String(chars, start, length));
+		}
+
+		/**
+		 * Whether this converter decodes binary data.
+		 *
+		 * @return true if it does.
+		 */
+		boolean isBinary() {
+			return this == BYTES || this == BYTE_BUFFER || this == FILE || this == INPUT_STREAM;
+		}
+
+		/**
+		 * Decodes a base64 value to a new temporary file, a buffer at a time.
+		 *
+		 * @param binding
+		 *            The binding of the field being converted for.
+		 * @param chars
+		 *            The buffer holding the value.
+		 * @param start
+		 *            The index of the first character of the value.
+		 * @param length
+		 *            The number of characters in the value.
+		 * @return The file.
+		 * @throws XMLParsingException
+		 *             If the value isn't valid base64 or the file can't be
+		 *             written.
+		 */
+		private static File decodeToTempFile(FieldBinding binding, char[] chars, int start, int length)
+				throws XMLParsingException {
+			File file = null;
+			OutputStream out = null;
+
+			try {
+				file = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+				out = new FileOutputStream(file);
+				Base64Decoder.decode(chars, start, length, out);
+				out.close();
+				out = null;
+
+				return file;
+			} catch (IOException e) {
+				throw new XMLParsingException("Could not write decoded value of " + binding.field.toString(), e);
+			} finally {
+				if (out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+						// Already failing
+					}
+					file.delete();
+				}
+			}
+		}
+
+		/**
+		 * Gets the converter for a type.
+		 *
+		 * @param type
+		 *            The type to convert to.
+		 * @return The converter, or null if the type can't be set from text.
+		 */
+		static TextConverter forClass(Class<?> type) {
+			if (type == int.class) {
+				return INT;
+			} else if (type == long.class) {
+				return LONG;
+			} else if (type == float.class) {
+				return FLOAT;
+			} else if (type == double.class) {
+				return DOUBLE;
+			} else if (type == boolean.class) {
+				return BOOLEAN;
+			} else if (type == BigDecimal.class) {
+				return BIG_DECIMAL;
+			} else if (type == Date.class) {
+				return DATE;
+			} else if (type == String.class) {
+				return STRING;
+			} else if (type == byte[].class) {
+				return BYTES;
+			} else if (type == ByteBuffer.class) {
+				return BYTE_BUFFER;
+			} else if (type == File.class) {
+				return FILE;
+			} else if (type == InputStream.class) {
+				return INPUT_STREAM;
+			}
+
+			return null;
+		}
+	}
+}
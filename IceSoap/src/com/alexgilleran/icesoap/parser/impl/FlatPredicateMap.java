@@ -0,0 +1,158 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map of predicate names to values that's backed by flat arrays, so that it
+ * can be cleared and refilled for every start tag without allocating.
+ *
+ * Lookups are linear, which is faster than hashing for the handful of
+ * attributes a typical element has.
+ *
+ * @author Alex Gilleran
+ *
+ */
+class FlatPredicateMap extends AbstractMap<String, String> {
+	/** The initial capacity of the arrays. */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** Predicate names, in the order they were added. */
+	private String[] names = new String[INITIAL_CAPACITY];
+	/** Predicate values, at the same indexes as their names. */
+	private String[] values = new String[INITIAL_CAPACITY];
+	/** The number of predicates in the map. */
+	private int size = 0;
+
+	/**
+	 * Adds a predicate without checking whether it's already present - it's up
+	 * to the caller to ensure that names are unique, as they are for the
+	 * attributes of a single xml tag.
+	 *
+	 * @param name
+	 *            The name of the predicate.
+	 * @param value
+	 *            The value of the predicate.
+	 */
+	void add(String name, String value) {
+		if (size == names.length) {
+			String[] newNames = new String[size * 2];
+			System.arraycopy(names, 0, newNames, 0, size);
+			names = newNames;
+
+			String[] newValues = new String[size * 2];
+			System.arraycopy(values, 0, newValues, 0, size);
+			values = newValues;
+		}
+
+		names[size] = name;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Gets the index of a predicate.
+	 *
+	 * @param name
+	 *            The name of the predicate.
+	 * @return The index, or -1 if it's not present.
+	 */
+	private int indexOf(Object name) {
+		for (int i = 0; i < size; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public String get(Object name) {
+		int index = indexOf(name);
+
+		return index == -1 ? null : values[index];
+	}
+
+	@Override
+	public boolean containsKey(Object name) {
+		return indexOf(name) != -1;
+	}
+
+	@Override
+	public String put(String name, String value) {
+		int index = indexOf(name);
+
+		if (index == -1) {
+			add(name, value);
+			return null;
+		}
+
+		String oldValue = values[index];
+		values[index] = value;
+		return oldValue;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			names[i] = null;
+			values[i] = null;
+		}
+
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Iterator<Map.Entry<String, String>>() {
+					private int index = 0;
+
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+
+					@Override
+					public Map.Entry<String, String> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+
+						Map.Entry<String, String> entry = new SimpleImmutableEntry<String, String>(names[index],
+								values[index]);
+						index++;
+						return entry;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
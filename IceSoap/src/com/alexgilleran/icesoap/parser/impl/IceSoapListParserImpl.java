@@ -1,16 +1,21 @@
 package com.alexgilleran.icesoap.parser.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapListParser;
 import com.alexgilleran.icesoap.parser.ItemObserver;
+import com.alexgilleran.icesoap.parser.ListCursor;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -31,9 +36,13 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 	 */
 	private BaseIceSoapParserImpl<ListItemType> parser;
 	/** The XPath of the list items within the XML document */
-	private XPathRepository<XPathElement> objectXPaths;
-	/** A set of observers to notify of new items as they're parsed. */
-	private Set<ItemObserver<ListItemType>> observers = new HashSet<ItemObserver<ListItemType>>();
+	private XPathTrieRepository<XPathElement> objectXPaths;
+	/**
+	 * A set of observers to notify of new items as they're parsed - observers
+	 * can be registered and deregistered on other threads while a parse is
+	 * notifying them.
+	 */
+	private Set<ItemObserver<ListItemType>> observers = new CopyOnWriteArraySet<ItemObserver<ListItemType>>();
 
 	/**
 	 * Instantiates a new list parser.
@@ -42,9 +51,9 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 	 *            The class of the item that will be parsed as part of the list.
 	 */
 	public IceSoapListParserImpl(Class<ListItemType> clazz) {
-		super(retrieveRootXPaths(clazz));
+		super(ParserRegistry.getInstance().getRootXPaths(clazz));
 
-		this.parser = new IceSoapParserImpl<ListItemType>(clazz);
+		this.parser = ParserRegistry.getInstance().getParser(clazz);
 	}
 
 	/**
@@ -56,7 +65,7 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 	 *            The XPath of the XML element that contains the list.
 	 */
 	public IceSoapListParserImpl(Class<ListItemType> clazz, XPathElement containingXPath) {
-		this(clazz, containingXPath, new IceSoapParserImpl<ListItemType>(clazz, containingXPath));
+		this(clazz, containingXPath, ParserRegistry.getInstance().getParser(clazz, containingXPath));
 	}
 
 	/**
@@ -76,7 +85,11 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 			BaseIceSoapParserImpl<ListItemType> parser) {
 		super(containingXPath);
 
-		objectXPaths = super.retrieveRootXPaths(clazz);
+		XPathRepository<XPathElement> itemXPaths = ParserRegistry.getInstance().getRootXPaths(clazz);
+
+		if (itemXPaths != null) {
+			objectXPaths = new XPathTrieRepository<XPathElement>(itemXPaths);
+		}
 
 		this.parser = parser;
 	}
@@ -115,6 +128,14 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ListCursor<ListItemType> parseItems(InputStream inputStream) throws XMLParsingException {
+		return new ListCursorImpl(inputStream, newPullParser(inputStream));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -129,7 +150,7 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 	@Override
 	protected List<ListItemType> onNewTag(XPathPullParser xmlPullParser, List<ListItemType> listSoFar)
 			throws XMLParsingException {
-		if ((objectXPaths == null || objectXPaths.contains(xmlPullParser.getCurrentElement()))) {
+		if ((objectXPaths == null || objectXPaths.contains(xmlPullParser.getTracker()))) {
 			// Figure out if the element is XSI nil before the parser skips past
 			// the relevant markup in the XML
 			boolean isXsiNil = xmlPullParser.isCurrentValueXsiNil();
@@ -152,6 +173,17 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		return listSoFar;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If no object xpaths were specified, every element is an item so nothing
+	 * can be skipped.
+	 */
+	@Override
+	protected boolean canSkip(XPathPullParser pullParser) {
+		return objectXPaths != null && objectXPaths.isDeadEnd(pullParser.getTracker());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -162,4 +194,64 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		// least for now).
 		return objectToModify;
 	}
+
+	/**
+	 * {@link ListCursor} that steps through the parse until an item has been
+	 * added to a single-item buffer, then hands it over to the caller.
+	 */
+	private class ListCursorImpl implements ListCursor<ListItemType> {
+		/** The stream being parsed. */
+		private final InputStream inputStream;
+		/** The state of the parse. */
+		private final ParseState<List<ListItemType>> state;
+		/** Whether the end of the list has been reached. */
+		private boolean finished = false;
+
+		/**
+		 * Creates a new cursor.
+		 * 
+		 * @param inputStream
+		 *            The stream being parsed.
+		 * @param pullParser
+		 *            A pull parser reading the stream.
+		 */
+		public ListCursorImpl(InputStream inputStream, XPathPullParser pullParser) {
+			this.inputStream = inputStream;
+			this.state = new ParseState<List<ListItemType>>(pullParser, new ArrayList<ListItemType>(1));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() throws XMLParsingException {
+			while (state.getObjectToModify().isEmpty() && !finished) {
+				finished = !step(state);
+			}
+
+			return !state.getObjectToModify().isEmpty();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ListItemType next() throws XMLParsingException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return state.getObjectToModify().remove(0);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+			finished = true;
+			state.getObjectToModify().clear();
+			inputStream.close();
+		}
+	}
 }
@@ -1,19 +1,12 @@
 package com.alexgilleran.icesoap.parser.impl;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Type;
 import java.math.BigDecimal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-
-import javax.management.modelmbean.XMLParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 import com.alexgilleran.icesoap.annotation.XMLObject;
@@ -21,9 +14,9 @@ import com.alexgilleran.icesoap.exception.ClassDefException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
-import com.alexgilleran.icesoap.parser.processor.Processor;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
 import com.alexgilleran.icesoap.xpath.XPathRepository.XPathRecord;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -33,13 +26,17 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
  * annotations on it to determine the xpath of this object in SOAP calls, and
  * the xpaths of each field within the object.
  * 
+ * The reflective work for each field is done once per class by
+ * {@link ClassBinding}, so the parse loop itself only deals with precompiled
+ * {@link FieldBinding}s.
+ * 
  * Once it has these, every time it gets a call from
  * {@link BaseIceSoapParserImpl#onNewTag(XPathPullParser, Object)}, it looks up
  * the current xpath in its repository of {@link XPathElement}s to see if it has
  * a field that matches it - if it does, it looks at the type of the field.
  * 
- * <li>For basic types (primitives, {@link String}, {@link BigDecimal}, as
- * defined by {@link #TEXT_NODE_CLASSES}), it gets the value from the parser and
+ * <li>For basic types (primitives, {@link String}, {@link BigDecimal} and
+ * {@link java.util.Date}), it gets the value from the parser and
  * sets that field to the value - if the value is not an XML Text field an
  * exception is thrown.</li> <li>For complex types annotated by
  * {@link XMLObject}, it will instantiate another parser to parse an instance of
@@ -56,16 +53,11 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
  *            The type of the object being parsed.
  */
 public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnType> {
-	/** Null character **/
-	private static final char PRIMITIVE_NULL_CHAR = '\0';
-	/** Equivalent to null for primitive number types (0) **/
-	private static final int PRIMITIVE_NULL_NUMBER = 0;
-
 	/**
-	 * An {@link XPathRepository} that maps xpaths to the fields represented by
-	 * them.
+	 * An {@link XPathTrieRepository} that maps xpaths to the bindings of the
+	 * fields represented by them.
 	 */
-	private XPathRepository<Field> fieldXPaths;
+	private XPathTrieRepository<FieldBinding> fieldXPaths;
 
 	/**
 	 * The class of ReturnType.
@@ -73,15 +65,11 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	private Class<ReturnType> targetClass;
 
 	/**
-	 * Types that can be parsed by simply getting the text value from a node or
-	 * attribute.
-	 */
-	@SuppressWarnings("unchecked")
-	private static final Set<Class<?>> TEXT_NODE_CLASSES = new HashSet<Class<?>>(Arrays.asList(long.class, float.class,
-			int.class, double.class, boolean.class, BigDecimal.class, String.class, Date.class));
-
-	/** Maintains a cache of instantiated parsers for reuse **/
-	private HashMap<XPathElement, BaseIceSoapParserImpl<?>> parserCache = new HashMap<XPathElement, BaseIceSoapParserImpl<?>>();
+	 * Maintains a cache of parsers for fields, taken from the
+	 * {@link ParserRegistry}. This is concurrent because the parser itself may
+	 * be shared between threads.
+	 **/
+	private ConcurrentMap<XPathElement, BaseIceSoapParserImpl<?>> parserCache = new ConcurrentHashMap<XPathElement, BaseIceSoapParserImpl<?>>();
 
 	/**
 	 * Instantiates a new parser.
@@ -91,7 +79,7 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 *            zero-arg constructor
 	 */
 	public IceSoapParserImpl(Class<ReturnType> targetClass) {
-		this(targetClass, retrieveRootXPaths(targetClass));
+		this(targetClass, ParserRegistry.getInstance().getRootXPaths(targetClass));
 	}
 
 	/**
@@ -129,62 +117,41 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 		super(rootXPaths);
 		this.targetClass = targetClass;
 
-		fieldXPaths = getFieldXPaths(targetClass);
+		fieldXPaths = new XPathTrieRepository<FieldBinding>(getFieldXPaths(targetClass));
 	}
 
 	/**
-	 * Gets the xpaths declared with the {@link XMLField} annotation on a class.
+	 * Gets the xpaths declared with the {@link XMLField} annotation on a class
+	 * and its superclasses, using the class's {@link ClassBinding}.
 	 * 
 	 * @param targetClass
 	 *            The class to get xpaths for.
-	 * @return An {@link XPathRepository} linking xpaths to fields.
+	 * @return An {@link XPathRepository} linking xpaths to field bindings.
 	 */
-	private XPathRepository<Field> getFieldXPaths(Class<ReturnType> targetClass) {
-		XPathRepository<Field> fieldXPaths = new XPathRepository<Field>();
-
-		Class<?> currentClass = targetClass;
-
-		while (!currentClass.equals(Object.class)) {
-			addXPathFieldsToRepo(currentClass, fieldXPaths);
-			currentClass = currentClass.getSuperclass();
-		}
-
-		return fieldXPaths;
-	}
+	private XPathRepository<FieldBinding> getFieldXPaths(Class<ReturnType> targetClass) {
+		XPathRepository<FieldBinding> fieldXPaths = new XPathRepository<FieldBinding>();
 
-	/**
-	 * Adds the fields from the specified class to the passed
-	 * {@link XPathRepository}, with the XPaths specified in the
-	 * {@link XMLField} annotations.
-	 * 
-	 * @param targetClass
-	 *            The class to draw fields from
-	 * @param fieldXPaths
-	 *            The repository to add fields too
-	 */
-	private void addXPathFieldsToRepo(Class<?> targetClass, XPathRepository<Field> fieldXPaths) {
-		for (Field field : targetClass.getDeclaredFields()) {
+		for (FieldBinding binding : ClassBinding.forClass(targetClass).getFieldBindings()) {
+			Field field = binding.getField();
 			XMLField xPath = field.getAnnotation(XMLField.class);
+			XPathRepository<XPathElement> xpathsFromField;
 
-			if (xPath != null) {
-				// Annotation is not present: do nothing for this field.
-				XPathRepository<XPathElement> xpathsFromField;
+			if (!xPath.value().equals(XMLField.DEFAULT_XPATH_STRING)) {
+				// If the XPath has a value specified, compile it
+				xpathsFromField = compileXPath(xPath, field);
 
-				if (!xPath.value().equals(XMLField.DEFAULT_XPATH_STRING)) {
-					// If the XPath has a value specified, compile it
-					xpathsFromField = compileXPath(xPath, field);
-
-					addRootToRelativeXPaths(xpathsFromField);
-				} else {
-					// XPath has no value - set to the root value
-					xpathsFromField = getRootXPaths();
-				}
+				addRootToRelativeXPaths(xpathsFromField);
+			} else {
+				// XPath has no value - set to the root value
+				xpathsFromField = getRootXPaths();
+			}
 
-				for (XPathElement element : xpathsFromField.keySet()) {
-					fieldXPaths.put(element, field);
-				}
+			for (XPathElement element : xpathsFromField.keySet()) {
+				fieldXPaths.put(element, binding);
 			}
 		}
+
+		return fieldXPaths;
 	}
 
 	/**
@@ -276,32 +243,30 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 * 
 	 * This method works by getting the current xpath from the
 	 * {@link XPathPullParser} and seeing if there are any fields that match it.
-	 * If there aren't, it does nothing. If there are, it checks the type of the
-	 * field - if it's a type that can be set from a text node value, it gets
-	 * the value from the node and sets it to the field. If it's a complex
-	 * field, it calls {@link #getParserForField(Type, Class, XPathPullParser)}
-	 * to parse it.
+	 * If there aren't, it does nothing. If there are and the field is a complex
+	 * field, it calls
+	 * {@link #getParserForField(FieldBinding, XPathPullParser, XPathElement)} to
+	 * parse it. Fields that can be set from text values are set in
+	 * {@link #onText(XPathPullParser, Object)}.
 	 * 
 	 * @throws XMLParsingException
 	 */
 	@Override
 	protected ReturnType onNewTag(XPathPullParser xmlPullParser, ReturnType objectToModify) throws XMLParsingException {
 		// Get the field to set and the XPath it was stored against
-		XPathRecord<Field> xPathRecord = fieldXPaths.getFullRecord(xmlPullParser.getCurrentElement());
+		XPathRecord<FieldBinding> xPathRecord = fieldXPaths.getFullRecord(xmlPullParser.getTracker());
 
 		if (xPathRecord != null) {
-			Object valueToSet = null;
+			FieldBinding binding = xPathRecord.getValue();
 
 			if (xmlPullParser.isCurrentValueXsiNil()) {
-				setFieldToNull(objectToModify, xPathRecord.getValue());
-			} else if (needsParser(xPathRecord.getValue())) {
+				binding.setToNull(objectToModify);
+			} else if (binding.needsParser()) {
 				// If a new parser is needed and the value is not nil (null),
-				// create the parser and set the value to the parsed value, else
-				// set it to the null above.
-
-				valueToSet = getParserForField(xPathRecord.getValue(), xmlPullParser, xPathRecord.getKey()).parse(
+				// create the parser and set the value to the parsed value.
+				Object valueToSet = getParserForField(binding, xmlPullParser, xPathRecord.getKey()).parse(
 						xmlPullParser);
-				setField(objectToModify, xPathRecord.getValue(), valueToSet);
+				binding.setValue(objectToModify, valueToSet);
 			}
 		}
 
@@ -310,222 +275,64 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * Elements can be skipped when no field's xpath can match them or anything
+	 * below them.
 	 */
 	@Override
-	protected ReturnType onText(XPathPullParser pullParser, ReturnType objectToModify) throws XMLParsingException {
-		Field fieldToSet = fieldXPaths.get(pullParser.getCurrentElement());
-
-		if (fieldToSet != null) {
-			try {
-				String textNodeValue = pullParser.getCurrentValue();
-				XMLField annotation = fieldToSet.getAnnotation(XMLField.class);
-				boolean hasProcessor = hasProcessor(fieldToSet);
-
-				if (!needsParser(fieldToSet)) {
-					Object valueToSet;
-
-					if (hasProcessor) {
-						Processor processor = annotation.processor().newInstance();
-						valueToSet = processor.process(textNodeValue);
-					} else {
-						valueToSet = convertToFieldType(fieldToSet, textNodeValue);
-					}
-
-					setField(objectToModify, fieldToSet, valueToSet);
-				}
-			} catch (InstantiationException e) {
-				throw new XMLParsingException(e);
-			} catch (IllegalAccessException e) {
-				throw new XMLParsingException(e);
-			}
-		}
-
-		return objectToModify;
+	protected boolean canSkip(XPathPullParser pullParser) {
+		return fieldXPaths.isDeadEnd(pullParser.getTracker());
 	}
 
 	/**
-	 * Checks if a field is annotated with a processor.
-	 * 
-	 * @param field
-	 *            The field to check
-	 * @return Whether or not it has a processor.
+	 * {@inheritDoc}
 	 */
-	protected boolean hasProcessor(Field field) {
-		return !field.getAnnotation(XMLField.class).processor().equals(Processor.class);
-	}
+	@Override
+	protected ReturnType onText(XPathPullParser pullParser, ReturnType objectToModify) throws XMLParsingException {
+		FieldBinding binding = fieldXPaths.get(pullParser.getTracker());
 
-	/**
-	 * Determines whether a parser needs to be created - this is true if the
-	 * field's type is not derived from a text node or a list of types derived
-	 * from text nodes and will not be processed with a processor.
-	 * 
-	 * @param fieldToSet
-	 * @return
-	 */
-	private boolean needsParser(Field fieldToSet) {
-		// Is it a text node?
-		if (TEXT_NODE_CLASSES.contains(fieldToSet.getType())) {
-			return false;
+		if (binding == null || binding.needsParser()) {
+			return objectToModify;
 		}
 
-		// Does it have a processor to deal with it rather than a generic
-		// parser?
-		if (hasProcessor(fieldToSet)) {
-			return false;
-		}
+		if (binding.isBinary()) {
+			// Decode straight from the parser's buffer rather than copying
+			// what could be a very large value into a String first.
+			int[] startAndLength = new int[2];
+			char[] chars = pullParser.getCurrentValueCharacters(startAndLength);
 
-		// Is it a list of text nodes?
-		if (List.class.isAssignableFrom(fieldToSet.getType())
-				&& TEXT_NODE_CLASSES.contains(getListItemClass(fieldToSet.getGenericType()))) {
-			return false;
+			if (chars != null) {
+				binding.setValue(objectToModify, binding.convert(chars, startAndLength[0], startAndLength[1]));
+			}
+		} else {
+			binding.setValue(objectToModify, binding.convert(pullParser.getCurrentValue()));
 		}
 
-		// No to all of the above, .'. it needs a parser
-		return true;
+		return objectToModify;
 	}
 
 	/**
-	 * Given a class, attempts to find the appropriate parser for the class. If
-	 * the class is an implementation of {@link List}, it attempts to get the
-	 * class that the item is a list of and instantiate a {@link IceSoapParser}
-	 * to parse that class.
+	 * Given a field binding, attempts to find the appropriate parser for the
+	 * field. If the field is a {@link List}, this is a parser for the class
+	 * that the field is a list of.
 	 * 
-	 * @param <ObjectType>
-	 *            The type of the object to create a parser for
-	 * @param typeToParse
-	 *            The type to parse (as a {@link Type}
-	 * @param classToParse
-	 *            The class to parse (as a {@link Class} - this should be the
-	 *            same as typeToParse.
+	 * @param binding
+	 *            The binding of the field to get a parser for.
 	 * @param pullParser
 	 *            The pull parser used to do the parsing.
-	 * @return A new instance of {@link IceSoapParser}
+	 * @param fieldXPath
+	 *            The xpath that the field was matched against.
+	 * @return A shared instance of {@link IceSoapParser}.
 	 */
-	private BaseIceSoapParserImpl<?> getParserForField(Field field, XPathPullParser pullParser, XPathElement fieldXPath) {
-		Class<?> classForParser = field.getType();
-
-		if (List.class.isAssignableFrom(field.getType())) {
-			// Class to parse is a list - find out the parameterized type of the
-			// list and create a parser for that, then wrap a ListParser around
-			// it.
-			classForParser = getListItemClass(field.getGenericType());
-		}
-
+	private BaseIceSoapParserImpl<?> getParserForField(FieldBinding binding, XPathPullParser pullParser,
+			XPathElement fieldXPath) {
 		BaseIceSoapParserImpl<?> parserForClass = parserCache.get(fieldXPath);
 
 		if (parserForClass == null) {
-			parserForClass = new IceSoapParserImpl(classForParser, fieldXPath);
+			parserForClass = ParserRegistry.getInstance().getParser(binding.getValueClass(), fieldXPath);
 			parserCache.put(fieldXPath, parserForClass);
 		}
 
-		// The type is not a list - create a parser
 		return parserForClass;
 	}
-
-	/**
-	 * Sets the supplied field of the supplied object to null, substituting
-	 * equivalent values if the field's type is a primitive and cannot be null.
-	 * 
-	 * @param objectToModify
-	 *            Object to set the field on.
-	 * @param fieldToSet
-	 *            Field in the object to set the value of.
-	 */
-	private void setFieldToNull(ReturnType objectToModify, Field fieldToSet) {
-		Class<?> type = fieldToSet.getType();
-		Object value = null;
-
-		if (type == int.class || type == long.class || type == double.class || type == float.class) {
-			value = PRIMITIVE_NULL_NUMBER;
-		} else if (type == boolean.class) {
-			value = false;
-		} else if (type == char.class) {
-			value = PRIMITIVE_NULL_CHAR;
-		}
-
-		setField(objectToModify, fieldToSet, value);
-	}
-
-	/**
-	 * Sets the supplied {@link Field} in the supplied object to the supplied
-	 * value, handling setting of accessibility and reflection exceptions.
-	 * 
-	 * @param objectToModify
-	 *            The object to set the value on
-	 * @param fieldToSet
-	 *            The field (as a {@link Field} to set
-	 * @param valueToSet
-	 *            The value to set to the field.
-	 */
-	private void setField(ReturnType objectToModify, Field fieldToSet, Object valueToSet) {
-		try {
-			boolean isAccessibleBefore = fieldToSet.isAccessible();
-			fieldToSet.setAccessible(true);
-
-			if (List.class.isAssignableFrom(fieldToSet.getType())) {
-				Object valueOfField = fieldToSet.get(objectToModify);
-
-				if (valueOfField == null) {
-					List<Object> newList = new ArrayList<Object>();
-					newList.add(valueToSet);
-
-					valueToSet = newList;
-				} else {
-					((List<Object>) valueOfField).add(valueToSet);
-
-					valueToSet = valueOfField;
-				}
-			}
-
-			fieldToSet.set(objectToModify, valueToSet);
-
-			fieldToSet.setAccessible(isAccessibleBefore);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	/**
-	 * Accepts a {@link String} taken from an XML parser and converts it into a
-	 * primitive or primitive-esque (e.g. {@link BigDecimal}) type with the
-	 * correct method.
-	 * 
-	 * @param field
-	 *            The field to get the appropriate type from.
-	 * @param valueString
-	 *            The string to parse to the correct type.
-	 * @return The string's value as the appropriate type.
-	 * @throws XMLParseException
-	 */
-	private Object convertToFieldType(Field field, String valueString) throws XMLParsingException {
-		XMLField annotation = field.getAnnotation(XMLField.class);
-
-		if (int.class.isAssignableFrom(field.getType())) {
-			return Integer.parseInt(valueString);
-		} else if (long.class.isAssignableFrom(field.getType())) {
-			return Long.parseLong(valueString);
-		} else if (float.class.isAssignableFrom(field.getType())) {
-			return Float.parseFloat(valueString);
-		} else if (double.class.isAssignableFrom(field.getType())) {
-			return Double.parseDouble(valueString);
-		} else if (boolean.class.isAssignableFrom(field.getType())) {
-			return Boolean.parseBoolean(valueString);
-		} else if (BigDecimal.class.isAssignableFrom(field.getType())) {
-			return new BigDecimal(valueString);
-		} else if (Date.class.isAssignableFrom(field.getType())) {
-			try {
-				return new SimpleDateFormat(annotation.dateFormat()).parse(valueString);
-			} catch (ParseException e) {
-				throw new XMLParsingException("Encountered date parsing exception when parsing " + field.toString()
-						+ " with format " + field.getAnnotation(XMLField.class).dateFormat() + " for value "
-						+ valueString, e);
-			}
-		} else {
-			return valueString;
-		}
-	}
 }
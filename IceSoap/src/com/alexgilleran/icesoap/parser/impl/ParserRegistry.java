@@ -0,0 +1,183 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * Process-wide registry of compiled {@link IceSoapParserImpl}s.
+ *
+ * Building a parser means walking the target class' hierarchy and compiling
+ * every {@link XMLObject} and {@link XMLField} xpath, which is far more
+ * expensive than the parse itself for small responses. Parsers don't keep
+ * any state between calls to parse, so once one has been built for a class
+ * and root xpath it's kept here and shared by every request and thread that
+ * needs it.
+ *
+ * @author Alex Gilleran
+ */
+public class ParserRegistry {
+	/** The singleton instance of this class. */
+	private static final ParserRegistry INSTANCE = new ParserRegistry();
+
+	/**
+	 * Stands in for classes whose {@link XMLObject} annotation has no xpath, as
+	 * the concurrent map can't hold null values.
+	 */
+	private static final XPathRepository<XPathElement> NO_ROOT_XPATHS = new XPathRepository<XPathElement>();
+
+	/** Parsers that have been built, keyed by class and root xpath. */
+	private final ConcurrentMap<ParserKey, IceSoapParserImpl<?>> parsers = new ConcurrentHashMap<ParserKey, IceSoapParserImpl<?>>();
+	/** The root xpaths that have been compiled for each class. */
+	private final ConcurrentMap<Class<?>, XPathRepository<XPathElement>> rootXPaths = new ConcurrentHashMap<Class<?>, XPathRepository<XPathElement>>();
+
+	/**
+	 * Private singleton constructor.
+	 */
+	private ParserRegistry() {
+
+	}
+
+	/**
+	 * Gets the singleton instance of the registry.
+	 *
+	 * @return The registry.
+	 */
+	public static ParserRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets a parser for the passed class that will parse within the xpath
+	 * specified by the class' {@link XMLObject} annotation.
+	 *
+	 * @param targetClass
+	 *            The class to get a parser for.
+	 * @return A shared parser for the class.
+	 */
+	public <T> IceSoapParserImpl<T> getParser(Class<T> targetClass) {
+		return getParser(targetClass, null);
+	}
+
+	/**
+	 * Gets a parser for the passed class that will parse within the passed
+	 * root xpath.
+	 *
+	 * @param targetClass
+	 *            The class to get a parser for.
+	 * @param rootXPath
+	 *            The xpath to parse within, or null to use the xpath specified
+	 *            by the class' {@link XMLObject} annotation.
+	 * @return A shared parser for the class.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> IceSoapParserImpl<T> getParser(Class<T> targetClass, XPathElement rootXPath) {
+		ParserKey key = new ParserKey(targetClass, rootXPath);
+		IceSoapParserImpl<T> parser = (IceSoapParserImpl<T>) parsers.get(key);
+
+		if (parser == null) {
+			if (rootXPath == null) {
+				parser = new IceSoapParserImpl<T>(targetClass, getRootXPaths(targetClass));
+			} else {
+				parser = new IceSoapParserImpl<T>(targetClass, rootXPath);
+			}
+
+			IceSoapParserImpl<T> existing = (IceSoapParserImpl<T>) parsers.putIfAbsent(key, parser);
+
+			if (existing != null) {
+				parser = existing;
+			}
+		}
+
+		return parser;
+	}
+
+	/**
+	 * Gets the root xpath(s) specified by the {@link XMLObject} annotation of
+	 * the passed class, compiling them if this is the first time they've been
+	 * asked for.
+	 *
+	 * @param targetClass
+	 *            The class to get root xpaths for.
+	 * @return The root xpaths, or null if the annotation doesn't specify one.
+	 */
+	public XPathRepository<XPathElement> getRootXPaths(Class<?> targetClass) {
+		XPathRepository<XPathElement> xpaths = rootXPaths.get(targetClass);
+
+		if (xpaths == null) {
+			xpaths = BaseIceSoapParserImpl.retrieveRootXPaths(targetClass);
+
+			XPathRepository<XPathElement> existing = rootXPaths.putIfAbsent(targetClass, xpaths == null ? NO_ROOT_XPATHS
+					: xpaths);
+
+			if (existing != null) {
+				xpaths = existing;
+			}
+		}
+
+		return xpaths == NO_ROOT_XPATHS ? null : xpaths;
+	}
+
+	/**
+	 * Removes all parsers and xpaths from the registry.
+	 */
+	public void clear() {
+		parsers.clear();
+		rootXPaths.clear();
+	}
+
+	/**
+	 * Key for a parser in the registry - a class and an optional root xpath.
+	 */
+	private static class ParserKey {
+		/** The class being parsed. */
+		private final Class<?> targetClass;
+		/** The root xpath, or null to use the class' annotation. */
+		private final XPathElement rootXPath;
+
+		/**
+		 * Creates a new key.
+		 *
+		 * @param targetClass
+		 *            The class being parsed.
+		 * @param rootXPath
+		 *            The root xpath, or null to use the class' annotation.
+		 */
+		public ParserKey(Class<?> targetClass, XPathElement rootXPath) {
+			this.targetClass = targetClass;
+			this.rootXPath = rootXPath;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + targetClass.hashCode();
+			result = prime * result + ((rootXPath == null) ? 0 : rootXPath.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ParserKey other = (ParserKey) obj;
+			if (!targetClass.equals(other.targetClass))
+				return false;
+			if (rootXPath == null) {
+				if (other.rootXPath != null)
+					return false;
+			} else if (!rootXPath.equals(other.rootXPath))
+				return false;
+			return true;
+		}
+	}
+}
@@ -9,6 +9,9 @@ import org.xmlpull.v1.XmlPullParserException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
 import com.alexgilleran.icesoap.xml.XMLNode;
+import com.alexgilleran.icesoap.xpath.PredicateNames;
+import com.alexgilleran.icesoap.xpath.XPathTracker;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.AttributeXPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
@@ -26,8 +29,26 @@ import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
 public class XPathPullParserImpl implements XPathPullParser {
 	/** The wrapped {@link XmlPullParser}. */
 	private XmlPullParser parser = PullParserFactory.getInstance().buildParser();
+	/** The initial capacity of the element stack. */
+	private static final int INITIAL_DEPTH = 16;
+
 	/** The element that the parser is currently at. */
 	private XPathElement currentElement;
+	/**
+	 * The stack of open elements, indexed by depth (starting at 1). Frames are
+	 * kept once they've been created and reused whenever another element is
+	 * opened at the same depth, so that parsing doesn't allocate an
+	 * {@link XPathElement} for every tag.
+	 */
+	private SingleSlashXPathElement[] frames = new SingleSlashXPathElement[INITIAL_DEPTH];
+	/** The predicates of each frame, at the same index as the frame. */
+	private FlatPredicateMap[] framePredicates = new FlatPredicateMap[INITIAL_DEPTH];
+	/** The depth of the current element - 0 if outside the root element. */
+	private int depth = 0;
+	/** Reused to hold the name of the attribute currently being parsed. */
+	private SingleSlashXPathElement attributeNameElement = new SingleSlashXPathElement(null, null);
+	/** Reused as the current element when parsing an attribute. */
+	private AttributeXPathElement attributeElement = new AttributeXPathElement(attributeNameElement);
 	/** The type of the current event as an int. */
 	private int eventType;
 	/**
@@ -41,7 +62,36 @@ public class XPathPullParserImpl implements XPathPullParser {
 	/** Index of the current attribute being parsed, within the current tag */
 	private int currentAttributeIndex = 0;
 
+	/** Keeps track of the open elements for {@link XPathTrieRepository}s. */
+	private XPathTracker tracker = new XPathTracker();
+
+	/**
+	 * The attribute names to capture as predicates, or null to capture every
+	 * attribute.
+	 */
+	private final PredicateNames predicateNames;
+
+	/**
+	 * Instantiates a new parser that captures every attribute of every element
+	 * as a predicate.
+	 */
 	public XPathPullParserImpl() {
+		this(null);
+	}
+
+	/**
+	 * Instantiates a new parser that only captures the attributes in the
+	 * passed {@link PredicateNames} as predicates - elements will compare as
+	 * though other attributes weren't present, which is fine for lookups in
+	 * {@link XPathTrieRepository}s as they register every predicate they use.
+	 * 
+	 * @param predicateNames
+	 *            The names of attributes to capture, or null to capture all
+	 *            attributes.
+	 */
+	public XPathPullParserImpl(PredicateNames predicateNames) {
+		this.predicateNames = predicateNames;
+
 		try {
 			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
 		} catch (XmlPullParserException e) {
@@ -61,6 +111,28 @@ public class XPathPullParserImpl implements XPathPullParser {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char[] getCurrentValueCharacters(int[] holderForStartAndLength) {
+		if (!currentElement.isAttribute()) {
+			return parser.getTextCharacters(holderForStartAndLength);
+		}
+
+		String value = getCurrentAttributeValue();
+
+		if (value == null) {
+			holderForStartAndLength[0] = -1;
+			holderForStartAndLength[1] = -1;
+			return null;
+		}
+
+		holderForStartAndLength[0] = 0;
+		holderForStartAndLength[1] = value.length();
+		return value.toCharArray();
+	}
+
 	/**
 	 * Gets the current attribute value.
 	 * 
@@ -99,6 +171,45 @@ public class XPathPullParserImpl implements XPathPullParser {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This only counts depth in the underlying {@link XmlPullParser}, so no
+	 * elements are built and the {@link XPathTracker} doesn't see any of the
+	 * skipped children.
+	 */
+	@Override
+	public void skipSubtree() throws XMLParsingException {
+		try {
+			if (parser.getEventType() != XmlPullParser.START_TAG) {
+				throw new IllegalStateException("Can only skip a subtree from its start tag or attributes");
+			}
+
+			trimAttribute();
+
+			int level = 1;
+			while (level > 0) {
+				switch (parser.next()) {
+				case XmlPullParser.START_TAG:
+					level++;
+					break;
+				case XmlPullParser.END_TAG:
+					level--;
+					break;
+				case XmlPullParser.END_DOCUMENT:
+					throw new XMLParsingException("Document ended inside " + currentElement.getName());
+				}
+			}
+
+			eventType = XmlPullParser.END_TAG;
+			flagLastElementForRemoval();
+		} catch (XmlPullParserException e) {
+			throw new XMLParsingException(e);
+		} catch (IOException e) {
+			throw new XMLParsingException(e);
+		}
+	}
+
 	/**
 	 * Advances the parser to the next attribute.
 	 * 
@@ -107,8 +218,10 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private int nextAttribute() {
 		// There are attributes here - process them in turn before we
 		// get to the value
-		currentElement = new AttributeXPathElement(new SingleSlashXPathElement(
-				parser.getAttributeName(currentAttributeIndex), currentElement));
+		attributeNameElement.setName(parser.getAttributeName(currentAttributeIndex));
+		attributeNameElement.setPreviousElement(currentElement);
+		currentElement = attributeElement;
+		tracker.setAttributeName(currentElement.getName());
 
 		currentAttributeIndex++;
 
@@ -148,21 +261,59 @@ public class XPathPullParserImpl implements XPathPullParser {
 		// As we've started a new element, the attribute index starts from again
 		currentAttributeIndex = 0;
 
-		currentElement = new SingleSlashXPathElement(parser.getName(), currentElement);
+		depth++;
+
+		if (depth == frames.length) {
+			growFrames();
+		}
+
+		SingleSlashXPathElement frame = frames[depth];
+		FlatPredicateMap predicates = framePredicates[depth];
+
+		if (frame == null) {
+			predicates = new FlatPredicateMap();
+			frame = new SingleSlashXPathElement(parser.getName(), frames[depth - 1], predicates);
+			frames[depth] = frame;
+			framePredicates[depth] = predicates;
+		} else {
+			frame.setName(parser.getName());
+			predicates.clear();
+		}
 
 		// Add predicates
-		addPredicates();
+		addPredicates(predicates);
+
+		currentElement = frame;
+		tracker.push(currentElement);
+	}
+
+	/**
+	 * Doubles the capacity of the element stack.
+	 */
+	private void growFrames() {
+		SingleSlashXPathElement[] newFrames = new SingleSlashXPathElement[frames.length * 2];
+		System.arraycopy(frames, 0, newFrames, 0, frames.length);
+		frames = newFrames;
+
+		FlatPredicateMap[] newPredicates = new FlatPredicateMap[framePredicates.length * 2];
+		System.arraycopy(framePredicates, 0, newPredicates, 0, framePredicates.length);
+		framePredicates = newPredicates;
 	}
 
 	/**
 	 * Adds the attributes of the current xml node to the current xpath as
 	 * predicates.
+	 * 
+	 * @param predicates
+	 *            The predicates of the current element.
 	 */
-	private void addPredicates() {
+	private void addPredicates(FlatPredicateMap predicates) {
 		int attributeCount = parser.getAttributeCount();
-		if (attributeCount > 0) {
-			for (int i = 0; i < attributeCount; i++) {
-				currentElement.addPredicate(parser.getAttributeName(i), parser.getAttributeValue(i));
+		for (int i = 0; i < attributeCount; i++) {
+			String name = parser.getAttributeName(i);
+
+			if (predicateNames == null || predicateNames.contains(name)) {
+				predicates.add(name, parser.getAttributeValue(i));
 			}
 		}
 	}
@@ -179,6 +330,7 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private void trimAttribute() {
 		if (currentElement != null && currentElement.isAttribute()) {
 			currentElement = currentElement.getPreviousElement();
+			tracker.setAttributeName(null);
 		}
 	}
 
@@ -188,7 +340,9 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private void trimEndedElement() {
 		if (removeLastXPathElement) {
 			// If the flag was set to remove the last XPath element, do it now
-			currentElement = currentElement.getPreviousElement();
+			depth--;
+			currentElement = frames[depth];
+			tracker.pop();
 			removeLastXPathElement = false;
 		}
 	}
@@ -212,6 +366,14 @@ public class XPathPullParserImpl implements XPathPullParser {
 		return currentElement;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XPathTracker getTracker() {
+		return tracker;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -7,6 +7,11 @@ package com.alexgilleran.icesoap.parser.processor;
  * implementation code, then the result is returned as an instance of the
  * generic OutputType.
  * 
+ * Each field's processor is instantiated once, when the parser for its class
+ * is built, and that one instance is then used for every value of the field -
+ * by every parse, on whatever threads requests are parsed on. Processors must
+ * therefore be stateless, or otherwise thread-safe.
+ * 
  * @author Alex Gilleran
  * 
  * @param <OutputType>
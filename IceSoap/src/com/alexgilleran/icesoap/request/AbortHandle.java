@@ -0,0 +1,66 @@
+package com.alexgilleran.icesoap.request;
+
+/**
+ * Allows an HTTP exchange being performed by an {@link AbortableSOAPRequester}
+ * to be aborted from another thread - unlike interrupting the thread
+ * performing it, this actually closes the connection, so whatever's blocked
+ * on it fails straight away with an IOException.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public final class AbortHandle {
+	/** Whether {@link #abort()} has been called. */
+	private boolean aborted = false;
+	/** What to do to abort the exchange - null until it's been started. */
+	private Runnable abortAction;
+
+	/**
+	 * Aborts the exchange. If it hasn't started yet, it'll be aborted as soon
+	 * as it does.
+	 */
+	public void abort() {
+		Runnable action;
+
+		synchronized (this) {
+			if (aborted) {
+				return;
+			}
+
+			aborted = true;
+			action = abortAction;
+		}
+
+		if (action != null) {
+			action.run();
+		}
+	}
+
+	/**
+	 * Determines whether {@link #abort()} has been called.
+	 *
+	 * @return true if the exchange has been aborted.
+	 */
+	public synchronized boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Sets the action that aborts the exchange - called by the
+	 * {@link AbortableSOAPRequester} as soon as it has something to abort. If
+	 * the handle has already been aborted, the action is run straight away.
+	 *
+	 * @param abortAction
+	 *            The action that aborts the exchange.
+	 */
+	public void setAbortAction(Runnable abortAction) {
+		synchronized (this) {
+			if (!aborted) {
+				this.abortAction = abortAction;
+				return;
+			}
+		}
+
+		abortAction.run();
+	}
+}
@@ -0,0 +1,37 @@
+package com.alexgilleran.icesoap.request;
+
+import java.io.IOException;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.impl.Response;
+
+/**
+ * A {@link SOAPRequester} whose requests can be aborted part-way through, by
+ * closing the underlying connection. This is what allows
+ * {@link Request#cancel()} and hedged requests to actually stop waiting on
+ * the network, rather than just ignoring the result when it arrives.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public interface AbortableSOAPRequester extends SOAPRequester {
+	/**
+	 * Performs a SOAP request that can be aborted with the passed handle.
+	 *
+	 * @param envelope
+	 *            The SOAP envelope to send
+	 * @param targetUrl
+	 *            The url of the SOAP web service to communicate with.
+	 * @param soapAction
+	 *            The SOAP Action to perform - this is put in the
+	 *            <code>SOAPAction</code> field of the outgoing HTTP post.
+	 * @param abortHandle
+	 *            The handle that can be used to abort the request.
+	 * @return The response.
+	 * @throws IOException
+	 *             If an exception occurs while performing the request,
+	 *             including it being aborted.
+	 */
+	Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction, AbortHandle abortHandle)
+			throws IOException;
+}
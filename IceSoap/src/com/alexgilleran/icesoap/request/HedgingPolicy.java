@@ -0,0 +1,56 @@
+package com.alexgilleran.icesoap.request;
+
+/**
+ * Decides whether, and when, a {@link Request} should be hedged - i.e. if no
+ * response has arrived after a certain delay, a duplicate request is sent and
+ * whichever response arrives first is used. This cuts the latency of
+ * requests that happen to hit a slow server or connection, at the cost of
+ * some extra load.
+ *
+ * Only actions that are safe to perform twice (e.g. read-only ones) should
+ * ever be hedged.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public interface HedgingPolicy {
+	/** Returned by a {@link HedgingPolicy} to indicate not to hedge. */
+	long NO_HEDGE = -1;
+
+	/**
+	 * Gets how long to wait for a response before sending a hedge.
+	 *
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @return The delay in milliseconds, or {@link #NO_HEDGE} to not hedge
+	 *         the request.
+	 */
+	long getHedgeDelay(String soapAction);
+
+	/**
+	 * Records how long a successful request took, so that the policy can
+	 * learn how long requests normally take.
+	 *
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @param latency
+	 *            The time until the response arrived, in milliseconds.
+	 */
+	void recordLatency(String soapAction, long latency);
+
+	/**
+	 * Called whenever a hedge is sent.
+	 *
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 */
+	void onHedgeSent(String soapAction);
+
+	/**
+	 * Called whenever a hedge's response arrives before the original's.
+	 *
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 */
+	void onHedgeWon(String soapAction);
+}
@@ -48,4 +48,28 @@ public interface ListRequest<ResultType, SOAPFaultType> extends Request<List<Res
 	 *            The observer to deregister.
 	 */
 	void deregisterObserver(SOAPListObserver<ResultType, SOAPFaultType> observer);
+
+	/**
+	 * Sets whether parsed items should be kept in the list returned by
+	 * {@link #getResult()}. If they aren't, items are only passed to
+	 * {@link SOAPListObserver}s as they're parsed and the result will be an
+	 * empty list, which lets responses with any number of items be handled
+	 * without holding them all in memory.
+	 * 
+	 * When items aren't retained, only a small, fixed number of parsed items
+	 * are allowed to wait for the thread that observers are called on - once
+	 * that many are waiting, the response isn't read any further until
+	 * observers have caught up, so slow observers set the pace rather than
+	 * letting items pile up. Because of this, a callback executor (see
+	 * {@link #setCallbackExecutor(java.util.concurrent.Executor)}) must not
+	 * run its callbacks on the same single thread that the request is
+	 * performed on.
+	 * 
+	 * Items are retained by default.
+	 * 
+	 * @param retainItems
+	 *            true to keep items in the result, false to discard them once
+	 *            observers have been notified.
+	 */
+	void setRetainItems(boolean retainItems);
 }
@@ -1,6 +1,7 @@
 package com.alexgilleran.icesoap.request;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import android.os.AsyncTask;
 
@@ -42,6 +43,18 @@ public interface Request<ResultType, SOAPFaultType> {
 	 */
 	void execute(SOAPObserver<ResultType, SOAPFaultType> observer);
 
+	/**
+	 * Executes the request, returning a {@link RequestFuture} that will
+	 * complete with its result or exception. A request can be submitted again
+	 * once it's finished, but not while it's still executing, as each future
+	 * completes with the outcome of the execution it started.
+	 * 
+	 * @return A future for the result of the request.
+	 * @throws IllegalStateException
+	 *             If the request is already executing.
+	 */
+	RequestFuture<ResultType, SOAPFaultType> submit();
+
 	/**
 	 * Adds an observer to the request - the observer's methods will be called
 	 * on certain events.
@@ -64,6 +77,89 @@ public interface Request<ResultType, SOAPFaultType> {
 	 */
 	void cancel();
 
+	/**
+	 * Sets the executor that the request will be performed on. By default
+	 * requests are run as an {@link AsyncTask}, which limits the number of
+	 * requests in flight to the size of its thread pool and needs the Android
+	 * main looper - setting an executor avoids both, so any number of
+	 * requests can run on whatever threads the executor provides.
+	 * 
+	 * When an executor is set, observers are notified on the executor set
+	 * with {@link #setCallbackExecutor(Executor)}, or on the thread that
+	 * performed the request if there isn't one. If the executor rejects the
+	 * request, it finishes straight away with a
+	 * {@link com.alexgilleran.icesoap.exception.SOAPException}, and observers
+	 * are notified of it on the thread that executed the request.
+	 * 
+	 * @param executor
+	 *            The executor to use, or null to go back to using
+	 *            {@link AsyncTask}.
+	 */
+	void setExecutor(Executor executor);
+
+	/**
+	 * Sets the executor that observers will be notified on, if the request
+	 * is being performed on an executor set by {@link #setExecutor(Executor)}.
+	 * On Android, this will usually be an executor that posts to a Handler on
+	 * the UI thread.
+	 * 
+	 * @param callbackExecutor
+	 *            The executor for notifications, or null to notify observers
+	 *            on the thread that performed the request.
+	 */
+	void setCallbackExecutor(Executor callbackExecutor);
+
+	/**
+	 * Sets the policy that decides whether failed attempts at this request
+	 * are retried - by default they aren't. Retries happen before observers
+	 * are notified, so they only see the outcome of the final attempt.
+	 * 
+	 * @param retryPolicy
+	 *            The policy to use, or null to never retry.
+	 */
+	void setRetryPolicy(RetryPolicy retryPolicy);
+
+	/**
+	 * Sets the policy that decides whether this request is hedged - i.e. a
+	 * duplicate sent if the response is slow to arrive, with the first
+	 * response to arrive being used. By default requests aren't hedged.
+	 * 
+	 * Hedging only happens if the request's {@link SOAPRequester} is an
+	 * {@link AbortableSOAPRequester}, or wraps one through requesters like
+	 * {@link com.alexgilleran.icesoap.request.impl.CircuitBreakingSOAPRequester}
+	 * - otherwise the slower exchange couldn't be stopped, and the request
+	 * would still have to wait for it.
+	 * 
+	 * @param hedgingPolicy
+	 *            The policy to use, or null to never hedge.
+	 */
+	void setHedgingPolicy(HedgingPolicy hedgingPolicy);
+
+	/**
+	 * Sets a cache for the parsed result of this request. If an unexpired
+	 * result for an identical request is in the cache, it's returned without
+	 * making the request or parsing anything. Note that cached results are
+	 * shared between requests, so they shouldn't be modified.
+	 * 
+	 * List requests ignore this, as their observers expect to be notified of
+	 * each item as it's parsed - wrap their {@link SOAPRequester} in a
+	 * {@link com.alexgilleran.icesoap.request.impl.CachingSOAPRequester}
+	 * instead.
+	 * 
+	 * @param responseCache
+	 *            The cache to use, or null to not cache the result.
+	 */
+	void setResponseCache(ResponseCache responseCache);
+
+	/**
+	 * Sets a listener to be told how long each phase of this request took
+	 * once it finishes. Nothing is measured if this isn't set.
+	 * 
+	 * @param requestListener
+	 *            The listener, or null to not measure the request.
+	 */
+	void setRequestListener(RequestListener requestListener);
+
 	/**
 	 * Gets the result of the request - if the request is still running, gets
 	 * the result so far.
@@ -3,6 +3,8 @@
  */
 package com.alexgilleran.icesoap.request;
 
+import java.util.concurrent.Executor;
+
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
 import com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester;
 import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
@@ -134,4 +136,130 @@ public interface RequestFactory {
 	 * @return The instance of {@link SOAPRequester}.
 	 */
 	SOAPRequester getSOAPRequester();
+
+	/**
+	 * Sets the executor that requests built by this factory will be performed
+	 * on - see {@link Request#setExecutor(Executor)}. On a modern JVM, this
+	 * can be a virtual-thread-per-task executor to allow thousands of
+	 * requests in flight at once.
+	 * 
+	 * @param executor
+	 *            The executor, or null to run requests as AsyncTasks.
+	 */
+	void setExecutor(Executor executor);
+
+	/**
+	 * Gets the executor that requests built by this factory will be performed
+	 * on.
+	 * 
+	 * @return The executor, or null if requests are run as AsyncTasks.
+	 */
+	Executor getExecutor();
+
+	/**
+	 * Sets the executor that requests built by this factory will notify
+	 * observers on - see {@link Request#setCallbackExecutor(Executor)}.
+	 * 
+	 * @param callbackExecutor
+	 *            The executor, or null to notify observers on the thread that
+	 *            performed the request.
+	 */
+	void setCallbackExecutor(Executor callbackExecutor);
+
+	/**
+	 * Gets the executor that requests built by this factory will notify
+	 * observers on.
+	 * 
+	 * @return The executor, or null if observers are notified on the thread
+	 *         that performed the request.
+	 */
+	Executor getCallbackExecutor();
+
+	/**
+	 * Sets the retry policy for requests built by this factory - see
+	 * {@link Request#setRetryPolicy(RetryPolicy)}.
+	 * 
+	 * @param retryPolicy
+	 *            The policy, or null to never retry.
+	 */
+	void setRetryPolicy(RetryPolicy retryPolicy);
+
+	/**
+	 * Gets the retry policy for requests built by this factory.
+	 * 
+	 * @return The policy, or null if requests are never retried.
+	 */
+	RetryPolicy getRetryPolicy();
+
+	/**
+	 * Sets the hedging policy for requests built by this factory - see
+	 * {@link Request#setHedgingPolicy(HedgingPolicy)}.
+	 * 
+	 * @param hedgingPolicy
+	 *            The policy, or null to never hedge.
+	 */
+	void setHedgingPolicy(HedgingPolicy hedgingPolicy);
+
+	/**
+	 * Gets the hedging policy for requests built by this factory.
+	 * 
+	 * @return The policy, or null if requests are never hedged.
+	 */
+	HedgingPolicy getHedgingPolicy();
+
+	/**
+	 * Sets the cache for the parsed results of requests built by this factory
+	 * - see {@link Request#setResponseCache(ResponseCache)}.
+	 * 
+	 * @param responseCache
+	 *            The cache, or null to not cache results.
+	 */
+	void setResponseCache(ResponseCache responseCache);
+
+	/**
+	 * Gets the cache for the parsed results of requests built by this factory.
+	 * 
+	 * @return The cache, or null if results aren't cached.
+	 */
+	ResponseCache getResponseCache();
+
+	/**
+	 * Sets the listener for requests built by this factory - see
+	 * {@link Request#setRequestListener(RequestListener)}.
+	 * 
+	 * @param requestListener
+	 *            The listener, or null to not measure requests.
+	 */
+	void setRequestListener(RequestListener requestListener);
+
+	/**
+	 * Gets the listener for requests built by this factory.
+	 * 
+	 * @return The listener, or null if requests aren't measured.
+	 */
+	RequestListener getRequestListener();
+
+	/**
+	 * Sets whether identical requests built by this factory that are in
+	 * flight at the same time should share a single exchange. Requests are
+	 * identical if they're to the same url, with the same SOAP action, an
+	 * identical envelope and the same result and SOAP fault types - each of
+	 * their observers is notified with the same result, SOAP fault or
+	 * exception, so results shouldn't be modified.
+	 * 
+	 * This costs an extra serialization of each envelope to fingerprint it,
+	 * so it's off by default. List requests and requests in debug mode are
+	 * never coalesced.
+	 * 
+	 * @param coalesceRequests
+	 *            true to coalesce identical requests.
+	 */
+	void setCoalesceRequests(boolean coalesceRequests);
+
+	/**
+	 * Gets whether identical requests built by this factory are coalesced.
+	 * 
+	 * @return true if they're coalesced.
+	 */
+	boolean isCoalesceRequests();
 }
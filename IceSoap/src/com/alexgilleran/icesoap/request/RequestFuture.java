@@ -0,0 +1,60 @@
+package com.alexgilleran.icesoap.request;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import com.alexgilleran.icesoap.exception.SOAPException;
+
+/**
+ * A {@link Future} for the result of a {@link Request}.
+ *
+ * The future completes with the parsed result if the request succeeds. If it
+ * fails, {@link #get()} throws an {@link ExecutionException} whose cause is the
+ * {@link SOAPException} that the request encountered - if that was because
+ * the server returned a SOAP fault, the parsed fault is available from
+ * {@link #getSOAPFault()}.
+ *
+ * Rather than blocking on {@link #get()}, listeners can be added that will be
+ * run when the future completes, so that many requests can be fanned out and
+ * joined without tying up a thread for each one. Note that if a request is
+ * being run as an AsyncTask, it completes on the UI thread, so {@link #get()}
+ * must never be called from the UI thread.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <ResultType>
+ *            The type of the result of the request.
+ * @param <SOAPFaultType>
+ *            The type of the SOAP fault that will be parsed if the request
+ *            fails with an HTTP 500 error.
+ */
+public interface RequestFuture<ResultType, SOAPFaultType> extends Future<ResultType> {
+	/**
+	 * Adds a listener that will be run on the passed executor when this future
+	 * completes, whether successfully, with an exception or by being
+	 * cancelled. If the future has already completed, the listener is run
+	 * immediately.
+	 *
+	 * @param listener
+	 *            The listener to run.
+	 * @param executor
+	 *            The executor to run it on.
+	 */
+	void addListener(Runnable listener, Executor executor);
+
+	/**
+	 * Gets the SOAP fault that the request failed with, if any.
+	 *
+	 * @return The SOAP fault, or null if the request hasn't failed or didn't
+	 *         return a fault.
+	 */
+	SOAPFaultType getSOAPFault();
+
+	/**
+	 * Gets the request that this future is for.
+	 *
+	 * @return The request.
+	 */
+	Request<ResultType, SOAPFaultType> getRequest();
+}
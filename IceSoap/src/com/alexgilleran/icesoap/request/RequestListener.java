@@ -0,0 +1,26 @@
+package com.alexgilleran.icesoap.request;
+
+import com.alexgilleran.icesoap.request.impl.RequestMetrics;
+
+/**
+ * Is told how long each phase of a request took once it finishes, so that
+ * slow requests can be broken down into time spent connecting, sending,
+ * waiting for the server, parsing and notifying observers.
+ * 
+ * Listeners are called on the same thread as observers, after they've been
+ * notified, so they should be quick - if a request has no listener, none of
+ * this is measured.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public interface RequestListener {
+	/**
+	 * Called when a request finishes, whether it succeeded, failed or was
+	 * cancelled.
+	 * 
+	 * @param metrics
+	 *            The measurements for the request.
+	 */
+	void onRequestFinished(RequestMetrics metrics);
+}
@@ -0,0 +1,92 @@
+package com.alexgilleran.icesoap.request;
+
+import java.io.IOException;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+
+/**
+ * A cache of responses to SOAP requests, so that identical requests for data
+ * that doesn't change often can skip the network.
+ *
+ * Responses can be cached in two forms - as the raw bytes of the response
+ * (see {@link com.alexgilleran.icesoap.request.impl.CachingSOAPRequester}), or
+ * as the object that was parsed from it (see
+ * {@link Request#setResponseCache(ResponseCache)}), which skips parsing as well.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public interface ResponseCache {
+	/**
+	 * Works out the key that a request's response is cached under - requests
+	 * to the same url with the same SOAP action and an identical envelope get
+	 * the same key.
+	 *
+	 * @param url
+	 *            The url the request is sent to.
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @param envelope
+	 *            The envelope of the request.
+	 * @return The key.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	String getKey(String url, String soapAction, SOAPEnvelope envelope) throws IOException;
+
+	/**
+	 * Gets the raw bytes of a cached response.
+	 *
+	 * @param key
+	 *            The key of the request.
+	 * @return The bytes of the response, or null if none is cached or the
+	 *         cached response has expired.
+	 */
+	byte[] getResponse(String key);
+
+	/**
+	 * Caches the raw bytes of a successful response.
+	 *
+	 * @param key
+	 *            The key of the request.
+	 * @param soapAction
+	 *            The SOAP action of the request, which decides how long the
+	 *            response is cached for - can be null.
+	 * @param response
+	 *            The bytes of the response.
+	 */
+	void putResponse(String key, String soapAction, byte[] response);
+
+	/**
+	 * Gets the parsed result of a cached response.
+	 *
+	 * @param key
+	 *            The key of the request, which should also identify how its
+	 *            response was parsed - otherwise requests that parse the same
+	 *            response into different results will be given each other's.
+	 * @return The result, or null if none is cached or the cached result has
+	 *         expired.
+	 */
+	Object getResult(String key);
+
+	/**
+	 * Caches the parsed result of a successful response. Note that the same
+	 * object is handed to every request that hits the cache, so it shouldn't
+	 * be modified.
+	 *
+	 * @param key
+	 *            The key of the request, which should also identify how its
+	 *            response was parsed.
+	 * @param soapAction
+	 *            The SOAP action of the request, which decides how long the
+	 *            result is cached for - can be null.
+	 * @param result
+	 *            The result.
+	 */
+	void putResult(String key, String soapAction, Object result);
+
+	/**
+	 * Removes everything from the cache.
+	 */
+	void clear();
+}
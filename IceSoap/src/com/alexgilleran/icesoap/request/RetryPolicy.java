@@ -0,0 +1,48 @@
+package com.alexgilleran.icesoap.request;
+
+import java.io.IOException;
+
+/**
+ * Decides whether a failed attempt at a {@link Request} should be retried at
+ * the transport level, and how long to wait before doing so.
+ *
+ * Retries happen on the thread performing the request, before any observers
+ * are notified - only the final attempt's result or exception is ever seen.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public interface RetryPolicy {
+	/** Returned by a {@link RetryPolicy} to indicate that it shouldn't retry. */
+	long NO_RETRY = -1;
+
+	/**
+	 * Decides whether to retry after an attempt failed with an exception -
+	 * e.g. because the connection was refused or reset.
+	 *
+	 * @param attempt
+	 *            The number of the attempt that failed, starting at 1.
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @param exception
+	 *            The exception the attempt failed with.
+	 * @return The time to wait before retrying in milliseconds, or
+	 *         {@link #NO_RETRY} to give up.
+	 */
+	long getRetryDelay(int attempt, String soapAction, IOException exception);
+
+	/**
+	 * Decides whether to retry after an attempt got an HTTP response other
+	 * than 200 OK back.
+	 *
+	 * @param attempt
+	 *            The number of the attempt that failed, starting at 1.
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @param httpStatus
+	 *            The HTTP status code of the response.
+	 * @return The time to wait before retrying in milliseconds, or
+	 *         {@link #NO_RETRY} to give up.
+	 */
+	long getRetryDelay(int attempt, String soapAction, int httpStatus);
+}
@@ -0,0 +1,273 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals and distributions for every request to one SOAP action at
+ * one url, kept by a {@link MetricsRegistry}. Everything here can be read at
+ * any time from any thread - use the histogram snapshots for anything beyond
+ * the percentiles that have their own getters.
+ * 
+ * A request counts as a fault if it failed with an HTTP 500, which is how
+ * SOAP faults are returned, and as an error if it failed in any other way.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class ActionMetrics implements ActionMetricsMBean {
+	/** Nanoseconds in a millisecond. */
+	private static final double NANOS_PER_MILLI = 1000000d;
+
+	/** The url the requests were sent to. */
+	private final String url;
+	/** The SOAP action of the requests. */
+	private final String soapAction;
+
+	/** Number of requests that succeeded. */
+	private final AtomicLong successCount = new AtomicLong();
+	/** Number of requests that got a SOAP fault. */
+	private final AtomicLong faultCount = new AtomicLong();
+	/** Number of requests that failed any other way. */
+	private final AtomicLong errorCount = new AtomicLong();
+	/** Number of requests that were cancelled. */
+	private final AtomicLong cancelledCount = new AtomicLong();
+	/** Number of requests answered from a cache. */
+	private final AtomicLong cachedCount = new AtomicLong();
+	/** Number of requests that shared an identical request's result. */
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/** Total time taken by each request, in nanoseconds. */
+	private final LatencyHistogram latency = new LatencyHistogram();
+	/** Time spent waiting for the server, in nanoseconds. */
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	/** Time spent parsing each response, in nanoseconds. */
+	private final LatencyHistogram parseTime = new LatencyHistogram();
+	/** Size of each response body, in bytes. */
+	private final LatencyHistogram responseBytes = new LatencyHistogram();
+
+	/**
+	 * Creates a new set of metrics.
+	 * 
+	 * @param url
+	 *            The url the requests are sent to.
+	 * @param soapAction
+	 *            The SOAP action of the requests.
+	 */
+	ActionMetrics(String url, String soapAction) {
+		this.url = url;
+		this.soapAction = soapAction;
+	}
+
+	/**
+	 * Adds a finished request to the totals.
+	 * 
+	 * @param metrics
+	 *            The request's measurements.
+	 */
+	void record(RequestMetrics metrics) {
+		if (metrics.isCancelled()) {
+			cancelledCount.incrementAndGet();
+		} else if (metrics.getException() == null) {
+			successCount.incrementAndGet();
+		} else if (metrics.isSOAPFault()) {
+			faultCount.incrementAndGet();
+		} else {
+			errorCount.incrementAndGet();
+		}
+
+		if (metrics.isCached()) {
+			cachedCount.incrementAndGet();
+		}
+		if (metrics.isCoalesced()) {
+			coalescedCount.incrementAndGet();
+		}
+
+		latency.record(metrics.getTotalTime());
+		waitTime.record(metrics.getWaitTime());
+		parseTime.record(metrics.getParseTime());
+		responseBytes.record(metrics.getResponseBytes());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getSoapAction() {
+		return soapAction;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRequestCount() {
+		return successCount.get() + faultCount.get() + errorCount.get() + cancelledCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getSuccessCount() {
+		return successCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getFaultCount() {
+		return faultCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCancelledCount() {
+		return cancelledCount.get();
+	}
+
+	/**
+	 * @return The number of requests answered from a cache.
+	 */
+	public long getCachedCount() {
+		return cachedCount.get();
+	}
+
+	/**
+	 * @return The number of requests that shared the result of an identical
+	 *         request.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return The total time taken by each request, in nanoseconds.
+	 */
+	public LatencyHistogram.Snapshot getLatency() {
+		return latency.getSnapshot();
+	}
+
+	/**
+	 * @return The time between each request being sent and the response
+	 *         headers arriving, in nanoseconds.
+	 */
+	public LatencyHistogram.Snapshot getWaitTime() {
+		return waitTime.getSnapshot();
+	}
+
+	/**
+	 * @return The time spent reading and parsing each response, in
+	 *         nanoseconds.
+	 */
+	public LatencyHistogram.Snapshot getParseTime() {
+		return parseTime.getSnapshot();
+	}
+
+	/**
+	 * @return The size of each response body, in bytes.
+	 */
+	public LatencyHistogram.Snapshot getResponseBytes() {
+		return responseBytes.getSnapshot();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getMeanLatencyMillis() {
+		return getLatency().getMean() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getLatencyMillisP50() {
+		return getLatency().getValueAtPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getLatencyMillisP90() {
+		return getLatency().getValueAtPercentile(90) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getLatencyMillisP99() {
+		return getLatency().getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getLatencyMillisP999() {
+		return getLatency().getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getMaxLatencyMillis() {
+		return getLatency().getMax() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getParseMillisP99() {
+		return getParseTime().getValueAtPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getMeanResponseBytes() {
+		return getResponseBytes().getMean();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getResponseBytesP99() {
+		return getResponseBytes().getValueAtPercentile(99);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return soapAction + " @ " + url + ": " + getRequestCount() + " requests (" + getSuccessCount() + " ok, "
+				+ getFaultCount() + " faults, " + getErrorCount() + " errors), p50 " + getLatencyMillisP50()
+				+ "ms, p99 " + getLatencyMillisP99() + "ms";
+	}
+}
@@ -0,0 +1,90 @@
+package com.alexgilleran.icesoap.request.impl;
+
+/**
+ * The view of an {@link ActionMetrics} that's published over JMX by
+ * {@link MetricsRegistry#registerMBeans()}. Times are in milliseconds.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public interface ActionMetricsMBean {
+	/**
+	 * @return The url the requests were sent to.
+	 */
+	String getUrl();
+
+	/**
+	 * @return The SOAP action of the requests.
+	 */
+	String getSoapAction();
+
+	/**
+	 * @return The number of requests that have finished.
+	 */
+	long getRequestCount();
+
+	/**
+	 * @return The number of requests that succeeded.
+	 */
+	long getSuccessCount();
+
+	/**
+	 * @return The number of requests that got a SOAP fault.
+	 */
+	long getFaultCount();
+
+	/**
+	 * @return The number of requests that failed any other way.
+	 */
+	long getErrorCount();
+
+	/**
+	 * @return The number of requests that were cancelled.
+	 */
+	long getCancelledCount();
+
+	/**
+	 * @return The mean time requests took.
+	 */
+	double getMeanLatencyMillis();
+
+	/**
+	 * @return The median time requests took.
+	 */
+	double getLatencyMillisP50();
+
+	/**
+	 * @return The 90th percentile of the time requests took.
+	 */
+	double getLatencyMillisP90();
+
+	/**
+	 * @return The 99th percentile of the time requests took.
+	 */
+	double getLatencyMillisP99();
+
+	/**
+	 * @return The 99.9th percentile of the time requests took.
+	 */
+	double getLatencyMillisP999();
+
+	/**
+	 * @return The longest time a request took.
+	 */
+	double getMaxLatencyMillis();
+
+	/**
+	 * @return The 99th percentile of the time spent parsing responses.
+	 */
+	double getParseMillisP99();
+
+	/**
+	 * @return The mean size of response bodies in bytes.
+	 */
+	double getMeanResponseBytes();
+
+	/**
+	 * @return The 99th percentile of the size of response bodies in bytes.
+	 */
+	long getResponseBytesP99();
+}
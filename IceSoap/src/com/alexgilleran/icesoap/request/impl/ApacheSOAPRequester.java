@@ -2,26 +2,38 @@ package com.alexgilleran.icesoap.request.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.scheme.SocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.entity.BufferedHttpEntity;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 
 /**
@@ -31,7 +43,7 @@ import com.alexgilleran.icesoap.request.SOAPRequester;
  * @author Alex Gilleran
  * 
  */
-public class ApacheSOAPRequester implements SOAPRequester {
+public class ApacheSOAPRequester implements AbortableSOAPRequester {
 	/** Soap action to use if none is specified. */
 	private static final String BLANK_SOAP_ACTION = "";
 	/** Port for HTTPS communication. */
@@ -52,9 +64,48 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	private static final int DEFAULT_CONN_TIMEOUT = 5000;
 	/** Timeout for recieving data. */
 	private static final int DEFAULT_SOCKET_TIMEOUT = 20000;
+	/** Minimum time between sweeps of the pool for idle or expired connections. */
+	private static final long EVICTION_INTERVAL = 5000;
+	/** Value for idle timeouts and time-to-live that means "never". */
+	private static final long NEVER = 0;
 
-	/** Apache HTTP Client for making HTTP requests. */
-	private HttpClient httpClient;
+	/**
+	 * Apache HTTP Client for making HTTP requests, or null if it hasn't been
+	 * built yet. Guarded by this when being built.
+	 */
+	private volatile HttpClient httpClient;
+	/**
+	 * Whether responses are handed to the parser straight from the socket
+	 * rather than being downloaded in full first.
+	 */
+	private volatile boolean streaming = false;
+	/** Whether compressed responses are requested and decompressed. */
+	private volatile boolean compressResponses = false;
+	/**
+	 * The size in bytes above which request bodies are gzipped, or
+	 * {@link HttpCompression#NEVER_COMPRESS} to never gzip them.
+	 */
+	private volatile int requestCompressionThreshold = HttpCompression.NEVER_COMPRESS;
+	/** Timeout for making a connection, in milliseconds. */
+	private volatile int connectionTimeout = DEFAULT_CONN_TIMEOUT;
+	/** Timeout for receiving data, in milliseconds. */
+	private volatile int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+	/** How long to wait for a connection from the pool, in milliseconds. */
+	private volatile long connectionRequestTimeout = 0;
+	/**
+	 * The maximum number of connections to each host. The pool reads this as
+	 * it's used, so changes take effect straight away.
+	 */
+	private final ConnPerRouteBean connectionsPerHost = new ConnPerRouteBean(
+			ConnPerRouteBean.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+	/** The maximum number of connections in the pool across all hosts. */
+	private volatile int maxTotalConnections = ConnManagerParams.DEFAULT_MAX_TOTAL_CONNECTIONS;
+	/** How long connections can sit idle in the pool before they're closed. */
+	private volatile long idleConnectionTimeout = NEVER;
+	/** The longest a connection can be kept alive for between requests. */
+	private volatile long connectionTimeToLive = NEVER;
+	/** When the pool was last swept for idle or expired connections. */
+	private volatile long lastEviction = 0;
 
 	/**
 	 * {@inheritDoc}
@@ -68,7 +119,30 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 * {@inheritDoc}
 	 */
 	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction) throws IOException {
-		return doHttpPost(buildPostRequest(targetUrl, envelope, soapAction));
+		return doSoapRequest(envelope, targetUrl, soapAction, new AbortHandle());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction,
+			AbortHandle abortHandle) throws IOException {
+		ExchangeTimer timer = new ExchangeTimer();
+		final HttpPost httpPost = buildPostRequest(targetUrl, envelope, soapAction);
+
+		if (httpPost.getEntity() != null) {
+			httpPost.setEntity(new TimedEntity(httpPost.getEntity(), timer));
+		}
+
+		abortHandle.setAbortAction(new Runnable() {
+			@Override
+			public void run() {
+				httpPost.abort();
+			}
+		});
+
+		return doHttpPost(httpPost, timer);
 	}
 
 	/**
@@ -76,17 +150,142 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 * 
 	 * @param httpPost
 	 *            The {@link HttpPost} to perform.
+	 * @param timer
+	 *            Times the phases of the exchange.
 	 * @return An {@link InputStream} of the response.
 	 * @throws IOException
 	 *             If there's an IO error.
 	 */
-	private Response doHttpPost(HttpPost httpPost) throws IOException {
+	private Response doHttpPost(HttpPost httpPost, ExchangeTimer timer) throws IOException {
+		evictConnectionsIfDue();
+
 		// Execute HTTP Post Request
 		HttpResponse response = getHttpClient().execute(httpPost);
+		timer.markResponded();
+
+		HttpEntity res = response.getEntity();
 
-		HttpEntity res = new BufferedHttpEntity(response.getEntity());
+		if (!streaming) {
+			res = new BufferedHttpEntity(res);
+		}
+
+		InputStream content = res.getContent();
+
+		if (compressResponses) {
+			Header contentEncoding = res.getContentEncoding();
+			content = decode(content, contentEncoding == null ? null : contentEncoding.getValue());
+		}
+
+		return timer.applyTo(new Response(content, response.getStatusLine().getStatusCode()));
+	}
+
+	/**
+	 * Decompresses a response body with {@link HttpCompression#decode}, closing
+	 * it if that fails - when streaming, the body holds a pooled connection
+	 * that would otherwise never be released.
+	 * 
+	 * @param content
+	 *            The body of the response.
+	 * @param contentEncoding
+	 *            The value of the Content-Encoding header, or null if there
+	 *            wasn't one.
+	 * @return A stream of the uncompressed body.
+	 * @throws IOException
+	 *             If the body can't be decompressed.
+	 */
+	private InputStream decode(InputStream content, String contentEncoding) throws IOException {
+		boolean decoded = false;
 
-		return new Response(res.getContent(), response.getStatusLine().getStatusCode());
+		try {
+			InputStream decodedContent = HttpCompression.decode(content, contentEncoding);
+			decoded = true;
+			return decodedContent;
+		} finally {
+			if (!decoded) {
+				try {
+					content.close();
+				} catch (IOException e) {
+					// Already failing with the decoding error, which is the
+					// one worth reporting
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets whether compressed responses should be requested. If this is set,
+	 * an Accept-Encoding header for gzip and deflate is sent with every
+	 * request, and responses that come back compressed are decompressed as
+	 * they're parsed. Note that if streaming is turned off, the response is
+	 * buffered in its compressed form.
+	 * 
+	 * @param compressResponses
+	 *            true to request compressed responses.
+	 */
+	public void setCompressResponses(boolean compressResponses) {
+		this.compressResponses = compressResponses;
+	}
+
+	/**
+	 * Determines whether compressed responses are being requested.
+	 * 
+	 * @return true if compressed responses are requested.
+	 * @see #setCompressResponses(boolean)
+	 */
+	public boolean isCompressResponses() {
+		return compressResponses;
+	}
+
+	/**
+	 * Sets the size above which request bodies are gzipped - the server must
+	 * support gzipped requests for this to be used. Envelopes at or under the
+	 * threshold are sent uncompressed, as compressing them isn't worth it.
+	 * 
+	 * @param threshold
+	 *            The size in bytes above which envelopes are gzipped - 0 to
+	 *            gzip every envelope, or a negative number to never gzip them
+	 *            (the default).
+	 */
+	public void setRequestCompressionThreshold(int threshold) {
+		this.requestCompressionThreshold = threshold < 0 ? HttpCompression.NEVER_COMPRESS : threshold;
+	}
+
+	/**
+	 * Gets the size above which request bodies are gzipped.
+	 * 
+	 * @return The threshold in bytes, or a negative number if requests are
+	 *         never gzipped.
+	 * @see #setRequestCompressionThreshold(int)
+	 */
+	public int getRequestCompressionThreshold() {
+		return requestCompressionThreshold;
+	}
+
+	/**
+	 * Sets whether responses should be streamed. By default the whole response
+	 * is downloaded into memory before it's returned - in streaming mode the
+	 * returned {@link Response} reads straight from the connection instead, so
+	 * parsing (and list item events) can start as soon as the first bytes
+	 * arrive, and large responses are never held in memory all at once.
+	 * 
+	 * In streaming mode the connection is held until the {@link Response} is
+	 * closed, so callers must always call {@link Response#close()}.
+	 * 
+	 * @param streaming
+	 *            true to stream responses, false to buffer them.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Determines whether responses are being streamed.
+	 * 
+	 * @return true if responses are streamed, false if they're buffered.
+	 * @see #setStreaming(boolean)
+	 */
+	public boolean isStreaming() {
+		return streaming;
 	}
 
 	/**
@@ -96,11 +295,18 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 * @return The instance of {@link HttpClient}
 	 */
 	private HttpClient getHttpClient() {
-		if (httpClient == null) {
-			httpClient = buildHttpClient();
+		HttpClient client = httpClient;
+
+		if (client == null) {
+			synchronized (this) {
+				if (httpClient == null) {
+					httpClient = buildHttpClient();
+				}
+				client = httpClient;
+			}
 		}
 
-		return httpClient;
+		return client;
 	}
 
 	/**
@@ -110,14 +316,189 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 */
 	protected HttpClient buildHttpClient() {
 		HttpParams httpParameters = new BasicHttpParams();
-		HttpConnectionParams.setConnectionTimeout(httpParameters, DEFAULT_CONN_TIMEOUT);
-		HttpConnectionParams.setSoTimeout(httpParameters, DEFAULT_SOCKET_TIMEOUT);
+		HttpConnectionParams.setConnectionTimeout(httpParameters, connectionTimeout);
+		HttpConnectionParams.setSoTimeout(httpParameters, socketTimeout);
+		ConnManagerParams.setTimeout(httpParameters, connectionRequestTimeout);
 
 		SchemeRegistry schemeRegistry = getSchemeRegistry();
 
-		ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(httpParameters, schemeRegistry);
+		ConnManagerParams.setMaxTotalConnections(httpParameters, maxTotalConnections);
+		ConnManagerParams.setMaxConnectionsPerRoute(httpParameters, connectionsPerHost);
+
+		InstrumentedClientConnManager cm = new InstrumentedClientConnManager(httpParameters, schemeRegistry);
+
+		DefaultHttpClient client = new DefaultHttpClient(cm, httpParameters);
+		client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = super.getKeepAliveDuration(response, context);
+				long timeToLive = connectionTimeToLive;
+
+				if (timeToLive != NEVER && (duration < 0 || duration > timeToLive)) {
+					return timeToLive;
+				}
+
+				return duration;
+			}
+		});
+
+		return client;
+	}
+
+	/**
+	 * Sets the maximum number of connections that can be open across all
+	 * hosts - defaults to 20. This is applied when the underlying
+	 * {@link HttpClient} is built, so must be set before the first request is
+	 * made.
+	 * 
+	 * @param maxTotalConnections
+	 *            The maximum number of connections.
+	 * @throws IllegalStateException
+	 *             If a request has already been made.
+	 */
+	public synchronized void setMaxTotalConnections(int maxTotalConnections) {
+		if (httpClient != null) {
+			throw new IllegalStateException("The connection pool has already been built");
+		}
+
+		this.maxTotalConnections = maxTotalConnections;
+	}
+
+	/**
+	 * Sets the maximum number of connections that can be open to any one host
+	 * that doesn't have its own limit - defaults to 2.
+	 * 
+	 * @param maxConnections
+	 *            The maximum number of connections per host.
+	 */
+	public void setMaxConnectionsPerHost(int maxConnections) {
+		connectionsPerHost.setDefaultMaxPerRoute(maxConnections);
+	}
+
+	/**
+	 * Sets the maximum number of connections that can be open to a specific
+	 * host, overriding {@link #setMaxConnectionsPerHost(int)}.
+	 * 
+	 * @param url
+	 *            A url on the host, e.g. the url of the service - only the
+	 *            scheme, host and port are used.
+	 * @param maxConnections
+	 *            The maximum number of connections to the host.
+	 */
+	public void setMaxConnectionsForHost(String url, int maxConnections) {
+		URI uri = URI.create(url);
+		boolean secure = HTTPS_NAME.equalsIgnoreCase(uri.getScheme());
+
+		connectionsPerHost.setMaxForRoute(
+				new HttpRoute(new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme()), null, secure),
+				maxConnections);
+
+		if (uri.getPort() < 0) {
+			// Routes may or may not have the default port filled in
+			int defaultPort = secure ? DEFAULT_HTTPS_PORT : DEFAULT_HTTP_PORT;
+			connectionsPerHost.setMaxForRoute(
+					new HttpRoute(new HttpHost(uri.getHost(), defaultPort, uri.getScheme()), null, secure),
+					maxConnections);
+		}
+	}
+
+	/**
+	 * Sets how long a request will wait for a connection from the pool before
+	 * giving up, if all connections are in use.
+	 * 
+	 * @param timeout
+	 *            The timeout in milliseconds, or 0 to wait indefinitely (the
+	 *            default).
+	 */
+	public void setConnectionRequestTimeout(long timeout) {
+		this.connectionRequestTimeout = timeout;
+
+		HttpClient client = httpClient;
+		if (client != null) {
+			ConnManagerParams.setTimeout(client.getParams(), timeout);
+		}
+	}
+
+	/**
+	 * Sets how long connections can sit unused in the pool before they're
+	 * closed. Idle connections are swept out of the pool as requests are made.
+	 * 
+	 * @param timeout
+	 *            The idle timeout in milliseconds, or 0 to never close idle
+	 *            connections (the default).
+	 */
+	public void setIdleConnectionTimeout(long timeout) {
+		this.idleConnectionTimeout = Math.max(NEVER, timeout);
+	}
+
+	/**
+	 * Sets the longest a connection can be kept alive for between requests,
+	 * even if the server says it can be kept alive for longer. This stops
+	 * connections being reused after a load balancer or firewall in between
+	 * has silently dropped them.
+	 * 
+	 * @param timeToLive
+	 *            The time to live in milliseconds, or 0 to keep connections
+	 *            alive for as long as the server allows (the default).
+	 */
+	public void setConnectionTimeToLive(long timeToLive) {
+		this.connectionTimeToLive = Math.max(NEVER, timeToLive);
+	}
+
+	/**
+	 * Closes any connections in the pool that have expired, or been idle for
+	 * longer than the idle connection timeout.
+	 */
+	public void evictConnections() {
+		lastEviction = System.currentTimeMillis();
+
+		HttpClient client = httpClient;
+		if (client == null) {
+			// No requests yet, so there's nothing to evict
+			return;
+		}
+
+		ClientConnectionManager connectionManager = client.getConnectionManager();
+		connectionManager.closeExpiredConnections();
 
-		return new DefaultHttpClient(cm, httpParameters);
+		long idleTimeout = idleConnectionTimeout;
+		if (idleTimeout != NEVER) {
+			connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Calls {@link #evictConnections()} if eviction is turned on and the pool
+	 * hasn't been swept recently.
+	 */
+	private void evictConnectionsIfDue() {
+		if ((idleConnectionTimeout != NEVER || connectionTimeToLive != NEVER)
+				&& System.currentTimeMillis() - lastEviction >= EVICTION_INTERVAL) {
+			evictConnections();
+		}
+	}
+
+	/**
+	 * Gets a snapshot of how the connection pool is being used.
+	 * 
+	 * @return The current {@link ConnectionPoolStats}, all zeros if no
+	 *         requests have been made yet, or null if
+	 *         {@link #buildHttpClient()} has been overridden to use a
+	 *         connection manager that doesn't keep count.
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		HttpClient client = httpClient;
+		if (client == null) {
+			return new ConnectionPoolStats(0, 0, 0, 0, 0, 0, 0);
+		}
+
+		ClientConnectionManager connectionManager = client.getConnectionManager();
+
+		if (connectionManager instanceof InstrumentedClientConnManager) {
+			return ((InstrumentedClientConnManager) connectionManager).getStats();
+		}
+
+		return null;
 	}
 
 	/**
@@ -150,23 +531,50 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 * @param soapAction
 	 *            SOAPAction for the header.
 	 * @return An {@link HttpPost} object representing the supplied information.
-	 * @throws UnsupportedEncodingException
-	 *             If the character encoding for the envelope is unsupported.
+	 * @throws IOException
+	 *             If the envelope needs to be serialized to decide whether to
+	 *             compress it, and can't be.
 	 */
-	protected HttpPost buildPostRequest(String url, SOAPEnvelope envelope, String soapAction)
-			throws UnsupportedEncodingException {
+	protected HttpPost buildPostRequest(String url, SOAPEnvelope envelope, String soapAction) throws IOException {
 		// Create a new HttpClient and Post Header
 		HttpPost httppost = new HttpPost(url);
 
 		httppost.setHeader(CONTENT_TYPE_LABEL, getXmlContentType(envelope.getEncoding()));
 		httppost.setHeader(HEADER_KEY_SOAP_ACTION, soapAction);
 
-		HttpEntity entity = new StringEntity(envelope.toString(), envelope.getEncoding());
+		if (compressResponses) {
+			httppost.setHeader(HttpCompression.HEADER_KEY_ACCEPT_ENCODING, HttpCompression.ACCEPT_ENCODING_VALUE);
+		}
 
-		httppost.setEntity(entity);
+		httppost.setEntity(buildEntity(envelope));
 		return httppost;
 	}
 
+	/**
+	 * Builds the entity for an envelope, gzipping it if it's over the request
+	 * compression threshold.
+	 * 
+	 * @param envelope
+	 *            The envelope to send.
+	 * @return The entity to post.
+	 * @throws IOException
+	 *             If the envelope has to be serialized to measure it, and
+	 *             can't be.
+	 */
+	private HttpEntity buildEntity(SOAPEnvelope envelope) throws IOException {
+		if (requestCompressionThreshold == HttpCompression.NEVER_COMPRESS) {
+			return new SOAPEnvelopeEntity(envelope);
+		}
+
+		byte[] uncompressed = HttpCompression.serializeUpTo(envelope, requestCompressionThreshold);
+
+		if (uncompressed != null) {
+			return new ByteArrayEntity(uncompressed);
+		}
+
+		return new SOAPEnvelopeEntity(envelope, true);
+	}
+
 	/**
 	 * Gets the content type to put in the HTTP header
 	 * 
@@ -183,7 +591,12 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 */
 	@Override
 	public void setConnectionTimeout(int timeout) {
-		HttpConnectionParams.setConnectionTimeout(getHttpClient().getParams(), timeout);
+		this.connectionTimeout = timeout;
+
+		HttpClient client = httpClient;
+		if (client != null) {
+			HttpConnectionParams.setConnectionTimeout(client.getParams(), timeout);
+		}
 	}
 
 	/**
@@ -191,6 +604,44 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 */
 	@Override
 	public void setSocketTimeout(int timeout) {
-		HttpConnectionParams.setSoTimeout(getHttpClient().getParams(), timeout);
+		this.socketTimeout = timeout;
+
+		HttpClient client = httpClient;
+		if (client != null) {
+			HttpConnectionParams.setSoTimeout(client.getParams(), timeout);
+		}
+	}
+
+	/**
+	 * Wraps a request entity to tell an {@link ExchangeTimer} when the body
+	 * starts and finishes being written - by then a connection has been
+	 * leased and the request headers sent.
+	 */
+	private static class TimedEntity extends HttpEntityWrapper {
+		/** The timer to tell. */
+		private final ExchangeTimer timer;
+
+		/**
+		 * Creates a new entity.
+		 * 
+		 * @param wrapped
+		 *            The entity to wrap.
+		 * @param timer
+		 *            The timer to tell.
+		 */
+		public TimedEntity(HttpEntity wrapped, ExchangeTimer timer) {
+			super(wrapped);
+			this.timer = timer;
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			ExchangeTimer.BodyStream timed = timer.timeBody(outstream);
+
+			super.writeTo(timed);
+
+			// The connection's stream belongs to the client, so don't close it
+			timed.finish();
+		}
 	}
 }
@@ -0,0 +1,107 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.ResponseCache;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * {@link SOAPRequester} that wraps another requester, caching the raw bytes of
+ * successful responses in a {@link ResponseCache} so that identical requests
+ * skip the network. The response still has to be parsed each time - to skip
+ * parsing as well, set the cache on the request with
+ * {@link com.alexgilleran.icesoap.request.Request#setResponseCache(ResponseCache)}.
+ *
+ * Responses that are going to be cached are read into memory in full, so this
+ * should only be used for actions with reasonably small responses. Requests
+ * can only be aborted, and so hedged, if the delegate is an
+ * {@link com.alexgilleran.icesoap.request.AbortableSOAPRequester}.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class CachingSOAPRequester extends DelegatingSOAPRequester {
+	/** Status of responses that can be cached. */
+	private static final int HTTP_OK_STATUS = 200;
+	/** Size of the buffer used to read responses. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The cache to store responses in. */
+	private final ResponseCache cache;
+
+	/**
+	 * Creates a new requester.
+	 *
+	 * @param delegate
+	 *            The requester that actually makes requests.
+	 * @param cache
+	 *            The cache to store responses in.
+	 */
+	public CachingSOAPRequester(SOAPRequester delegate, ResponseCache cache) {
+		super(delegate);
+		this.cache = cache;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction,
+			AbortHandle abortHandle) throws IOException {
+		String key = cache.getKey(targetUrl, soapAction, envelope);
+		byte[] cached = cache.getResponse(key);
+
+		if (cached != null) {
+			return new Response(new ByteArrayInputStream(cached), HTTP_OK_STATUS);
+		}
+
+		Response response = send(envelope, targetUrl, soapAction, abortHandle);
+
+		if (response.getHttpStatus() != HTTP_OK_STATUS) {
+			return response;
+		}
+
+		byte[] data;
+		try {
+			data = readFully(response.getData());
+		} finally {
+			response.close();
+		}
+
+		cache.putResponse(key, soapAction, data);
+
+		Response buffered = new Response(new ByteArrayInputStream(data), HTTP_OK_STATUS);
+		buffered.copyTimings(response);
+
+		return buffered;
+	}
+
+	/**
+	 * Reads a stream into memory.
+	 *
+	 * @param in
+	 *            The stream to read.
+	 * @return The bytes of the stream.
+	 * @throws IOException
+	 *             If the stream can't be read.
+	 */
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		if (in != null) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+
+		return out.toByteArray();
+	}
+}
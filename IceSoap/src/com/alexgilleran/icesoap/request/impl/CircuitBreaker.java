@@ -0,0 +1,246 @@
+package com.alexgilleran.icesoap.request.impl;
+
+/**
+ * Tracks the outcomes of recent calls to an endpoint, and stops calls being
+ * made to it when too many of them are failing or slow.
+ *
+ * The breaker starts {@link State#CLOSED}, letting every call through. Once at
+ * least the minimum number of calls have been made, if the proportion of
+ * recent calls that failed or were slow goes over its threshold, it opens and
+ * rejects every call for a while. After that it goes half-open, letting a few
+ * probe calls through - if they all succeed it closes again, if any fail it
+ * goes back to being open.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class CircuitBreaker {
+	/**
+	 * The states a {@link CircuitBreaker} can be in.
+	 */
+	public enum State {
+		/** Calls are allowed. */
+		CLOSED,
+		/** Calls are rejected. */
+		OPEN,
+		/** A limited number of probe calls are allowed. */
+		HALF_OPEN
+	}
+
+	/** Nanoseconds in a millisecond. */
+	private static final long NANOS_PER_MILLI = 1000000L;
+	/** Recorded outcome of a call that succeeded quickly. */
+	private static final byte OUTCOME_SUCCESS = 0;
+	/** Recorded outcome flag for a call that failed. */
+	private static final byte OUTCOME_FAILED = 1;
+	/** Recorded outcome flag for a call that was slow. */
+	private static final byte OUTCOME_SLOW = 2;
+
+	/** The minimum number of calls before the breaker can open. */
+	private final int minimumCalls;
+	/** The percentage of failed calls at which the breaker opens. */
+	private final float failureRateThreshold;
+	/** The time in nanoseconds after which a call counts as slow. */
+	private final long slowCallDuration;
+	/** The percentage of slow calls at which the breaker opens. */
+	private final float slowCallRateThreshold;
+	/** How long the breaker stays open for, in nanoseconds. */
+	private final long openDuration;
+	/** The number of probe calls allowed when half-open. */
+	private final int halfOpenProbes;
+
+	/** Outcomes of recent calls - a ring buffer. */
+	private final byte[] outcomes;
+	/** Where in the ring buffer the next outcome goes. */
+	private int index = 0;
+	/**
+	 * Number of outcomes in the window - this stops growing once the window
+	 * is full.
+	 */
+	private int calls = 0;
+	/** Number of failed calls in the window. */
+	private int failures = 0;
+	/** Number of slow calls in the window. */
+	private int slowCalls = 0;
+	/** The current state. */
+	private State state = State.CLOSED;
+	/** When the breaker can go from open to half-open, from System.nanoTime(). */
+	private long openUntil;
+	/** Number of probes let through since going half-open. */
+	private int probesAllowed = 0;
+	/** Number of probes that have succeeded since going half-open. */
+	private int probesSucceeded = 0;
+
+	/**
+	 * Creates a new breaker.
+	 *
+	 * @param windowSize
+	 *            The number of recent calls to work out failure and slow call
+	 *            rates from.
+	 * @param minimumCalls
+	 *            The minimum number of calls before the breaker can open.
+	 * @param failureRateThreshold
+	 *            The percentage of failed calls at which the breaker opens.
+	 * @param slowCallDuration
+	 *            The time in milliseconds after which a call counts as slow.
+	 * @param slowCallRateThreshold
+	 *            The percentage of slow calls at which the breaker opens.
+	 * @param openDuration
+	 *            How long the breaker stays open for, in milliseconds.
+	 * @param halfOpenProbes
+	 *            The number of probe calls allowed when half-open.
+	 */
+	public CircuitBreaker(int windowSize, int minimumCalls, float failureRateThreshold, long slowCallDuration,
+			float slowCallRateThreshold, long openDuration, int halfOpenProbes) {
+		this.outcomes = new byte[windowSize];
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallDuration = slowCallDuration * NANOS_PER_MILLI;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.openDuration = openDuration * NANOS_PER_MILLI;
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	/**
+	 * Asks for permission to make a call. If this returns true, the outcome
+	 * of the call must be reported with {@link #onSuccess(long)},
+	 * {@link #onFailure(long)} or {@link #onIgnored()}.
+	 *
+	 * @return true if the call can go ahead, false if it should fail fast.
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+		case OPEN:
+			if (System.nanoTime() - openUntil < 0) {
+				return false;
+			}
+
+			state = State.HALF_OPEN;
+			probesAllowed = 0;
+			probesSucceeded = 0;
+			return tryProbe();
+		case HALF_OPEN:
+			return tryProbe();
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Lets a probe call through if there are any left while half-open.
+	 *
+	 * @return true if the probe can go ahead.
+	 */
+	private boolean tryProbe() {
+		if (probesAllowed >= halfOpenProbes) {
+			return false;
+		}
+
+		probesAllowed++;
+		return true;
+	}
+
+	/**
+	 * Records a call that succeeded.
+	 *
+	 * @param duration
+	 *            How long the call took, in nanoseconds.
+	 */
+	public synchronized void onSuccess(long duration) {
+		record(duration > slowCallDuration ? OUTCOME_SLOW : OUTCOME_SUCCESS);
+	}
+
+	/**
+	 * Records a call that failed.
+	 *
+	 * @param duration
+	 *            How long the call took, in nanoseconds.
+	 */
+	public synchronized void onFailure(long duration) {
+		record((byte) (OUTCOME_FAILED | (duration > slowCallDuration ? OUTCOME_SLOW : 0)));
+	}
+
+	/**
+	 * Records a call whose outcome says nothing about the health of the
+	 * endpoint, such as one that was aborted by the caller. It's not counted,
+	 * and if it was a probe another one is let through in its place.
+	 */
+	public synchronized void onIgnored() {
+		if (state == State.HALF_OPEN && probesAllowed > 0) {
+			probesAllowed--;
+		}
+	}
+
+	/**
+	 * Gets the current state of the breaker.
+	 *
+	 * @return The state.
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+			return State.HALF_OPEN;
+		}
+
+		return state;
+	}
+
+	/**
+	 * Records the outcome of a call and changes state if necessary.
+	 *
+	 * @param outcome
+	 *            The outcome flags.
+	 */
+	private void record(byte outcome) {
+		switch (state) {
+		case HALF_OPEN:
+			if (outcome != OUTCOME_SUCCESS) {
+				open();
+			} else if (++probesSucceeded >= halfOpenProbes) {
+				state = State.CLOSED;
+				resetWindow();
+			}
+			break;
+		case CLOSED:
+			if (calls == outcomes.length) {
+				// Forget the outcome that's dropping out of the window
+				failures -= outcomes[index] & OUTCOME_FAILED;
+				slowCalls -= (outcomes[index] & OUTCOME_SLOW) >> 1;
+			} else {
+				calls++;
+			}
+
+			outcomes[index] = outcome;
+			failures += outcome & OUTCOME_FAILED;
+			slowCalls += (outcome & OUTCOME_SLOW) >> 1;
+			index = (index + 1) % outcomes.length;
+
+			if (calls >= minimumCalls
+					&& (failures * 100f / calls >= failureRateThreshold || slowCalls * 100f / calls >= slowCallRateThreshold)) {
+				open();
+			}
+			break;
+		default:
+			// Calls that were already in flight when the breaker opened
+			// don't count.
+		}
+	}
+
+	/**
+	 * Opens the breaker.
+	 */
+	private void open() {
+		state = State.OPEN;
+		openUntil = System.nanoTime() + openDuration;
+		resetWindow();
+	}
+
+	/**
+	 * Forgets all recorded outcomes.
+	 */
+	private void resetWindow() {
+		index = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+}
@@ -0,0 +1,345 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.exception.BulkheadFullException;
+import com.alexgilleran.icesoap.exception.CircuitOpenException;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * {@link SOAPRequester} that wraps another requester, isolating each endpoint
+ * (i.e. each url and SOAP action) from the others so that one unhealthy
+ * endpoint can't starve requests to healthy ones.
+ *
+ * Each endpoint gets:
+ * <ul>
+ * <li>A {@link CircuitBreaker}, which makes requests to the endpoint fail fast
+ * with a {@link CircuitOpenException} while it's failing or slow.</li>
+ * <li>A bulkhead, which limits the number of requests to the endpoint that can
+ * be in progress at once - further requests fail with a
+ * {@link BulkheadFullException}, rather than waiting for a thread that's
+ * already waiting on the same slow endpoint.</li>
+ * </ul>
+ *
+ * I/O errors and the HTTP statuses set by {@link #setFailureStatuses(Integer...)}
+ * (502, 503 and 504 by default) count as failures - 500 doesn't by default, as
+ * it's used to return SOAP faults. Requests that are aborted through their
+ * {@link AbortHandle} don't count at all. The settings are applied to each endpoint
+ * the first time a request is made to it, so should be set before any
+ * requests are made.
+ *
+ * Requests can only be aborted, and so hedged, if the delegate is an
+ * {@link com.alexgilleran.icesoap.request.AbortableSOAPRequester}.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class CircuitBreakingSOAPRequester extends DelegatingSOAPRequester {
+	/** HTTP statuses that count as failures by default. */
+	private static final Integer[] DEFAULT_FAILURE_STATUSES = { 502, 503, 504 };
+
+	/** Circuit breakers by endpoint. */
+	private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+	/** Bulkheads by endpoint. */
+	private final ConcurrentMap<String, Semaphore> bulkheads = new ConcurrentHashMap<String, Semaphore>();
+
+	/** HTTP statuses that count as failures. */
+	private volatile Set<Integer> failureStatuses = Collections.unmodifiableSet(new HashSet<Integer>(Arrays
+			.asList(DEFAULT_FAILURE_STATUSES)));
+	/** The number of recent calls to work out failure rates from. */
+	private volatile int windowSize = 50;
+	/** The minimum number of calls before a breaker can open. */
+	private volatile int minimumCalls = 10;
+	/** The percentage of failed calls at which a breaker opens. */
+	private volatile float failureRateThreshold = 50;
+	/** The time in milliseconds after which a call counts as slow. */
+	private volatile long slowCallDuration = 10000;
+	/** The percentage of slow calls at which a breaker opens. */
+	private volatile float slowCallRateThreshold = 100;
+	/** How long a breaker stays open for, in milliseconds. */
+	private volatile long openDuration = 30000;
+	/** The number of probe calls allowed when half-open. */
+	private volatile int halfOpenProbes = 3;
+	/** The maximum number of concurrent calls to each endpoint. */
+	private volatile int maxConcurrentCalls = Integer.MAX_VALUE;
+	/** How long to wait for a bulkhead to have room, in milliseconds. */
+	private volatile long maxBulkheadWait = 0;
+
+	/**
+	 * Creates a new requester.
+	 *
+	 * @param delegate
+	 *            The requester that actually makes requests.
+	 */
+	public CircuitBreakingSOAPRequester(SOAPRequester delegate) {
+		super(delegate);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction,
+			AbortHandle abortHandle) throws IOException {
+		String endpoint = getEndpointKey(targetUrl, soapAction);
+		final Semaphore bulkhead = getBulkhead(endpoint);
+
+		try {
+			if (!bulkhead.tryAcquire(maxBulkheadWait, TimeUnit.MILLISECONDS)) {
+				throw new BulkheadFullException("Too many concurrent requests to " + endpoint);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BulkheadFullException("Interrupted waiting for a request to " + endpoint);
+		}
+
+		CircuitBreaker breaker = getBreaker(endpoint);
+
+		if (!breaker.tryAcquire()) {
+			bulkhead.release();
+			throw new CircuitOpenException("Circuit breaker is open for " + endpoint);
+		}
+
+		long start = System.nanoTime();
+		Response response;
+
+		try {
+			response = send(envelope, targetUrl, soapAction, abortHandle);
+		} catch (IOException e) {
+			bulkhead.release();
+			recordFailure(breaker, start, abortHandle);
+			throw e;
+		} catch (RuntimeException e) {
+			bulkhead.release();
+			recordFailure(breaker, start, abortHandle);
+			throw e;
+		}
+
+		if (failureStatuses.contains(response.getHttpStatus())) {
+			breaker.onFailure(System.nanoTime() - start);
+		} else {
+			breaker.onSuccess(System.nanoTime() - start);
+		}
+
+		// The call is still using a connection until the response is closed
+		final Response delegateResponse = response;
+		final AtomicBoolean released = new AtomicBoolean(false);
+		Response wrapped = new Response(response.getData(), response.getHttpStatus()) {
+			@Override
+			public void close() throws IOException {
+				try {
+					// Close the delegate's response rather than just its data,
+					// so that whatever it holds until then is released too
+					delegateResponse.close();
+				} finally {
+					if (released.compareAndSet(false, true)) {
+						bulkhead.release();
+					}
+				}
+			}
+		};
+		wrapped.copyTimings(response);
+
+		return wrapped;
+	}
+
+	/**
+	 * Records a call that threw an exception as a failure, unless it was
+	 * aborted - a hedge that lost or a cancelled request says nothing about
+	 * the health of the endpoint.
+	 *
+	 * @param breaker
+	 *            The breaker for the endpoint.
+	 * @param start
+	 *            When the call started, from System.nanoTime().
+	 * @param abortHandle
+	 *            The handle the call could be aborted with, or null.
+	 */
+	private static void recordFailure(CircuitBreaker breaker, long start, AbortHandle abortHandle) {
+		if (abortHandle != null && abortHandle.isAborted()) {
+			breaker.onIgnored();
+		} else {
+			breaker.onFailure(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Gets the state of the circuit breaker for an endpoint.
+	 *
+	 * @param targetUrl
+	 *            The url of the endpoint.
+	 * @param soapAction
+	 *            The SOAP action of the endpoint - can be null.
+	 * @return The state of the breaker.
+	 */
+	public CircuitBreaker.State getCircuitState(String targetUrl, String soapAction) {
+		CircuitBreaker breaker = breakers.get(getEndpointKey(targetUrl, soapAction));
+
+		return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+	}
+
+	/**
+	 * Gets the circuit breaker for an endpoint, creating it if necessary.
+	 *
+	 * @param endpoint
+	 *            The endpoint key.
+	 * @return The breaker.
+	 */
+	private CircuitBreaker getBreaker(String endpoint) {
+		CircuitBreaker breaker = breakers.get(endpoint);
+
+		if (breaker == null) {
+			CircuitBreaker newBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+					slowCallDuration, slowCallRateThreshold, openDuration, halfOpenProbes);
+			breaker = breakers.putIfAbsent(endpoint, newBreaker);
+
+			if (breaker == null) {
+				breaker = newBreaker;
+			}
+		}
+
+		return breaker;
+	}
+
+	/**
+	 * Gets the bulkhead for an endpoint, creating it if necessary.
+	 *
+	 * @param endpoint
+	 *            The endpoint key.
+	 * @return The bulkhead.
+	 */
+	private Semaphore getBulkhead(String endpoint) {
+		Semaphore bulkhead = bulkheads.get(endpoint);
+
+		if (bulkhead == null) {
+			Semaphore newBulkhead = new Semaphore(maxConcurrentCalls, true);
+			bulkhead = bulkheads.putIfAbsent(endpoint, newBulkhead);
+
+			if (bulkhead == null) {
+				bulkhead = newBulkhead;
+			}
+		}
+
+		return bulkhead;
+	}
+
+	/**
+	 * Builds the key that identifies an endpoint.
+	 *
+	 * @param targetUrl
+	 *            The url of the endpoint.
+	 * @param soapAction
+	 *            The SOAP action of the endpoint - can be null.
+	 * @return The key.
+	 */
+	private static String getEndpointKey(String targetUrl, String soapAction) {
+		return soapAction == null ? targetUrl : targetUrl + " " + soapAction;
+	}
+
+	/**
+	 * Sets the HTTP statuses that count as failures.
+	 *
+	 * @param statuses
+	 *            The statuses.
+	 */
+	public void setFailureStatuses(Integer... statuses) {
+		this.failureStatuses = Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(statuses)));
+	}
+
+	/**
+	 * Sets the number of recent calls that failure and slow call rates are
+	 * worked out from - defaults to 50.
+	 *
+	 * @param windowSize
+	 *            The number of calls.
+	 */
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Sets the minimum number of calls that have to be made to an endpoint
+	 * before its breaker can open - defaults to 10.
+	 *
+	 * @param minimumCalls
+	 *            The number of calls.
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	/**
+	 * Sets the percentage of failed calls at which a breaker opens - defaults
+	 * to 50.
+	 *
+	 * @param failureRateThreshold
+	 *            The percentage, between 0 and 100.
+	 */
+	public void setFailureRateThreshold(float failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * Sets how long a call can take before it counts as slow, and the
+	 * percentage of slow calls at which a breaker opens - defaults to 10
+	 * seconds and 100%.
+	 *
+	 * @param slowCallDuration
+	 *            The time in milliseconds.
+	 * @param slowCallRateThreshold
+	 *            The percentage, between 0 and 100.
+	 */
+	public void setSlowCallThreshold(long slowCallDuration, float slowCallRateThreshold) {
+		this.slowCallDuration = slowCallDuration;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	/**
+	 * Sets how long a breaker stays open before probing the endpoint again -
+	 * defaults to 30 seconds.
+	 *
+	 * @param openDuration
+	 *            The time in milliseconds.
+	 */
+	public void setOpenDuration(long openDuration) {
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * Sets the number of probe calls that are let through when a breaker is
+	 * half-open, all of which have to succeed for it to close - defaults to 3.
+	 *
+	 * @param halfOpenProbes
+	 *            The number of calls.
+	 */
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	/**
+	 * Sets the maximum number of calls to each endpoint that can be in
+	 * progress at once - by default this is unlimited. Note that a call is in
+	 * progress until its response is closed.
+	 *
+	 * @param maxConcurrentCalls
+	 *            The maximum number of calls.
+	 * @param maxWait
+	 *            How long a call will wait for another to finish if the limit
+	 *            has been reached, in milliseconds - 0 to fail straight away.
+	 */
+	public void setBulkhead(int maxConcurrentCalls, long maxWait) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.maxBulkheadWait = maxWait;
+	}
+}
@@ -0,0 +1,140 @@
+package com.alexgilleran.icesoap.request.impl;
+
+/**
+ * A snapshot of the state of a connection pool, as counted by
+ * {@link InstrumentedClientConnManager}.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class ConnectionPoolStats {
+	/** Number of connections leased out of the pool. */
+	private final int leased;
+	/** Number of open connections sitting idle in the pool. */
+	private final int available;
+	/** Number of requests waiting for a connection. */
+	private final int pending;
+	/** Number of connections that have been leased in total. */
+	private final long leaseCount;
+	/** Number of requests that timed out waiting for a connection. */
+	private final long timeoutCount;
+	/** Total time spent waiting for connections, in milliseconds. */
+	private final long totalWaitTime;
+	/** Longest time spent waiting for a connection, in milliseconds. */
+	private final long maxWaitTime;
+
+	/**
+	 * Creates a new snapshot.
+	 *
+	 * @param leased
+	 *            Number of connections leased out of the pool.
+	 * @param available
+	 *            Number of open connections sitting idle in the pool.
+	 * @param pending
+	 *            Number of requests waiting for a connection.
+	 * @param leaseCount
+	 *            Number of connections that have been leased in total.
+	 * @param timeoutCount
+	 *            Number of requests that timed out waiting for a connection.
+	 * @param totalWaitTime
+	 *            Total time spent waiting for connections, in milliseconds.
+	 * @param maxWaitTime
+	 *            Longest time spent waiting for a connection, in milliseconds.
+	 */
+	public ConnectionPoolStats(int leased, int available, int pending, long leaseCount, long timeoutCount,
+			long totalWaitTime, long maxWaitTime) {
+		this.leased = leased;
+		this.available = available;
+		this.pending = pending;
+		this.leaseCount = leaseCount;
+		this.timeoutCount = timeoutCount;
+		this.totalWaitTime = totalWaitTime;
+		this.maxWaitTime = maxWaitTime;
+	}
+
+	/**
+	 * Gets the number of connections currently leased out of the pool.
+	 *
+	 * @return The number of leased connections.
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * Gets the number of open connections sitting idle in the pool, ready to
+	 * be reused.
+	 *
+	 * @return The number of available connections.
+	 */
+	public int getAvailable() {
+		return available;
+	}
+
+	/**
+	 * Gets the number of requests currently waiting for a connection - if
+	 * this is regularly above 0, the pool is too small.
+	 *
+	 * @return The number of pending requests.
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * Gets the number of connections that have been leased since the pool was
+	 * created.
+	 *
+	 * @return The total number of leases.
+	 */
+	public long getLeaseCount() {
+		return leaseCount;
+	}
+
+	/**
+	 * Gets the number of requests that gave up waiting for a connection since
+	 * the pool was created.
+	 *
+	 * @return The number of timeouts.
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/**
+	 * Gets the total time that requests have spent waiting for connections.
+	 *
+	 * @return The total wait time in milliseconds.
+	 */
+	public long getTotalWaitTime() {
+		return totalWaitTime;
+	}
+
+	/**
+	 * Gets the average time that requests have spent waiting for connections.
+	 *
+	 * @return The average wait time in milliseconds, or 0 if no connections
+	 *         have been requested.
+	 */
+	public long getAverageWaitTime() {
+		long waits = leaseCount + timeoutCount;
+
+		return waits == 0 ? 0 : totalWaitTime / waits;
+	}
+
+	/**
+	 * Gets the longest time that a request has spent waiting for a connection.
+	 *
+	 * @return The maximum wait time in milliseconds.
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPoolStats [leased=" + leased + ", available=" + available + ", pending=" + pending
+				+ ", leaseCount=" + leaseCount + ", timeoutCount=" + timeoutCount + ", totalWaitTime="
+				+ totalWaitTime + ", maxWaitTime=" + maxWaitTime + "]";
+	}
+}
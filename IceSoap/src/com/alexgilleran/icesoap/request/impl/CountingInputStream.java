@@ -0,0 +1,68 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} that counts the bytes read through it.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+final class CountingInputStream extends FilterInputStream {
+	/** Bytes read so far. */
+	private long count = 0;
+
+	/**
+	 * Creates a new stream.
+	 * 
+	 * @param in
+	 *            The stream to read from.
+	 */
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return The number of bytes read so far.
+	 */
+	long getCount() {
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+
+		if (b != -1) {
+			count++;
+		}
+
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, len);
+
+		if (read > 0) {
+			count += read;
+		}
+
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		// Re-reading would throw the count off
+		return false;
+	}
+}
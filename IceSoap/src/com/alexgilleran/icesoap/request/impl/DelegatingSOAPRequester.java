@@ -0,0 +1,112 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * Base for {@link SOAPRequester}s that wrap another requester, adding
+ * behaviour around the requests it makes. Every request goes through
+ * {@link #doSoapRequest(SOAPEnvelope, String, String, AbortHandle)}, and
+ * timeouts are passed straight on to the delegate.
+ *
+ * Wrappers always take an {@link AbortHandle}, but requests can only actually
+ * be aborted if the delegate is abortable - use
+ * {@link #isAbortable(SOAPRequester)} rather than instanceof to find out.
+ *
+ * @author Alex Gilleran
+ *
+ */
+abstract class DelegatingSOAPRequester implements AbortableSOAPRequester {
+	/** The requester that actually makes requests. */
+	private final SOAPRequester delegate;
+
+	/**
+	 * Creates a new requester.
+	 *
+	 * @param delegate
+	 *            The requester that actually makes requests.
+	 */
+	DelegatingSOAPRequester(SOAPRequester delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Determines whether requests made by a requester can be aborted, looking
+	 * through any wrappers to the requester that actually makes them.
+	 *
+	 * @param requester
+	 *            The requester.
+	 * @return true if its requests can be aborted with an
+	 *         {@link AbortHandle}.
+	 */
+	static boolean isAbortable(SOAPRequester requester) {
+		if (requester instanceof DelegatingSOAPRequester) {
+			return isAbortable(((DelegatingSOAPRequester) requester).delegate);
+		}
+
+		return requester instanceof AbortableSOAPRequester;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl) throws IOException {
+		return doSoapRequest(envelope, targetUrl, null, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction) throws IOException {
+		return doSoapRequest(envelope, targetUrl, soapAction, null);
+	}
+
+	/**
+	 * Sends a request through the delegate, passing on the abort handle if
+	 * the delegate can use it.
+	 *
+	 * @param envelope
+	 *            The envelope to send.
+	 * @param targetUrl
+	 *            The url to send it to.
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @param abortHandle
+	 *            The handle to abort the request with, or null.
+	 * @return The response.
+	 * @throws IOException
+	 *             If the request fails.
+	 */
+	protected Response send(SOAPEnvelope envelope, String targetUrl, String soapAction, AbortHandle abortHandle)
+			throws IOException {
+		if (abortHandle != null && delegate instanceof AbortableSOAPRequester) {
+			return ((AbortableSOAPRequester) delegate).doSoapRequest(envelope, targetUrl, soapAction, abortHandle);
+		} else if (soapAction == null) {
+			return delegate.doSoapRequest(envelope, targetUrl);
+		}
+
+		return delegate.doSoapRequest(envelope, targetUrl, soapAction);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setConnectionTimeout(int timeout) {
+		delegate.setConnectionTimeout(timeout);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSocketTimeout(int timeout) {
+		delegate.setSocketTimeout(timeout);
+	}
+}
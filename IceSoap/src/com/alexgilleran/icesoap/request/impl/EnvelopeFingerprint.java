@@ -0,0 +1,97 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+
+/**
+ * Works out a key that identifies a request by its url, SOAP action and a
+ * SHA-1 digest of its serialized envelope. The envelope is streamed straight
+ * into the digest, so it's never held as a String.
+ *
+ * @author Alex Gilleran
+ *
+ */
+final class EnvelopeFingerprint {
+	/** Algorithm used to fingerprint envelopes. */
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+	/** Characters for hex encoding. */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	/** Separates the parts of a key. */
+	private static final char KEY_SEPARATOR = '\n';
+
+	/**
+	 * Not instantiable.
+	 */
+	private EnvelopeFingerprint() {
+	}
+
+	/**
+	 * Works out the key for a request - requests to the same url with the
+	 * same SOAP action and an identical envelope get the same key.
+	 *
+	 * @param url
+	 *            The url the request is sent to.
+	 * @param soapAction
+	 *            The SOAP action of the request - can be null.
+	 * @param envelope
+	 *            The envelope of the request.
+	 * @return The key.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	public static String getKey(String url, String soapAction, SOAPEnvelope envelope) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+
+		SOAPEnvelopeEntity.serialize(envelope, new DigestingOutputStream(digest));
+
+		StringBuilder key = new StringBuilder(url).append(KEY_SEPARATOR);
+		if (soapAction != null) {
+			key.append(soapAction);
+		}
+		key.append(KEY_SEPARATOR);
+
+		for (byte b : digest.digest()) {
+			key.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * {@link OutputStream} that feeds everything written to it into a digest
+	 * and throws it away.
+	 */
+	private static class DigestingOutputStream extends OutputStream {
+		/** The digest to update. */
+		private final MessageDigest digest;
+
+		/**
+		 * Creates a new stream.
+		 *
+		 * @param digest
+		 *            The digest to update.
+		 */
+		public DigestingOutputStream(MessageDigest digest) {
+			this.digest = digest;
+		}
+
+		@Override
+		public void write(int b) {
+			digest.update((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			digest.update(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Times the phases of a single HTTP exchange from the requester's side, so
+ * they can be recorded on its {@link Response} - a few calls to
+ * {@link System#nanoTime()}, so it's cheap enough to always use.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+final class ExchangeTimer {
+	/** When the exchange started. */
+	private final long start = System.nanoTime();
+	/** When a connection was ready to send the body on, or -1. */
+	private long connected = -1;
+	/** When the body finished sending, or -1. */
+	private long sent = -1;
+	/** The number of bytes in the body, or -1. */
+	private long requestBytes = -1;
+	/** When the response headers arrived, or -1. */
+	private long responded = -1;
+
+	/**
+	 * Records that a connection is ready and the body is about to be sent.
+	 */
+	void markConnected() {
+		connected = System.nanoTime();
+	}
+
+	/**
+	 * Records that the body has been sent.
+	 * 
+	 * @param bytes
+	 *            The number of bytes in the body.
+	 */
+	void markSent(long bytes) {
+		sent = System.nanoTime();
+		requestBytes = bytes;
+	}
+
+	/**
+	 * Records that the response headers have arrived - if this isn't called,
+	 * they're taken to have arrived when the timings are applied.
+	 */
+	void markResponded() {
+		responded = System.nanoTime();
+	}
+
+	/**
+	 * Wraps the stream the body is written to, so that the timer can tell
+	 * when the body starts and finishes sending and how big it was. Either
+	 * {@link BodyStream#close()} or {@link BodyStream#finish()} must be called
+	 * once the body has been written.
+	 * 
+	 * @param out
+	 *            The stream the body is written to.
+	 * @return The wrapped stream.
+	 */
+	BodyStream timeBody(OutputStream out) {
+		markConnected();
+
+		return new BodyStream(out);
+	}
+
+	/**
+	 * Stream that counts the bytes of a request body, and tells the timer
+	 * when it's done.
+	 */
+	final class BodyStream extends FilterOutputStream {
+		/** Bytes written so far. */
+		private long count = 0;
+
+		/**
+		 * Creates a new stream.
+		 * 
+		 * @param out
+		 *            The stream to write to.
+		 */
+		private BodyStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		/**
+		 * Flushes the body and tells the timer it's been sent, without
+		 * closing the underlying stream.
+		 * 
+		 * @throws IOException
+		 *             If the stream can't be flushed.
+		 */
+		public void finish() throws IOException {
+			flush();
+			markSent(count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			markSent(count);
+		}
+	}
+
+	/**
+	 * Records the timings on a response. Phases that weren't seen are recorded as unknown, and if the body's
+	 * progress wasn't seen at all the whole exchange counts as waiting.
+	 * 
+	 * @param response
+	 *            The response to record the timings on.
+	 * @return The same response.
+	 */
+	Response applyTo(Response response) {
+		long now = responded == -1 ? System.nanoTime() : responded;
+
+		if (connected == -1 || sent == -1) {
+			response.setTimings(-1, -1, now - start, requestBytes);
+		} else {
+			response.setTimings(connected - start, sent - connected, now - sent, requestBytes);
+		}
+
+		return response;
+	}
+}
@@ -0,0 +1,184 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.alexgilleran.icesoap.exception.BulkheadFullException;
+import com.alexgilleran.icesoap.exception.CircuitOpenException;
+import com.alexgilleran.icesoap.request.RetryPolicy;
+
+/**
+ * {@link RetryPolicy} that retries up to a maximum number of attempts, waiting
+ * exponentially longer between each one, with random jitter so that many
+ * clients failing at once don't all retry at once.
+ *
+ * Retrying an action that the server may already have performed is only safe
+ * if it's idempotent, so by default this only retries when the server can't
+ * have received the request at all (i.e. the connection was refused). Actions
+ * that are safe to repeat can be registered with
+ * {@link #addIdempotentAction(String)}, after which they're also retried on
+ * any other I/O error or a retryable HTTP status (502, 503 and 504 by
+ * default).
+ *
+ * A {@link CircuitOpenException} or {@link BulkheadFullException} is never
+ * retried, as it means the request was deliberately failed fast.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+	/** Default maximum number of attempts, including the first one. */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	/** Default delay before the first retry, in milliseconds. */
+	public static final long DEFAULT_INITIAL_DELAY = 200;
+	/** Default maximum delay between retries, in milliseconds. */
+	public static final long DEFAULT_MAX_DELAY = 5000;
+	/** HTTP statuses that are retried by default. */
+	private static final Integer[] DEFAULT_RETRY_STATUSES = { 502, 503, 504 };
+
+	/** Random number generator for jitter. */
+	private final Random random = new Random();
+	/** Maximum number of attempts, including the first one. */
+	private final int maxAttempts;
+	/** Delay before the first retry, in milliseconds. */
+	private final long initialDelay;
+	/** Maximum delay between retries, in milliseconds. */
+	private final long maxDelay;
+	/** HTTP statuses that will be retried for idempotent actions. */
+	private volatile Set<Integer> retryStatuses = Collections.unmodifiableSet(new HashSet<Integer>(Arrays
+			.asList(DEFAULT_RETRY_STATUSES)));
+	/** SOAP actions that are safe to perform more than once. */
+	private final Set<String> idempotentActions = new CopyOnWriteArraySet<String>();
+	/** Whether every action should be treated as idempotent. */
+	private volatile boolean allActionsIdempotent = false;
+
+	/**
+	 * Creates a new policy with the default attempts and delays.
+	 */
+	public ExponentialBackoffRetryPolicy() {
+		this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * Creates a new policy.
+	 *
+	 * @param maxAttempts
+	 *            The maximum number of attempts, including the first one.
+	 * @param initialDelay
+	 *            The delay before the first retry in milliseconds - each retry
+	 *            after that waits twice as long as the last.
+	 * @param maxDelay
+	 *            The maximum delay between retries in milliseconds.
+	 */
+	public ExponentialBackoffRetryPolicy(int maxAttempts, long initialDelay, long maxDelay) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be at least 1");
+		}
+
+		this.maxAttempts = maxAttempts;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Marks a SOAP action as safe to perform more than once.
+	 *
+	 * @param soapAction
+	 *            The SOAP action.
+	 */
+	public void addIdempotentAction(String soapAction) {
+		idempotentActions.add(soapAction);
+	}
+
+	/**
+	 * Sets whether every action should be treated as idempotent - use this if
+	 * the service being called is read-only.
+	 *
+	 * @param allActionsIdempotent
+	 *            true to retry every action as if it were idempotent.
+	 */
+	public void setAllActionsIdempotent(boolean allActionsIdempotent) {
+		this.allActionsIdempotent = allActionsIdempotent;
+	}
+
+	/**
+	 * Sets the HTTP statuses that idempotent actions will be retried on.
+	 *
+	 * @param statuses
+	 *            The statuses to retry.
+	 */
+	public void setRetryStatuses(Integer... statuses) {
+		this.retryStatuses = Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(statuses)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRetryDelay(int attempt, String soapAction, IOException exception) {
+		// These are meant to fail fast, so retrying them would defeat the point
+		if (exception instanceof CircuitOpenException || exception instanceof BulkheadFullException) {
+			return NO_RETRY;
+		}
+
+		// A refused connection never reached the server, so is always safe
+		if (exception instanceof ConnectException || isIdempotent(soapAction)) {
+			return getDelay(attempt);
+		}
+
+		return NO_RETRY;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRetryDelay(int attempt, String soapAction, int httpStatus) {
+		if (retryStatuses.contains(httpStatus) && isIdempotent(soapAction)) {
+			return getDelay(attempt);
+		}
+
+		return NO_RETRY;
+	}
+
+	/**
+	 * Determines whether an action is safe to perform more than once.
+	 *
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @return true if it's safe to retry.
+	 */
+	protected boolean isIdempotent(String soapAction) {
+		return allActionsIdempotent || (soapAction != null && idempotentActions.contains(soapAction));
+	}
+
+	/**
+	 * Works out the delay before the next attempt.
+	 *
+	 * @param attempt
+	 *            The number of the attempt that failed, starting at 1.
+	 * @return The delay in milliseconds, or {@link #NO_RETRY} if there are no
+	 *         attempts left.
+	 */
+	private long getDelay(int attempt) {
+		if (attempt >= maxAttempts) {
+			return NO_RETRY;
+		}
+
+		// Double the delay for each attempt, without overflowing the shift
+		long backoff = initialDelay << Math.min(attempt - 1, 30);
+		if (backoff < 0 || backoff > maxDelay) {
+			backoff = maxDelay;
+		}
+
+		// Wait somewhere between half and all of the backoff
+		long half = backoff / 2;
+		return half + (half > 0 ? (long) (random.nextDouble() * (backoff - half)) : 0);
+	}
+}
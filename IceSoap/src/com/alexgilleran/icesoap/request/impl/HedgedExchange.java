@@ -0,0 +1,329 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
+import com.alexgilleran.icesoap.request.HedgingPolicy;
+
+/**
+ * Performs a hedged HTTP exchange - the original request is made on the
+ * calling thread, and if it hasn't returned by the time the hedge delay is up,
+ * a duplicate is sent on another thread. Whichever response comes back first
+ * is returned, and the other exchange is aborted. The requester has to be an
+ * {@link AbortableSOAPRequester} - otherwise the calling thread couldn't return
+ * until the original exchange had finished, even if the hedge had won.
+ *
+ * At most {@link #MAX_OUTSTANDING_HEDGES} hedges are in progress at once
+ * across every exchange - beyond that, requests just wait for their original
+ * exchange, so that a slow server can't make hedging pile on threads and
+ * load without limit.
+ *
+ * @author Alex Gilleran
+ *
+ */
+class HedgedExchange {
+	/** Schedules hedges to be sent once their delay is up. */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new HedgeThreadFactory(
+			"IceSoap hedge timer"));
+	/** Sends hedges. */
+	private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(new HedgeThreadFactory(
+			"IceSoap hedge"));
+	/** The maximum number of hedges that can be in progress at once. */
+	static final int MAX_OUTSTANDING_HEDGES = 64;
+	/** Permits for hedges to be in progress. */
+	private static final Semaphore OUTSTANDING_HEDGES = new Semaphore(MAX_OUTSTANDING_HEDGES);
+	/** Identifies the original request as the winner. */
+	private static final int ORIGINAL = 1;
+	/** Identifies the hedge as the winner. */
+	private static final int HEDGE = 2;
+
+	/** The requester to make requests with. */
+	private final AbortableSOAPRequester requester;
+	/** The envelope to send. */
+	private final SOAPEnvelope envelope;
+	/** The url to send to. */
+	private final String url;
+	/** The SOAP action of the request. */
+	private final String soapAction;
+	/** The policy that's hedging the request. */
+	private final HedgingPolicy policy;
+	/** Aborts the original exchange. */
+	private final AbortHandle originalHandle = new AbortHandle();
+	/** Aborts the hedge exchange. */
+	private final AbortHandle hedgeHandle = new AbortHandle();
+
+	/** When the exchange started, from System.currentTimeMillis(). */
+	private volatile long start;
+	/** Which exchange won, or 0 if neither has yet - guarded by this. */
+	private int winner = 0;
+	/** Whether the original exchange has finished - guarded by this. */
+	private boolean originalDone = false;
+	/** Whether the hedge has been sent - guarded by this. */
+	private boolean hedgeSent = false;
+	/** Whether the hedge has finished - guarded by this. */
+	private boolean hedgeDone = false;
+	/**
+	 * Whether the caller has stopped waiting for the hedge, so nobody will
+	 * take its response - guarded by this.
+	 */
+	private boolean abandoned = false;
+	/** The hedge's response, if it won - guarded by this. */
+	private Response hedgeResponse;
+	/** The exception the hedge failed with, if it did - guarded by this. */
+	private IOException hedgeException;
+
+	/**
+	 * Creates a new exchange.
+	 *
+	 * @param requester
+	 *            The requester to make requests with.
+	 * @param envelope
+	 *            The envelope to send.
+	 * @param url
+	 *            The url to send to.
+	 * @param soapAction
+	 *            The SOAP action of the request.
+	 * @param policy
+	 *            The policy that's hedging the request.
+	 */
+	public HedgedExchange(AbortableSOAPRequester requester, SOAPEnvelope envelope, String url, String soapAction,
+			HedgingPolicy policy) {
+		this.requester = requester;
+		this.envelope = envelope;
+		this.url = url;
+		this.soapAction = soapAction;
+		this.policy = policy;
+	}
+
+	/**
+	 * Performs the exchange.
+	 *
+	 * @param hedgeDelay
+	 *            How long to wait before sending a hedge, in milliseconds.
+	 * @param abortHandle
+	 *            Handle that aborts both exchanges.
+	 * @return The first response to arrive.
+	 * @throws IOException
+	 *             If both exchanges failed, or the original failed before the
+	 *             hedge was sent.
+	 */
+	public Response perform(long hedgeDelay, AbortHandle abortHandle) throws IOException {
+		abortHandle.setAbortAction(new Runnable() {
+			@Override
+			public void run() {
+				originalHandle.abort();
+				hedgeHandle.abort();
+			}
+		});
+
+		start = System.currentTimeMillis();
+
+		ScheduledFuture<?> timer = TIMER.schedule(new Runnable() {
+			@Override
+			public void run() {
+				sendHedge();
+			}
+		}, hedgeDelay, TimeUnit.MILLISECONDS);
+
+		Response originalResponse = null;
+		IOException originalException = null;
+
+		try {
+			originalResponse = send(originalHandle);
+		} catch (IOException e) {
+			originalException = e;
+		}
+
+		boolean won = false;
+
+		synchronized (this) {
+			originalDone = true;
+
+			if (originalResponse != null && winner == 0) {
+				winner = ORIGINAL;
+				won = true;
+			}
+		}
+
+		if (won) {
+			timer.cancel(false);
+			hedgeHandle.abort();
+			policy.recordLatency(soapAction, System.currentTimeMillis() - start);
+
+			return originalResponse;
+		}
+
+		if (originalResponse != null) {
+			// The hedge beat us to it
+			closeQuietly(originalResponse);
+		}
+
+		return awaitHedge(originalException);
+	}
+
+	/**
+	 * Waits for the hedge to finish, if it's been sent.
+	 *
+	 * @param originalException
+	 *            The exception the original exchange failed with, if it did.
+	 * @return The hedge's response.
+	 * @throws IOException
+	 *             If the hedge wasn't sent or failed.
+	 */
+	private synchronized Response awaitHedge(IOException originalException) throws IOException {
+		try {
+			while (hedgeSent && !hedgeDone) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			abandoned = true;
+			hedgeHandle.abort();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for hedged request");
+		}
+
+		if (hedgeResponse != null) {
+			return hedgeResponse;
+		}
+
+		if (originalException != null && !originalHandle.isAborted()) {
+			throw originalException;
+		}
+
+		throw hedgeException != null ? hedgeException : originalException;
+	}
+
+	/**
+	 * Sends the hedge, unless the original exchange has already finished or
+	 * too many hedges are already in progress.
+	 */
+	private void sendHedge() {
+		synchronized (this) {
+			if (originalDone || !OUTSTANDING_HEDGES.tryAcquire()) {
+				return;
+			}
+
+			hedgeSent = true;
+		}
+
+		policy.onHedgeSent(soapAction);
+
+		HEDGE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				Response response = null;
+				IOException exception = null;
+
+				try {
+					response = send(hedgeHandle);
+				} catch (IOException e) {
+					exception = e;
+				} finally {
+					OUTSTANDING_HEDGES.release();
+				}
+
+				boolean won = false;
+
+				synchronized (HedgedExchange.this) {
+					if (response != null && winner == 0 && !abandoned) {
+						winner = HEDGE;
+						won = true;
+					}
+				}
+
+				if (won) {
+					originalHandle.abort();
+					policy.onHedgeWon(soapAction);
+					// Measured from the start of the whole exchange, as the
+					// original would have been, so the policy sees the
+					// latency the caller actually got
+					policy.recordLatency(soapAction, System.currentTimeMillis() - start);
+				} else if (response != null) {
+					closeQuietly(response);
+				}
+
+				boolean taken = false;
+
+				synchronized (HedgedExchange.this) {
+					// The caller may have given up since the hedge won, in
+					// which case nobody else will close the response
+					if (won && !abandoned) {
+						hedgeResponse = response;
+						taken = true;
+					}
+
+					hedgeException = exception;
+					hedgeDone = true;
+					HedgedExchange.this.notifyAll();
+				}
+
+				if (won && !taken) {
+					closeQuietly(response);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sends the request.
+	 *
+	 * @param handle
+	 *            The handle to abort the exchange with.
+	 * @return The response.
+	 * @throws IOException
+	 *             If the exchange fails.
+	 */
+	private Response send(AbortHandle handle) throws IOException {
+		return requester.doSoapRequest(envelope, url, soapAction, handle);
+	}
+
+	/**
+	 * Closes a response that's lost the race.
+	 *
+	 * @param response
+	 *            The response to close.
+	 */
+	private static void closeQuietly(Response response) {
+		try {
+			response.close();
+		} catch (IOException e) {
+			// Nothing more can be done with it.
+		}
+	}
+
+	/**
+	 * Creates daemon threads, so that hedging never keeps the process alive.
+	 */
+	private static class HedgeThreadFactory implements ThreadFactory {
+		/** The name to give threads. */
+		private final String name;
+
+		/**
+		 * Creates a new factory.
+		 *
+		 * @param name
+		 *            The name to give threads.
+		 */
+		public HedgeThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * Helpers for the HTTP compression supported by the {@link SOAPRequester}
+ * implementations.
+ *
+ * @author Alex Gilleran
+ *
+ */
+final class HttpCompression {
+	/** Key for the header that advertises the encodings we can accept. */
+	static final String HEADER_KEY_ACCEPT_ENCODING = "Accept-Encoding";
+	/** Key for the header that specifies the encoding of a body. */
+	static final String HEADER_KEY_CONTENT_ENCODING = "Content-Encoding";
+	/** The encodings that responses can be decompressed from. */
+	static final String ACCEPT_ENCODING_VALUE = "gzip, deflate";
+	/** Name of the gzip content encoding. */
+	static final String ENCODING_GZIP = "gzip";
+	/** Name of the deflate content encoding. */
+	static final String ENCODING_DEFLATE = "deflate";
+	/** Threshold value used to indicate that requests should never be compressed. */
+	static final int NEVER_COMPRESS = -1;
+
+	/**
+	 * Not instantiable.
+	 */
+	private HttpCompression() {
+	}
+
+	/**
+	 * Wraps a response body in a stream that decompresses it according to its
+	 * content encoding - decompression happens as the stream is read, so the
+	 * uncompressed body is never held in memory.
+	 *
+	 * @param body
+	 *            The body of the response.
+	 * @param contentEncoding
+	 *            The value of the Content-Encoding header of the response, or
+	 *            null if there wasn't one.
+	 * @return A stream of the uncompressed body - if the encoding isn't one we
+	 *         support, this is the body unchanged.
+	 * @throws IOException
+	 *             If the gzip header can't be read.
+	 */
+	static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+		if (contentEncoding == null) {
+			return body;
+		}
+
+		String encoding = contentEncoding.trim();
+
+		if (ENCODING_GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+			return new GZIPInputStream(body);
+		} else if (ENCODING_DEFLATE.equalsIgnoreCase(encoding)) {
+			return new InflaterInputStream(body);
+		}
+
+		return body;
+	}
+
+	/**
+	 * Serializes an envelope into memory, as long as it's no larger than the
+	 * passed number of bytes. Serialization stops as soon as the envelope goes
+	 * over the threshold, so large envelopes are never fully buffered.
+	 *
+	 * @param envelope
+	 *            The envelope to serialize.
+	 * @param threshold
+	 *            The maximum size of the envelope in bytes.
+	 * @return The serialized envelope, or null if it's larger than the
+	 *         threshold.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	static byte[] serializeUpTo(SOAPEnvelope envelope, int threshold) throws IOException {
+		BoundedOutputStream out = new BoundedOutputStream(threshold);
+
+		try {
+			SOAPEnvelopeEntity.serialize(envelope, out);
+		} catch (ThresholdExceededException e) {
+			return null;
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * {@link ByteArrayOutputStream} that refuses to hold more than a set
+	 * number of bytes.
+	 */
+	private static class BoundedOutputStream extends ByteArrayOutputStream {
+		/** The maximum number of bytes to hold. */
+		private final int limit;
+
+		/**
+		 * Creates a new stream.
+		 *
+		 * @param limit
+		 *            The maximum number of bytes to hold.
+		 */
+		public BoundedOutputStream(int limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			checkLimit(1);
+			super.write(b);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			checkLimit(len);
+			super.write(b, off, len);
+		}
+
+		/**
+		 * Throws a {@link ThresholdExceededException} if writing the passed
+		 * number of bytes would take the stream over its limit.
+		 *
+		 * @param len
+		 *            The number of bytes about to be written.
+		 */
+		private void checkLimit(int len) {
+			if (count + len > limit) {
+				throw new ThresholdExceededException();
+			}
+		}
+	}
+
+	/**
+	 * Thrown by {@link BoundedOutputStream} to abandon serialization once
+	 * it's gone over its limit.
+	 */
+	private static class ThresholdExceededException extends RuntimeException {
+		private static final long serialVersionUID = 2887460934011587713L;
+	}
+}
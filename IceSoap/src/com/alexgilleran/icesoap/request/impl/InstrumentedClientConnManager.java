@@ -0,0 +1,136 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+
+/**
+ * {@link ThreadSafeClientConnManager} that keeps count of how its pool is
+ * being used - how many connections are leased, how many requests are waiting
+ * for one and how long they wait - so that pool starvation can be observed.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class InstrumentedClientConnManager extends ThreadSafeClientConnManager {
+	/**
+	 * Connections currently leased out of the pool. These are tracked rather
+	 * than counted, as a connection can be released more than once - e.g.
+	 * aborting a request after its response has been consumed releases its
+	 * connection again.
+	 */
+	private final Set<ManagedClientConnection> leased = Collections.synchronizedSet(Collections
+			.newSetFromMap(new IdentityHashMap<ManagedClientConnection, Boolean>()));
+	/** Number of requests currently waiting for a connection. */
+	private final AtomicInteger pending = new AtomicInteger();
+	/** Number of connections that have been leased in total. */
+	private final AtomicLong leaseCount = new AtomicLong();
+	/** Number of requests that timed out waiting for a connection. */
+	private final AtomicLong timeoutCount = new AtomicLong();
+	/** Total time spent waiting for connections, in nanoseconds. */
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	/** Longest time spent waiting for a connection, in nanoseconds. */
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/**
+	 * Creates a new connection manager.
+	 *
+	 * @param params
+	 *            The parameters for the pool - see
+	 *            {@link org.apache.http.conn.params.ConnManagerParams}.
+	 * @param schemeRegistry
+	 *            The registry of schemes the pool can connect to.
+	 */
+	public InstrumentedClientConnManager(HttpParams params, SchemeRegistry schemeRegistry) {
+		super(params, schemeRegistry);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+		final ClientConnectionRequest request = super.requestConnection(route, state);
+
+		return new ClientConnectionRequest() {
+			@Override
+			public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException,
+					ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				pending.incrementAndGet();
+
+				try {
+					ManagedClientConnection connection = request.getConnection(timeout, tunit);
+
+					leased.add(connection);
+					leaseCount.incrementAndGet();
+
+					return connection;
+				} catch (ConnectionPoolTimeoutException e) {
+					timeoutCount.incrementAndGet();
+					throw e;
+				} finally {
+					pending.decrementAndGet();
+					recordWait(System.nanoTime() - start);
+				}
+			}
+
+			@Override
+			public void abortRequest() {
+				request.abortRequest();
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+		try {
+			super.releaseConnection(conn, validDuration, timeUnit);
+		} finally {
+			leased.remove(conn);
+		}
+	}
+
+	/**
+	 * Records the time spent waiting for a connection.
+	 *
+	 * @param waitNanos
+	 *            The time spent waiting, in nanoseconds.
+	 */
+	private void recordWait(long waitNanos) {
+		totalWaitNanos.addAndGet(waitNanos);
+
+		long max;
+		do {
+			max = maxWaitNanos.get();
+		} while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+	}
+
+	/**
+	 * Takes a snapshot of the state of the pool.
+	 *
+	 * @return The current {@link ConnectionPoolStats}.
+	 */
+	public ConnectionPoolStats getStats() {
+		int currentlyLeased = leased.size();
+		int available = Math.max(0, getConnectionsInPool() - currentlyLeased);
+
+		return new ConnectionPoolStats(currentlyLeased, available, pending.get(), leaseCount.get(),
+				timeoutCount.get(), TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+				TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+	}
+}
@@ -0,0 +1,80 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes {@link ActionMetrics} on the platform MBean server. This is kept
+ * apart from {@link MetricsRegistry} so that nothing touches the JMX classes,
+ * which Android doesn't have, unless MBeans are asked for.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+class JmxExporter {
+	/** The server to register with. */
+	private final MBeanServer server;
+	/** The domain to register under. */
+	private final String domain;
+
+	/**
+	 * Creates a new exporter.
+	 * 
+	 * @param domain
+	 *            The domain to register MBeans under.
+	 */
+	JmxExporter(String domain) {
+		this.server = ManagementFactory.getPlatformMBeanServer();
+		this.domain = domain;
+	}
+
+	/**
+	 * Registers the MBean for an action, if it isn't already.
+	 * 
+	 * @param metrics
+	 *            The action's metrics.
+	 */
+	void register(ActionMetrics metrics) {
+		try {
+			ObjectName name = getName(metrics);
+
+			if (!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+		} catch (JMException e) {
+			// Another registration may have beaten this one - either way there's
+			// nothing the request can do about it
+		}
+	}
+
+	/**
+	 * Unregisters the MBean for an action, if it's registered.
+	 * 
+	 * @param metrics
+	 *            The action's metrics.
+	 */
+	void unregister(ActionMetrics metrics) {
+		try {
+			server.unregisterMBean(getName(metrics));
+		} catch (JMException e) {
+			// Already gone
+		}
+	}
+
+	/**
+	 * Gets the name of the MBean for an action.
+	 * 
+	 * @param metrics
+	 *            The action's metrics.
+	 * @return The name.
+	 * @throws JMException
+	 *             If a valid name can't be made.
+	 */
+	ObjectName getName(ActionMetrics metrics) throws JMException {
+		return new ObjectName(domain + ":type=SoapAction,url=" + ObjectName.quote(String.valueOf(metrics.getUrl()))
+				+ ",action=" + ObjectName.quote(String.valueOf(metrics.getSoapAction())));
+	}
+}
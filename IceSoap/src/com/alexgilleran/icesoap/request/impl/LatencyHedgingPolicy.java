@@ -0,0 +1,247 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alexgilleran.icesoap.request.HedgingPolicy;
+
+/**
+ * {@link HedgingPolicy} that hedges requests for registered actions after
+ * either a fixed delay, or a percentile of the latency recently seen for that
+ * action (e.g. the 95th, so that only the slowest 5% of requests are hedged).
+ *
+ * Counts of how many hedges have been sent and how many of them won are kept,
+ * so that the delay can be tuned - if most hedges win, the delay is probably
+ * too long, if few do it's probably too short.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class LatencyHedgingPolicy implements HedgingPolicy {
+	/** Number of recent latencies kept for each action. */
+	private static final int WINDOW_SIZE = 256;
+	/** Number of latencies that have to be recorded before the percentile is used. */
+	private static final int MIN_SAMPLES = 20;
+	/** Number of latencies recorded between recalculations of the percentile. */
+	private static final int RECALCULATE_INTERVAL = 16;
+	/** Key used for requests without a SOAP action. */
+	private static final String NO_ACTION = "";
+
+	/** The delay to use when the percentile isn't known. */
+	private final long fixedDelay;
+	/** The percentile of latency to hedge at, or 0 to always use the fixed delay. */
+	private final double percentile;
+	/** Recent latencies, by SOAP action. */
+	private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<String, LatencyWindow>();
+	/** SOAP actions that can be hedged. */
+	private final Set<String> hedgedActions = new CopyOnWriteArraySet<String>();
+	/** Whether every action can be hedged. */
+	private volatile boolean allActionsHedged = false;
+	/** Number of hedges sent. */
+	private final AtomicLong hedgesSent = new AtomicLong();
+	/** Number of hedges that beat the original request. */
+	private final AtomicLong hedgesWon = new AtomicLong();
+
+	/**
+	 * Creates a policy that hedges after a fixed delay.
+	 *
+	 * @param delay
+	 *            The delay in milliseconds.
+	 */
+	public LatencyHedgingPolicy(long delay) {
+		this(delay, 0);
+	}
+
+	/**
+	 * Creates a policy that hedges at a percentile of recent latency.
+	 *
+	 * @param initialDelay
+	 *            The delay to use in milliseconds, until enough requests have
+	 *            been made to work out the percentile.
+	 * @param percentile
+	 *            The percentile to hedge at, between 0 and 100 - e.g. 95 to
+	 *            hedge requests that take longer than 95% of requests do.
+	 */
+	public LatencyHedgingPolicy(long initialDelay, double percentile) {
+		if (percentile < 0 || percentile >= 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+
+		this.fixedDelay = initialDelay;
+		this.percentile = percentile;
+	}
+
+	/**
+	 * Marks a SOAP action as safe to be hedged.
+	 *
+	 * @param soapAction
+	 *            The SOAP action.
+	 */
+	public void addHedgedAction(String soapAction) {
+		hedgedActions.add(soapAction);
+	}
+
+	/**
+	 * Sets whether every action can be hedged - use this if the service being
+	 * called is read-only.
+	 *
+	 * @param allActionsHedged
+	 *            true to hedge every action.
+	 */
+	public void setAllActionsHedged(boolean allActionsHedged) {
+		this.allActionsHedged = allActionsHedged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getHedgeDelay(String soapAction) {
+		if (!allActionsHedged && (soapAction == null || !hedgedActions.contains(soapAction))) {
+			return NO_HEDGE;
+		}
+
+		if (percentile > 0) {
+			LatencyWindow window = latencies.get(key(soapAction));
+
+			if (window != null) {
+				long learned = window.getPercentile();
+
+				if (learned >= 0) {
+					return learned;
+				}
+			}
+		}
+
+		return fixedDelay;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void recordLatency(String soapAction, long latency) {
+		if (percentile <= 0) {
+			return;
+		}
+
+		String key = key(soapAction);
+		LatencyWindow window = latencies.get(key);
+
+		if (window == null) {
+			LatencyWindow newWindow = new LatencyWindow(percentile);
+			window = latencies.putIfAbsent(key, newWindow);
+
+			if (window == null) {
+				window = newWindow;
+			}
+		}
+
+		window.record(latency);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onHedgeSent(String soapAction) {
+		hedgesSent.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onHedgeWon(String soapAction) {
+		hedgesWon.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of hedges that have been sent.
+	 *
+	 * @return The number of hedges sent.
+	 */
+	public long getHedgesSent() {
+		return hedgesSent.get();
+	}
+
+	/**
+	 * Gets the number of hedges whose response arrived before the original
+	 * request's.
+	 *
+	 * @return The number of hedges that won.
+	 */
+	public long getHedgesWon() {
+		return hedgesWon.get();
+	}
+
+	/**
+	 * Gets the key to store latencies for an action under.
+	 *
+	 * @param soapAction
+	 *            The SOAP action - can be null.
+	 * @return The key.
+	 */
+	private static String key(String soapAction) {
+		return soapAction == null ? NO_ACTION : soapAction;
+	}
+
+	/**
+	 * A rolling window of recent latencies, that works out a percentile of
+	 * them every so often.
+	 */
+	private static class LatencyWindow {
+		/** The recent latencies - a ring buffer. */
+		private final long[] samples = new long[WINDOW_SIZE];
+		/** The percentile to work out. */
+		private final double percentile;
+		/** The number of latencies that have been recorded. */
+		private long count = 0;
+		/** The last calculated percentile, or -1 if there aren't enough samples. */
+		private volatile long cachedPercentile = -1;
+
+		/**
+		 * Creates a new window.
+		 *
+		 * @param percentile
+		 *            The percentile to work out.
+		 */
+		public LatencyWindow(double percentile) {
+			this.percentile = percentile;
+		}
+
+		/**
+		 * Records a latency.
+		 *
+		 * @param latency
+		 *            The latency in milliseconds.
+		 */
+		public synchronized void record(long latency) {
+			samples[(int) (count % WINDOW_SIZE)] = latency;
+			count++;
+
+			if (count >= MIN_SAMPLES && (count == MIN_SAMPLES || count % RECALCULATE_INTERVAL == 0)) {
+				int size = (int) Math.min(count, WINDOW_SIZE);
+				long[] sorted = Arrays.copyOf(samples, size);
+				Arrays.sort(sorted);
+
+				int index = (int) Math.ceil(percentile / 100 * size) - 1;
+				cachedPercentile = sorted[Math.max(0, Math.min(index, size - 1))];
+			}
+		}
+
+		/**
+		 * Gets the last calculated percentile.
+		 *
+		 * @return The percentile in milliseconds, or -1 if not enough
+		 *         latencies have been recorded yet.
+		 */
+		public long getPercentile() {
+			return cachedPercentile;
+		}
+	}
+}
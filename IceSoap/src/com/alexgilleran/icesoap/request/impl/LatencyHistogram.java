@@ -0,0 +1,212 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, such as latencies in
+ * nanoseconds or sizes in bytes, in the style of HdrHistogram.
+ *
+ * Values are counted in buckets that are exact below 16, then split each
+ * power of two into 16 linear sub-buckets, so that any recorded value is
+ * reported to within about 6% of itself across the whole range of a long -
+ * in a fixed 960 counters, no matter how many values are recorded. Recording
+ * is a couple of atomic increments, so it's cheap enough to do for every
+ * request from any number of threads.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class LatencyHistogram {
+	/** Number of bits of each value that are kept beyond its magnitude. */
+	private static final int SUB_BUCKET_BITS = 4;
+	/** Number of linear sub-buckets in each power of two. */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Total number of buckets, enough for any positive long. */
+	private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/** The number of values in each bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** The number of values recorded. */
+	private final AtomicLong count = new AtomicLong();
+	/** The sum of the values recorded. */
+	private final AtomicLong sum = new AtomicLong();
+	/** The smallest value recorded. */
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	/** The largest value recorded. */
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Records a value. Negative values, which mean "unknown" in
+	 * {@link RequestMetrics}, are ignored.
+	 *
+	 * @param value
+	 *            The value to record.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			return;
+		}
+
+		counts.incrementAndGet(getBucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		long current;
+		while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+			// Lost a race with another thread - try again
+		}
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// Lost a race with another thread - try again
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the histogram. Values recorded while the snapshot
+	 * is being taken may or may not be included.
+	 *
+	 * @return The snapshot.
+	 */
+	public Snapshot getSnapshot() {
+		long[] snapshotCounts = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshotCounts[i] = counts.get(i);
+			total += snapshotCounts[i];
+		}
+
+		return new Snapshot(snapshotCounts, total, sum.get(), min.get(), max.get());
+	}
+
+	/**
+	 * Gets the index of the bucket a value goes in.
+	 *
+	 * @param value
+	 *            The value - must not be negative.
+	 * @return The bucket index.
+	 */
+	static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the largest value that goes in a bucket.
+	 *
+	 * @param bucket
+	 *            The bucket index.
+	 * @return The largest value.
+	 */
+	static long getBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * An immutable copy of a {@link LatencyHistogram} at a point in time.
+	 */
+	public static class Snapshot {
+		/** The number of values in each bucket. */
+		private final long[] counts;
+		/** The number of values. */
+		private final long count;
+		/** The sum of the values. */
+		private final long sum;
+		/** The smallest value. */
+		private final long min;
+		/** The largest value. */
+		private final long max;
+
+		/**
+		 * Creates a new snapshot.
+		 *
+		 * @param counts
+		 *            The number of values in each bucket.
+		 * @param count
+		 *            The number of values.
+		 * @param sum
+		 *            The sum of the values.
+		 * @param min
+		 *            The smallest value.
+		 * @param max
+		 *            The largest value.
+		 */
+		Snapshot(long[] counts, long count, long sum, long min, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * @return The number of values recorded.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The smallest value recorded, or 0 if there aren't any.
+		 */
+		public long getMin() {
+			return count == 0 ? 0 : min;
+		}
+
+		/**
+		 * @return The largest value recorded, or 0 if there aren't any.
+		 */
+		public long getMax() {
+			return count == 0 ? 0 : max;
+		}
+
+		/**
+		 * @return The mean of the values recorded, or 0 if there aren't any.
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * Gets the value that the passed percentage of recorded values are at
+		 * or below, to within the histogram's precision.
+		 *
+		 * @param percentile
+		 *            The percentile, from 0 to 100 - e.g. 99.9.
+		 * @return The value, or 0 if there aren't any.
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			} else if (percentile <= 0) {
+				return getMin();
+			}
+
+			long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+			long seen = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+
+				if (seen >= target) {
+					return Math.max(getMin(), Math.min(getBucketUpperBound(i), getMax()));
+				}
+			}
+
+			return getMax();
+		}
+	}
+}
@@ -1,14 +1,18 @@
 package com.alexgilleran.icesoap.request.impl;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-
-import android.os.AsyncTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.observer.SOAPListObserver;
 import com.alexgilleran.icesoap.observer.registry.ListObserverRegistry;
 import com.alexgilleran.icesoap.parser.IceSoapListParser;
 import com.alexgilleran.icesoap.parser.ItemObserver;
+import com.alexgilleran.icesoap.parser.ListCursor;
 import com.alexgilleran.icesoap.parser.impl.IceSoapListParserImpl;
 import com.alexgilleran.icesoap.request.ListRequest;
 import com.alexgilleran.icesoap.request.SOAPRequester;
@@ -23,10 +27,21 @@ import com.alexgilleran.icesoap.request.SOAPRequester;
  */
 public class ListRequestImpl<ResultType, SOAPFaultType> extends RequestImpl<List<ResultType>, SOAPFaultType> implements
 		ListRequest<ResultType, SOAPFaultType> {
+	/**
+	 * The most items that can be waiting to be passed to observers when items
+	 * aren't retained - once this many are waiting, parsing pauses until the
+	 * callback thread catches up.
+	 */
+	private static final int MAX_PENDING_ITEMS = 16;
+
 	/** The parser to use to parse the result. */
 	private IceSoapListParser<ResultType> parser;
 	/** The registry to use to dispatch item-related events. */
 	private ListObserverRegistry<ResultType, SOAPFaultType> itemRegistry = new ListObserverRegistry<ResultType, SOAPFaultType>();
+	/** Whether parsed items are kept in the result list. */
+	private boolean retainItems = true;
+	/** The number of items parsed by the current execution. */
+	private volatile long itemCount = 0;
 
 	/**
 	 * Creates a new request, automatically creating the parser.
@@ -106,49 +121,151 @@ public class ListRequestImpl<ResultType, SOAPFaultType> extends RequestImpl<List
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected AsyncTask<Void, ResultType, List<ResultType>> createTask() {
-		return new ListRequestTask();
+	public void setRetainItems(boolean retainItems) {
+		this.retainItems = retainItems;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * List results are never cached or coalesced, as observers expect to be
+	 * told about each item as it's parsed.
+	 */
+	@Override
+	protected boolean isResultShareable() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected long getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If items aren't being retained, this pulls them through a
+	 * {@link ListCursor} so that each one can be dropped as soon as observers
+	 * have seen it. Items are handed to the callback thread through a bounded
+	 * buffer of {@link #MAX_PENDING_ITEMS}, so the pace of the parse is set by
+	 * how quickly observers deal with them.
+	 */
+	@Override
+	protected List<ResultType> parseResult(InputStream responseData) throws XMLParsingException {
+		if (retainItems) {
+			return super.parseResult(responseData);
+		}
+
+		ListCursor<ResultType> cursor = parser.parseItems(responseData);
+		while (cursor.hasNext()) {
+			cursor.next();
+		}
+
+		return new ArrayList<ResultType>();
 	}
 
 	/**
-	 * Subclass of {@link RequestImpl} RequestTask that caters for mid-request
-	 * events on the UI thread through the use of progress updates.
+	 * {@inheritDoc}
 	 */
-	private class ListRequestTask extends RequestTask<ResultType> {
+	@Override
+	protected RequestRunner<ResultType> createRunner() {
+		return new ListRequestRunner();
+	}
+
+	/**
+	 * Subclass of {@link RequestImpl} RequestRunner that caters for mid-request
+	 * events on the callback thread through the use of progress reports.
+	 */
+	private class ListRequestRunner extends RequestRunner<ResultType> {
+		/**
+		 * Permits for items waiting to be passed to observers, or null if
+		 * items are being retained and so can't be bounded anyway.
+		 */
+		private Semaphore pendingItems;
+
 		/**
 		 * {@inheritDoc}
 		 * 
 		 * Adds an item observer to the list parser so we can take the new item
 		 * events from the parser, then re-broadcast them to the request's
-		 * observers on the UI thread.
+		 * observers on the callback thread.
 		 */
 		@Override
 		protected void onPreExecute() {
+			itemCount = 0;
+			pendingItems = retainItems ? null : new Semaphore(MAX_PENDING_ITEMS);
 			parser.registerItemObserver(itemObserver);
 		}
 
 		/**
-		 * Sends notifications about new items on the UI thread.
+		 * {@inheritDoc}
+		 * 
+		 * Removes this execution's item observer from the list parser, so
+		 * that later executions don't report items through it as well.
+		 */
+		@Override
+		protected void onPostExecute(List<ResultType> returnedResult) {
+			parser.deregisterItemObserver(itemObserver);
+
+			super.onPostExecute(returnedResult);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * Removes this execution's item observer from the list parser, so
+		 * that later executions don't report items through it as well.
+		 */
+		@Override
+		protected void onCancelled() {
+			parser.deregisterItemObserver(itemObserver);
+
+			super.onCancelled();
+		}
+
+		/**
+		 * Sends notifications about new items on the callback thread.
 		 * 
 		 * @param item
-		 *            The item that's just been parsed, on index 0 - all other
-		 *            indexes are unused.
+		 *            The item that's just been parsed.
 		 */
 		@Override
-		protected void onProgressUpdate(ResultType... item) {
-			itemRegistry.notifyNewItem(ListRequestImpl.this, item[0]);
+		protected void onProgressUpdate(ResultType item) {
+			try {
+				itemRegistry.notifyNewItem(ListRequestImpl.this, item);
+			} finally {
+				if (pendingItems != null) {
+					pendingItems.release();
+				}
+			}
 		}
 
 		/**
-		 * Parser observer used to catch new items from the parser, then use the
-		 * {@link AsyncTask#publishProgress(Object...))} to re-broadcast on the
-		 * UI thread.
+		 * Parser observer used to catch new items from the parser, then use
+		 * {@link #reportProgress(Object)} to re-broadcast on the callback
+		 * thread. If items aren't being retained, this waits while
+		 * {@link ListRequestImpl#MAX_PENDING_ITEMS} are already waiting for the
+		 * callback thread.
 		 */
 		private ItemObserver<ResultType> itemObserver = new ItemObserver<ResultType>() {
-			@SuppressWarnings("unchecked")
 			@Override
 			public void onNewItem(ResultType item) {
-				publishProgress(item);
+				itemCount++;
+
+				if (pendingItems != null) {
+					try {
+						pendingItems.acquire();
+					} catch (InterruptedException e) {
+						// Cancelled, so stop parsing
+						Thread.currentThread().interrupt();
+						throw new CancellationException();
+					}
+				}
+
+				reportProgress(item);
 			}
 		};
 	}
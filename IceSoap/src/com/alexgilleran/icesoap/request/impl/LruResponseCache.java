@@ -0,0 +1,244 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.ResponseCache;
+
+/**
+ * {@link ResponseCache} held in memory, that evicts the least recently used
+ * entry once it's full. Entries expire after a time-to-live that can be set
+ * for each SOAP action - actions without a time-to-live of their own use the
+ * default, and actions with a time-to-live of 0 aren't cached at all.
+ *
+ * Keys are made from the url, SOAP action and a SHA-1 digest of the
+ * serialized envelope, so the envelope is never held as a String.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class LruResponseCache implements ResponseCache {
+	/** The cached entries, in least to most recently used order - guarded by itself. */
+	private final Map<String, Entry> entries;
+	/** Time-to-live for specific SOAP actions, in milliseconds. */
+	private final Map<String, Long> actionTtls = new ConcurrentHashMap<String, Long>();
+	/** Default time-to-live, in milliseconds. */
+	private volatile long defaultTtl;
+	/** Number of lookups that found an entry. */
+	private final AtomicLong hits = new AtomicLong();
+	/** Number of lookups that didn't find an entry. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxEntries
+	 *            The maximum number of responses to hold.
+	 * @param defaultTtl
+	 *            How long responses are cached for by default, in
+	 *            milliseconds - 0 to only cache actions that have a
+	 *            time-to-live set with {@link #setTtl(String, long)}.
+	 */
+	public LruResponseCache(final int maxEntries, long defaultTtl) {
+		this.defaultTtl = defaultTtl;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 4215806213371556617L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Sets how long responses for a SOAP action are cached for.
+	 *
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @param ttl
+	 *            The time-to-live in milliseconds, or 0 to not cache the
+	 *            action.
+	 */
+	public void setTtl(String soapAction, long ttl) {
+		actionTtls.put(soapAction, ttl);
+	}
+
+	/**
+	 * Sets how long responses for actions without their own time-to-live are
+	 * cached for.
+	 *
+	 * @param ttl
+	 *            The time-to-live in milliseconds, or 0 to not cache them.
+	 */
+	public void setDefaultTtl(long ttl) {
+		this.defaultTtl = ttl;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getKey(String url, String soapAction, SOAPEnvelope envelope) throws IOException {
+		return EnvelopeFingerprint.getKey(url, soapAction, envelope);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getResponse(String key) {
+		return (byte[]) get(key, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putResponse(String key, String soapAction, byte[] response) {
+		put(key, soapAction, response, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object getResult(String key) {
+		return get(key, true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putResult(String key, String soapAction, Object result) {
+		put(key, soapAction, result, true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups that have found a cached response.
+	 *
+	 * @return The number of hits.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups that haven't found a cached response.
+	 *
+	 * @return The number of misses.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Looks up an entry.
+	 *
+	 * @param key
+	 *            The key of the entry.
+	 * @param parsed
+	 *            Whether to look for a parsed result rather than raw bytes.
+	 * @return The cached value, or null if there isn't an unexpired one.
+	 */
+	private Object get(String key, boolean parsed) {
+		String fullKey = getFullKey(key, parsed);
+		Entry entry;
+
+		synchronized (entries) {
+			entry = entries.get(fullKey);
+
+			if (entry != null && System.currentTimeMillis() >= entry.expires) {
+				entries.remove(fullKey);
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Adds an entry, if its action is cacheable.
+	 *
+	 * @param key
+	 *            The key of the entry.
+	 * @param soapAction
+	 *            The SOAP action of the request.
+	 * @param value
+	 *            The value to cache.
+	 * @param parsed
+	 *            Whether the value is a parsed result rather than raw bytes.
+	 */
+	private void put(String key, String soapAction, Object value, boolean parsed) {
+		Long actionTtl = soapAction == null ? null : actionTtls.get(soapAction);
+		long ttl = actionTtl == null ? defaultTtl : actionTtl;
+
+		if (ttl <= 0 || value == null) {
+			return;
+		}
+
+		Entry entry = new Entry(value, System.currentTimeMillis() + ttl);
+
+		synchronized (entries) {
+			entries.put(getFullKey(key, parsed), entry);
+		}
+	}
+
+	/**
+	 * Gets the key to store an entry under, so that raw and parsed responses
+	 * to the same request don't collide.
+	 *
+	 * @param key
+	 *            The key of the request.
+	 * @param parsed
+	 *            Whether the entry is a parsed result.
+	 * @return The full key.
+	 */
+	private static String getFullKey(String key, boolean parsed) {
+		return (parsed ? 'P' : 'R') + key;
+	}
+
+	/**
+	 * A cached value and when it expires.
+	 */
+	private static class Entry {
+		/** The cached value. */
+		private final Object value;
+		/** When the value expires, from System.currentTimeMillis(). */
+		private final long expires;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param value
+		 *            The cached value.
+		 * @param expires
+		 *            When the value expires.
+		 */
+		public Entry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
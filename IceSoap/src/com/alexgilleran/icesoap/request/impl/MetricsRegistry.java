@@ -0,0 +1,189 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.request.RequestListener;
+
+/**
+ * Keeps latency histograms and success/fault/error counts for every SOAP
+ * action that's requested, so that percentiles can be read from inside the
+ * app rather than worked out from logs. Set it as the listener of a
+ * {@link com.alexgilleran.icesoap.request.RequestFactory} or
+ * {@link com.alexgilleran.icesoap.request.Request}:
+ * 
+ * <pre>
+ * MetricsRegistry metrics = new MetricsRegistry();
+ * requestFactory.setRequestListener(metrics);
+ * ...
+ * ActionMetrics quotes = metrics.getActionMetrics(url, &quot;GetQuote&quot;);
+ * long p99 = quotes.getLatency().getValueAtPercentile(99);
+ * </pre>
+ * 
+ * Recording is lock-free, and takes the same small amount of memory per
+ * action no matter how many requests are made. Where JMX is available (i.e.
+ * not on Android), the metrics for each action can also be published as
+ * MBeans with {@link #registerMBeans()}.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class MetricsRegistry implements RequestListener {
+	/** The metrics for each action, keyed by url and action. */
+	private final ConcurrentMap<String, ActionMetrics> actions = new ConcurrentHashMap<String, ActionMetrics>();
+	/** The domain MBeans are registered under. */
+	private final String jmxDomain;
+	/** Publishes metrics over JMX, or null if they aren't being published. */
+	private volatile JmxExporter jmxExporter;
+
+	/**
+	 * Creates a new registry, which registers any MBeans under the
+	 * "com.alexgilleran.icesoap" domain.
+	 */
+	public MetricsRegistry() {
+		this("com.alexgilleran.icesoap");
+	}
+
+	/**
+	 * Creates a new registry - use a different domain for each registry
+	 * that's registered with JMX.
+	 * 
+	 * @param jmxDomain
+	 *            The domain to register MBeans under.
+	 */
+	public MetricsRegistry(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onRequestFinished(RequestMetrics metrics) {
+		getOrCreate(metrics.getUrl(), metrics.getSoapAction()).record(metrics);
+	}
+
+	/**
+	 * Gets the metrics for one SOAP action.
+	 * 
+	 * @param url
+	 *            The url the action was requested from.
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @return The metrics, or null if no request for the action has finished.
+	 */
+	public ActionMetrics getActionMetrics(String url, String soapAction) {
+		return actions.get(getKey(url, soapAction));
+	}
+
+	/**
+	 * @return The metrics for every action that's had a request finish.
+	 */
+	public List<ActionMetrics> getAllActionMetrics() {
+		return Collections.unmodifiableList(new ArrayList<ActionMetrics>(actions.values()));
+	}
+
+	/**
+	 * Throws away all the metrics gathered so far. Requests that are finishing
+	 * as this is called may be counted either before or after the reset.
+	 */
+	public void reset() {
+		JmxExporter exporter = jmxExporter;
+
+		for (ActionMetrics metrics : actions.values()) {
+			if (actions.remove(getKey(metrics.getUrl(), metrics.getSoapAction()), metrics) && exporter != null) {
+				exporter.unregister(metrics);
+			}
+		}
+	}
+
+	/**
+	 * Publishes the metrics for each action as an MBean on the platform MBean
+	 * server, including actions that are first requested after this is
+	 * called. This doesn't work on Android, which has no JMX.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If JMX isn't available.
+	 */
+	public synchronized void registerMBeans() {
+		if (jmxExporter != null) {
+			return;
+		}
+
+		JmxExporter exporter;
+		try {
+			exporter = new JmxExporter(jmxDomain);
+		} catch (LinkageError e) {
+			throw new UnsupportedOperationException("JMX isn't available on this platform", e);
+		}
+
+		// Set this first so that actions added while registering aren't missed
+		jmxExporter = exporter;
+
+		for (ActionMetrics metrics : actions.values()) {
+			exporter.register(metrics);
+		}
+	}
+
+	/**
+	 * Removes all the MBeans added by {@link #registerMBeans()}.
+	 */
+	public synchronized void unregisterMBeans() {
+		JmxExporter exporter = jmxExporter;
+
+		if (exporter != null) {
+			jmxExporter = null;
+
+			for (ActionMetrics metrics : actions.values()) {
+				exporter.unregister(metrics);
+			}
+		}
+	}
+
+	/**
+	 * Gets the metrics for an action, creating them if this is the first
+	 * request for it.
+	 * 
+	 * @param url
+	 *            The url.
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @return The metrics.
+	 */
+	private ActionMetrics getOrCreate(String url, String soapAction) {
+		String key = getKey(url, soapAction);
+		ActionMetrics metrics = actions.get(key);
+
+		if (metrics == null) {
+			ActionMetrics created = new ActionMetrics(url, soapAction);
+			metrics = actions.putIfAbsent(key, created);
+
+			if (metrics == null) {
+				metrics = created;
+
+				JmxExporter exporter = jmxExporter;
+				if (exporter != null) {
+					exporter.register(metrics);
+				}
+			}
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * Gets the key for an action in {@link #actions}.
+	 * 
+	 * @param url
+	 *            The url.
+	 * @param soapAction
+	 *            The SOAP action.
+	 * @return The key.
+	 */
+	private static String getKey(String url, String soapAction) {
+		return soapAction + ' ' + url;
+	}
+}
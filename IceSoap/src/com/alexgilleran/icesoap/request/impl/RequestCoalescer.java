@@ -0,0 +1,205 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alexgilleran.icesoap.exception.SOAPException;
+
+/**
+ * Keeps track of requests that are in flight, so that identical requests made
+ * at the same time can share a single HTTP exchange and parse rather than
+ * each making their own.
+ *
+ * The first request for a key becomes the leader and is performed as normal.
+ * Identical requests that come along before it finishes wait for it, and are
+ * given the same result, SOAP fault or exception. If the leader is cancelled,
+ * the requests waiting on it are performed on their own instead.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class RequestCoalescer {
+	/** The flights that are currently in progress, by request key. */
+	private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+	/** Number of requests that were served by another request's flight. */
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * Starts a flight for a request, or joins the flight of an identical one
+	 * that's already in progress.
+	 *
+	 * @param key
+	 *            The key of the request.
+	 * @param flight
+	 *            A new flight to start if there isn't one already.
+	 * @return null if the passed flight was started and the caller must
+	 *         perform the request and then call
+	 *         {@link #land(String, Flight, Object, Object, SOAPException, boolean)}
+	 *         , otherwise the flight that's already in progress.
+	 */
+	Flight join(String key, Flight flight) {
+		return flights.putIfAbsent(key, flight);
+	}
+
+	/**
+	 * Finishes a flight started with {@link #join(String, Flight)}, handing
+	 * its outcome to every request waiting on it.
+	 *
+	 * @param key
+	 *            The key of the request.
+	 * @param flight
+	 *            The flight that was started.
+	 * @param result
+	 *            The parsed result, or null if there wasn't one.
+	 * @param soapFault
+	 *            The SOAP fault, or null if there wasn't one.
+	 * @param exception
+	 *            The exception, or null if there wasn't one.
+	 * @param completed
+	 *            false if the leader was cancelled and its outcome shouldn't
+	 *            be shared.
+	 */
+	void land(String key, Flight flight, Object result, Object soapFault, SOAPException exception,
+			boolean completed) {
+		flights.remove(key, flight);
+		flight.finish(result, soapFault, exception, completed);
+	}
+
+	/**
+	 * Records that a request was served by another request's flight.
+	 */
+	void recordCoalesced() {
+		coalescedCount.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of requests that were served by an identical request's
+	 * exchange rather than making their own.
+	 *
+	 * @return The number of coalesced requests.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * Gets the number of flights that are currently in progress.
+	 *
+	 * @return The number of flights.
+	 */
+	public int getInFlightCount() {
+		return flights.size();
+	}
+
+	/**
+	 * A request that's in flight, and eventually its outcome.
+	 */
+	static class Flight {
+		/**
+		 * Everything that has to match for two requests to share an outcome,
+		 * besides their key.
+		 */
+		private final Object[] signature;
+		/** Counted down when the flight has finished. */
+		private final CountDownLatch landed = new CountDownLatch(1);
+		/** The parsed result. */
+		private volatile Object result;
+		/** The SOAP fault. */
+		private volatile Object soapFault;
+		/** The exception. */
+		private volatile SOAPException exception;
+		/** Whether the leader completed rather than being cancelled. */
+		private volatile boolean completed;
+
+		/**
+		 * Creates a new flight.
+		 *
+		 * @param signature
+		 *            Everything that has to match for two requests to share
+		 *            an outcome, besides their key - e.g. the parser and the
+		 *            SOAP fault class. Compared by identity.
+		 */
+		Flight(Object... signature) {
+			this.signature = signature;
+		}
+
+		/**
+		 * Determines whether a request with the passed flight can share this
+		 * flight's outcome.
+		 *
+		 * @param other
+		 *            The other request's flight.
+		 * @return true if the outcome can be shared.
+		 */
+		boolean isCompatible(Flight other) {
+			if (signature.length != other.signature.length) {
+				return false;
+			}
+
+			for (int i = 0; i < signature.length; i++) {
+				if (signature[i] != other.signature[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Waits for the flight to finish.
+		 *
+		 * @return true if the leader completed and its outcome can be used,
+		 *         false if it was cancelled.
+		 * @throws InterruptedException
+		 *             If the waiting thread is interrupted.
+		 */
+		boolean await() throws InterruptedException {
+			landed.await();
+			return completed;
+		}
+
+		/**
+		 * Records the outcome of the flight and releases everything waiting
+		 * on it.
+		 *
+		 * @param result
+		 *            The parsed result.
+		 * @param soapFault
+		 *            The SOAP fault.
+		 * @param exception
+		 *            The exception.
+		 * @param completed
+		 *            Whether the leader completed.
+		 */
+		private void finish(Object result, Object soapFault, SOAPException exception, boolean completed) {
+			this.result = result;
+			this.soapFault = soapFault;
+			this.exception = exception;
+			this.completed = completed;
+			landed.countDown();
+		}
+
+		/**
+		 * @return The parsed result.
+		 */
+		Object getResult() {
+			return result;
+		}
+
+		/**
+		 * @return The SOAP fault.
+		 */
+		Object getSOAPFault() {
+			return soapFault;
+		}
+
+		/**
+		 * @return The exception.
+		 */
+		SOAPException getException() {
+			return exception;
+		}
+	}
+}
@@ -3,25 +3,50 @@
  */
 package com.alexgilleran.icesoap.request.impl;
 
+import java.util.concurrent.Executor;
+
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.HedgingPolicy;
 import com.alexgilleran.icesoap.request.ListRequest;
 import com.alexgilleran.icesoap.request.Request;
 import com.alexgilleran.icesoap.request.SOAP11ListRequest;
 import com.alexgilleran.icesoap.request.SOAP11Request;
 import com.alexgilleran.icesoap.request.RequestFactory;
+import com.alexgilleran.icesoap.request.RequestListener;
+import com.alexgilleran.icesoap.request.ResponseCache;
+import com.alexgilleran.icesoap.request.RetryPolicy;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 
 /**
  * Factory for requests - retains a single instance of {@link SOAPRequester} to
- * save object creation. Doesn't retain state besides the {@link SOAPRequester},
- * so can be used as a Singleton if desired.
+ * save object creation. Besides the {@link SOAPRequester}, the only state it
+ * holds is the configuration it passes to each request it builds - executors,
+ * retry and hedging policies, response cache, request listener and request
+ * coalescer - so it can be used as a Singleton if desired. The configuration
+ * can be changed while the factory is shared between threads, but it's only
+ * read as each request is built, so requests that have already been built
+ * keep the configuration they were built with.
  * 
  * @author Alex Gilleran
  * 
  */
 public class RequestFactoryImpl implements RequestFactory {
 	/** Requester to perform soap requests. */
-	private SOAPRequester soapRequester;
+	private volatile SOAPRequester soapRequester;
+	/** Executor to perform requests on, or null to use AsyncTask. */
+	private volatile Executor executor;
+	/** Executor to notify observers on, or null to use the request thread. */
+	private volatile Executor callbackExecutor;
+	/** Policy for retrying failed requests, or null to never retry. */
+	private volatile RetryPolicy retryPolicy;
+	/** Policy for hedging requests, or null to never hedge. */
+	private volatile HedgingPolicy hedgingPolicy;
+	/** Cache of parsed results, or null to not cache them. */
+	private volatile ResponseCache responseCache;
+	/** Told how long requests took, or null to not measure them. */
+	private volatile RequestListener requestListener;
+	/** Coalesces identical requests, or null if they're not coalesced. */
+	private volatile RequestCoalescer requestCoalescer;
 
 	/**
 	 * Instantiates a new {@link RequestFactoryImpl} with the default Apache
@@ -42,6 +67,50 @@ public class RequestFactoryImpl implements RequestFactory {
 		this.soapRequester = requester;
 	}
 
+	/**
+	 * Instantiates a new RequestFactoryImpl, which will build requests that
+	 * use the supplied SOAPRequester and run on the supplied executors.
+	 * 
+	 * @param requester
+	 *            The requester to use.
+	 * @param executor
+	 *            The executor to perform requests on, or null to use
+	 *            AsyncTask.
+	 * @param callbackExecutor
+	 *            The executor to notify observers on, or null to notify them
+	 *            on the thread that performed the request.
+	 */
+	public RequestFactoryImpl(SOAPRequester requester, Executor executor, Executor callbackExecutor) {
+		this(requester);
+
+		this.executor = executor;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * Passes this factory's settings to a newly built request: its executors,
+	 * retry policy, hedging policy, response cache and request listener, and
+	 * its request coalescer if the request can use one.
+	 *
+	 * @param request
+	 *            The request.
+	 * @return The same request.
+	 */
+	private <RequestType extends Request<?, ?>> RequestType configure(RequestType request) {
+		request.setExecutor(executor);
+		request.setCallbackExecutor(callbackExecutor);
+		request.setRetryPolicy(retryPolicy);
+		request.setHedgingPolicy(hedgingPolicy);
+		request.setResponseCache(responseCache);
+		request.setRequestListener(requestListener);
+
+		if (request instanceof RequestImpl) {
+			((RequestImpl<?, ?>) request).setRequestCoalescer(requestCoalescer);
+		}
+
+		return request;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -49,8 +118,8 @@ public class RequestFactoryImpl implements RequestFactory {
 	public <ReturnType, SOAPFaultType> Request<ReturnType, SOAPFaultType> buildRequest(String url,
 			SOAPEnvelope soapEnvelope, String soapAction, Class<ReturnType> resultClass,
 			Class<SOAPFaultType> soapFaultType) {
-		return new RequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass, soapFaultType,
-				soapRequester);
+		return configure(new RequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
+				soapFaultType, soapRequester));
 	}
 
 	/**
@@ -60,8 +129,8 @@ public class RequestFactoryImpl implements RequestFactory {
 	public <ReturnType, SOAPFaultType> ListRequest<ReturnType, SOAPFaultType> buildListRequest(String url,
 			SOAPEnvelope soapEnvelope, String soapAction, Class<ReturnType> resultClass,
 			Class<SOAPFaultType> soapFaultType) {
-		return new ListRequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
-				soapFaultType, soapRequester);
+		return configure(new ListRequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
+				soapFaultType, soapRequester));
 	}
 
 	/**
@@ -70,7 +139,7 @@ public class RequestFactoryImpl implements RequestFactory {
 	@Override
 	public <ReturnType> SOAP11Request<ReturnType> buildRequest(String url, SOAPEnvelope soapEnvelope,
 			String soapAction, Class<ReturnType> resultClass) {
-		return new SOAP11RequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester);
+		return configure(new SOAP11RequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester));
 	}
 
 	/**
@@ -79,7 +148,8 @@ public class RequestFactoryImpl implements RequestFactory {
 	@Override
 	public <ReturnType> SOAP11ListRequest<ReturnType> buildListRequest(String url, SOAPEnvelope soapEnvelope,
 			String soapAction, Class<ReturnType> resultClass) {
-		return new SOAP11ListRequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester);
+		return configure(new SOAP11ListRequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass,
+				soapRequester));
 	}
 
 	/**
@@ -97,4 +167,130 @@ public class RequestFactoryImpl implements RequestFactory {
 	public void setSOAPRequester(SOAPRequester soapRequester) {
 		this.soapRequester = soapRequester;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Executor getCallbackExecutor() {
+		return callbackExecutor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public HedgingPolicy getHedgingPolicy() {
+		return hedgingPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRequestListener(RequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RequestListener getRequestListener() {
+		return requestListener;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void setCoalesceRequests(boolean coalesceRequests) {
+		if (!coalesceRequests) {
+			requestCoalescer = null;
+		} else if (requestCoalescer == null) {
+			requestCoalescer = new RequestCoalescer();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isCoalesceRequests() {
+		return requestCoalescer != null;
+	}
+
+	/**
+	 * Gets the coalescer shared by requests built by this factory, to see how
+	 * many requests have been coalesced.
+	 * 
+	 * @return The coalescer, or null if requests aren't coalesced.
+	 */
+	public RequestCoalescer getRequestCoalescer() {
+		return requestCoalescer;
+	}
 }
@@ -0,0 +1,163 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.alexgilleran.icesoap.exception.SOAPException;
+import com.alexgilleran.icesoap.observer.SOAPObserver;
+import com.alexgilleran.icesoap.request.Request;
+import com.alexgilleran.icesoap.request.RequestFuture;
+
+/**
+ * Implementation of {@link RequestFuture} that observes a request and
+ * completes when it does.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <ResultType>
+ *            The type of the result of the request.
+ * @param <SOAPFaultType>
+ *            The type of the SOAP fault of the request.
+ */
+public class RequestFutureImpl<ResultType, SOAPFaultType> extends FutureTask<ResultType> implements
+		RequestFuture<ResultType, SOAPFaultType>, SOAPObserver<ResultType, SOAPFaultType> {
+	/** The request being observed. */
+	private final Request<ResultType, SOAPFaultType> request;
+	/**
+	 * Listeners waiting for completion, paired with their executors - null
+	 * once the future has completed.
+	 */
+	private List<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * Creates a new future for a request - note that this doesn't register
+	 * itself as an observer of the request.
+	 *
+	 * @param request
+	 *            The request.
+	 */
+	public RequestFutureImpl(final Request<ResultType, SOAPFaultType> request) {
+		super(new Callable<ResultType>() {
+			@Override
+			public ResultType call() throws Exception {
+				if (request.getException() != null) {
+					throw (Exception) request.getException();
+				}
+
+				return request.getResult();
+			}
+		});
+
+		this.request = request;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Completes the future with the request's result or exception.
+	 */
+	@Override
+	public void onCompletion(Request<ResultType, SOAPFaultType> request) {
+		run();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Does nothing - the exception is picked up when the request completes.
+	 */
+	@Override
+	public void onException(Request<ResultType, SOAPFaultType> request, SOAPException e) {
+		// Do nothing
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Cancelling the future also cancels the request.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+		if (cancelled) {
+			request.cancel();
+		}
+
+		return cancelled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addListener(Runnable listener, Executor executor) {
+		synchronized (this) {
+			if (listeners != null) {
+				listeners.add(new Listener(listener, executor));
+				return;
+			}
+		}
+
+		executor.execute(listener);
+	}
+
+	/**
+	 * Runs all the listeners that have been added.
+	 */
+	@Override
+	protected void done() {
+		List<Listener> listenersToRun;
+
+		synchronized (this) {
+			listenersToRun = listeners;
+			listeners = null;
+		}
+
+		for (Listener listener : listenersToRun) {
+			listener.executor.execute(listener.runnable);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SOAPFaultType getSOAPFault() {
+		return request.getSOAPFault();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Request<ResultType, SOAPFaultType> getRequest() {
+		return request;
+	}
+
+	/**
+	 * A listener and the executor to run it on.
+	 */
+	private static class Listener {
+		/** The listener. */
+		private final Runnable runnable;
+		/** The executor to run it on. */
+		private final Executor executor;
+
+		/**
+		 * Creates a new listener.
+		 *
+		 * @param runnable
+		 *            The listener.
+		 * @param executor
+		 *            The executor to run it on.
+		 */
+		public Listener(Runnable runnable, Executor executor) {
+			this.runnable = runnable;
+			this.executor = executor;
+		}
+	}
+}
@@ -1,13 +1,21 @@
 package com.alexgilleran.icesoap.request.impl;
 
+import com.alexgilleran.icesoap.annotation.XMLObject;
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
 import com.alexgilleran.icesoap.exception.SOAPException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.observer.SOAPObserver;
 import com.alexgilleran.icesoap.observer.registry.ObserverRegistry;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
-import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.impl.ParserRegistry;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
+import com.alexgilleran.icesoap.request.HedgingPolicy;
 import com.alexgilleran.icesoap.request.Request;
+import com.alexgilleran.icesoap.request.RequestFuture;
+import com.alexgilleran.icesoap.request.RequestListener;
+import com.alexgilleran.icesoap.request.ResponseCache;
+import com.alexgilleran.icesoap.request.RetryPolicy;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 
 import android.os.AsyncTask;
@@ -16,7 +24,11 @@ import android.os.Build;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Implementation of {@link Request}
@@ -44,23 +56,66 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	/** Message for 500 error exception, if no SOAPFault was parsed. */
 	public static final String MESSAGE_ERROR_500_FAILED_SOAPFAULT = MESSAGE_ERROR_500
 			+ ". No returned soapfault could be parsed.";
+	/** Message for submitting a request that's already executing. */
+	private static final String MESSAGE_ALREADY_EXECUTING = "Request is already executing - wait for it to finish before submitting it again";
+	/** Message for executions that the executor wouldn't run. */
+	private static final String MESSAGE_REJECTED = "The executor rejected the request";
+	/** Runs tasks straight away on whichever thread hands them over. */
+	private static final Executor CALLING_THREAD_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
 
+	/** Futures handed out by {@link #submit()}, so they can be cancelled. */
+	private List<RequestFutureImpl<ResultType, SOAPFaultType>> futures = new CopyOnWriteArrayList<RequestFutureImpl<ResultType, SOAPFaultType>>();
 	/** Registry of observers to send events to. */
 	private ObserverRegistry<ResultType, SOAPFaultType> registry = new ObserverRegistry<ResultType, SOAPFaultType>();
 	/** Parser to use to parse the response. */
 	private IceSoapParser<ResultType> parser;
+	/**
+	 * The class the response is parsed into, or null if the parser was passed
+	 * in rather than taken from the {@link ParserRegistry}.
+	 */
+	private Class<ResultType> resultClass;
 	/** The URL to post the request to. */
 	private String url;
 	/** The envelope to serialize and POST. */
 	private SOAPEnvelope soapEnv;
-	/** The {@link AsyncTask} that the request will be performed within. */
-	private RequestTask<?> currentTask = null;
+	/** The runner performing the current execution of the request, if any. */
+	private volatile RequestRunner<?> currentRunner = null;
 	/** The result of the request. */
-	private ResultType result;
+	private volatile ResultType result;
 	/** Flag - is the request complete? */
-	private boolean complete = false;
+	private volatile boolean complete = false;
 	/** Flag - is the request currently executing? */
-	private boolean executing = false;
+	private volatile boolean executing = false;
+	/**
+	 * The executor to perform the request on, or null to use
+	 * {@link AsyncTask}'s.
+	 */
+	private Executor executor;
+	/**
+	 * The executor to notify observers on, or null to notify them on the
+	 * thread that performed the request. Only used if {@link #executor} is set.
+	 */
+	private Executor callbackExecutor;
+	/** Policy for retrying failed attempts, or null to never retry. */
+	private volatile RetryPolicy retryPolicy;
+	/** Policy for hedging the request, or null to never hedge. */
+	private volatile HedgingPolicy hedgingPolicy;
+	/** Cache of parsed results, or null to not cache them. */
+	private volatile ResponseCache responseCache;
+	/**
+	 * Shares the exchange of identical requests made at the same time, or
+	 * null to always make this request on its own.
+	 */
+	private volatile RequestCoalescer requestCoalescer;
+	/** Told how long each phase took, or null to not measure them. */
+	private volatile RequestListener requestListener;
+	/** Aborts the HTTP exchange that's currently in progress, if any. */
+	private volatile AbortHandle currentAbortHandle;
 	/** Class to perform SOAP requests. */
 	private SOAPRequester soapRequester;
 	/** The SOAPAction to perform. */
@@ -71,12 +126,12 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 */
 	private Class<SOAPFaultType> soapFaultClass;
 	/** A SOAPFault, if one has been encountered. */
-	private SOAPFaultType soapFault;
+	private volatile SOAPFaultType soapFault;
 	/**
 	 * If an exception is caught, it is stored here until it can be thrown on
 	 * the UI thread.
 	 */
-	private SOAPException caughtException = null;
+	private volatile SOAPException caughtException = null;
 
 	/** Whether this request is in debug mode. **/
 	private boolean debugMode = false;
@@ -105,7 +160,9 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 */
 	protected RequestImpl(String url, SOAPEnvelope soapEnv, String soapAction, Class<ResultType> resultClass,
 			Class<SOAPFaultType> soapFaultClass, SOAPRequester requester) {
-		this(url, soapEnv, soapAction, new IceSoapParserImpl<ResultType>(resultClass), soapFaultClass, requester);
+		this(url, soapEnv, soapAction, ParserRegistry.getInstance().getParser(resultClass), soapFaultClass,
+				requester);
+		this.resultClass = resultClass;
 	}
 
 	/**
@@ -137,12 +194,13 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	}
 
 	/**
-	 * Creates a new extension of {@link AsyncTask} to execute.
+	 * Creates a new {@link RequestRunner} to perform an execution of the
+	 * request.
 	 * 
-	 * @return The appropriate {@link AsyncTask}
+	 * @return The appropriate {@link RequestRunner}
 	 */
-	protected AsyncTask<Void, ?, ResultType> createTask() {
-		return new RequestTask<Void>();
+	protected RequestRunner<?> createRunner() {
+		return new RequestRunner<Void>();
 	}
 
 	/**
@@ -150,8 +208,20 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 */
 	@Override
 	public void cancel() {
-		if (currentTask != null) {
-			currentTask.cancel(true);
+		RequestRunner<?> runner = currentRunner;
+		if (runner != null) {
+			runner.cancel();
+		}
+
+		AbortHandle abortHandle = currentAbortHandle;
+		if (abortHandle != null) {
+			abortHandle.abort();
+		}
+
+		// Cancelled requests don't notify observers of completion, so make
+		// sure nothing is left waiting for them.
+		for (RequestFutureImpl<ResultType, SOAPFaultType> future : futures) {
+			future.cancel(false);
 		}
 	}
 
@@ -175,7 +245,27 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 			requestXML = soapEnv.toString();
 		}
 
-		return soapRequester.doSoapRequest(soapEnv, url, soapAction);
+		AbortHandle abortHandle = new AbortHandle();
+		currentAbortHandle = abortHandle;
+
+		if (!DelegatingSOAPRequester.isAbortable(soapRequester)) {
+			// Exchanges that can't be aborted can't be hedged either, as the
+			// request would have to wait for the loser anyway. Wrapping
+			// requesters take an abort handle whatever they wrap, so this
+			// looks through them.
+			return soapRequester.doSoapRequest(soapEnv, url, soapAction);
+		}
+
+		AbortableSOAPRequester abortableRequester = (AbortableSOAPRequester) soapRequester;
+		HedgingPolicy policy = hedgingPolicy;
+		long hedgeDelay = policy == null ? HedgingPolicy.NO_HEDGE : policy.getHedgeDelay(soapAction);
+
+		if (hedgeDelay != HedgingPolicy.NO_HEDGE) {
+			return new HedgedExchange(abortableRequester, soapEnv, url, soapAction, policy).perform(hedgeDelay,
+					abortHandle);
+		}
+
+		return abortableRequester.doSoapRequest(soapEnv, url, soapAction, abortHandle);
 	}
 
 	/**
@@ -187,15 +277,119 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		return parser;
 	}
 
+	/**
+	 * Parses the result out of a successful response.
+	 * 
+	 * @param responseData
+	 *            The data of the response.
+	 * @return The parsed result.
+	 * @throws XMLParsingException
+	 *             If the response can't be parsed.
+	 */
+	protected ResultType parseResult(InputStream responseData) throws XMLParsingException {
+		return getParser().parse(responseData);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void execute() {
-	    if (Build.VERSION.SDK_INT<Build.VERSION_CODES.HONEYCOMB)
-	        createTask().execute();
-	    else
-	        createTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+		executing = true;
+
+		RequestRunner<?> runner = createRunner();
+		currentRunner = runner;
+
+		try {
+			if (executor != null) {
+				runner.executeOn(executor, callbackExecutor);
+			} else {
+				runner.executeAsTask();
+			}
+		} catch (RejectedExecutionException e) {
+			runner.onRejected(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRequestListener(RequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Gets the number of items parsed by the last execution of this request,
+	 * for reporting to a {@link RequestListener}.
+	 * 
+	 * @return The number of items, or -1 if this isn't a list request.
+	 */
+	protected long getItemCount() {
+		return -1;
+	}
+
+	/**
+	 * Sets the coalescer that lets this request share the exchange of an
+	 * identical request that's in flight at the same time.
+	 * 
+	 * @param requestCoalescer
+	 *            The coalescer, or null to always make this request on its
+	 *            own.
+	 */
+	void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+		this.requestCoalescer = requestCoalescer;
+	}
+
+	/**
+	 * Determines whether the parsed result of this request can be shared with
+	 * other requests, either by storing it in a {@link ResponseCache} or by
+	 * coalescing identical requests - if not, both are ignored.
+	 * 
+	 * @return true if the result can be shared.
+	 */
+	protected boolean isResultShareable() {
+		return true;
 	}
 
 	/**
@@ -207,6 +401,38 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		execute();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized RequestFuture<ResultType, SOAPFaultType> submit() {
+		// Futures share this request's outcome, so a second execution running
+		// at the same time would complete both with whichever finished first
+		if (executing) {
+			throw new IllegalStateException(MESSAGE_ALREADY_EXECUTING);
+		}
+
+		final RequestFutureImpl<ResultType, SOAPFaultType> future = new RequestFutureImpl<ResultType, SOAPFaultType>(
+				this);
+
+		futures.add(future);
+		registerObserver(future);
+
+		// Forget the future once it's done, so resubmitting the same request
+		// doesn't keep every old future around
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				futures.remove(future);
+				deregisterObserver(future);
+			}
+		}, CALLING_THREAD_EXECUTOR);
+
+		execute();
+
+		return future;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -274,8 +500,9 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	}
 
 	/**
-	 * Subclass of {@link AsyncTask} used for performing the request in a
-	 * background thread.
+	 * Performs an execution of the request in a background thread, either on
+	 * an {@link Executor} or within a {@link RequestTask} when no executor
+	 * has been set.
 	 * 
 	 * @author Alex Gilleran
 	 * 
@@ -283,22 +510,259 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 *            The object passed on progress reports - not used in the base
 	 *            class.
 	 */
-	protected class RequestTask<ProgressReportObject> extends AsyncTask<Void, ProgressReportObject, ResultType> {
+	protected class RequestRunner<ProgressReportObject> {
+		/** Whether this execution has been cancelled. */
+		private volatile boolean cancelled = false;
+		/**
+		 * The thread performing the request, so cancelling can interrupt it,
+		 * or null if it isn't being performed right now. Guarded by this.
+		 */
+		private Thread worker;
+		/**
+		 * The {@link AsyncTask} running this execution, or null if it's
+		 * running on an executor.
+		 */
+		private volatile RequestTask<ProgressReportObject> task;
+		/**
+		 * The executor to make callbacks on when running on an executor, or
+		 * null to make them on the request thread.
+		 */
+		private Executor callbackExecutor;
+		/** Measurements of this execution, or null if there's no listener. */
+		private RequestMetrics metrics;
 
 		/**
-		 * {@inheritDoc}
+		 * Runs this execution on the passed executor, so that it doesn't
+		 * depend on the Android main looper or {@link AsyncTask}.
+		 * {@link #onPreExecute()} is called on the current thread.
+		 * 
+		 * @param executor
+		 *            The executor to perform the request on.
+		 * @param callbackExecutor
+		 *            The executor to call {@link #onPostExecute(Object)},
+		 *            {@link #onCancelled()} and
+		 *            {@link #onProgressUpdate(Object)} on, or null to call them
+		 *            on the thread that performed the request.
+		 */
+		protected void executeOn(Executor executor, Executor callbackExecutor) {
+			this.callbackExecutor = callbackExecutor;
+
+			onPreExecute();
+
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					ResultType returnedResult = null;
+
+					try {
+						returnedResult = runInBackground();
+					} finally {
+						final ResultType finalResult = returnedResult;
+
+						dispatch(new Runnable() {
+							@Override
+							public void run() {
+								if (isCancelled()) {
+									onCancelled();
+								} else {
+									onPostExecute(finalResult);
+								}
+							}
+						});
+					}
+				}
+			});
+		}
+
+		/**
+		 * Runs this execution as an {@link AsyncTask}, which is how requests
+		 * run on Android when no executor has been set.
+		 */
+		protected void executeAsTask() {
+			task = new RequestTask<ProgressReportObject>(this);
+
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+				task.execute();
+			} else {
+				task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+			}
+		}
+
+		/**
+		 * Cancels this execution, interrupting the thread performing it so
+		 * that it doesn't wait out a retry delay.
+		 */
+		protected void cancel() {
+			cancelled = true;
+
+			synchronized (this) {
+				if (worker != null) {
+					worker.interrupt();
+				}
+			}
+
+			RequestTask<ProgressReportObject> currentTask = task;
+			if (currentTask != null) {
+				currentTask.cancel(false);
+			}
+		}
+
+		/**
+		 * @return true if this execution has been cancelled.
+		 */
+		protected boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * Performs the request on the current thread. Anything thrown while
+		 * doing so is stored as the request's exception, so that observers are
+		 * always told how it finished.
+		 * 
+		 * @return The parsed result, or null if the request failed.
+		 */
+		ResultType runInBackground() {
+			synchronized (this) {
+				worker = Thread.currentThread();
+			}
+
+			try {
+				return doInBackground();
+			} catch (Throwable throwable) {
+				throwException(new SOAPException(throwable));
+				return null;
+			} finally {
+				synchronized (this) {
+					worker = null;
+					// Don't leave a cancel's interrupt behind for whatever the
+					// thread runs next
+					Thread.interrupted();
+				}
+			}
+		}
+
+		/**
+		 * Reports progress from the background thread, to be passed to
+		 * {@link #onProgressUpdate(Object)} on the callback thread.
+		 * 
+		 * @param progress
+		 *            The progress to report.
+		 */
+		protected void reportProgress(final ProgressReportObject progress) {
+			RequestTask<ProgressReportObject> currentTask = task;
+
+			if (currentTask != null) {
+				currentTask.publish(progress);
+			} else {
+				dispatch(new Runnable() {
+					@Override
+					public void run() {
+						onProgressUpdate(progress);
+					}
+				});
+			}
+		}
+
+		/**
+		 * Runs a callback on the callback executor, or straight away if there
+		 * isn't one.
+		 * 
+		 * @param callback
+		 *            The callback to run.
+		 */
+		private void dispatch(Runnable callback) {
+			if (callbackExecutor == null) {
+				callback.run();
+			} else {
+				callbackExecutor.execute(callback);
+			}
+		}
+
+		/**
+		 * Called before the request is performed, on the thread that executed
+		 * it - does nothing in the base class.
+		 */
+		protected void onPreExecute() {
+		}
+
+		/**
+		 * Called on the thread that executed the request if the executor
+		 * rejected it, after {@link #onPreExecute()} has run. Finishes the
+		 * execution with the rejection as its exception, notifying observers
+		 * on the current thread, so the request can be executed again.
+		 * 
+		 * @param rejection
+		 *            The exception the executor threw.
+		 */
+		void onRejected(RejectedExecutionException rejection) {
+			soapFault = null;
+			throwException(new SOAPException(MESSAGE_REJECTED, rejection));
+			onPostExecute(null);
+		}
+
+		/**
+		 * Called on the callback thread with progress reported by
+		 * {@link #reportProgress(Object)} - does nothing in the base class.
+		 * 
+		 * @param progress
+		 *            The progress that was reported.
+		 */
+		protected void onProgressUpdate(ProgressReportObject progress) {
+		}
+
+		/**
+		 * Called on the callback thread once the request has finished without
+		 * being cancelled, to notify observers.
+		 * 
+		 * @param returnedResult
+		 *            The parsed result, or null if the request failed.
 		 */
-		@Override
 		protected void onPostExecute(ResultType returnedResult) {
 			complete = true;
 			executing = false;
 
+			long dispatchStart = metrics == null ? 0 : metrics.elapsed();
+
 			if (caughtException != null) {
 				registry.notifyException(RequestImpl.this, caughtException);
 			}
 
 			result = returnedResult;
 			registry.notifyComplete(RequestImpl.this);
+
+			if (metrics != null) {
+				metrics.setDispatchTime(metrics.elapsed() - dispatchStart);
+				reportMetrics(false);
+			}
+		}
+
+		/**
+		 * Called on the callback thread once a cancelled request has stopped.
+		 */
+		protected void onCancelled() {
+			executing = false;
+
+			if (metrics != null) {
+				reportMetrics(true);
+			}
+		}
+
+		/**
+		 * Finishes this execution's measurements and hands them to the
+		 * listener.
+		 * 
+		 * @param cancelled
+		 *            Whether the request was cancelled.
+		 */
+		private void reportMetrics(boolean cancelled) {
+			RequestListener listener = requestListener;
+
+			metrics.setItemCount(getItemCount());
+			metrics.finish(caughtException, soapFault != null, cancelled);
+
+			if (listener != null) {
+				listener.onRequestFinished(metrics);
+			}
 		}
 
 		/**
@@ -312,76 +776,327 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Performs the request, sharing the exchange of an identical request
+		 * that's in flight if there's a {@link RequestCoalescer}.
+		 * 
+		 * @return The parsed result, or null if the request failed.
 		 */
-		@Override
-		protected ResultType doInBackground(Void... arg0) {
-			executing = true;
-			Response response = null;
-			InputStream responseData = null;
+		@SuppressWarnings("unchecked")
+		protected ResultType doInBackground() {
+			// Don't let the outcome of a previous execution leak into this one
+			caughtException = null;
+			soapFault = null;
+			result = null;
+
+			if (requestListener != null) {
+				metrics = new RequestMetrics(url, soapAction);
+			}
 
+			// Debug mode records the raw XML of each exchange, so debug
+			// requests always have their own.
+			RequestCoalescer coalescer = isResultShareable() && !debugMode ? requestCoalescer : null;
+
+			if (coalescer == null) {
+				return fetchResult();
+			}
+
+			String key;
 			try {
-				if (!isCancelled()) {
-					response = getResponse();
+				key = EnvelopeFingerprint.getKey(url, soapAction, soapEnv);
+			} catch (IOException e) {
+				// Can't be coalesced, so just make the request
+				return fetchResult();
+			}
+
+			RequestCoalescer.Flight flight = new RequestCoalescer.Flight(RequestImpl.this.getClass(), parser,
+					soapFaultClass);
+			RequestCoalescer.Flight leader = coalescer.join(key, flight);
+
+			if (leader == null) {
+				ResultType parsedResult;
+				SOAPException exception;
+
+				try {
+					parsedResult = fetchResult();
+					exception = caughtException;
+				} catch (Throwable throwable) {
+					// Catch it here rather than in runInBackground, so that
+					// the requests waiting on this one are told about it too
+					parsedResult = null;
+					exception = new SOAPException(throwable);
+					throwException(exception);
 				}
-			} catch (IOException ioException) {
-				throwException(new SOAPException(ioException));
+
+				coalescer.land(key, flight, parsedResult, soapFault, exception, !isCancelled());
+
+				return parsedResult;
 			}
 
-			if (response != null) {
-				responseData = response.getData();
+			if (!leader.isCompatible(flight)) {
+				return fetchResult();
+			}
+
+			try {
+				if (!leader.await()) {
+					// The leader was cancelled, so go it alone
+					return fetchResult();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+
+			coalescer.recordCoalesced();
+			if (metrics != null) {
+				metrics.markCoalesced();
+			}
+			soapFault = (SOAPFaultType) leader.getSOAPFault();
+			caughtException = leader.getException();
+
+			return (ResultType) leader.getResult();
+		}
+
+		/**
+		 * Gets the result of the request, either from the
+		 * {@link ResponseCache} or by performing it.
+		 * 
+		 * @return The parsed result, or null if the request failed.
+		 */
+		@SuppressWarnings("unchecked")
+		private ResultType fetchResult() {
+			// Only parsers from the registry can be told apart by the result
+			// class, so results from any other parser aren't cached.
+			ResponseCache cache = isResultShareable() && resultClass != null ? responseCache : null;
+			String cacheKey = null;
 
-				if (debugMode) {
-					// \\A is a regex for the first character... putting that
-					// into useDelimiter gets us the whole response as a String
-					Scanner responseScanner = new Scanner(responseData).useDelimiter("\\A");
+			if (cache != null) {
+				try {
+					cacheKey = getResultKey(cache);
+					Object cached = cache.getResult(cacheKey);
 
-					if (responseScanner.hasNext()) {
-						responseXML = responseScanner.next();
-						responseData = new ByteArrayInputStream(responseXML.getBytes());
+					if (cached != null) {
+						if (metrics != null) {
+							metrics.markCached();
+						}
+						return (ResultType) cached;
 					}
+				} catch (IOException e) {
+					// Can't be cached, so just make the request
+					cacheKey = null;
+				}
+			}
 
-					responseScanner.close();
+			Response response = getResponseWithRetries();
 
+			if (response != null) {
+				try {
+					ResultType parsedResult = handleResponse(response);
+
+					if (cacheKey != null && caughtException == null) {
+						cache.putResult(cacheKey, soapAction, parsedResult);
+					}
+
+					return parsedResult;
+				} finally {
+					closeResponse(response);
 				}
+			}
 
-				switch (response.getHttpStatus()) {
-				case HTTP_OK_STATUS:
-					try {
-						return getParser().parse(responseData);
-					} catch (XMLParsingException e) {
-						throwException(new SOAPException(e));
+			return null;
+		}
+
+		/**
+		 * Works out the key that this request's parsed result is cached
+		 * under. Requests with identical envelopes can still parse their
+		 * responses into different results, so this adds the request class
+		 * and what the {@link ParserRegistry} keys its parser on - the result
+		 * class and root xpath - to the cache's key for the exchange.
+		 * 
+		 * @param cache
+		 *            The cache the result is kept in.
+		 * @return The key.
+		 * @throws IOException
+		 *             If the envelope can't be serialized.
+		 */
+		private String getResultKey(ResponseCache cache) throws IOException {
+			XMLObject rootAnnotation = resultClass.getAnnotation(XMLObject.class);
+
+			return cache.getKey(url, soapAction, soapEnv) + " " + RequestImpl.this.getClass().getName() + " "
+					+ resultClass.getName() + " " + (rootAnnotation == null ? "" : rootAnnotation.value());
+		}
+
+		/**
+		 * Gets the response, retrying failed attempts for as long as the
+		 * {@link RetryPolicy} allows.
+		 * 
+		 * @return The response of the last attempt, or null if the request
+		 *         was cancelled or the last attempt threw an exception.
+		 */
+		private Response getResponseWithRetries() {
+			RetryPolicy policy = retryPolicy;
+
+			for (int attempt = 1; !isCancelled(); attempt++) {
+				Response response;
+				long delay;
+
+				if (metrics != null) {
+					metrics.recordAttempt();
+				}
+
+				try {
+					response = getResponse();
+				} catch (IOException ioException) {
+					delay = policy == null ? RetryPolicy.NO_RETRY : policy.getRetryDelay(attempt, soapAction,
+							ioException);
+
+					if (delay == RetryPolicy.NO_RETRY) {
+						throwException(new SOAPException(ioException));
+						return null;
 					}
-					break;
-				case HTTP_ERROR_STATUS:
-					try {
-						soapFault = parseSoapFault(responseData);
-
-						// If we've successfully parsed a soap fault, toString()
-						// it as part of the message, otherwise just return an
-						// exception and say we couldn't parse one.
-						String soapFaultMessage = null;
-						if (soapFault != null) {
-							soapFaultMessage = MESSAGE_ERROR_500_SOAPFAULT + soapFault.toString();
-						} else {
-							soapFaultMessage = MESSAGE_ERROR_500_FAILED_SOAPFAULT;
-						}
 
-						throwException(new SOAPException(soapFaultMessage));
-					} catch (XMLParsingException e) {
-						throwException(new SOAPException(MESSAGE_ERROR_500_FAILED_SOAPFAULT, e));
+					if (!waitToRetry(delay)) {
+						return null;
 					}
+					continue;
+				}
+
+				if (metrics != null) {
+					metrics.recordResponse(response);
+				}
+
+				int status = response.getHttpStatus();
+				delay = policy == null || status == HTTP_OK_STATUS ? RetryPolicy.NO_RETRY : policy.getRetryDelay(
+						attempt, soapAction, status);
 
-					break;
-				default:
-					throwException(new SOAPException(MESSAGE_ERROR + " " + response.getHttpStatus()));
+				if (delay == RetryPolicy.NO_RETRY) {
+					return response;
 				}
 
+				closeResponse(response);
+
+				if (!waitToRetry(delay)) {
+					return null;
+				}
 			}
 
 			return null;
 		}
 
+		/**
+		 * Waits before retrying a failed attempt.
+		 * 
+		 * @param delay
+		 *            The time to wait in milliseconds.
+		 * @return true if the wait finished, false if it was interrupted
+		 *         because the request was cancelled.
+		 */
+		private boolean waitToRetry(long delay) {
+			try {
+				Thread.sleep(delay);
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		/**
+		 * Parses the result or SOAP fault out of a response, depending on its
+		 * HTTP status.
+		 * 
+		 * @param response
+		 *            The response to handle.
+		 * @return The parsed result, or null if the request failed.
+		 */
+		private ResultType handleResponse(Response response) {
+			if (metrics == null) {
+				return handleResponse(response.getData(), response.getHttpStatus());
+			}
+
+			CountingInputStream countedData = new CountingInputStream(response.getData());
+			long parseStart = metrics.elapsed();
+
+			try {
+				return handleResponse(countedData, response.getHttpStatus());
+			} finally {
+				metrics.recordParse(metrics.elapsed() - parseStart, countedData.getCount());
+			}
+		}
+
+		/**
+		 * Parses the result or SOAP fault out of the data of a response.
+		 * 
+		 * @param responseData
+		 *            The data of the response.
+		 * @param httpStatus
+		 *            The HTTP status of the response.
+		 * @return The parsed result, or null if the request failed.
+		 */
+		private ResultType handleResponse(InputStream responseData, int httpStatus) {
+			if (debugMode) {
+				// \\A is a regex for the first character... putting that
+				// into useDelimiter gets us the whole response as a String
+				Scanner responseScanner = new Scanner(responseData).useDelimiter("\\A");
+
+				if (responseScanner.hasNext()) {
+					responseXML = responseScanner.next();
+					responseData = new ByteArrayInputStream(responseXML.getBytes());
+				}
+
+				responseScanner.close();
+			}
+
+			switch (httpStatus) {
+			case HTTP_OK_STATUS:
+				try {
+					return parseResult(responseData);
+				} catch (XMLParsingException e) {
+					throwException(new SOAPException(e));
+				}
+				break;
+			case HTTP_ERROR_STATUS:
+				try {
+					soapFault = parseSoapFault(responseData);
+
+					// If we've successfully parsed a soap fault, toString()
+					// it as part of the message, otherwise just return an
+					// exception and say we couldn't parse one.
+					String soapFaultMessage = null;
+					if (soapFault != null) {
+						soapFaultMessage = MESSAGE_ERROR_500_SOAPFAULT + soapFault.toString();
+					} else {
+						soapFaultMessage = MESSAGE_ERROR_500_FAILED_SOAPFAULT;
+					}
+
+					throwException(new SOAPException(soapFaultMessage));
+				} catch (XMLParsingException e) {
+					throwException(new SOAPException(MESSAGE_ERROR_500_FAILED_SOAPFAULT, e));
+				}
+
+				break;
+			default:
+				throwException(new SOAPException(MESSAGE_ERROR + " " + httpStatus));
+			}
+
+			return null;
+		}
+
+		/**
+		 * Closes a response, releasing its connection if it was being streamed.
+		 * 
+		 * @param response
+		 *            The response to close.
+		 */
+		private void closeResponse(Response response) {
+			try {
+				response.close();
+			} catch (IOException e) {
+				// The response has already been dealt with - if it couldn't be
+				// closed there's nothing more to do than let the connection
+				// manager clean it up.
+			}
+		}
+
 		/**
 		 * Parses a SOAPFault from incoming data.
 		 * 
@@ -392,19 +1107,94 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		 *             If an error occurs while parsing.
 		 */
 		private SOAPFaultType parseSoapFault(InputStream soapFaultData) throws XMLParsingException {
-			IceSoapParser<SOAPFaultType> parser = new IceSoapParserImpl<SOAPFaultType>(soapFaultClass);
+			IceSoapParser<SOAPFaultType> parser = ParserRegistry.getInstance().getParser(soapFaultClass);
 
 			return parser.parse(soapFaultData);
 		}
 	}
 
+	/**
+	 * Subclass of {@link AsyncTask} that performs a {@link RequestRunner} in a
+	 * background thread and passes its callbacks back to the UI thread.
+	 * 
+	 * @author Alex Gilleran
+	 * 
+	 * @param <ProgressReportObject>
+	 *            The object passed on progress reports.
+	 */
+	private class RequestTask<ProgressReportObject> extends AsyncTask<Void, ProgressReportObject, ResultType> {
+		/** The runner to perform. */
+		private final RequestRunner<ProgressReportObject> runner;
+
+		/**
+		 * Creates a new task.
+		 * 
+		 * @param runner
+		 *            The runner to perform.
+		 */
+		private RequestTask(RequestRunner<ProgressReportObject> runner) {
+			this.runner = runner;
+		}
+
+		/**
+		 * Publishes progress reported by the runner.
+		 * 
+		 * @param progress
+		 *            The progress to publish.
+		 */
+		@SuppressWarnings("unchecked")
+		private void publish(ProgressReportObject progress) {
+			publishProgress(progress);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void onPreExecute() {
+			runner.onPreExecute();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected ResultType doInBackground(Void... arg0) {
+			return runner.runInBackground();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void onProgressUpdate(ProgressReportObject... progress) {
+			runner.onProgressUpdate(progress[0]);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void onPostExecute(ResultType returnedResult) {
+			runner.onPostExecute(returnedResult);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void onCancelled(ResultType returnedResult) {
+			runner.onCancelled();
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((caughtException == null) ? 0 : caughtException.hashCode());
 		result = prime * result + (complete ? 1231 : 1237);
-		result = prime * result + ((currentTask == null) ? 0 : currentTask.hashCode());
+		result = prime * result + ((currentRunner == null) ? 0 : currentRunner.hashCode());
 		result = prime * result + (executing ? 1231 : 1237);
 		result = prime * result + ((parser == null) ? 0 : parser.hashCode());
 		result = prime * result + ((registry == null) ? 0 : registry.hashCode());
@@ -431,10 +1221,10 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 			return false;
 		if (complete != other.complete)
 			return false;
-		if (currentTask == null) {
-			if (other.currentTask != null)
+		if (currentRunner == null) {
+			if (other.currentRunner != null)
 				return false;
-		} else if (!currentTask.equals(other.currentTask))
+		} else if (!currentRunner.equals(other.currentRunner))
 			return false;
 		if (executing != other.executing)
 			return false;
@@ -0,0 +1,306 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import com.alexgilleran.icesoap.request.RequestListener;
+
+/**
+ * Measurements of a single request, handed to a {@link RequestListener} when
+ * it finishes. Times are in nanoseconds, and are -1 for phases that didn't
+ * happen or couldn't be measured - e.g. a request answered from a cache never
+ * connects, and requesters other than the built-in ones may not report the
+ * HTTP phases at all.
+ * 
+ * The HTTP phases are taken from the exchange that produced the response, so
+ * if a request was retried or hedged they only cover the final exchange.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class RequestMetrics {
+	/** The url the request was sent to. */
+	private final String url;
+	/** The SOAP action of the request. */
+	private final String soapAction;
+	/** When the request started, from System.currentTimeMillis(). */
+	private final long startTimeMillis = System.currentTimeMillis();
+	/** When the request started, from System.nanoTime(). */
+	private final long startNanos = System.nanoTime();
+
+	/** Total time taken. */
+	private long totalTime = -1;
+	/** Time spent getting a connection. */
+	private long connectTime = -1;
+	/** Time spent serializing and sending the envelope. */
+	private long sendTime = -1;
+	/** Time between the request being sent and the response headers arriving. */
+	private long waitTime = -1;
+	/** Time spent reading and parsing the response body. */
+	private long parseTime = -1;
+	/** Time spent notifying observers. */
+	private long dispatchTime = -1;
+	/** Number of bytes in the request body as sent. */
+	private long requestBytes = -1;
+	/** Number of bytes of response body read by the parser. */
+	private long responseBytes = -1;
+	/** The HTTP status of the response. */
+	private int httpStatus = -1;
+	/** The number of HTTP exchanges attempted. */
+	private int attempts = 0;
+	/** The number of items parsed, for list requests. */
+	private long itemCount = -1;
+	/** Whether the result came from a cache. */
+	private boolean cached = false;
+	/** Whether the result came from an identical request that was in flight. */
+	private boolean coalesced = false;
+	/** Whether the request failed with a SOAP fault. */
+	private boolean soapFault = false;
+	/** Whether the request was cancelled. */
+	private boolean cancelled = false;
+	/** The exception the request failed with. */
+	private Throwable exception;
+
+	/**
+	 * Starts measuring a request.
+	 * 
+	 * @param url
+	 *            The url the request is sent to.
+	 * @param soapAction
+	 *            The SOAP action of the request.
+	 */
+	RequestMetrics(String url, String soapAction) {
+		this.url = url;
+		this.soapAction = soapAction;
+	}
+
+	/**
+	 * @return The url the request was sent to.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return The SOAP action of the request - can be null.
+	 */
+	public String getSoapAction() {
+		return soapAction;
+	}
+
+	/**
+	 * @return When the request started, from System.currentTimeMillis().
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * @return Nanoseconds from the request starting to its listener being
+	 *         called.
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return Nanoseconds spent getting a connection, including waiting for
+	 *         one from a pool.
+	 */
+	public long getConnectTime() {
+		return connectTime;
+	}
+
+	/**
+	 * @return Nanoseconds spent serializing the envelope and sending it - as
+	 *         the envelope is streamed, these can't be separated.
+	 */
+	public long getSendTime() {
+		return sendTime;
+	}
+
+	/**
+	 * @return Nanoseconds between the request being sent and the response
+	 *         headers arriving - i.e. time to first byte.
+	 */
+	public long getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * @return Nanoseconds spent downloading and parsing the response body - as
+	 *         the body is parsed while it streams in, these can't be
+	 *         separated.
+	 */
+	public long getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * @return Nanoseconds spent notifying observers.
+	 */
+	public long getDispatchTime() {
+		return dispatchTime;
+	}
+
+	/**
+	 * @return Number of bytes in the request body as sent.
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * @return Number of bytes of response body read by the parser, after any
+	 *         decompression.
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * @return The HTTP status of the response, or -1 if there wasn't one.
+	 */
+	public int getHttpStatus() {
+		return httpStatus;
+	}
+
+	/**
+	 * @return The number of HTTP exchanges attempted, including retries.
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * @return The number of items parsed for a list request, or -1 for other
+	 *         requests.
+	 */
+	public long getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * @return Whether the result came from a cache.
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * @return Whether the result came from an identical request that was in
+	 *         flight at the same time.
+	 */
+	public boolean isCoalesced() {
+		return coalesced;
+	}
+
+	/**
+	 * @return Whether the request failed with a SOAP fault, including one
+	 *         shared by an identical request.
+	 */
+	public boolean isSOAPFault() {
+		return soapFault;
+	}
+
+	/**
+	 * @return Whether the request was cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return The exception the request failed with, or null if it didn't.
+	 */
+	public Throwable getException() {
+		return exception;
+	}
+
+	/**
+	 * Gets the current time relative to the start of the request.
+	 * 
+	 * @return Nanoseconds since the request started.
+	 */
+	long elapsed() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Records the response of an HTTP exchange.
+	 * 
+	 * @param response
+	 *            The response.
+	 */
+	void recordResponse(Response response) {
+		httpStatus = response.getHttpStatus();
+		connectTime = response.getConnectTime();
+		sendTime = response.getSendTime();
+		waitTime = response.getWaitTime();
+		requestBytes = response.getRequestBytes();
+	}
+
+	/**
+	 * Records that an HTTP exchange was attempted.
+	 */
+	void recordAttempt() {
+		attempts++;
+	}
+
+	/**
+	 * Records how the response body was parsed.
+	 * 
+	 * @param parseTime
+	 *            Nanoseconds spent reading and parsing the body.
+	 * @param responseBytes
+	 *            Number of bytes read.
+	 */
+	void recordParse(long parseTime, long responseBytes) {
+		this.parseTime = parseTime;
+		this.responseBytes = responseBytes;
+	}
+
+	/**
+	 * @param dispatchTime
+	 *            Nanoseconds spent notifying observers.
+	 */
+	void setDispatchTime(long dispatchTime) {
+		this.dispatchTime = dispatchTime;
+	}
+
+	/**
+	 * @param itemCount
+	 *            The number of items parsed.
+	 */
+	void setItemCount(long itemCount) {
+		this.itemCount = itemCount;
+	}
+
+	/**
+	 * Records that the result came from a cache.
+	 */
+	void markCached() {
+		cached = true;
+	}
+
+	/**
+	 * Records that the result came from an identical request.
+	 */
+	void markCoalesced() {
+		coalesced = true;
+	}
+
+	/**
+	 * Records how the request finished.
+	 * 
+	 * @param exception
+	 *            The exception it failed with, or null.
+	 * @param soapFault
+	 *            Whether it failed with a SOAP fault.
+	 * @param cancelled
+	 *            Whether it was cancelled.
+	 */
+	void finish(Throwable exception, boolean soapFault, boolean cancelled) {
+		this.exception = exception;
+		this.soapFault = soapFault;
+		this.cancelled = cancelled;
+		this.totalTime = elapsed();
+	}
+}
@@ -1,5 +1,6 @@
 package com.alexgilleran.icesoap.request.impl;
 
+import java.io.IOException;
 import java.io.InputStream;
 
 /**
@@ -13,6 +14,17 @@ public class Response {
 	private InputStream data;
 	/** The HTTP status code as returned by the request. */
 	private int httpStatus;
+	/** Nanoseconds spent getting a connection, or -1 if unknown. */
+	private long connectTime = -1;
+	/** Nanoseconds spent serializing and sending the request, or -1 if unknown. */
+	private long sendTime = -1;
+	/**
+	 * Nanoseconds between sending the request and receiving the response
+	 * headers, or -1 if unknown.
+	 */
+	private long waitTime = -1;
+	/** Number of bytes in the request body as sent, or -1 if unknown. */
+	private long requestBytes = -1;
 
 	/**
 	 * Creates a new response.
@@ -44,4 +56,83 @@ public class Response {
 	public int getHttpStatus() {
 		return httpStatus;
 	}
+
+	/**
+	 * Records how long each phase of the exchange that got this response took
+	 * - requesters set this so that it can be reported to a
+	 * {@link com.alexgilleran.icesoap.request.RequestListener}.
+	 * 
+	 * @param connectTime
+	 *            Nanoseconds spent getting a connection, or -1 if unknown.
+	 * @param sendTime
+	 *            Nanoseconds spent serializing and sending the request, or -1
+	 *            if unknown.
+	 * @param waitTime
+	 *            Nanoseconds between sending the request and receiving the
+	 *            response headers, or -1 if unknown.
+	 * @param requestBytes
+	 *            Number of bytes in the request body as sent, or -1 if
+	 *            unknown.
+	 */
+	public void setTimings(long connectTime, long sendTime, long waitTime, long requestBytes) {
+		this.connectTime = connectTime;
+		this.sendTime = sendTime;
+		this.waitTime = waitTime;
+		this.requestBytes = requestBytes;
+	}
+
+	/**
+	 * Copies the timings of another response, for requesters that wrap the
+	 * response of another.
+	 * 
+	 * @param other
+	 *            The response to copy from.
+	 */
+	public void copyTimings(Response other) {
+		setTimings(other.connectTime, other.sendTime, other.waitTime, other.requestBytes);
+	}
+
+	/**
+	 * @return Nanoseconds spent getting a connection, or -1 if unknown.
+	 */
+	public long getConnectTime() {
+		return connectTime;
+	}
+
+	/**
+	 * @return Nanoseconds spent serializing and sending the request, or -1 if
+	 *         unknown.
+	 */
+	public long getSendTime() {
+		return sendTime;
+	}
+
+	/**
+	 * @return Nanoseconds between sending the request and receiving the
+	 *         response headers, or -1 if unknown.
+	 */
+	public long getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * @return Number of bytes in the request body as sent, or -1 if unknown.
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Closes the response's data stream. This must be called once the response
+	 * has been read, as if it's being streamed from the server the connection
+	 * won't be released until it's closed.
+	 * 
+	 * @throws IOException
+	 *             If the stream can't be closed.
+	 */
+	public void close() throws IOException {
+		if (data != null) {
+			data.close();
+		}
+	}
 }
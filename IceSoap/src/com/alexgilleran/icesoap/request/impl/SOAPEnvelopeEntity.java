@@ -0,0 +1,151 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.TemplatedSOAPEnvelope;
+
+/**
+ * {@link HttpEntity} that serializes a {@link SOAPEnvelope} straight to the
+ * request's output stream as it's sent, rather than building it up as a String
+ * first.
+ * 
+ * The length of the serialized envelope isn't known until it's been written,
+ * so the entity is sent with chunked transfer encoding. It can optionally be
+ * gzipped on the way out, in which case the Content-Encoding is set to gzip.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class SOAPEnvelopeEntity extends AbstractHttpEntity {
+	/** The envelope to send. */
+	private final SOAPEnvelope envelope;
+	/** Whether the envelope is gzipped as it's written. */
+	private final boolean gzip;
+
+	/**
+	 * Creates a new uncompressed entity for an envelope.
+	 * 
+	 * @param envelope
+	 *            The envelope to send.
+	 */
+	public SOAPEnvelopeEntity(SOAPEnvelope envelope) {
+		this(envelope, false);
+	}
+
+	/**
+	 * Creates a new entity for an envelope.
+	 * 
+	 * @param envelope
+	 *            The envelope to send.
+	 * @param gzip
+	 *            true to gzip the envelope as it's written.
+	 */
+	public SOAPEnvelopeEntity(SOAPEnvelope envelope, boolean gzip) {
+		this.envelope = envelope;
+		this.gzip = gzip;
+
+		setChunked(true);
+
+		if (gzip) {
+			setContentEncoding(HttpCompression.ENCODING_GZIP);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The envelope can be serialized again, so it's always repeatable.
+	 */
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Always -1, as the length isn't known until the envelope is serialized.
+	 */
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Note that this has to serialize the whole envelope into memory - use
+	 * {@link #writeTo(OutputStream)} wherever possible.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeTo(out);
+
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		if (outstream == null) {
+			throw new IllegalArgumentException("Output stream may not be null");
+		}
+
+		if (gzip) {
+			GZIPOutputStream gzipStream = new GZIPOutputStream(outstream);
+			serialize(envelope, gzipStream);
+			// Finish rather than close, as the caller owns the stream
+			gzipStream.finish();
+		} else {
+			serialize(envelope, outstream);
+		}
+	}
+
+	/**
+	 * Serializes an envelope to a stream in its encoding. IceSoap's own
+	 * envelopes are streamed straight out - any other implementation of
+	 * {@link SOAPEnvelope} is written as the encoded result of its
+	 * {@link SOAPEnvelope#toString()}.
+	 * 
+	 * @param envelope
+	 *            The envelope to serialize.
+	 * @param outputStream
+	 *            The stream to write to - this is flushed but not closed.
+	 * @throws IOException
+	 *             If the stream can't be written to, or the encoding is
+	 *             unsupported.
+	 */
+	public static void serialize(SOAPEnvelope envelope, OutputStream outputStream) throws IOException {
+		if (envelope instanceof BaseSOAPEnvelope) {
+			((BaseSOAPEnvelope) envelope).serialize(outputStream);
+		} else if (envelope instanceof TemplatedSOAPEnvelope) {
+			((TemplatedSOAPEnvelope) envelope).serialize(outputStream);
+		} else {
+			outputStream.write(envelope.toString().getBytes(envelope.getEncoding()));
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The envelope doesn't come from a stream, so this is always false.
+	 */
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+}
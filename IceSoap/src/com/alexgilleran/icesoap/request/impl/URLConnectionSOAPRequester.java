@@ -0,0 +1,314 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * Implementation of {@link SOAPRequester} using the platform's
+ * {@link HttpURLConnection}.
+ *
+ * Unlike {@link ApacheSOAPRequester}, this isn't limited to a couple of
+ * connections per host - connections are kept alive and pooled by the
+ * platform (see the <code>http.maxConnections</code> system property). This
+ * is still HTTP/1.1, so each request has a connection to itself for as long
+ * as it's in progress, and sending it blocks the calling thread - requests
+ * aren't multiplexed over HTTP/2 on either Android or the JVM.
+ *
+ * Responses are always streamed straight from the connection, so the
+ * {@link Response} must be closed once it's been read to return the
+ * connection to the pool.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class URLConnectionSOAPRequester implements AbortableSOAPRequester {
+	/** Soap action to use if none is specified. */
+	private static final String BLANK_SOAP_ACTION = "";
+	/** HTTP method used for SOAP calls. */
+	private static final String METHOD_POST = "POST";
+	/** HTTP content type submitted in HTTP POST request for SOAP calls. */
+	private static final String XML_CONTENT_TYPE_PREFIX = "text/xml; charset=";
+	/** Key for SOAP action header. */
+	private static final String HEADER_KEY_SOAP_ACTION = "SOAPAction";
+	/** Status codes from this up are errors, and have their body in the error stream. */
+	private static final int HTTP_ERROR_STATUS_MIN = 400;
+	/** Timeout for making a connection. */
+	private static final int DEFAULT_CONN_TIMEOUT = 5000;
+	/** Timeout for recieving data. */
+	private static final int DEFAULT_SOCKET_TIMEOUT = 20000;
+
+	/** Timeout for making a connection, in milliseconds. */
+	private volatile int connectionTimeout = DEFAULT_CONN_TIMEOUT;
+	/** Timeout for receiving data, in milliseconds. */
+	private volatile int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+	/** Whether compressed responses are requested and decompressed. */
+	private volatile boolean compressResponses = false;
+	/**
+	 * The size in bytes above which request bodies are gzipped, or
+	 * {@link HttpCompression#NEVER_COMPRESS} to never gzip them.
+	 */
+	private volatile int requestCompressionThreshold = HttpCompression.NEVER_COMPRESS;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl) throws IOException {
+		return doSoapRequest(envelope, targetUrl, BLANK_SOAP_ACTION);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction) throws IOException {
+		return doSoapRequest(envelope, targetUrl, soapAction, new AbortHandle());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response doSoapRequest(SOAPEnvelope envelope, String targetUrl, String soapAction,
+			AbortHandle abortHandle) throws IOException {
+		ExchangeTimer timer = new ExchangeTimer();
+		final HttpURLConnection connection = openConnection(targetUrl);
+
+		abortHandle.setAbortAction(new Runnable() {
+			@Override
+			public void run() {
+				connection.disconnect();
+			}
+		});
+
+		try {
+			connection.setRequestMethod(METHOD_POST);
+			connection.setDoOutput(true);
+			connection.setConnectTimeout(connectionTimeout);
+			connection.setReadTimeout(socketTimeout);
+			connection.setRequestProperty(ApacheSOAPRequester.CONTENT_TYPE_LABEL,
+					XML_CONTENT_TYPE_PREFIX + envelope.getEncoding());
+			connection.setRequestProperty(HEADER_KEY_SOAP_ACTION, soapAction);
+
+			if (compressResponses) {
+				connection.setRequestProperty(HttpCompression.HEADER_KEY_ACCEPT_ENCODING,
+						HttpCompression.ACCEPT_ENCODING_VALUE);
+			}
+
+			writeEnvelope(connection, envelope, timer);
+
+			int status = connection.getResponseCode();
+			timer.markResponded();
+			InputStream responseStream = getResponseStream(connection, status);
+
+			if (compressResponses) {
+				responseStream = HttpCompression.decode(responseStream, connection.getContentEncoding());
+			}
+
+			return timer.applyTo(new Response(responseStream, status));
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a connection to the passed url - can be overridden to configure
+	 * the connection, e.g. with a custom SSL socket factory.
+	 *
+	 * @param targetUrl
+	 *            The url to connect to.
+	 * @return An unconnected {@link HttpURLConnection}.
+	 * @throws IOException
+	 *             If the url isn't an HTTP url.
+	 */
+	protected HttpURLConnection openConnection(String targetUrl) throws IOException {
+		return (HttpURLConnection) new URL(targetUrl).openConnection();
+	}
+
+	/**
+	 * Writes an envelope to the body of a request, gzipping it if it's over
+	 * the request compression threshold.
+	 *
+	 * @param connection
+	 *            The connection to write to.
+	 * @param envelope
+	 *            The envelope to write.
+	 * @param timer
+	 *            Times the phases of the exchange.
+	 * @throws IOException
+	 *             If the envelope can't be written.
+	 */
+	private void writeEnvelope(HttpURLConnection connection, SOAPEnvelope envelope, ExchangeTimer timer)
+			throws IOException {
+		int threshold = requestCompressionThreshold;
+		boolean gzip = false;
+
+		if (threshold != HttpCompression.NEVER_COMPRESS) {
+			byte[] uncompressed = HttpCompression.serializeUpTo(envelope, threshold);
+
+			if (uncompressed != null) {
+				// Small enough to have been buffered, so send it as it is
+				connection.setFixedLengthStreamingMode(uncompressed.length);
+				writeAndClose(timer.timeBody(getConnectedOutputStream(connection)), uncompressed);
+				return;
+			}
+
+			gzip = true;
+			connection.setRequestProperty(HttpCompression.HEADER_KEY_CONTENT_ENCODING, HttpCompression.ENCODING_GZIP);
+		}
+
+		// Without a streaming mode the connection buffers the whole body itself
+		// to work out its length - chunking lets it go straight out instead.
+		connection.setChunkedStreamingMode(0);
+
+		OutputStream out = timer.timeBody(getConnectedOutputStream(connection));
+		try {
+			if (gzip) {
+				GZIPOutputStream gzipStream = new GZIPOutputStream(out);
+				SOAPEnvelopeEntity.serialize(envelope, gzipStream);
+				gzipStream.finish();
+			} else {
+				SOAPEnvelopeEntity.serialize(envelope, out);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Connects, then gets the stream to write the request body to - connecting
+	 * first means the time taken to get a connection isn't counted as time
+	 * spent sending.
+	 *
+	 * @param connection
+	 *            The connection, with its streaming mode already set.
+	 * @return The stream to write the body to.
+	 * @throws IOException
+	 *             If the connection can't be made.
+	 */
+	private OutputStream getConnectedOutputStream(HttpURLConnection connection) throws IOException {
+		connection.connect();
+
+		return connection.getOutputStream();
+	}
+
+	/**
+	 * Writes bytes to a stream, then closes it.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @param data
+	 *            The bytes to write.
+	 * @throws IOException
+	 *             If the bytes can't be written.
+	 */
+	private void writeAndClose(OutputStream out, byte[] data) throws IOException {
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Gets the stream of the response body, which is the error stream if the
+	 * server returned an error.
+	 *
+	 * @param connection
+	 *            The connection.
+	 * @param status
+	 *            The HTTP status of the response.
+	 * @return The response body - empty if there wasn't one.
+	 * @throws IOException
+	 *             If the body can't be read.
+	 */
+	private InputStream getResponseStream(HttpURLConnection connection, int status) throws IOException {
+		InputStream stream;
+
+		if (status >= HTTP_ERROR_STATUS_MIN) {
+			stream = connection.getErrorStream();
+		} else {
+			stream = connection.getInputStream();
+		}
+
+		return stream == null ? new ByteArrayInputStream(new byte[0]) : stream;
+	}
+
+	/**
+	 * Sets whether compressed responses should be requested. If this is set,
+	 * an Accept-Encoding header for gzip and deflate is sent with every
+	 * request, and responses that come back compressed are decompressed as
+	 * they're parsed.
+	 *
+	 * Note that on Android, {@link HttpURLConnection} already requests and
+	 * decompresses gzip transparently if this isn't set.
+	 *
+	 * @param compressResponses
+	 *            true to request compressed responses.
+	 */
+	public void setCompressResponses(boolean compressResponses) {
+		this.compressResponses = compressResponses;
+	}
+
+	/**
+	 * Determines whether compressed responses are being requested.
+	 *
+	 * @return true if compressed responses are requested.
+	 * @see #setCompressResponses(boolean)
+	 */
+	public boolean isCompressResponses() {
+		return compressResponses;
+	}
+
+	/**
+	 * Sets the size above which request bodies are gzipped - the server must
+	 * support gzipped requests for this to be used. Envelopes at or under the
+	 * threshold are sent uncompressed, as compressing them isn't worth it.
+	 *
+	 * @param threshold
+	 *            The size in bytes above which envelopes are gzipped - 0 to
+	 *            gzip every envelope, or a negative number to never gzip them
+	 *            (the default).
+	 */
+	public void setRequestCompressionThreshold(int threshold) {
+		this.requestCompressionThreshold = threshold < 0 ? HttpCompression.NEVER_COMPRESS : threshold;
+	}
+
+	/**
+	 * Gets the size above which request bodies are gzipped.
+	 *
+	 * @return The threshold in bytes, or a negative number if requests are
+	 *         never gzipped.
+	 * @see #setRequestCompressionThreshold(int)
+	 */
+	public int getRequestCompressionThreshold() {
+		return requestCompressionThreshold;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setConnectionTimeout(int timeout) {
+		this.connectionTimeout = timeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSocketTimeout(int timeout) {
+		this.socketTimeout = timeout;
+	}
+}
@@ -0,0 +1,72 @@
+package com.alexgilleran.icesoap.xpath;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Process-wide record of every attribute name that's used as a predicate by
+ * an {@link XPathTrieRepository}.
+ *
+ * A pull parser only needs to capture the attributes of an element that some
+ * xpath could test - by checking against this set it can ignore the rest,
+ * which on attribute-heavy responses is most of them.
+ *
+ * Names are only ever added, and reads vastly outnumber writes, so the set is
+ * copied on every write and read without locking.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class PredicateNames {
+	/** The singleton instance of this class. */
+	private static final PredicateNames INSTANCE = new PredicateNames();
+
+	/** The names that have been registered. */
+	private volatile Set<String> names = Collections.emptySet();
+
+	/**
+	 * Private singleton constructor.
+	 */
+	private PredicateNames() {
+
+	}
+
+	/**
+	 * Gets the singleton instance of the set.
+	 *
+	 * @return The set.
+	 */
+	public static PredicateNames getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers attribute names that are used as predicates.
+	 *
+	 * @param predicateNames
+	 *            The names to register.
+	 */
+	public synchronized void addAll(Collection<String> predicateNames) {
+		if (names.containsAll(predicateNames)) {
+			return;
+		}
+
+		Set<String> newNames = new HashSet<String>(names);
+		newNames.addAll(predicateNames);
+		names = newNames;
+	}
+
+	/**
+	 * Determines whether an attribute name is used as a predicate by any
+	 * registered xpath.
+	 *
+	 * @param name
+	 *            The attribute name.
+	 * @return true if the attribute needs to be captured.
+	 */
+	public boolean contains(String name) {
+		return names.contains(name);
+	}
+}
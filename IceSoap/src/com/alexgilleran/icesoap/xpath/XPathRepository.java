@@ -76,6 +76,18 @@ public class XPathRepository<T> {
 		}
 	}
 
+	/**
+	 * Gets the object stored against exactly the supplied XPathElement. Unlike
+	 * {@link #get(XPathElement)}, this does not attempt to match the key.
+	 * 
+	 * @param key
+	 *            The (exact) key of the record to get.
+	 * @return The object stored against the key, or null if there isn't one.
+	 */
+	public T getExact(XPathElement key) {
+		return valueMap.get(key);
+	}
+
 	/**
 	 * Removes the record with the supplied key from the repository. Note that
 	 * this does not attempt to match the XPathElement passed in - the key
@@ -0,0 +1,144 @@
+package com.alexgilleran.icesoap.xpath;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * Keeps track of the stack of elements that a pull parser is currently inside,
+ * so that {@link XPathTrieRepository}s can resolve lookups incrementally
+ * rather than matching against the entire xpath of the current element every
+ * time.
+ *
+ * Every element pushed onto the stack is given a serial number that's unique
+ * within the tracker - if the element at a certain depth has the same serial
+ * as it did the last time a repository looked at it, neither it nor any of the
+ * elements above it have changed.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class XPathTracker {
+	/** The initial capacity of the element stack. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The elements currently open, indexed by depth (starting at 1). */
+	private XPathElement[] elements = new XPathElement[INITIAL_CAPACITY];
+	/** The serial numbers of the elements currently open, indexed by depth. */
+	private int[] serials = new int[INITIAL_CAPACITY];
+	/** The depth of the current element - 0 if outside the root element. */
+	private int depth = 0;
+	/** The serial number to give to the next element pushed. */
+	private int nextSerial = 1;
+	/** The name of the attribute currently being parsed, or null. */
+	private String attributeName;
+	/** The lookup state of each repository that's been used with this tracker. */
+	private Map<XPathTrieRepository<?>, XPathTrieRepository.Cursor> cursors = new IdentityHashMap<XPathTrieRepository<?>, XPathTrieRepository.Cursor>();
+
+	/**
+	 * Pushes a new element onto the stack.
+	 *
+	 * @param element
+	 *            The element being started - used for its name and predicates.
+	 */
+	public void push(XPathElement element) {
+		depth++;
+
+		if (depth == elements.length) {
+			XPathElement[] newElements = new XPathElement[elements.length * 2];
+			System.arraycopy(elements, 0, newElements, 0, elements.length);
+			elements = newElements;
+
+			int[] newSerials = new int[serials.length * 2];
+			System.arraycopy(serials, 0, newSerials, 0, serials.length);
+			serials = newSerials;
+		}
+
+		elements[depth] = element;
+		serials[depth] = nextSerial++;
+		attributeName = null;
+	}
+
+	/**
+	 * Pops the current element off the stack.
+	 */
+	public void pop() {
+		elements[depth] = null;
+		depth--;
+		attributeName = null;
+	}
+
+	/**
+	 * Sets the name of the attribute of the current element that's being
+	 * parsed.
+	 *
+	 * @param attributeName
+	 *            The attribute name, or null if an attribute isn't being
+	 *            parsed.
+	 */
+	public void setAttributeName(String attributeName) {
+		this.attributeName = attributeName;
+	}
+
+	/**
+	 * Gets the name of the attribute of the current element that's being
+	 * parsed.
+	 *
+	 * @return The attribute name, or null if an attribute isn't being parsed.
+	 */
+	public String getAttributeName() {
+		return attributeName;
+	}
+
+	/**
+	 * Gets the depth of the current element.
+	 *
+	 * @return The depth, where the root element is 1 and 0 is outside the root
+	 *         element.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the element open at the specified depth.
+	 *
+	 * @param depth
+	 *            The depth, from 1 to {@link #getDepth()}.
+	 * @return The element.
+	 */
+	public XPathElement getElement(int depth) {
+		return elements[depth];
+	}
+
+	/**
+	 * Gets the serial number of the element open at the specified depth.
+	 *
+	 * @param depth
+	 *            The depth, from 1 to {@link #getDepth()}.
+	 * @return The serial number.
+	 */
+	int getSerial(int depth) {
+		return serials[depth];
+	}
+
+	/**
+	 * Gets the lookup state of a repository for this tracker, creating it if
+	 * the repository hasn't been used with this tracker before.
+	 *
+	 * @param repository
+	 *            The repository.
+	 * @return The repository's cursor.
+	 */
+	XPathTrieRepository.Cursor getCursor(XPathTrieRepository<?> repository) {
+		XPathTrieRepository.Cursor cursor = cursors.get(repository);
+
+		if (cursor == null) {
+			cursor = repository.newCursor();
+			cursors.put(repository, cursor);
+		}
+
+		return cursor;
+	}
+}
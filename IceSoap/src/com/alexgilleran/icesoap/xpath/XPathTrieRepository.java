@@ -0,0 +1,736 @@
+package com.alexgilleran.icesoap.xpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.xpath.XPathRepository.XPathRecord;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * A read-only alternative to {@link XPathRepository} that compiles all of its
+ * xpaths into a trie, and resolves lookups by stepping through it as elements
+ * are pushed onto and popped off an {@link XPathTracker}.
+ *
+ * {@link XPathRepository} finds candidates by name, then matches each one
+ * against the entire xpath of the current element, which costs
+ * O(depth x candidates) for every event. This instead keeps the set of trie
+ * nodes matched at each depth of the document, so each new element only has
+ * to be matched against the children of the nodes matched by its parent.
+ *
+ * Sets of matched nodes are interned as states, and transitions between states
+ * that don't depend on predicates are cached, so in most cases stepping into
+ * an element is a single map lookup. The trie and its states are safe to share
+ * between threads - per-parse state is kept in the {@link XPathTracker}.
+ *
+ * Where more than one xpath matches an element, the one with the most
+ * predicates wins.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <T>
+ *            The object to store against xpaths.
+ */
+public class XPathTrieRepository<T> {
+	/** The maximum number of states to intern and cache transitions for. */
+	private static final int MAX_INTERNED_STATES = 1024;
+	/** The maximum number of cached transitions per state. */
+	private static final int MAX_TRANSITIONS_PER_STATE = 256;
+	/** Placeholder for cached attribute lookups that found nothing. */
+	private static final Object NO_RECORD = new Object();
+
+	/** The root of the trie, representing the document itself. */
+	private final Node root;
+	/** The state at the start of the document. */
+	private final State initialState;
+	/** The state that can never match anything again. */
+	private final State deadState;
+	/** Interned states, keyed by their matched nodes. */
+	private final ConcurrentMap<StateKey, State> states = new ConcurrentHashMap<StateKey, State>();
+	/** Used to number trie nodes. */
+	private int nodeCount = 0;
+	/** The number of xpaths in the repository. */
+	private final int size;
+
+	/**
+	 * Compiles a new trie repository from the contents of an
+	 * {@link XPathRepository}.
+	 *
+	 * @param repository
+	 *            The repository to compile - note that changes made to it
+	 *            afterwards won't be reflected in this repository.
+	 */
+	public XPathTrieRepository(XPathRepository<T> repository) {
+		root = new Node(nodeCount++, null, Collections.<String, String> emptyMap());
+
+		int order = 0;
+		for (XPathElement key : repository.keySet()) {
+			add(key, repository.getExact(key), order++);
+		}
+
+		size = order;
+		deadState = intern(new Node[0], new Node[0]);
+		initialState = intern(new Node[] { root }, root.hasDescendants() ? new Node[] { root } : new Node[0]);
+	}
+
+	/**
+	 * Adds an xpath to the trie.
+	 *
+	 * @param key
+	 *            The xpath.
+	 * @param value
+	 *            The object stored against it.
+	 * @param order
+	 *            The order that the xpath was added in.
+	 */
+	private void add(XPathElement key, T value, int order) {
+		List<XPathElement> chain = new ArrayList<XPathElement>();
+
+		for (XPathElement element = key; element != null; element = element.getPreviousElement()) {
+			chain.add(0, element);
+		}
+
+		Node node = root;
+		int specificity = 0;
+
+		for (XPathElement element : chain) {
+			if (element.isRelative()) {
+				throw new IllegalArgumentException("Cannot compile relative xpath " + key.toString()
+						+ " - it must be attached to an absolute xpath first");
+			}
+
+			boolean descendant = element.getPrefix().startsWith("//");
+			Map<String, List<Node>> edges;
+
+			if (element.isAttribute()) {
+				edges = descendant ? node.attributeDescendants() : node.attributeChildren();
+			} else {
+				edges = descendant ? node.descendants() : node.children();
+			}
+
+			node = getOrAddNode(edges, element);
+			specificity += element.getPredicates().size();
+		}
+
+		if (node.record == null || specificity > node.specificity) {
+			node.record = new XPathRecord<T>(key, value);
+			node.specificity = specificity;
+			node.order = order;
+		}
+	}
+
+	/**
+	 * Gets the node for an element from a map of edges, adding it if there
+	 * isn't one already.
+	 *
+	 * @param edges
+	 *            The edges to look in.
+	 * @param element
+	 *            The element that the node is for.
+	 * @return The node.
+	 */
+	private Node getOrAddNode(Map<String, List<Node>> edges, XPathElement element) {
+		List<Node> nodes = edges.get(element.getName());
+
+		if (nodes == null) {
+			nodes = new ArrayList<Node>(1);
+			edges.put(element.getName(), nodes);
+		}
+
+		for (Node node : nodes) {
+			if (node.predicates.equals(element.getPredicates())) {
+				return node;
+			}
+		}
+
+		Node node = new Node(nodeCount++, element.getName(), new HashMap<String, String>(element.getPredicates()));
+		nodes.add(node);
+
+		if (!node.predicates.isEmpty()) {
+			// Make sure pull parsers capture these attributes
+			PredicateNames.getInstance().addAll(node.predicates.keySet());
+		}
+
+		return node;
+	}
+
+	/**
+	 * Gets the record stored against the xpath that best matches the current
+	 * position of the passed tracker.
+	 *
+	 * @param tracker
+	 *            The tracker of the parser's current position.
+	 * @return The record, or null if no xpath matches.
+	 */
+	@SuppressWarnings("unchecked")
+	public XPathRecord<T> getFullRecord(XPathTracker tracker) {
+		State state = tracker.getCursor(this).sync(tracker);
+
+		if (tracker.getAttributeName() != null) {
+			return (XPathRecord<T>) getAttributeRecord(state, tracker.getAttributeName());
+		}
+
+		return (XPathRecord<T>) state.record;
+	}
+
+	/**
+	 * Gets the object stored against the xpath that best matches the current
+	 * position of the passed tracker.
+	 *
+	 * @param tracker
+	 *            The tracker of the parser's current position.
+	 * @return The object, or null if no xpath matches.
+	 */
+	public T get(XPathTracker tracker) {
+		XPathRecord<T> record = getFullRecord(tracker);
+
+		return record == null ? null : record.getValue();
+	}
+
+	/**
+	 * Determines whether an xpath in the repository matches the current
+	 * position of the passed tracker.
+	 *
+	 * @param tracker
+	 *            The tracker of the parser's current position.
+	 * @return true if there's a match.
+	 */
+	public boolean contains(XPathTracker tracker) {
+		return get(tracker) != null;
+	}
+
+	/**
+	 * Determines whether no xpath in the repository can match the tracker's
+	 * current element, its attributes or anything below it - if so, the
+	 * element's whole subtree can be skipped without any further lookups.
+	 *
+	 * @param tracker
+	 *            The tracker of the parser's current position.
+	 * @return true if nothing at or below the current element can match.
+	 */
+	public boolean isDeadEnd(XPathTracker tracker) {
+		State state = tracker.getCursor(this).sync(tracker);
+
+		return state.exact.length == 0 && state.anchors.length == 0;
+	}
+
+	/**
+	 * Gets the record stored against the xpath that best matches the passed
+	 * xpath. This steps through the whole xpath, so it's slower than looking up
+	 * with an {@link XPathTracker}.
+	 *
+	 * @param key
+	 *            The xpath of an element or attribute in a document.
+	 * @return The record, or null if no xpath matches.
+	 */
+	@SuppressWarnings("unchecked")
+	public XPathRecord<T> getFullRecord(XPathElement key) {
+		List<XPathElement> chain = new ArrayList<XPathElement>();
+
+		for (XPathElement element = key; element != null; element = element.getPreviousElement()) {
+			chain.add(0, element);
+		}
+
+		State state = initialState;
+		int elementCount = key.isAttribute() ? chain.size() - 1 : chain.size();
+
+		for (int i = 0; i < elementCount; i++) {
+			state = next(state, chain.get(i));
+		}
+
+		if (key.isAttribute()) {
+			return (XPathRecord<T>) getAttributeRecord(state, key.getName());
+		}
+
+		return (XPathRecord<T>) state.record;
+	}
+
+	/**
+	 * Gets the number of xpaths in the repository.
+	 *
+	 * @return The number of xpaths.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a new cursor to keep track of lookups with an
+	 * {@link XPathTracker}.
+	 *
+	 * @return A new cursor.
+	 */
+	Cursor newCursor() {
+		return new Cursor(this);
+	}
+
+	/**
+	 * Works out the state after stepping into an element.
+	 *
+	 * @param from
+	 *            The state of the element's parent.
+	 * @param element
+	 *            The element being stepped into.
+	 * @return The new state.
+	 */
+	private State next(State from, XPathElement element) {
+		if (from == deadState) {
+			return deadState;
+		}
+
+		String name = element.getName();
+
+		if (from.transitions != null) {
+			State cached = from.transitions.get(name);
+
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		boolean dependsOnPredicates = false;
+		List<Node> exact = new ArrayList<Node>();
+
+		for (Node node : from.exact) {
+			dependsOnPredicates |= addMatches(node.children == null ? null : node.children.get(name), element, exact);
+		}
+
+		for (Node node : from.anchors) {
+			dependsOnPredicates |= addMatches(node.descendants == null ? null : node.descendants.get(name), element,
+					exact);
+		}
+
+		List<Node> anchors = new ArrayList<Node>(Arrays.asList(from.anchors));
+
+		for (Node node : exact) {
+			if (node.hasDescendants() && !anchors.contains(node)) {
+				anchors.add(node);
+			}
+		}
+
+		State next = intern(exact.toArray(new Node[exact.size()]), anchors.toArray(new Node[anchors.size()]));
+
+		if (!dependsOnPredicates && from.transitions != null && next.transitions != null
+				&& from.transitions.size() < MAX_TRANSITIONS_PER_STATE) {
+			from.transitions.putIfAbsent(name, next);
+		}
+
+		return next;
+	}
+
+	/**
+	 * Adds the nodes that match an element from a list of candidates.
+	 *
+	 * @param candidates
+	 *            The candidate nodes - can be null.
+	 * @param element
+	 *            The element to match.
+	 * @param matches
+	 *            The list to add matching nodes to.
+	 * @return Whether any of the candidates had predicates, meaning that the
+	 *         result depends on more than the element's name.
+	 */
+	private boolean addMatches(List<Node> candidates, XPathElement element, List<Node> matches) {
+		boolean hadPredicates = false;
+
+		if (candidates != null) {
+			for (Node candidate : candidates) {
+				if (!candidate.predicates.isEmpty()) {
+					hadPredicates = true;
+
+					if (!predicatesMatch(candidate, element)) {
+						continue;
+					}
+				}
+
+				matches.add(candidate);
+			}
+		}
+
+		return hadPredicates;
+	}
+
+	/**
+	 * Determines whether an element has all of a node's predicates.
+	 *
+	 * @param node
+	 *            The node.
+	 * @param element
+	 *            The element.
+	 * @return true if the element has all the predicates.
+	 */
+	private boolean predicatesMatch(Node node, XPathElement element) {
+		for (Map.Entry<String, String> predicate : node.predicates.entrySet()) {
+			if (!predicate.getValue().equals(element.getPredicate(predicate.getKey()))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the record for an attribute of the element in the passed state.
+	 *
+	 * @param state
+	 *            The state of the element.
+	 * @param attributeName
+	 *            The name of the attribute.
+	 * @return The best matching record, or null.
+	 */
+	private XPathRecord<?> getAttributeRecord(State state, String attributeName) {
+		if (state.attributeRecords != null) {
+			Object cached = state.attributeRecords.get(attributeName);
+
+			if (cached != null) {
+				return cached == NO_RECORD ? null : (XPathRecord<?>) cached;
+			}
+		}
+
+		Node best = null;
+
+		for (Node node : state.exact) {
+			best = getBestNode(best, node.attributeChildren == null ? null : node.attributeChildren.get(attributeName));
+		}
+
+		for (Node node : state.anchors) {
+			best = getBestNode(best,
+					node.attributeDescendants == null ? null : node.attributeDescendants.get(attributeName));
+		}
+
+		XPathRecord<?> record = best == null ? null : best.record;
+
+		if (state.attributeRecords != null && state.attributeRecords.size() < MAX_TRANSITIONS_PER_STATE) {
+			state.attributeRecords.putIfAbsent(attributeName, record == null ? NO_RECORD : record);
+		}
+
+		return record;
+	}
+
+	/**
+	 * Picks the best node with a record out of the current best and a list of
+	 * candidates.
+	 *
+	 * @param best
+	 *            The best so far - can be null.
+	 * @param candidates
+	 *            The candidates - can be null.
+	 * @return The best node.
+	 */
+	private static Node getBestNode(Node best, List<Node> candidates) {
+		if (candidates != null) {
+			for (Node candidate : candidates) {
+				if (candidate.isBetterThan(best)) {
+					best = candidate;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Gets the interned state for the passed sets of nodes, creating it if
+	 * necessary. If there are already too many states interned, a new
+	 * uninterned state will be created that won't cache anything.
+	 *
+	 * @param exact
+	 *            The nodes that match the element exactly.
+	 * @param anchors
+	 *            The nodes matched by the element or one of its ancestors that
+	 *            have descendant edges.
+	 * @return The state.
+	 */
+	private State intern(Node[] exact, Node[] anchors) {
+		StateKey key = new StateKey(exact, anchors);
+		State state = states.get(key);
+
+		if (state == null) {
+			boolean cache = states.size() < MAX_INTERNED_STATES;
+			state = new State(exact, anchors, cache);
+
+			if (cache) {
+				State existing = states.putIfAbsent(key, state);
+
+				if (existing != null) {
+					state = existing;
+				}
+			}
+		}
+
+		return state;
+	}
+
+	/**
+	 * A node in the trie, representing one element of one or more xpaths.
+	 */
+	private static class Node {
+		/** Unique id of the node within the trie. */
+		private final int id;
+		/** The name of the element. */
+		private final String name;
+		/** The predicates that the element must have. */
+		private final Map<String, String> predicates;
+		/** Child elements, by name. */
+		private Map<String, List<Node>> children;
+		/** Descendant ('//') elements, by name. */
+		private Map<String, List<Node>> descendants;
+		/** Child attributes, by name. */
+		private Map<String, List<Node>> attributeChildren;
+		/** Descendant ('//@') attributes, by name. */
+		private Map<String, List<Node>> attributeDescendants;
+		/** The record of the xpath that ends at this node, if there is one. */
+		private XPathRecord<?> record;
+		/** The number of predicates in the xpath that ends here. */
+		private int specificity;
+		/** The order that the xpath ending here was added in. */
+		private int order;
+
+		/**
+		 * Creates a new node.
+		 *
+		 * @param id
+		 *            Unique id of the node.
+		 * @param name
+		 *            The name of the element.
+		 * @param predicates
+		 *            The predicates the element must have.
+		 */
+		public Node(int id, String name, Map<String, String> predicates) {
+			this.id = id;
+			this.name = name;
+			this.predicates = predicates;
+		}
+
+		/** Gets the child edges, creating them if necessary. */
+		public Map<String, List<Node>> children() {
+			if (children == null) {
+				children = new HashMap<String, List<Node>>();
+			}
+			return children;
+		}
+
+		/** Gets the descendant edges, creating them if necessary. */
+		public Map<String, List<Node>> descendants() {
+			if (descendants == null) {
+				descendants = new HashMap<String, List<Node>>();
+			}
+			return descendants;
+		}
+
+		/** Gets the child attribute edges, creating them if necessary. */
+		public Map<String, List<Node>> attributeChildren() {
+			if (attributeChildren == null) {
+				attributeChildren = new HashMap<String, List<Node>>();
+			}
+			return attributeChildren;
+		}
+
+		/** Gets the descendant attribute edges, creating them if necessary. */
+		public Map<String, List<Node>> attributeDescendants() {
+			if (attributeDescendants == null) {
+				attributeDescendants = new HashMap<String, List<Node>>();
+			}
+			return attributeDescendants;
+		}
+
+		/** Whether this node has any descendant edges. */
+		public boolean hasDescendants() {
+			return descendants != null || attributeDescendants != null;
+		}
+
+		/**
+		 * Whether this node's record should be chosen over another's.
+		 *
+		 * @param other
+		 *            The other node - can be null.
+		 * @return true if this has a record that beats the other node's.
+		 */
+		public boolean isBetterThan(Node other) {
+			if (record == null) {
+				return false;
+			}
+
+			if (other == null || other.record == null) {
+				return true;
+			}
+
+			if (specificity != other.specificity) {
+				return specificity > other.specificity;
+			}
+
+			return order < other.order;
+		}
+
+		@Override
+		public String toString() {
+			return name + predicates;
+		}
+	}
+
+	/**
+	 * A lookup state - the set of nodes matched by an element, and the set of
+	 * nodes that can still match its descendants.
+	 */
+	private static class State {
+		/** Nodes that match the element exactly. */
+		private final Node[] exact;
+		/**
+		 * Nodes matched by this element or one of its ancestors that have
+		 * descendant edges.
+		 */
+		private final Node[] anchors;
+		/** The best record for the element itself. */
+		private final XPathRecord<?> record;
+		/** Cached transitions, or null if this state isn't interned. */
+		private final ConcurrentMap<String, State> transitions;
+		/** Cached attribute lookups, or null if this state isn't interned. */
+		private final ConcurrentMap<String, Object> attributeRecords;
+
+		/**
+		 * Creates a new state.
+		 *
+		 * @param exact
+		 *            Nodes that match the element exactly.
+		 * @param anchors
+		 *            Nodes with descendant edges matched by the element or its
+		 *            ancestors.
+		 * @param cache
+		 *            Whether to cache transitions and lookups from this state.
+		 */
+		public State(Node[] exact, Node[] anchors, boolean cache) {
+			this.exact = exact;
+			this.anchors = anchors;
+
+			Node best = getBestNode(null, Arrays.asList(exact));
+			this.record = best == null ? null : best.record;
+
+			if (cache) {
+				transitions = new ConcurrentHashMap<String, State>();
+				attributeRecords = new ConcurrentHashMap<String, Object>();
+			} else {
+				transitions = null;
+				attributeRecords = null;
+			}
+		}
+	}
+
+	/**
+	 * Key used to intern states - the ids of the nodes in the state.
+	 */
+	private static class StateKey {
+		/** Sorted ids of the exact nodes. */
+		private final int[] exact;
+		/** Sorted ids of the anchor nodes. */
+		private final int[] anchors;
+
+		/**
+		 * Creates a new key.
+		 *
+		 * @param exact
+		 *            The exact nodes.
+		 * @param anchors
+		 *            The anchor nodes.
+		 */
+		public StateKey(Node[] exact, Node[] anchors) {
+			this.exact = getSortedIds(exact);
+			this.anchors = getSortedIds(anchors);
+		}
+
+		/**
+		 * Gets the ids of an array of nodes, sorted.
+		 *
+		 * @param nodes
+		 *            The nodes.
+		 * @return The sorted ids.
+		 */
+		private static int[] getSortedIds(Node[] nodes) {
+			int[] ids = new int[nodes.length];
+
+			for (int i = 0; i < nodes.length; i++) {
+				ids[i] = nodes[i].id;
+			}
+
+			Arrays.sort(ids);
+			return ids;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(exact) + Arrays.hashCode(anchors);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			StateKey other = (StateKey) obj;
+			return Arrays.equals(exact, other.exact) && Arrays.equals(anchors, other.anchors);
+		}
+	}
+
+	/**
+	 * Keeps the state for each depth of a single parse, so that lookups only
+	 * need to step through elements that have changed since the last one.
+	 */
+	static class Cursor {
+		/** The repository that this cursor looks up in. */
+		private final XPathTrieRepository<?> repository;
+		/** The state at each depth. */
+		private State[] depthStates = new State[16];
+		/** The serial of the element that each state was worked out for. */
+		private int[] serials = new int[16];
+		/** The deepest depth with a valid state. */
+		private int depth = 0;
+
+		/**
+		 * Creates a new cursor.
+		 *
+		 * @param repository
+		 *            The repository that the cursor looks up in.
+		 */
+		Cursor(XPathTrieRepository<?> repository) {
+			this.repository = repository;
+			depthStates[0] = repository.initialState;
+		}
+
+		/**
+		 * Brings the cursor up to date with the tracker's current position.
+		 *
+		 * @param tracker
+		 *            The tracker.
+		 * @return The state for the tracker's current element.
+		 */
+		State sync(XPathTracker tracker) {
+			int trackerDepth = tracker.getDepth();
+
+			if (trackerDepth >= depthStates.length) {
+				int newLength = Math.max(depthStates.length * 2, trackerDepth + 1);
+				depthStates = Arrays.copyOf(depthStates, newLength);
+				serials = Arrays.copyOf(serials, newLength);
+			}
+
+			// If the element at a depth hasn't changed, neither have any of its
+			// ancestors, so only walk back as far as the first unchanged one.
+			int validDepth = Math.min(depth, trackerDepth);
+			while (validDepth > 0 && serials[validDepth] != tracker.getSerial(validDepth)) {
+				validDepth--;
+			}
+
+			for (int i = validDepth + 1; i <= trackerDepth; i++) {
+				depthStates[i] = repository.next(depthStates[i - 1], tracker.getElement(i));
+				serials[i] = tracker.getSerial(i);
+			}
+
+			depth = trackerDepth;
+			return depthStates[trackerDepth];
+		}
+	}
+}
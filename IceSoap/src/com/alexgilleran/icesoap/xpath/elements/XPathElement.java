@@ -1,5 +1,7 @@
 package com.alexgilleran.icesoap.xpath.elements;
 
+import java.util.Map;
+
 /**
  * Represents a single element in an xpath expression. E.g. in the xpath "
  * <code>this//is/an/@xpath</code>", "<code>this</code>", "<code>is</code>", "
@@ -47,6 +49,14 @@ public interface XPathElement extends Cloneable {
 	 */
 	String getPredicate(String predicateName);
 
+	/**
+	 * Gets all the predicates of this element, as a map of predicate names to
+	 * values.
+	 * 
+	 * @return An unmodifiable map of the predicates - empty if there are none.
+	 */
+	Map<String, String> getPredicates();
+
 	/**
 	 * <p>
 	 * Adds a predicate to this XPath element. Currently, any predicates added
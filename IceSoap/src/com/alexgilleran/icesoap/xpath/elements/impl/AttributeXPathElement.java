@@ -1,5 +1,8 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import java.util.Collections;
+import java.util.Map;
+
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -70,6 +73,16 @@ public class AttributeXPathElement implements XPathElement {
 		// Do nothing
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Attribute elements cannot have predicates, so this is always empty.
+	 */
+	@Override
+	public Map<String, String> getPredicates() {
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,5 +1,6 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -41,6 +42,24 @@ public abstract class BaseXPathElement implements XPathElement {
 		this.previousElement = previousElement;
 	}
 
+	/**
+	 * Instantiates a new BaseXPathElement that keeps its predicates in the
+	 * passed map, so that the caller can supply a map that's cheaper to reuse
+	 * than a {@link HashMap}.
+	 * 
+	 * @param name
+	 *            The name of the new element.
+	 * @param previousElement
+	 *            The previous element - note that this can be set to null.
+	 * @param predicates
+	 *            The map to store predicates in.
+	 */
+	protected BaseXPathElement(String name, XPathElement previousElement, Map<String, String> predicates) {
+		this.name = name;
+		this.previousElement = previousElement;
+		this.predicates = predicates;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -64,6 +83,17 @@ public abstract class BaseXPathElement implements XPathElement {
 		return name;
 	}
 
+	/**
+	 * Changes the name of this element, so that it can be reused for a
+	 * different element rather than allocating a new one.
+	 * 
+	 * @param name
+	 *            The new name.
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -172,6 +202,14 @@ public abstract class BaseXPathElement implements XPathElement {
 		return predicates.get(predicateName);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, String> getPredicates() {
+		return Collections.unmodifiableMap(predicates);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
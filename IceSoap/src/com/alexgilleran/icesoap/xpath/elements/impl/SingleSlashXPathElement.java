@@ -1,5 +1,7 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import java.util.Map;
+
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -25,6 +27,21 @@ public class SingleSlashXPathElement extends BaseXPathElement {
 		super(name, previousElement);
 	}
 
+	/**
+	 * Instantiates a new {@link SingleSlashXPathElement} that keeps its
+	 * predicates in the passed map.
+	 * 
+	 * @param name
+	 *            The name of the new element.
+	 * @param previousElement
+	 *            The previous element - note that this can be set to null.
+	 * @param predicates
+	 *            The map to store predicates in.
+	 */
+	public SingleSlashXPathElement(String name, XPathElement previousElement, Map<String, String> predicates) {
+		super(name, previousElement, predicates);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,45 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler switched on, so that every result
+ * includes the bytes allocated per operation as well as its throughput. Takes
+ * the same arguments as JMH's own runner - e.g. to run just the list parser
+ * benchmarks with 100 items:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar ListParserBenchmark -p items=100
+ * </pre>
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class Benchmarks {
+	/**
+	 * Not instantiable.
+	 */
+	private Benchmarks() {
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args
+	 *            JMH command line options.
+	 * @throws CommandLineOptionException
+	 *             If the options are invalid.
+	 * @throws RunnerException
+	 *             If the benchmarks can't be run.
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,210 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP12Envelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.PasswordSOAP11Envelope;
+import com.alexgilleran.icesoap.envelope.impl.SOAPEnvelopeTemplate;
+import com.alexgilleran.icesoap.envelope.impl.TemplatedSOAPEnvelope;
+import com.alexgilleran.icesoap.xml.XMLParentNode;
+
+/**
+ * Builds and serializes envelopes with increasing numbers of elements in
+ * their bodies, to measure the request side of an exchange - each element is
+ * a record node with a text node inside it, the way a bulk upload would look.
+ * 
+ * Envelopes are built with {@link XMLParentNode#addNode(String, String)} and
+ * {@link XMLParentNode#addTextNode(String, String, String)}, then serialized
+ * either to a stream as requesters do, or to a String with
+ * {@link Object#toString()}. Filling in and serializing a
+ * {@link SOAPEnvelopeTemplate} of the same envelope is included to compare.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnvelopeBenchmark {
+	/** The namespace of the body elements. */
+	private static final String NAMESPACE = "http://example.com/upload";
+
+	/** The kind of envelope to build. */
+	@Param
+	public EnvelopeType envelopeType;
+	/** The number of elements in the body. */
+	@Param({ "1", "100", "10000" })
+	public int elements;
+
+	/** The value of each element, made in advance. */
+	private String[] values;
+	/** The name of the template slot for each element. */
+	private String[] slotNames;
+	/** An envelope built in advance, for the serialization benchmarks. */
+	private BaseSOAPEnvelope envelope;
+	/** A template of the same envelope. */
+	private SOAPEnvelopeTemplate template;
+	/** Where serialized envelopes are written. */
+	private ByteArrayOutputStream output;
+
+	/**
+	 * Builds the envelope and template to serialize.
+	 * 
+	 * @throws IOException
+	 *             If the template can't be made.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		values = new String[elements];
+		slotNames = new String[elements];
+		String[] slots = new String[elements];
+
+		for (int i = 0; i < elements; i++) {
+			values[i] = "Value " + i;
+			slotNames[i] = "value" + i;
+			slots[i] = SOAPEnvelopeTemplate.slot(slotNames[i]);
+		}
+
+		envelope = build(values);
+		template = new SOAPEnvelopeTemplate(build(slots));
+		output = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Builds an envelope.
+	 * 
+	 * @return The envelope.
+	 */
+	@Benchmark
+	public BaseSOAPEnvelope build() {
+		return build(values);
+	}
+
+	/**
+	 * Builds an envelope and serializes it to a stream, as a request does.
+	 * 
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	@Benchmark
+	public int buildAndSerialize() throws IOException {
+		output.reset();
+		build(values).serialize(output);
+
+		return output.size();
+	}
+
+	/**
+	 * Serializes an envelope that's already been built to a stream.
+	 * 
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	@Benchmark
+	public int serialize() throws IOException {
+		output.reset();
+		envelope.serialize(output);
+
+		return output.size();
+	}
+
+	/**
+	 * Serializes an envelope that's already been built to a String.
+	 * 
+	 * @return The envelope as a String.
+	 */
+	@Benchmark
+	public String serializeToString() {
+		return envelope.toString();
+	}
+
+	/**
+	 * Fills in a template of the envelope and serializes it to a stream - the
+	 * templated equivalent of {@link #buildAndSerialize()}.
+	 * 
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the envelope can't be serialized.
+	 */
+	@Benchmark
+	public int fillTemplateAndSerialize() throws IOException {
+		TemplatedSOAPEnvelope templated = template.newEnvelope();
+
+		for (int i = 0; i < elements; i++) {
+			templated.setSlot(slotNames[i], values[i]);
+		}
+
+		output.reset();
+		templated.serialize(output);
+
+		return output.size();
+	}
+
+	/**
+	 * Builds an envelope with a record in its body for each value.
+	 * 
+	 * @param recordValues
+	 *            The value of each record.
+	 * @return The envelope.
+	 */
+	private BaseSOAPEnvelope build(String[] recordValues) {
+		BaseSOAPEnvelope newEnvelope = envelopeType.newEnvelope();
+		XMLParentNode upload = newEnvelope.getBody().addNode(NAMESPACE, "UploadRecords");
+
+		for (int i = 0; i < recordValues.length; i++) {
+			upload.addNode(NAMESPACE, "Record").addTextNode(NAMESPACE, "Value", recordValues[i]);
+		}
+
+		return newEnvelope;
+	}
+
+	/**
+	 * The kinds of envelope that can be built.
+	 */
+	public enum EnvelopeType {
+		SOAP11 {
+			@Override
+			BaseSOAPEnvelope newEnvelope() {
+				return new BaseSOAP11Envelope();
+			}
+		},
+		SOAP12 {
+			@Override
+			BaseSOAPEnvelope newEnvelope() {
+				return new BaseSOAP12Envelope();
+			}
+		},
+		PASSWORD_SOAP11 {
+			@Override
+			BaseSOAPEnvelope newEnvelope() {
+				return new PasswordSOAP11Envelope("username", "password");
+			}
+		};
+
+		/**
+		 * @return A new, empty envelope of this type.
+		 */
+		abstract BaseSOAPEnvelope newEnvelope();
+	}
+}
@@ -0,0 +1,120 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Builds the XML that benchmarks parse - either by reading one of the unit
+ * test fixtures, or by generating documents of a given size.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public final class Fixtures {
+	/** The start of a generated SOAP response. */
+	private static final String ENVELOPE_START = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:response=\"http://example.com/response\">"
+			+ "<soapenv:Header/><soapenv:Body><response:Response>";
+	/** The end of a generated SOAP response. */
+	private static final String ENVELOPE_END = "</response:Response></soapenv:Body></soapenv:Envelope>";
+
+	/**
+	 * Not instantiable.
+	 */
+	private Fixtures() {
+	}
+
+	/**
+	 * Reads a fixture into memory, so that reading it doesn't count towards
+	 * the benchmark.
+	 * 
+	 * @param stream
+	 *            The fixture.
+	 * @return Its bytes.
+	 * @throws IOException
+	 *             If it can't be read.
+	 */
+	public static byte[] toBytes(InputStream stream) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+
+			while ((read = stream.read(buffer)) != -1) {
+				bytes.write(buffer, 0, read);
+			}
+
+			return bytes.toByteArray();
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Generates a SOAP response with a list of items like
+	 * {@link com.alexgilleran.icesoap.request.test.SampleResponse}'s, which
+	 * parse into
+	 * {@link com.alexgilleran.icesoap.request.test.xmlclasses.Response}.
+	 * 
+	 * @param items
+	 *            The number of items.
+	 * @return The response.
+	 */
+	public static byte[] getDetailsList(int items) {
+		StringBuilder xml = new StringBuilder(ENVELOPE_START);
+
+		for (int i = 0; i < items; i++) {
+			xml.append("<response:Details id=\"").append(i).append("\">");
+			xml.append("<response:TextField>Text").append(i).append("</response:TextField>");
+			xml.append("</response:Details>");
+		}
+
+		return xml.append(ENVELOPE_END).toString().getBytes();
+	}
+
+	/**
+	 * Generates a SOAP response with a list of items that keep all their
+	 * values in attributes, which parse into
+	 * {@link com.alexgilleran.icesoap.benchmark.xmlclasses.AttributeItem}.
+	 * 
+	 * @param items
+	 *            The number of items.
+	 * @return The response.
+	 */
+	public static byte[] getAttributeList(int items) {
+		StringBuilder xml = new StringBuilder(ENVELOPE_START);
+
+		for (int i = 0; i < items; i++) {
+			xml.append("<response:Item id=\"").append(i).append("\" name=\"Item ").append(i);
+			xml.append("\" code=\"SKU-").append(i).append("\" category=\"Category ").append(i % 10);
+			xml.append("\" price=\"").append(i).append(".95\" quantity=\"").append(i % 100);
+			xml.append("\" weight=\"").append(i * 0.25).append("\" active=\"").append(i % 2 == 0);
+			xml.append("\"/>");
+		}
+
+		return xml.append(ENVELOPE_END).toString().getBytes();
+	}
+
+	/**
+	 * Generates a SOAP response with elements nested inside each other, which
+	 * parse into
+	 * {@link com.alexgilleran.icesoap.benchmark.xmlclasses.NestedNode}s.
+	 * 
+	 * @param depth
+	 *            How many elements deep to go.
+	 * @return The response.
+	 */
+	public static byte[] getNestedNodes(int depth) {
+		StringBuilder xml = new StringBuilder(ENVELOPE_START);
+
+		for (int i = 0; i < depth; i++) {
+			xml.append("<response:Node depth=\"").append(i).append("\">");
+			xml.append("<response:Name>Node ").append(i).append("</response:Name>");
+		}
+		for (int i = 0; i < depth; i++) {
+			xml.append("</response:Node>");
+		}
+
+		return xml.append(ENVELOPE_END).toString().getBytes();
+	}
+}
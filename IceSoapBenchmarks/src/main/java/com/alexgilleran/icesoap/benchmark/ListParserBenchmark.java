@@ -0,0 +1,115 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.alexgilleran.icesoap.benchmark.xmlclasses.AttributeItem;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.IceSoapListParser;
+import com.alexgilleran.icesoap.parser.ListCursor;
+import com.alexgilleran.icesoap.parser.impl.IceSoapListParserImpl;
+import com.alexgilleran.icesoap.request.test.xmlclasses.Response;
+
+/**
+ * Parses generated lists of increasing size, to show how the list parser
+ * scales - both for items with child elements like
+ * {@link com.alexgilleran.icesoap.request.test.SampleResponse}'s, and for
+ * items that keep all their values in attributes.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListParserBenchmark {
+	/** The number of items in each list. */
+	@Param({ "10", "1000", "100000" })
+	public int items;
+
+	/** Parses items with child elements. */
+	private IceSoapListParser<Response> detailsParser;
+	/** Parses items with attributes. */
+	private IceSoapListParser<AttributeItem> attributeParser;
+	/** A list of items with child elements. */
+	private byte[] detailsXml;
+	/** A list of items with attributes. */
+	private byte[] attributeXml;
+
+	/**
+	 * Generates the lists and builds their parsers.
+	 */
+	@Setup
+	public void setUp() {
+		detailsParser = new IceSoapListParserImpl<Response>(Response.class);
+		attributeParser = new IceSoapListParserImpl<AttributeItem>(AttributeItem.class);
+		detailsXml = Fixtures.getDetailsList(items);
+		attributeXml = Fixtures.getAttributeList(items);
+	}
+
+	/**
+	 * Parses the whole list of items with child elements.
+	 * 
+	 * @return The list.
+	 * @throws XMLParsingException
+	 *             If it can't be parsed.
+	 */
+	@Benchmark
+	public List<Response> parseDetails() throws XMLParsingException {
+		return detailsParser.parse(new ByteArrayInputStream(detailsXml));
+	}
+
+	/**
+	 * Parses the list of items with child elements one at a time, without
+	 * keeping them.
+	 * 
+	 * @param blackhole
+	 *            Consumes each item.
+	 * @throws XMLParsingException
+	 *             If it can't be parsed.
+	 * @throws IOException
+	 *             If the cursor can't be closed.
+	 */
+	@Benchmark
+	public void parseDetailsWithCursor(Blackhole blackhole) throws XMLParsingException, IOException {
+		ListCursor<Response> cursor = detailsParser.parseItems(new ByteArrayInputStream(detailsXml));
+
+		try {
+			while (cursor.hasNext()) {
+				blackhole.consume(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Parses the whole list of items with attributes.
+	 * 
+	 * @return The list.
+	 * @throws XMLParsingException
+	 *             If it can't be parsed.
+	 */
+	@Benchmark
+	public List<AttributeItem> parseAttributeHeavy() throws XMLParsingException {
+		return attributeParser.parse(new ByteArrayInputStream(attributeXml));
+	}
+}
@@ -0,0 +1,67 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alexgilleran.icesoap.benchmark.xmlclasses.NestedNode;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+
+/**
+ * Parses elements nested inside each other into a chain of objects, to show
+ * the cost of each level of nesting - every level gets its own parser and
+ * XPath matching.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NestingBenchmark {
+	/** How many elements deep the document goes. */
+	@Param({ "10", "100", "500" })
+	public int depth;
+
+	/** The parser for the nodes. */
+	private IceSoapParser<NestedNode> parser;
+	/** The nested document. */
+	private byte[] xml;
+
+	/**
+	 * Generates the document and builds its parser.
+	 */
+	@Setup
+	public void setUp() {
+		parser = new IceSoapParserImpl<NestedNode>(NestedNode.class);
+		xml = Fixtures.getNestedNodes(depth);
+	}
+
+	/**
+	 * Parses the document.
+	 * 
+	 * @return The outermost node.
+	 * @throws XMLParsingException
+	 *             If it can't be parsed.
+	 */
+	@Benchmark
+	public NestedNode parse() throws XMLParsingException {
+		return parser.parse(new ByteArrayInputStream(xml));
+	}
+}
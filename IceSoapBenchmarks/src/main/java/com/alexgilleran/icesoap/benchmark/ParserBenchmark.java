@@ -0,0 +1,245 @@
+package com.alexgilleran.icesoap.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.impl.IceSoapListParserImpl;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.test.SampleXml;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Alert;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Booleans;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.CustsAndOrders;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Customer;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.NilValues;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Order;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.ProcessorTest;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.PurchaseOrder;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Reply;
+import com.alexgilleran.icesoap.request.test.SampleResponse;
+import com.alexgilleran.icesoap.request.test.xmlclasses.CustomSOAP12Fault;
+import com.alexgilleran.icesoap.request.test.xmlclasses.Response;
+import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
+
+/**
+ * Parses each of the unit test fixtures in {@link SampleXml} and
+ * {@link SampleResponse}, with the same classes the tests use - a broad mix
+ * of small documents, which is what most requests get back.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+	/** The fixture to parse. */
+	@Param
+	public Fixture fixture;
+
+	/** The parser for the fixture. */
+	private IceSoapParser<?> parser;
+	/** The fixture's XML. */
+	private byte[] xml;
+
+	/**
+	 * Reads the fixture into memory and builds its parser.
+	 * 
+	 * @throws IOException
+	 *             If the fixture can't be read.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		parser = fixture.buildParser();
+		xml = Fixtures.toBytes(fixture.open());
+	}
+
+	/**
+	 * Parses the fixture.
+	 * 
+	 * @return The parsed object, so that it isn't optimised away.
+	 * @throws XMLParsingException
+	 *             If the fixture can't be parsed.
+	 */
+	@Benchmark
+	public Object parse() throws XMLParsingException {
+		return parser.parse(new ByteArrayInputStream(xml));
+	}
+
+	/**
+	 * The fixtures, along with the parsers the unit tests use for them.
+	 */
+	public enum Fixture {
+		PURCHASE_ORDER {
+			@Override
+			InputStream open() {
+				return SampleXml.getPurchaseOrder();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class);
+			}
+		},
+		CUSTOMERS_AND_ORDERS {
+			@Override
+			InputStream open() {
+				return SampleXml.getCustomersAndOrders();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<CustsAndOrders>(CustsAndOrders.class);
+			}
+		},
+		CUSTOMER_LIST {
+			@Override
+			InputStream open() {
+				return SampleXml.getCustomersAndOrders();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapListParserImpl<Customer>(Customer.class);
+			}
+		},
+		ORDER_LIST {
+			@Override
+			InputStream open() {
+				return SampleXml.getCustomersAndOrders();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapListParserImpl<Order>(Order.class);
+			}
+		},
+		NIL_VALUES {
+			@Override
+			InputStream open() {
+				return SampleXml.getNilValues();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<NilValues>(NilValues.class);
+			}
+		},
+		BOOLEANS {
+			@Override
+			InputStream open() {
+				return SampleXml.getBooleans();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<Booleans>(Booleans.class);
+			}
+		},
+		PROCESSORS {
+			@Override
+			InputStream open() {
+				return SampleXml.getProcessorTest();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<ProcessorTest>(ProcessorTest.class);
+			}
+		},
+		LIST_OF_STRINGS {
+			@Override
+			InputStream open() {
+				return SampleXml.getListOfStringsXML();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<Alert>(Alert.class);
+			}
+		},
+		CRAPPY_LIST {
+			@Override
+			InputStream open() {
+				return SampleXml.getCrappyList();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<Reply>(Reply.class);
+			}
+		},
+		SINGLE_RESPONSE {
+			@Override
+			InputStream open() {
+				return SampleResponse.getSingleResponse();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<Response>(Response.class);
+			}
+		},
+		LIST_RESPONSE {
+			@Override
+			InputStream open() {
+				return SampleResponse.getListResponse();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapListParserImpl<Response>(Response.class);
+			}
+		},
+		SOAP11_FAULT {
+			@Override
+			InputStream open() {
+				return SampleResponse.getSoap11Fault();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<SOAP11Fault>(SOAP11Fault.class);
+			}
+		},
+		SOAP12_FAULT {
+			@Override
+			InputStream open() {
+				return SampleResponse.getSoap12Fault();
+			}
+
+			@Override
+			IceSoapParser<?> buildParser() {
+				return new IceSoapParserImpl<CustomSOAP12Fault>(CustomSOAP12Fault.class);
+			}
+		};
+
+		/**
+		 * @return A stream of the fixture.
+		 */
+		abstract InputStream open();
+
+		/**
+		 * @return A parser for the fixture.
+		 */
+		abstract IceSoapParser<?> buildParser();
+	}
+}
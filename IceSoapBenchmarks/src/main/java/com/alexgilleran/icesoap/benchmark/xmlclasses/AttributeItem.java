@@ -0,0 +1,58 @@
+package com.alexgilleran.icesoap.benchmark.xmlclasses;
+
+import java.math.BigDecimal;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+@XMLObject("//Item")
+public class AttributeItem {
+	@XMLField("@id")
+	private long id;
+	@XMLField("@name")
+	private String name;
+	@XMLField("@code")
+	private String code;
+	@XMLField("@category")
+	private String category;
+	@XMLField("@price")
+	private BigDecimal price;
+	@XMLField("@quantity")
+	private int quantity;
+	@XMLField("@weight")
+	private double weight;
+	@XMLField("@active")
+	private boolean active;
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public double getWeight() {
+		return weight;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+}
@@ -0,0 +1,26 @@
+package com.alexgilleran.icesoap.benchmark.xmlclasses;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+@XMLObject("//Node")
+public class NestedNode {
+	@XMLField("@depth")
+	private int depth;
+	@XMLField("Name")
+	private String name;
+	@XMLField("Node")
+	private NestedNode child;
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public NestedNode getChild() {
+		return child;
+	}
+}
@@ -0,0 +1,166 @@
+package com.alexgilleran.icesoap.envelope.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.envelope.impl.SOAPEnvelopeTemplate;
+import com.alexgilleran.icesoap.envelope.impl.TemplatedSOAPEnvelope;
+import com.alexgilleran.icesoap.request.impl.SOAPEnvelopeEntity;
+import com.alexgilleran.icesoap.xml.XMLParentNode;
+import com.alexgilleran.icesoap.xml.XMLTextNode;
+
+/**
+ * Tests that envelopes made from a {@link SOAPEnvelopeTemplate} serialize the
+ * same way as envelopes built as a tree.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+public class SOAPEnvelopeTemplateTest {
+	/** Namespace of the body content. */
+	private static final String NS = "http://www.example.com/quotes";
+
+	/**
+	 * Tests that a filled template writes exactly the same bytes as the
+	 * equivalent envelope, in both a single and multi-byte encoding.
+	 */
+	@Test
+	public void testSerializeMatchesTree() throws IOException {
+		for (String encoding : Arrays.asList("UTF-8", "UTF-16")) {
+			SOAPEnvelope prototype = buildEnvelope(SOAPEnvelopeTemplate.slot("symbol"),
+					SOAPEnvelopeTemplate.slot("currency"));
+			prototype.setEncoding(encoding);
+			SOAPEnvelope expected = buildEnvelope("GOOG", "USD");
+			expected.setEncoding(encoding);
+
+			TemplatedSOAPEnvelope envelope = new SOAPEnvelopeTemplate(prototype).newEnvelope();
+			envelope.setSlot("symbol", "GOOG");
+			envelope.setSlot("currency", "USD");
+
+			assertEquals(new String(serialize(expected), encoding), new String(serialize(envelope), encoding));
+			assertTrue(encoding, Arrays.equals(serialize(expected), serialize(envelope)));
+			assertEquals(expected.toString(), envelope.toString());
+		}
+	}
+
+	/**
+	 * Tests that slot values are escaped, and can be reused.
+	 */
+	@Test
+	public void testEscaping() throws IOException {
+		SOAPEnvelopeTemplate template = new SOAPEnvelopeTemplate(buildEnvelope(SOAPEnvelopeTemplate.slot("symbol"),
+				SOAPEnvelopeTemplate.slot("currency")));
+		assertEquals(Arrays.asList("currency", "symbol"), template.getSlotNames());
+
+		TemplatedSOAPEnvelope envelope = template.newEnvelope();
+		envelope.setSlot("symbol", "A&B <C>");
+		envelope.setSlot("currency", "\"$\"");
+		String serialized = new String(serialize(envelope), "UTF-8");
+
+		assertTrue(serialized, serialized.contains(">A&amp;B &lt;C&gt;<"));
+		assertTrue(serialized, serialized.contains("currency=\"&quot;$&quot;\""));
+
+		envelope.setSlot("symbol", "MSFT");
+		serialized = new String(serialize(envelope), "UTF-8");
+		assertTrue(serialized, serialized.contains(">MSFT<"));
+	}
+
+	/**
+	 * Tests that an envelope with unset slots can't be serialized.
+	 */
+	@Test
+	public void testUnsetSlot() throws IOException {
+		TemplatedSOAPEnvelope envelope = new SOAPEnvelopeTemplate(buildEnvelope(
+				SOAPEnvelopeTemplate.slot("symbol"), "USD")).newEnvelope();
+
+		try {
+			serialize(envelope);
+			fail("Expected an exception");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Tests that templated envelopes can be read like any other, but that
+	 * neither they nor the prototype can change what the template writes.
+	 */
+	@Test
+	public void testReadOnlyCopy() throws IOException {
+		SOAPEnvelope prototype = buildEnvelope(SOAPEnvelopeTemplate.slot("symbol"), "USD");
+		SOAPEnvelopeTemplate template = new SOAPEnvelopeTemplate(prototype);
+		TemplatedSOAPEnvelope envelope = template.newEnvelope();
+		envelope.setSlot("symbol", "GOOG");
+		SOAPEnvelope expected = buildEnvelope("GOOG", "USD");
+
+		XMLParentNode quote = (XMLParentNode) envelope.getBody().getChildNodes().get(0);
+		assertEquals("GetQuote", quote.getName());
+		assertEquals(SOAPEnvelopeTemplate.slot("symbol"), ((XMLTextNode) quote.getChildNodes().get(0)).getValue());
+		assertTrue(envelope.getHeader().getChildNodes().isEmpty());
+
+		try {
+			quote.addNode(NS, "Extra");
+			fail("Expected an exception");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		try {
+			((XMLParentNode) envelope.getChildNodes().get(0)).addNode(NS, "Extra");
+			fail("Expected an exception");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		try {
+			quote.getAttributes().iterator().next().setValue("AUD");
+			fail("Expected an exception");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+
+		prototype.getBody().addNode(NS, "Extra");
+
+		assertEquals(expected.toString(), envelope.toString());
+		assertTrue(Arrays.equals(serialize(expected), serialize(envelope)));
+	}
+
+	/**
+	 * Builds an envelope asking for a quote.
+	 * 
+	 * @param symbol
+	 *            The symbol to ask for, as text.
+	 * @param currency
+	 *            The currency to ask for it in, as an attribute.
+	 * @return The envelope.
+	 */
+	private SOAPEnvelope buildEnvelope(String symbol, String currency) {
+		SOAPEnvelope envelope = new BaseSOAP11Envelope();
+		XMLParentNode quote = envelope.getBody().addNode(NS, "GetQuote");
+		quote.addAttribute(null, "currency", currency);
+		quote.addTextNode(NS, "symbol", symbol);
+		return envelope;
+	}
+
+	/**
+	 * Serializes an envelope to bytes.
+	 * 
+	 * @param envelope
+	 *            The envelope.
+	 * @return The bytes.
+	 */
+	private byte[] serialize(SOAPEnvelope envelope) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SOAPEnvelopeEntity.serialize(envelope, out);
+		return out.toByteArray();
+	}
+}
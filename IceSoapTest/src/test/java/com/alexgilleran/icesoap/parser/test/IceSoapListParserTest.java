@@ -3,8 +3,10 @@ package com.alexgilleran.icesoap.parser.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
@@ -16,6 +18,7 @@ import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapListParser;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
 import com.alexgilleran.icesoap.parser.ItemObserver;
+import com.alexgilleran.icesoap.parser.ListCursor;
 import com.alexgilleran.icesoap.parser.impl.IceSoapListParserImpl;
 import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Customer;
@@ -67,6 +70,34 @@ public class IceSoapListParserTest {
 		checkOrderList(purchaseOrderList);
 	}
 
+	/**
+	 * Tests that a cursor returns the same items as parsing the whole list.
+	 * 
+	 * @throws XMLParsingException
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	@Test
+	public void testOrderCursor() throws XMLParsingException, IOException, ParseException {
+		OrderObserver orderObserver = new OrderObserver();
+		IceSoapListParser<Order> parser = new IceSoapListParserImpl<Order>(Order.class);
+		parser.registerItemObserver(orderObserver);
+
+		ListCursor<Order> cursor = parser.parseItems(SampleXml.getCustomersAndOrders());
+		List<Order> orders = new ArrayList<Order>();
+
+		while (cursor.hasNext()) {
+			// Items shouldn't be parsed before they're asked for
+			assertEquals(orders.size() + 1, orderObserver.counter);
+			orders.add(cursor.next());
+		}
+
+		cursor.close();
+
+		assertEquals(12, orderObserver.counter);
+		checkOrderList(orders);
+	}
+
 	@Test
 	public void testListsInTypes() throws XMLParsingException, ParseException {
 		IceSoapParser<CustsAndOrders> parser = new IceSoapParserImpl<CustsAndOrders>(
@@ -8,10 +8,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
@@ -21,7 +26,9 @@ import com.alexgilleran.icesoap.parser.IceSoapParser;
 import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.AddressChild;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Alert;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.BinaryValues;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Booleans;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.ConvertedValues;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.NilValues;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.PipeTest;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.ProcessorTest;
@@ -143,6 +150,74 @@ public class IceSoapParserTest {
 		assertFalse(address.isTitleCaseBoolean());
 	}
 
+	/**
+	 * Tests that each of the precompiled conversions sets the right value, and
+	 * that a parser gives independent results when it's reused.
+	 */
+	@Test
+	public void testConvertedValues() throws XMLParsingException, ParseException {
+		IceSoapParser<ConvertedValues> parser = new IceSoapParserImpl<ConvertedValues>(ConvertedValues.class);
+
+		ConvertedValues values = parser.parse(SampleXml.getConvertedValues());
+		ConvertedValues again = parser.parse(SampleXml.getConvertedValues());
+
+		for (ConvertedValues parsed : Arrays.asList(values, again)) {
+			assertEquals(7, parsed.getAttributeInt());
+			assertEquals(-42, parsed.getIntValue());
+			assertEquals(9876543210l, parsed.getLongValue());
+			assertEquals(1.5f, parsed.getFloatValue(), 0);
+			assertEquals(-2.25d, parsed.getDoubleValue(), 0);
+			assertTrue(parsed.isBooleanValue());
+			assertEquals(new BigDecimal("12345.6789"), parsed.getDecimal());
+			assertEquals(new SimpleDateFormat("yyyy-MM-dd").parse("2012-12-25"), parsed.getDate());
+			assertEquals("Some text", parsed.getText());
+			assertEquals(Arrays.asList("first", "second", "third"), parsed.getTags());
+		}
+
+		assertFalse(values == again);
+		assertFalse(values.getTags() == again.getTags());
+	}
+
+	/**
+	 * Tests that base64 values are decoded into each of the binary field
+	 * types, with and without line breaks and padding.
+	 */
+	@Test
+	public void testBinaryValues() throws XMLParsingException, IOException {
+		IceSoapParser<BinaryValues> parser = new IceSoapParserImpl<BinaryValues>(BinaryValues.class);
+
+		BinaryValues values = parser.parse(SampleXml.getBinaryValues());
+		byte[] expected = "Hello, World!".getBytes("UTF-8");
+
+		assertTrue(Arrays.equals("Hi".getBytes("UTF-8"), values.getAttribute()));
+		assertTrue(Arrays.equals(expected, values.getBytes()));
+		assertEquals(ByteBuffer.wrap(expected), values.getBuffer());
+
+		try {
+			assertTrue(Arrays.equals(expected, readFully(new FileInputStream(values.getFile()))));
+		} finally {
+			values.getFile().delete();
+		}
+
+		assertTrue(Arrays.equals(expected, readFully(values.getStream())));
+	}
+
+	private byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+
+		try {
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+
+		return out.toByteArray();
+	}
+
 	@Test
 	public void testProcessors() throws XMLParsingException {
 		IceSoapParser<ProcessorTest> parser = new IceSoapParserImpl<ProcessorTest>(ProcessorTest.class);
@@ -0,0 +1,53 @@
+package com.alexgilleran.icesoap.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.exception.XPathParsingException;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.impl.ParserRegistry;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Address;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.PurchaseOrder;
+import com.alexgilleran.icesoap.xpath.XPathFactory;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+public class ParserRegistryTest {
+	@Test
+	public void testSameParserForSameClass() {
+		IceSoapParserImpl<PurchaseOrder> parser1 = ParserRegistry.getInstance().getParser(PurchaseOrder.class);
+		IceSoapParserImpl<PurchaseOrder> parser2 = ParserRegistry.getInstance().getParser(PurchaseOrder.class);
+
+		assertSame(parser1, parser2);
+	}
+
+	@Test
+	public void testDifferentParserForDifferentRoot() throws XPathParsingException {
+		XPathElement shipping = XPathFactory.getInstance().compile("/PurchaseOrder/Address[@Type=\"Shipping\"]")
+				.keySet().iterator().next();
+		XPathElement billing = XPathFactory.getInstance().compile("/PurchaseOrder/Address[@Type=\"Billing\"]")
+				.keySet().iterator().next();
+
+		IceSoapParserImpl<Address> shippingParser = ParserRegistry.getInstance().getParser(Address.class, shipping);
+		IceSoapParserImpl<Address> billingParser = ParserRegistry.getInstance().getParser(Address.class, billing);
+
+		assertNotSame(shippingParser, billingParser);
+		assertSame(shippingParser, ParserRegistry.getInstance().getParser(Address.class, shipping.clone()));
+	}
+
+	@Test
+	public void testSharedParserReused() throws XMLParsingException {
+		IceSoapParserImpl<PurchaseOrder> parser = ParserRegistry.getInstance().getParser(PurchaseOrder.class);
+
+		PurchaseOrder first = parser.parse(SampleXml.getPurchaseOrder());
+		PurchaseOrder second = parser.parse(SampleXml.getPurchaseOrder());
+
+		assertNotSame(first, second);
+		assertEquals(first.getPurchaseOrderNumber(), second.getPurchaseOrderNumber());
+		assertEquals(first.getShippingAddress().getName(), second.getShippingAddress().getName());
+		assertEquals(first.getItem926aa().getUsPrice(), second.getItem926aa().getUsPrice());
+	}
+}
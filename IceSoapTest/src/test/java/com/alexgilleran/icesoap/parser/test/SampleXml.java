@@ -66,6 +66,26 @@ public class SampleXml {
 			+ "<UpperCaseBoolean>TRUE</UpperCaseBoolean>"
 			+ "<TitleCaseBoolean>False</TitleCaseBoolean>" + "</Booleans>";
 
+	private final static String BINARY_VALUES = "<?xml version=\"1.0\"?>"
+			+ "<BinaryValues attribute=\"SGk=\">"
+			+ "<Bytes>SGVsbG8s\nIFdvcmxk\nIQ==</Bytes>"
+			+ "<Buffer>SGVsbG8sIFdvcmxkIQ==</Buffer>"
+			+ "<File>SGVsbG8sIFdvcmxkIQ==</File>"
+			+ "<Stream>SGVsbG8sIFdvcmxkIQ</Stream>" + "</BinaryValues>";
+
+	private final static String CONVERTED_VALUES = "<?xml version=\"1.0\"?>"
+			+ "<ConvertedValues count=\"7\">"
+			+ "<Int>-42</Int>"
+			+ "<Long>9876543210</Long>"
+			+ "<Float>1.5</Float>"
+			+ "<Double>-2.25</Double>"
+			+ "<Boolean>true</Boolean>"
+			+ "<Decimal>12345.6789</Decimal>"
+			+ "<Date>25/12/2012</Date>"
+			+ "<Text>Some text</Text>"
+			+ "<Tags><Tag>first</Tag><Tag>second</Tag><Tag>third</Tag></Tags>"
+			+ "</ConvertedValues>";
+
 	private final static String PURCHASE_ORDER = "<?xml version=\"1.0\"?>"
 			+ "<aw:PurchaseOrder"
 			+ " aw:PurchaseOrderNumber=\"99503\""
@@ -403,6 +423,14 @@ public class SampleXml {
 		return new ByteArrayInputStream(BOOLEAN_VALUES.getBytes());
 	}
 
+	public static InputStream getBinaryValues() {
+		return new ByteArrayInputStream(BINARY_VALUES.getBytes());
+	}
+
+	public static InputStream getConvertedValues() {
+		return new ByteArrayInputStream(CONVERTED_VALUES.getBytes());
+	}
+
 	public static InputStream getProcessorTest() {
 		return new ByteArrayInputStream(PROCESSOR_TEST.getBytes());
 	}
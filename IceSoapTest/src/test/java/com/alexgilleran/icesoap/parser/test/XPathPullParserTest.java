@@ -4,6 +4,10 @@
 package com.alexgilleran.icesoap.parser.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
@@ -98,6 +102,140 @@ public class XPathPullParserTest {
 				"Please leave packages in shed by driveway.");
 	}
 
+	/**
+	 * Tests that skipping the subtree of an element leaves the parser at its
+	 * end tag, and that parsing carries on normally afterwards.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testSkipSubtree() throws XmlPullParserException, XMLParsingException {
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setInput(SampleXml.getPurchaseOrder(), null);
+
+		XPathElement purchaseOrder = new SingleSlashXPathElement("PurchaseOrder", null);
+		purchaseOrder.addPredicate("PurchaseOrderNumber", "99503");
+		purchaseOrder.addPredicate("OrderDate", "1999-10-20");
+
+		XPathElement shippingAddress = new SingleSlashXPathElement("Address", purchaseOrder);
+		shippingAddress.addPredicate("Type", "Shipping");
+
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(XPathPullParser.ATTRIBUTE, parser.next());
+		assertEquals(XPathPullParser.ATTRIBUTE, parser.next());
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(shippingAddress, parser.getCurrentElement());
+
+		// Skip from an attribute event
+		assertEquals(XPathPullParser.ATTRIBUTE, parser.next());
+		parser.skipSubtree();
+		assertEquals(XPathPullParser.END_TAG, parser.getEventType());
+		assertEquals(shippingAddress, parser.getCurrentElement());
+		assertEquals(2, parser.getTracker().getDepth());
+
+		XPathElement billingAddress = new SingleSlashXPathElement("Address", purchaseOrder);
+		billingAddress.addPredicate("Type", "Billing");
+
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(billingAddress, parser.getCurrentElement());
+
+		// Skip from a start tag
+		parser.skipSubtree();
+		assertEquals(XPathPullParser.END_TAG, parser.getEventType());
+		assertEquals(billingAddress, parser.getCurrentElement());
+
+		assertTextElement(parser, purchaseOrder, "DeliveryNotes", "Please leave packages in shed by driveway.");
+	}
+
+	/**
+	 * Tests that elements nested deeper than the parser's initial capacity
+	 * come back with the right names, predicates and parents, both on the way
+	 * in and on the way back out.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testDeepNesting() throws XmlPullParserException, XMLParsingException {
+		int depth = 40;
+		StringBuilder xml = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			xml.append("<n").append(i).append(" d=\"").append(i).append("\">");
+		}
+		for (int i = depth - 1; i >= 0; i--) {
+			xml.append("</n").append(i).append(">");
+		}
+
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setInput(new ByteArrayInputStream(xml.toString().getBytes()), null);
+
+		XPathElement[] expected = new XPathElement[depth];
+		XPathElement previous = null;
+
+		for (int i = 0; i < depth; i++) {
+			expected[i] = new SingleSlashXPathElement("n" + i, previous);
+			expected[i].addPredicate("d", Integer.toString(i));
+			previous = expected[i];
+
+			assertEquals(XPathPullParser.START_TAG, parser.next());
+			assertEquals(expected[i], parser.getCurrentElement());
+			assertAttribute(parser, expected[i], "d", Integer.toString(i));
+		}
+
+		for (int i = depth - 1; i >= 0; i--) {
+			assertEquals(XPathPullParser.END_TAG, parser.next());
+			assertEquals(expected[i], parser.getCurrentElement());
+		}
+	}
+
+	/**
+	 * Tests that when sibling elements reuse the same depth, each one only has
+	 * its own name and predicates, and none left over from the one before.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testSiblingsClearPredicates() throws XmlPullParserException, XMLParsingException {
+		String xml = "<root><a x=\"1\" y=\"2\"/><b z=\"3\"/><a/></root>";
+
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setInput(new ByteArrayInputStream(xml.getBytes()), null);
+
+		XPathElement root = new SingleSlashXPathElement("root", null);
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(root, parser.getCurrentElement());
+
+		XPathElement first = new SingleSlashXPathElement("a", root);
+		first.addPredicate("x", "1");
+		first.addPredicate("y", "2");
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(first, parser.getCurrentElement());
+		assertAttribute(parser, first, "x", "1");
+		assertAttribute(parser, first, "y", "2");
+		assertEquals(XPathPullParser.END_TAG, parser.next());
+
+		XPathElement second = new SingleSlashXPathElement("b", root);
+		second.addPredicate("z", "3");
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(second, parser.getCurrentElement());
+		assertEquals(1, parser.getCurrentElement().getPredicates().size());
+		assertNull(parser.getCurrentElement().getPredicate("x"));
+		assertNull(parser.getCurrentElement().getPredicate("y"));
+		assertAttribute(parser, second, "z", "3");
+		assertEquals(XPathPullParser.END_TAG, parser.next());
+
+		XPathElement third = new SingleSlashXPathElement("a", root);
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(third, parser.getCurrentElement());
+		assertTrue(parser.getCurrentElement().getPredicates().isEmpty());
+		assertEquals(XPathPullParser.END_TAG, parser.next());
+
+		assertEquals(XPathPullParser.END_TAG, parser.next());
+		assertEquals(root, parser.getCurrentElement());
+	}
+
 	/**
 	 * Moves the parser into a subsequent text element and asserts that its name
 	 * and value are correct
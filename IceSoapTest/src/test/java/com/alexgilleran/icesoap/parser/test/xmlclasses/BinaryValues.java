@@ -0,0 +1,46 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+@XMLObject("//BinaryValues")
+public class BinaryValues {
+	@XMLField("@attribute")
+	private byte[] attribute;
+
+	@XMLField("Bytes")
+	private byte[] bytes;
+
+	@XMLField("Buffer")
+	private ByteBuffer buffer;
+
+	@XMLField("File")
+	private File file;
+
+	@XMLField("Stream")
+	private InputStream stream;
+
+	public byte[] getAttribute() {
+		return attribute;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public InputStream getStream() {
+		return stream;
+	}
+}
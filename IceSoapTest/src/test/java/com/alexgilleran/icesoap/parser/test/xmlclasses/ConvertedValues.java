@@ -0,0 +1,81 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+@XMLObject("//ConvertedValues")
+public class ConvertedValues {
+	@XMLField("@count")
+	private int attributeInt;
+
+	@XMLField("Int")
+	private int intValue;
+
+	@XMLField("Long")
+	private long longValue;
+
+	@XMLField("Float")
+	private float floatValue;
+
+	@XMLField("Double")
+	private double doubleValue;
+
+	@XMLField("Boolean")
+	private boolean booleanValue;
+
+	@XMLField("Decimal")
+	private BigDecimal decimal;
+
+	@XMLField(value = "Date", dateFormat = "dd/MM/yyyy")
+	private Date date;
+
+	@XMLField("Text")
+	private String text;
+
+	@XMLField("Tags/Tag")
+	private List<String> tags;
+
+	public int getAttributeInt() {
+		return attributeInt;
+	}
+
+	public int getIntValue() {
+		return intValue;
+	}
+
+	public long getLongValue() {
+		return longValue;
+	}
+
+	public float getFloatValue() {
+		return floatValue;
+	}
+
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+	public boolean isBooleanValue() {
+		return booleanValue;
+	}
+
+	public BigDecimal getDecimal() {
+		return decimal;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+}
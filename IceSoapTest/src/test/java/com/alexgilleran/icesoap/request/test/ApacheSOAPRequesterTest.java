@@ -4,13 +4,18 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
@@ -18,6 +23,8 @@ import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 import org.junit.Assert;
@@ -28,6 +35,7 @@ import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
 import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 import com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester;
+import com.alexgilleran.icesoap.request.impl.Response;
 
 public class ApacheSOAPRequesterTest {
 	private String encoding;
@@ -49,6 +57,180 @@ public class ApacheSOAPRequesterTest {
 		requester.doSoapRequest(envelope, "http://target.com");
 	}
 
+	/**
+	 * Ensures that in streaming mode the response is read straight from the
+	 * entity's stream rather than being buffered first, and that closing the
+	 * response closes that stream so the connection is released.
+	 */
+	@Test
+	public void testStreaming() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		TrackingInputStream content = new TrackingInputStream("<response/>".getBytes("UTF-8"));
+		StubHttpClient client = new StubHttpClient(new InputStreamEntity(content, -1));
+
+		ApacheSOAPRequester requester = new StubApacheSOAPRequester(client);
+		requester.setStreaming(true);
+
+		Response response = requester.doSoapRequest(envelope, "http://target.com");
+
+		Assert.assertSame(content, response.getData());
+		Assert.assertEquals(0, content.bytesRead);
+		Assert.assertFalse(content.closed);
+
+		response.close();
+
+		Assert.assertTrue(content.closed);
+	}
+
+	/**
+	 * Ensures that without streaming the response is buffered, so the entity's
+	 * stream has been read in full by the time the response is returned.
+	 */
+	@Test
+	public void testBuffering() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		byte[] body = "<response/>".getBytes("UTF-8");
+		TrackingInputStream content = new TrackingInputStream(body);
+		StubHttpClient client = new StubHttpClient(new InputStreamEntity(content, -1));
+
+		Response response = new StubApacheSOAPRequester(client).doSoapRequest(envelope, "http://target.com");
+
+		Assert.assertNotSame(content, response.getData());
+		Assert.assertEquals(body.length, content.bytesRead);
+		response.close();
+	}
+
+	/**
+	 * Ensures that compressed responses are asked for, and decompressed as
+	 * they're read.
+	 */
+	@Test
+	public void testCompressedResponse() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		byte[] body = "<response>ÀÁÂÃÄÅ</response>".getBytes("UTF-8");
+		InputStreamEntity entity = new InputStreamEntity(new ByteArrayInputStream(gzip(body)), -1);
+		entity.setContentEncoding("gzip");
+		StubHttpClient client = new StubHttpClient(entity);
+
+		ApacheSOAPRequester requester = new StubApacheSOAPRequester(client);
+		requester.setCompressResponses(true);
+		requester.setStreaming(true);
+
+		Response response = requester.doSoapRequest(envelope, "http://target.com");
+
+		Assert.assertEquals("gzip, deflate", client.lastPost.getFirstHeader("Accept-Encoding").getValue());
+		Assert.assertArrayEquals(body, readFully(response.getData()));
+		response.close();
+	}
+
+	/**
+	 * Ensures that compressed responses aren't asked for unless compression is
+	 * turned on.
+	 */
+	@Test
+	public void testUncompressedResponse() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		StubHttpClient client = new StubHttpClient(new InputStreamEntity(new ByteArrayInputStream(new byte[0]), -1));
+
+		new StubApacheSOAPRequester(client).doSoapRequest(envelope, "http://target.com").close();
+
+		Assert.assertNull(client.lastPost.getFirstHeader("Accept-Encoding"));
+	}
+
+	/**
+	 * Ensures that a streamed response is closed, releasing its connection, if
+	 * it claims to be compressed but can't be decompressed.
+	 */
+	@Test
+	public void testCorruptCompressedResponse() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		TrackingInputStream content = new TrackingInputStream(new byte[0]);
+		InputStreamEntity entity = new InputStreamEntity(content, -1);
+		entity.setContentEncoding("gzip");
+
+		ApacheSOAPRequester requester = new StubApacheSOAPRequester(new StubHttpClient(entity));
+		requester.setCompressResponses(true);
+		requester.setStreaming(true);
+
+		try {
+			requester.doSoapRequest(envelope, "http://target.com");
+			Assert.fail("Expected an IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+
+		Assert.assertTrue(content.closed);
+	}
+
+	/**
+	 * Ensures that envelopes over the compression threshold are gzipped.
+	 */
+	@Test
+	public void testRequestOverCompressionThreshold() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		StubHttpClient client = new StubHttpClient(new InputStreamEntity(new ByteArrayInputStream(new byte[0]), -1));
+
+		ApacheSOAPRequester requester = new StubApacheSOAPRequester(client);
+		requester.setRequestCompressionThreshold(16);
+		requester.doSoapRequest(envelope, "http://target.com").close();
+
+		HttpEntity sent = client.lastPost.getEntity();
+		Assert.assertEquals("gzip", sent.getContentEncoding().getValue());
+
+		ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+		sent.writeTo(requestBody);
+		byte[] uncompressed = readFully(new GZIPInputStream(new ByteArrayInputStream(requestBody.toByteArray())));
+		Assert.assertEquals(envelope.toString(), new String(uncompressed, encoding));
+	}
+
+	/**
+	 * Ensures that envelopes at or under the compression threshold are sent
+	 * as they are.
+	 */
+	@Test
+	public void testRequestUnderCompressionThreshold() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		StubHttpClient client = new StubHttpClient(new InputStreamEntity(new ByteArrayInputStream(new byte[0]), -1));
+
+		ApacheSOAPRequester requester = new StubApacheSOAPRequester(client);
+		requester.setRequestCompressionThreshold(1024 * 1024);
+		requester.doSoapRequest(envelope, "http://target.com").close();
+
+		HttpEntity sent = client.lastPost.getEntity();
+		Assert.assertNull(sent.getContentEncoding());
+
+		ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+		sent.writeTo(requestBody);
+		Assert.assertEquals(envelope.toString(), new String(requestBody.toByteArray(), encoding));
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+		gzip.write(data);
+		gzip.close();
+		return compressed.toByteArray();
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+
+		return out.toByteArray();
+	}
+
 	private SOAPEnvelope buildDifficultEnvelope(String encoding) {
 		SOAPEnvelope env = new BaseSOAP11Envelope();
 		env.setEncoding(encoding);
@@ -64,6 +246,79 @@ public class ApacheSOAPRequesterTest {
 		}
 	}
 
+	private static class StubApacheSOAPRequester extends ApacheSOAPRequester {
+		private final HttpClient client;
+
+		public StubApacheSOAPRequester(HttpClient client) {
+			this.client = client;
+		}
+
+		@Override
+		protected HttpClient buildHttpClient() {
+			return client;
+		}
+	}
+
+	/**
+	 * Records the request it's given and returns a canned 200 response with
+	 * the passed entity.
+	 */
+	private class StubHttpClient extends MockHttpClient {
+		private final HttpEntity responseEntity;
+		private HttpPost lastPost;
+
+		public StubHttpClient(HttpEntity responseEntity) {
+			super(null, null);
+			this.responseEntity = responseEntity;
+		}
+
+		@Override
+		public HttpResponse execute(HttpUriRequest httpUriRequest) throws IOException, ClientProtocolException {
+			lastPost = (HttpPost) httpUriRequest;
+
+			HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+			response.setEntity(responseEntity);
+			return response;
+		}
+	}
+
+	/**
+	 * Stream that keeps track of how much has been read from it and whether
+	 * it's been closed.
+	 */
+	private static class TrackingInputStream extends ByteArrayInputStream {
+		private int bytesRead = 0;
+		private boolean closed = false;
+
+		public TrackingInputStream(byte[] data) {
+			super(data);
+		}
+
+		@Override
+		public synchronized int read() {
+			int read = super.read();
+			if (read >= 0) {
+				bytesRead++;
+			}
+			return read;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				bytesRead += read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			super.close();
+		}
+	}
+
 	private class MockHttpClient implements HttpClient {
 		private String encoding;
 		private SOAPEnvelope envelope;
@@ -80,15 +335,15 @@ public class ApacheSOAPRequesterTest {
 			Assert.assertEquals("text/xml; charset=" + ApacheSOAPRequesterTest.this.encoding,
 					httpPost.getHeaders(ApacheSOAPRequester.CONTENT_TYPE_LABEL)[0].getValue());
 
-			InputStream is = httpPost.getEntity().getContent();
-			byte[] streamOutput = new byte[(int) httpPost.getEntity().getContentLength()];
+			// The envelope is streamed, so its length isn't known up front
+			Assert.assertEquals(-1, httpPost.getEntity().getContentLength());
+			Assert.assertTrue(httpPost.getEntity().isChunked());
 
-			int i;
-			do {
-				i = is.read(streamOutput);
-			} while (i > 0);
+			ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+			httpPost.getEntity().writeTo(requestBody);
+			InputStream is = new ByteArrayInputStream(requestBody.toByteArray());
 
-			String output = new String(streamOutput, encoding);
+			String output = new String(requestBody.toByteArray(), encoding);
 			Assert.assertEquals(envelope.toString(), output);
 
 			HttpResponse mockResponse = createMock(HttpResponse.class);
@@ -0,0 +1,239 @@
+package com.alexgilleran.icesoap.request.test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.exception.BulkheadFullException;
+import com.alexgilleran.icesoap.exception.CircuitOpenException;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.RetryPolicy;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+import com.alexgilleran.icesoap.request.impl.CircuitBreaker;
+import com.alexgilleran.icesoap.request.impl.CircuitBreakingSOAPRequester;
+import com.alexgilleran.icesoap.request.impl.ExponentialBackoffRetryPolicy;
+import com.alexgilleran.icesoap.request.impl.Response;
+
+public class CircuitBreakerTest {
+	private static final String URL = "http://example.com/service";
+	private static final String ACTION = "action";
+
+	@Test
+	public void testOpensOnFailureRate() {
+		CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 1000, 100, 60000, 1);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onSuccess(0);
+		}
+		for (int i = 0; i < 2; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure(0);
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure(0);
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	public void testHalfOpenProbes() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 50, 1000, 100, 0, 2);
+
+		breaker.tryAcquire();
+		breaker.onFailure(0);
+		breaker.tryAcquire();
+		breaker.onFailure(0);
+
+		// Open duration is 0, so it goes straight to half-open
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+		breaker.onSuccess(0);
+		breaker.onSuccess(0);
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testSlowCallsOpen() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 100, 10, 100, 60000, 1);
+
+		breaker.tryAcquire();
+		breaker.onSuccess(20 * 1000000L);
+		breaker.tryAcquire();
+		breaker.onSuccess(20 * 1000000L);
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testWindowWraps() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 3, 100, 1000, 100, 60000, 1);
+
+		// Failures drop out of the window as it wraps around, many times over
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(breaker.tryAcquire());
+			if (i % 3 == 1) {
+				breaker.onFailure(0);
+			} else {
+				breaker.onSuccess(0);
+			}
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure(0);
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testRequesterFailsFast() throws IOException {
+		SOAPEnvelope envelope = new BaseSOAP11Envelope();
+		SOAPRequester delegate = createMock(SOAPRequester.class);
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andReturn(
+				new Response(new ByteArrayInputStream(new byte[0]), 503)).times(2);
+		replay(delegate);
+
+		CircuitBreakingSOAPRequester requester = new CircuitBreakingSOAPRequester(delegate);
+		requester.setWindowSize(2);
+		requester.setMinimumCalls(2);
+
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+
+		assertEquals(CircuitBreaker.State.OPEN, requester.getCircuitState(URL, ACTION));
+		assertEquals(CircuitBreaker.State.CLOSED, requester.getCircuitState(URL, "other"));
+
+		try {
+			requester.doSoapRequest(envelope, URL, ACTION);
+			fail("Expected the circuit to be open");
+		} catch (CircuitOpenException e) {
+			// Expected
+		}
+
+		verify(delegate);
+	}
+
+	@Test
+	public void testAbortedCallsIgnored() throws IOException {
+		SOAPEnvelope envelope = new BaseSOAP11Envelope();
+		SOAPRequester delegate = createMock(SOAPRequester.class);
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andReturn(
+				new Response(new ByteArrayInputStream(new byte[0]), 503)).times(2);
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andThrow(new IOException("Aborted"));
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andReturn(
+				new Response(new ByteArrayInputStream(new byte[0]), 200));
+		replay(delegate);
+
+		CircuitBreakingSOAPRequester requester = new CircuitBreakingSOAPRequester(delegate);
+		requester.setWindowSize(2);
+		requester.setMinimumCalls(2);
+		requester.setOpenDuration(0);
+		requester.setHalfOpenProbes(1);
+
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, requester.getCircuitState(URL, ACTION));
+
+		AbortHandle abortHandle = new AbortHandle();
+		abortHandle.abort();
+		try {
+			requester.doSoapRequest(envelope, URL, ACTION, abortHandle);
+			fail("Expected the aborted request to fail");
+		} catch (IOException e) {
+			// Expected
+		}
+
+		// The aborted probe didn't count, and another was let through
+		assertEquals(CircuitBreaker.State.HALF_OPEN, requester.getCircuitState(URL, ACTION));
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+		assertEquals(CircuitBreaker.State.CLOSED, requester.getCircuitState(URL, ACTION));
+
+		verify(delegate);
+	}
+
+	@Test
+	public void testFailingFastIsNotRetried() {
+		ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy();
+		policy.setAllActionsIdempotent(true);
+
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(1, ACTION, new CircuitOpenException("Open")));
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(1, ACTION, new BulkheadFullException("Full")));
+		assertTrue(policy.getRetryDelay(1, ACTION, new IOException()) != RetryPolicy.NO_RETRY);
+	}
+
+	@Test
+	public void testBulkhead() throws IOException {
+		SOAPEnvelope envelope = new BaseSOAP11Envelope();
+		SOAPRequester delegate = createMock(SOAPRequester.class);
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andReturn(
+				new Response(new ByteArrayInputStream(new byte[0]), 200)).times(2);
+		replay(delegate);
+
+		CircuitBreakingSOAPRequester requester = new CircuitBreakingSOAPRequester(delegate);
+		requester.setBulkhead(1, 0);
+
+		Response response = requester.doSoapRequest(envelope, URL, ACTION);
+
+		try {
+			requester.doSoapRequest(envelope, URL, ACTION);
+			fail("Expected the bulkhead to be full");
+		} catch (BulkheadFullException e) {
+			// Expected
+		}
+
+		// Closing the response frees up the bulkhead
+		response.close();
+		requester.doSoapRequest(envelope, URL, ACTION).close();
+
+		verify(delegate);
+	}
+
+	/**
+	 * Ensures that closing a response closes the delegate's response as well
+	 * as its data, so stacked requesters each release what they're holding.
+	 */
+	@Test
+	public void testStackedBulkheads() throws IOException {
+		SOAPEnvelope envelope = new BaseSOAP11Envelope();
+		SOAPRequester delegate = createMock(SOAPRequester.class);
+		expect(delegate.doSoapRequest(envelope, URL, ACTION)).andReturn(
+				new Response(new ByteArrayInputStream(new byte[0]), 200)).times(2);
+		replay(delegate);
+
+		CircuitBreakingSOAPRequester inner = new CircuitBreakingSOAPRequester(delegate);
+		inner.setBulkhead(1, 0);
+		CircuitBreakingSOAPRequester outer = new CircuitBreakingSOAPRequester(inner);
+
+		outer.doSoapRequest(envelope, URL, ACTION).close();
+
+		// The inner bulkhead only has room for this if the first call's
+		// response released it
+		outer.doSoapRequest(envelope, URL, ACTION).close();
+
+		verify(delegate);
+	}
+}
@@ -0,0 +1,157 @@
+package com.alexgilleran.icesoap.request.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.params.BasicHttpParams;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester;
+import com.alexgilleran.icesoap.request.impl.ConnectionPoolStats;
+import com.alexgilleran.icesoap.request.impl.InstrumentedClientConnManager;
+import com.alexgilleran.icesoap.request.impl.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ConnectionPoolTest {
+	private HttpServer server;
+	private String url;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				InputStream in = exchange.getRequestBody();
+				while (in.read() != -1) {
+					// Drain the request
+				}
+
+				byte[] body = "<response/>".getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+
+		url = "http://localhost:" + server.getAddress().getPort() + "/service";
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testPoolStats() throws IOException {
+		ApacheSOAPRequester requester = new ApacheSOAPRequester();
+		requester.setStreaming(true);
+		requester.setMaxConnectionsForHost(url, 4);
+
+		Response first = requester.doSoapRequest(new BaseSOAP11Envelope(), url);
+		Response second = requester.doSoapRequest(new BaseSOAP11Envelope(), url);
+
+		// Streamed responses hold their connections until they're closed
+		ConnectionPoolStats stats = requester.getConnectionPoolStats();
+		assertNotNull(stats);
+		assertEquals(2, stats.getLeased());
+		assertEquals(0, stats.getPending());
+		assertEquals(2, stats.getLeaseCount());
+
+		first.close();
+		second.close();
+
+		stats = requester.getConnectionPoolStats();
+		assertEquals(0, stats.getLeased());
+		assertEquals(2, stats.getAvailable());
+		assertEquals(0, stats.getTimeoutCount());
+	}
+
+	/**
+	 * Ensures that settings made before the first request are all applied to
+	 * the pool, whatever order they're made in, and that the pool size can't
+	 * be changed once it's been built.
+	 */
+	@Test
+	public void testSettingsBeforeFirstRequest() throws IOException {
+		ApacheSOAPRequester requester = new ApacheSOAPRequester();
+		requester.setStreaming(true);
+		requester.setConnectionTimeout(1000);
+		requester.setConnectionRequestTimeout(100);
+		requester.evictConnections();
+		assertEquals(0, requester.getConnectionPoolStats().getLeased());
+		requester.setMaxConnectionsForHost(url, 4);
+		requester.setMaxTotalConnections(1);
+
+		Response first = requester.doSoapRequest(new BaseSOAP11Envelope(), url);
+
+		try {
+			requester.doSoapRequest(new BaseSOAP11Envelope(), url).close();
+			fail("Expected the pool to be limited to one connection");
+		} catch (ConnectionPoolTimeoutException e) {
+			// Expected
+		} finally {
+			first.close();
+		}
+
+		try {
+			requester.setMaxTotalConnections(2);
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Ensures that releasing a connection a second time, as aborting a request
+	 * that's already finished does, doesn't throw the lease count out.
+	 */
+	@Test
+	public void testDoubleRelease() throws Exception {
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		InstrumentedClientConnManager manager = new InstrumentedClientConnManager(new BasicHttpParams(),
+				schemeRegistry);
+
+		try {
+			ManagedClientConnection first = manager.requestConnection(new HttpRoute(new HttpHost("localhost", 80)),
+					null).getConnection(10, TimeUnit.SECONDS);
+			ManagedClientConnection second = manager.requestConnection(new HttpRoute(new HttpHost("localhost", 80)),
+					null).getConnection(10, TimeUnit.SECONDS);
+			assertEquals(2, manager.getStats().getLeased());
+
+			manager.releaseConnection(first, -1, TimeUnit.MILLISECONDS);
+			manager.releaseConnection(first, -1, TimeUnit.MILLISECONDS);
+			assertEquals(1, manager.getStats().getLeased());
+
+			manager.releaseConnection(second, -1, TimeUnit.MILLISECONDS);
+			assertEquals(0, manager.getStats().getLeased());
+			assertEquals(2, manager.getStats().getLeaseCount());
+		} finally {
+			manager.shutdown();
+		}
+	}
+}
@@ -1,20 +1,35 @@
 package com.alexgilleran.icesoap.request.test;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.alexgilleran.icesoap.exception.SOAPException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.observer.SOAP11ListObserver;
+import com.alexgilleran.icesoap.request.Request;
 import com.alexgilleran.icesoap.request.SOAP11ListRequest;
+import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
 import com.alexgilleran.icesoap.request.test.xmlclasses.Response;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 
@@ -53,4 +68,159 @@ public class ListRequestTest extends BaseRequestTest<List<Response>> {
 		// Verify the parsed object was correct.
 		assertEquals(expectedList, request.getResult());
 	}
+
+	/**
+	 * Ensures that when items aren't retained, parsing waits for observers to
+	 * catch up rather than queueing up every item for the callback thread.
+	 */
+	@Test
+	public void testUnretainedItemsWaitForObservers() throws Exception {
+		int itemCount = 100;
+		SOAP11ListRequest<Response> request = getRequestFactory().buildListRequest(DUMMY_URL, getDummyEnvelope(),
+				SOAP_ACTION, Response.class);
+		request.setRetainItems(false);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<Runnable>();
+		request.setExecutor(executor);
+		request.setCallbackExecutor(new QueueingExecutor(callbacks));
+
+		final AtomicInteger itemsSeen = new AtomicInteger();
+		request.registerObserver(new CountingListObserver(itemsSeen));
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getListResponse(itemCount), 200));
+		replay(getMockRequester());
+
+		try {
+			request.execute();
+
+			// Nothing's been passed to observers, so parsing should stall with
+			// a bounded number of items waiting
+			long deadline = System.currentTimeMillis() + 10000;
+			int waiting;
+			do {
+				waiting = callbacks.size();
+				Thread.sleep(50);
+			} while ((waiting == 0 || waiting != callbacks.size()) && System.currentTimeMillis() < deadline);
+
+			assertTrue(waiting > 0);
+			assertTrue(waiting < itemCount);
+			assertFalse(request.isComplete());
+
+			// Let the observers catch up, which lets the parse finish
+			while (!request.isComplete()) {
+				Runnable callback = callbacks.poll(10, TimeUnit.SECONDS);
+				assertNotNull(callback);
+				callback.run();
+			}
+
+			assertEquals(itemCount, itemsSeen.get());
+			assertTrue(request.getResult().isEmpty());
+			assertNull(request.getException());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Ensures that executing a list request again doesn't report each item
+	 * once for every previous execution.
+	 */
+	@Test
+	public void testRepeatedExecution() throws Exception {
+		SOAP11ListRequest<Response> request = getRequestFactory().buildListRequest(DUMMY_URL, getDummyEnvelope(),
+				SOAP_ACTION, Response.class);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		request.setExecutor(executor);
+
+		final AtomicInteger itemsSeen = new AtomicInteger();
+		request.registerObserver(new CountingListObserver(itemsSeen));
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getListResponse(), 200));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getListResponse(), 200));
+		replay(getMockRequester());
+
+		try {
+			for (int i = 1; i <= 2; i++) {
+				assertEquals(expectedList, request.submit().get(10, TimeUnit.SECONDS));
+				assertEquals(expectedList.size() * i, itemsSeen.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that a list request rejected by its executor doesn't leave its
+	 * item observer on the parser, so running it afterwards reports each
+	 * item once.
+	 */
+	@Test
+	public void testRejectedByExecutor() throws Exception {
+		SOAP11ListRequest<Response> request = getRequestFactory().buildListRequest(DUMMY_URL, getDummyEnvelope(),
+				SOAP_ACTION, Response.class);
+		ExecutorService rejecting = Executors.newSingleThreadExecutor();
+		rejecting.shutdown();
+		request.setExecutor(rejecting);
+
+		final AtomicInteger itemsSeen = new AtomicInteger();
+		request.registerObserver(new CountingListObserver(itemsSeen));
+
+		request.execute();
+		assertTrue(request.isComplete());
+		assertNotNull(request.getException());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getListResponse(), 200));
+		replay(getMockRequester());
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		request.setExecutor(executor);
+
+		try {
+			assertEquals(expectedList, request.submit().get(10, TimeUnit.SECONDS));
+			assertEquals(expectedList.size(), itemsSeen.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class QueueingExecutor implements Executor {
+		private final BlockingQueue<Runnable> queue;
+
+		public QueueingExecutor(BlockingQueue<Runnable> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			queue.add(command);
+		}
+	}
+
+	private static class CountingListObserver implements SOAP11ListObserver<Response> {
+		private final AtomicInteger itemsSeen;
+
+		public CountingListObserver(AtomicInteger itemsSeen) {
+			this.itemsSeen = itemsSeen;
+		}
+
+		@Override
+		public void onNewItem(Request<List<Response>, SOAP11Fault> request, Response item) {
+			itemsSeen.incrementAndGet();
+		}
+
+		@Override
+		public void onCompletion(Request<List<Response>, SOAP11Fault> request) {
+		}
+
+		@Override
+		public void onException(Request<List<Response>, SOAP11Fault> request, SOAPException e) {
+		}
+	}
 }
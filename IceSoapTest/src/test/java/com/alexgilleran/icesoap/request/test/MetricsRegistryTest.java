@@ -0,0 +1,133 @@
+package com.alexgilleran.icesoap.request.test;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.alexgilleran.icesoap.request.SOAP11Request;
+import com.alexgilleran.icesoap.request.impl.ActionMetrics;
+import com.alexgilleran.icesoap.request.impl.LatencyHistogram;
+import com.alexgilleran.icesoap.request.impl.MetricsRegistry;
+import com.alexgilleran.icesoap.request.test.xmlclasses.Response;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsRegistryTest extends BaseRequestTest<Response> {
+	/**
+	 * Ensures that percentiles come back to within the histogram's precision,
+	 * across a range of magnitudes.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+		histogram.record(-1);
+
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(100000, snapshot.getCount());
+		assertEquals(1000, snapshot.getMin());
+		assertEquals(100000000, snapshot.getMax());
+		assertEquals(50000500, snapshot.getMean(), 1);
+
+		assertWithinPrecision(50000000, snapshot.getValueAtPercentile(50));
+		assertWithinPrecision(99000000, snapshot.getValueAtPercentile(99));
+		assertWithinPrecision(99900000, snapshot.getValueAtPercentile(99.9));
+		assertEquals(100000000, snapshot.getValueAtPercentile(100));
+		assertEquals(1000, snapshot.getValueAtPercentile(0));
+
+		LatencyHistogram small = new LatencyHistogram();
+		small.record(3);
+		assertEquals(3, small.getSnapshot().getValueAtPercentile(50));
+		assertEquals(0, new LatencyHistogram().getSnapshot().getValueAtPercentile(99));
+	}
+
+	/**
+	 * Ensures that successes, faults and errors are counted separately for
+	 * each action, along with their latencies and sizes.
+	 */
+	@Test
+	public void testRegistry() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		getRequestFactory().setRequestListener(registry);
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSoap11Fault(), 500));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(
+				new IOException("Test"));
+		replay(getMockRequester());
+
+		for (int i = 0; i < 3; i++) {
+			SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(),
+					SOAP_ACTION, Response.class);
+			request.setExecutor(new InlineExecutor());
+
+			try {
+				request.submit().get(10, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				// Expected for the fault and the error
+			}
+		}
+
+		assertNull(registry.getActionMetrics(DUMMY_URL, "otheraction"));
+		assertEquals(1, registry.getAllActionMetrics().size());
+
+		ActionMetrics metrics = registry.getActionMetrics(DUMMY_URL, SOAP_ACTION);
+		assertSame(metrics, registry.getAllActionMetrics().get(0));
+		assertEquals(3, metrics.getRequestCount());
+		assertEquals(1, metrics.getSuccessCount());
+		assertEquals(1, metrics.getFaultCount());
+		assertEquals(1, metrics.getErrorCount());
+		assertEquals(0, metrics.getCancelledCount());
+
+		assertEquals(3, metrics.getLatency().getCount());
+		assertTrue(metrics.getLatency().getMax() >= metrics.getLatency().getValueAtPercentile(50));
+		assertEquals(2, metrics.getResponseBytes().getCount());
+		assertTrue(metrics.getResponseBytes().getMin() > 0);
+		assertEquals(2, metrics.getParseTime().getCount());
+
+		registry.registerMBeans();
+		try {
+			ObjectName name = new ObjectName("com.alexgilleran.icesoap:type=SoapAction,url=" + ObjectName.quote(DUMMY_URL)
+					+ ",action=" + ObjectName.quote(SOAP_ACTION));
+			assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FaultCount"));
+		} finally {
+			registry.unregisterMBeans();
+		}
+
+		registry.reset();
+		assertNull(registry.getActionMetrics(DUMMY_URL, SOAP_ACTION));
+	}
+
+	private static void assertWithinPrecision(long expected, long actual) {
+		assertTrue("Expected about " + expected + " but was " + actual,
+				Math.abs(actual - expected) <= expected / 16);
+	}
+
+	/**
+	 * Executor that runs tasks straight away.
+	 */
+	private static class InlineExecutor implements Executor {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	}
+}
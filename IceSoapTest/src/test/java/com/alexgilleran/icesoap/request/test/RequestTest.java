@@ -7,23 +7,52 @@ import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
 import com.alexgilleran.icesoap.exception.SOAPException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.observer.SOAP11Observer;
 import com.alexgilleran.icesoap.observer.SOAPObserver;
+import com.alexgilleran.icesoap.request.AbortHandle;
+import com.alexgilleran.icesoap.request.AbortableSOAPRequester;
 import com.alexgilleran.icesoap.request.Request;
+import com.alexgilleran.icesoap.request.RequestFactory;
+import com.alexgilleran.icesoap.request.RequestFuture;
+import com.alexgilleran.icesoap.request.RequestListener;
 import com.alexgilleran.icesoap.request.SOAP11Request;
 import com.alexgilleran.icesoap.request.SOAPRequester;
+import com.alexgilleran.icesoap.request.impl.ActionMetrics;
+import com.alexgilleran.icesoap.request.impl.CircuitBreakingSOAPRequester;
+import com.alexgilleran.icesoap.request.impl.ExponentialBackoffRetryPolicy;
+import com.alexgilleran.icesoap.request.impl.LatencyHedgingPolicy;
+import com.alexgilleran.icesoap.request.impl.LruResponseCache;
+import com.alexgilleran.icesoap.request.impl.MetricsRegistry;
 import com.alexgilleran.icesoap.request.impl.RequestFactoryImpl;
+import com.alexgilleran.icesoap.request.impl.RequestMetrics;
 import com.alexgilleran.icesoap.request.test.xmlclasses.CustomSOAP12Fault;
 import com.alexgilleran.icesoap.request.test.xmlclasses.Response;
+import com.alexgilleran.icesoap.request.test.xmlclasses.ResponseText;
 import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 
@@ -59,6 +88,666 @@ public class RequestTest extends BaseRequestTest<Response> {
 		assertEquals(expectedResponse, request.getResult());
 	}
 
+	/**
+	 * Ensures that requests run on executors passed to the factory rather than
+	 * as AsyncTasks, and that observers are notified on the callback executor.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRequestOnExecutor() throws IOException, XMLParsingException {
+		CountingExecutor executor = new CountingExecutor();
+		CountingExecutor callbackExecutor = new CountingExecutor();
+		getRequestFactory().setExecutor(executor);
+		getRequestFactory().setCallbackExecutor(callbackExecutor);
+
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+
+		SOAP11Observer<Response> mockObserver = createMock(SOAP11Observer.class);
+		mockObserver.onCompletion(request);
+		replay(mockObserver);
+		request.registerObserver(mockObserver);
+
+		doRequest(request, SampleResponse.getSingleResponse());
+
+		verify(mockObserver);
+		assertEquals(expectedResponse, request.getResult());
+		assertEquals(1, executor.count);
+		assertEquals(1, callbackExecutor.count);
+	}
+
+	/**
+	 * Ensures that a request is retried according to its retry policy, and
+	 * only the final attempt's result is seen.
+	 */
+	@Test
+	public void testRetry() throws Exception {
+		ExponentialBackoffRetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(3, 1, 1);
+		retryPolicy.addIdempotentAction(SOAP_ACTION);
+		getRequestFactory().setRetryPolicy(retryPolicy);
+
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(
+				new ConnectException());
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(new ByteArrayInputStream(new byte[0]), 503));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that a request isn't retried once the policy runs out of
+	 * attempts, and fails with the last attempt's exception.
+	 */
+	@Test
+	public void testRetryGivesUp() throws Exception {
+		getRequestFactory().setRetryPolicy(new ExponentialBackoffRetryPolicy(2, 1, 1));
+
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		ConnectException exception = new ConnectException();
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(exception)
+				.times(2);
+		replay(getMockRequester());
+
+		try {
+			request.submit().get(10, TimeUnit.SECONDS);
+			fail("Expected an exception");
+		} catch (ExecutionException e) {
+			assertEquals(exception, e.getCause().getCause());
+		}
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that the parsed result of a request is cached, so that an
+	 * identical request doesn't hit the requester at all.
+	 */
+	@Test
+	public void testResponseCache() throws Exception {
+		LruResponseCache cache = new LruResponseCache(10, 60000);
+		getRequestFactory().setResponseCache(cache);
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		for (int i = 0; i < 2; i++) {
+			SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(),
+					SOAP_ACTION, Response.class);
+			request.setExecutor(new CountingExecutor());
+
+			assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		}
+
+		verify(getMockRequester());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	/**
+	 * Ensures that requests with identical envelopes that parse their
+	 * responses into different classes don't share cached results.
+	 */
+	@Test
+	public void testResponseCacheKeyedByResult() throws Exception {
+		LruResponseCache cache = new LruResponseCache(10, 60000);
+		getRequestFactory().setResponseCache(cache);
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(),
+				SOAP_ACTION, Response.class);
+		request.setExecutor(new CountingExecutor());
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+
+		SOAP11Request<ResponseText> textRequest = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(),
+				SOAP_ACTION, ResponseText.class);
+		textRequest.setExecutor(new CountingExecutor());
+		assertEquals("Text", textRequest.submit().get(10, TimeUnit.SECONDS).getTextField());
+
+		request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION, Response.class);
+		request.setExecutor(new CountingExecutor());
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+
+		verify(getMockRequester());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	/**
+	 * Ensures that a request listener is told about each phase of a request.
+	 */
+	@Test
+	public void testRequestListener() throws Exception {
+		final List<RequestMetrics> reported = new ArrayList<RequestMetrics>();
+		getRequestFactory().setRequestListener(new RequestListener() {
+			@Override
+			public void onRequestFinished(RequestMetrics metrics) {
+				reported.add(metrics);
+			}
+		});
+
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+
+		assertEquals(1, reported.size());
+		RequestMetrics metrics = reported.get(0);
+		assertEquals(DUMMY_URL, metrics.getUrl());
+		assertEquals(SOAP_ACTION, metrics.getSoapAction());
+		assertEquals(200, metrics.getHttpStatus());
+		assertEquals(1, metrics.getAttempts());
+		assertTrue(metrics.getResponseBytes() > 0);
+		assertTrue(metrics.getParseTime() >= 0);
+		assertTrue(metrics.getDispatchTime() >= 0);
+		assertTrue(metrics.getTotalTime() >= metrics.getParseTime() + metrics.getDispatchTime());
+		assertEquals(-1, metrics.getItemCount());
+		assertEquals(null, metrics.getException());
+	}
+
+	/**
+	 * Ensures that a slow request is hedged, the hedge's response is used and
+	 * the original exchange is aborted.
+	 */
+	@Test
+	public void testHedging() throws Exception {
+		LatencyHedgingPolicy hedgingPolicy = new LatencyHedgingPolicy(50);
+		hedgingPolicy.addHedgedAction(SOAP_ACTION);
+		SlowFirstRequester requester = new SlowFirstRequester();
+
+		RequestFactory factory = new RequestFactoryImpl(requester);
+		factory.setHedgingPolicy(hedgingPolicy);
+		SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		assertTrue(requester.originalAborted);
+		assertEquals(1, hedgingPolicy.getHedgesSent());
+		assertEquals(1, hedgingPolicy.getHedgesWon());
+	}
+
+	/**
+	 * Ensures that requests made with a requester that can't abort its
+	 * exchanges aren't hedged, as they'd have to wait for the original anyway.
+	 */
+	@Test
+	public void testNoHedgingWithoutAbort() throws Exception {
+		GatedRequester requester = new GatedRequester();
+
+		assertNotHedged(requester, requester);
+	}
+
+	/**
+	 * Ensures that wrapping a requester that can't abort its exchanges
+	 * doesn't make them hedged, even though the wrapper takes an abort
+	 * handle.
+	 */
+	@Test
+	public void testNoHedgingThroughWrapperWithoutAbort() throws Exception {
+		GatedRequester requester = new GatedRequester();
+
+		assertNotHedged(requester, new CircuitBreakingSOAPRequester(requester));
+	}
+
+	/**
+	 * Ensures that when a hedge wins, the latency recorded is from the start
+	 * of the request rather than from when the hedge was sent.
+	 */
+	@Test
+	public void testHedgeLatencyFromStart() throws Exception {
+		final List<Long> latencies = new ArrayList<Long>();
+		LatencyHedgingPolicy hedgingPolicy = new LatencyHedgingPolicy(50) {
+			@Override
+			public void recordLatency(String soapAction, long latency) {
+				latencies.add(latency);
+				super.recordLatency(soapAction, latency);
+			}
+		};
+		hedgingPolicy.addHedgedAction(SOAP_ACTION);
+
+		RequestFactory factory = new RequestFactoryImpl(new SlowFirstRequester());
+		factory.setHedgingPolicy(hedgingPolicy);
+		SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		assertEquals(1, hedgingPolicy.getHedgesWon());
+		assertEquals(1, latencies.size());
+		assertTrue(latencies.get(0) >= 50);
+	}
+
+	/**
+	 * Ensures that if a request is cancelled while waiting for its hedge, the
+	 * hedge's response is closed when it arrives rather than left holding a
+	 * connection.
+	 */
+	@Test
+	public void testAbandonedHedgeClosed() throws Exception {
+		LatencyHedgingPolicy hedgingPolicy = new LatencyHedgingPolicy(50);
+		hedgingPolicy.addHedgedAction(SOAP_ACTION);
+		FailingFirstRequester requester = new FailingFirstRequester();
+
+		RequestFactory factory = new RequestFactoryImpl(requester);
+		factory.setHedgingPolicy(hedgingPolicy);
+		SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		request.setExecutor(executor);
+
+		try {
+			request.execute();
+			assertTrue(requester.originalFailed.await(10, TimeUnit.SECONDS));
+
+			// Give the request time to start waiting for the hedge
+			Thread.sleep(100);
+			request.cancel();
+			Thread.sleep(100);
+			requester.released.countDown();
+
+			assertTrue(requester.hedgeClosed.await(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Ensures that identical requests made while one is in flight share its
+	 * exchange and all get its result.
+	 */
+	@Test
+	public void testCoalescing() throws Exception {
+		GatedRequester requester = new GatedRequester();
+		RequestFactoryImpl factory = new RequestFactoryImpl(requester);
+		factory.setCoalesceRequests(true);
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		try {
+			List<RequestFuture<Response, SOAP11Fault>> futures = new ArrayList<RequestFuture<Response, SOAP11Fault>>();
+
+			for (int i = 0; i < 4; i++) {
+				SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+						Response.class);
+				request.setExecutor(executor);
+				futures.add(request.submit());
+
+				if (i == 0) {
+					assertTrue(requester.entered.await(10, TimeUnit.SECONDS));
+				}
+			}
+
+			// Give the other requests time to join the first one's flight
+			Thread.sleep(200);
+			requester.released.countDown();
+
+			Response first = futures.get(0).get(10, TimeUnit.SECONDS);
+			assertEquals(expectedResponse, first);
+			for (RequestFuture<Response, SOAP11Fault> future : futures) {
+				assertSame(first, future.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, requester.calls.get());
+		assertEquals(3, factory.getRequestCoalescer().getCoalescedCount());
+		assertEquals(0, factory.getRequestCoalescer().getInFlightCount());
+	}
+
+	/**
+	 * Ensures that if the first of several identical requests fails while
+	 * parsing, the requests sharing its exchange fail too rather than
+	 * reporting success with no result.
+	 */
+	@Test
+	public void testCoalescedFailure() throws Exception {
+		GatedRequester requester = new GatedRequester(SampleResponse.SINGLE_RESPONSE.replace("id=\"1\"",
+				"id=\"one\""));
+		RequestFactoryImpl factory = new RequestFactoryImpl(requester);
+		factory.setCoalesceRequests(true);
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		try {
+			List<RequestFuture<Response, SOAP11Fault>> futures = new ArrayList<RequestFuture<Response, SOAP11Fault>>();
+
+			for (int i = 0; i < 3; i++) {
+				SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+						Response.class);
+				request.setExecutor(executor);
+				futures.add(request.submit());
+
+				if (i == 0) {
+					assertTrue(requester.entered.await(10, TimeUnit.SECONDS));
+				}
+			}
+
+			// Give the other requests time to join the first one's flight
+			Thread.sleep(200);
+			requester.released.countDown();
+
+			for (RequestFuture<Response, SOAP11Fault> future : futures) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+					fail("Expected an ExecutionException");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof SOAPException);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, requester.calls.get());
+		assertEquals(2, factory.getRequestCoalescer().getCoalescedCount());
+	}
+
+	/**
+	 * Ensures that requests sharing an exchange that got a SOAP fault are
+	 * counted as faults, not errors, even though they never saw the response.
+	 */
+	@Test
+	public void testCoalescedFaultMetrics() throws Exception {
+		GatedRequester requester = new GatedRequester(SampleResponse.SOAP11_FAULT, 500);
+		RequestFactoryImpl factory = new RequestFactoryImpl(requester);
+		factory.setCoalesceRequests(true);
+		final MetricsRegistry registry = new MetricsRegistry();
+		final CountDownLatch finished = new CountDownLatch(3);
+		factory.setRequestListener(new RequestListener() {
+			@Override
+			public void onRequestFinished(RequestMetrics metrics) {
+				registry.onRequestFinished(metrics);
+				finished.countDown();
+			}
+		});
+		ExecutorService executor = Executors.newCachedThreadPool();
+
+		try {
+			for (int i = 0; i < 3; i++) {
+				SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+						Response.class);
+				request.setExecutor(executor);
+				request.submit();
+
+				if (i == 0) {
+					assertTrue(requester.entered.await(10, TimeUnit.SECONDS));
+				}
+			}
+
+			// Give the other requests time to join the first one's flight
+			Thread.sleep(200);
+			requester.released.countDown();
+
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+
+		ActionMetrics metrics = registry.getActionMetrics(DUMMY_URL, SOAP_ACTION);
+		assertEquals(1, requester.calls.get());
+		assertEquals(2, metrics.getCoalescedCount());
+		assertEquals(3, metrics.getFaultCount());
+		assertEquals(0, metrics.getErrorCount());
+	}
+
+	/**
+	 * Ensures that a submitted request's future completes with the result and
+	 * runs its listeners.
+	 */
+	@Test
+	public void testSubmit() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		final CountingExecutor listenerExecutor = new CountingExecutor();
+		RequestFuture<Response, SOAP11Fault> future = request.submit();
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, listenerExecutor);
+
+		assertEquals(expectedResponse, future.get(10, TimeUnit.SECONDS));
+		assertEquals(1, listenerExecutor.count);
+	}
+
+	/**
+	 * Ensures that a request can be submitted again once it's finished, and
+	 * that cancelling it afterwards leaves the finished futures alone.
+	 */
+	@Test
+	public void testResubmit() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		RequestFuture<Response, SOAP11Fault> first = request.submit();
+		assertEquals(expectedResponse, first.get(10, TimeUnit.SECONDS));
+		RequestFuture<Response, SOAP11Fault> second = request.submit();
+		assertEquals(expectedResponse, second.get(10, TimeUnit.SECONDS));
+
+		request.cancel();
+
+		assertTrue(first.isDone() && !first.isCancelled());
+		assertTrue(second.isDone() && !second.isCancelled());
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that a request that failed can be submitted again, and that the
+	 * new execution isn't reported as failing with the old exception.
+	 */
+	@Test
+	public void testResubmitAfterFailure() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(
+				new IOException("Test"));
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		try {
+			request.submit().get(10, TimeUnit.SECONDS);
+			fail("Expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SOAPException);
+		}
+
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		assertNull(request.getException());
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that a request can't be submitted again while it's still
+	 * executing, as both futures would share one outcome.
+	 */
+	@Test
+	public void testSubmitWhileExecuting() throws Exception {
+		GatedRequester requester = new GatedRequester();
+		SOAP11Request<Response> request = new RequestFactoryImpl(requester).buildRequest(DUMMY_URL,
+				getDummyEnvelope(), SOAP_ACTION, Response.class);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		request.setExecutor(executor);
+
+		try {
+			RequestFuture<Response, SOAP11Fault> future = request.submit();
+			assertTrue(requester.entered.await(10, TimeUnit.SECONDS));
+
+			try {
+				request.submit();
+				fail("Expected an IllegalStateException");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+
+			requester.released.countDown();
+			assertEquals(expectedResponse, future.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, requester.calls.get());
+	}
+
+	/**
+	 * Ensures that a request rejected by its executor fails straight away,
+	 * and can be submitted again once it has an executor that will run it.
+	 */
+	@Test
+	public void testRejectedByExecutor() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		request.setExecutor(executor);
+
+		try {
+			request.submit().get(10, TimeUnit.SECONDS);
+			fail("Expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SOAPException);
+			assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+		}
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(
+				new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200));
+		replay(getMockRequester());
+
+		request.setExecutor(new CountingExecutor());
+		assertEquals(expectedResponse, request.submit().get(10, TimeUnit.SECONDS));
+		assertNull(request.getException());
+		verify(getMockRequester());
+	}
+
+	/**
+	 * Ensures that a submitted request's future fails with the exception
+	 * encountered by the request.
+	 */
+	@Test
+	public void testSubmitWithException() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(
+				new IOException("Test"));
+		replay(getMockRequester());
+
+		try {
+			request.submit().get(10, TimeUnit.SECONDS);
+			fail("Expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SOAPException);
+		}
+	}
+
+	/**
+	 * Ensures that a request running on an executor still completes if
+	 * something unexpected is thrown while performing it.
+	 */
+	@Test
+	public void testSubmitWithRuntimeException() throws Exception {
+		SOAP11Request<Response> request = getRequestFactory().buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		request.setExecutor(new CountingExecutor());
+
+		IllegalStateException exception = new IllegalStateException("Test");
+		expect(getMockRequester().doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andThrow(exception);
+		replay(getMockRequester());
+
+		try {
+			request.submit().get(10, TimeUnit.SECONDS);
+			fail("Expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SOAPException);
+			assertSame(exception, e.getCause().getCause());
+		}
+	}
+
+	/**
+	 * Ensures that cancelling a request running on an executor interrupts it
+	 * while it's waiting to retry, rather than leaving the thread asleep.
+	 */
+	@Test
+	public void testCancelInterruptsRetry() throws Exception {
+		ExponentialBackoffRetryPolicy retryPolicy = new ExponentialBackoffRetryPolicy(3, 60000, 60000);
+		retryPolicy.addIdempotentAction(SOAP_ACTION);
+		final CountDownLatch finished = new CountDownLatch(1);
+		final List<RequestMetrics> reported = new ArrayList<RequestMetrics>();
+		final CountDownLatch attempted = new CountDownLatch(1);
+
+		RequestFactory factory = new RequestFactoryImpl(new GatedRequester() {
+			@Override
+			public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+					String targetUrl, String soapAction) throws IOException {
+				attempted.countDown();
+				throw new ConnectException();
+			}
+		});
+		factory.setRetryPolicy(retryPolicy);
+		factory.setRequestListener(new RequestListener() {
+			@Override
+			public void onRequestFinished(RequestMetrics metrics) {
+				reported.add(metrics);
+				finished.countDown();
+			}
+		});
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+					Response.class);
+			request.setExecutor(executor);
+			RequestFuture<Response, SOAP11Fault> future = request.submit();
+
+			assertTrue(attempted.await(10, TimeUnit.SECONDS));
+			request.cancel();
+
+			assertTrue(future.isCancelled());
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+			assertTrue(reported.get(0).isCancelled());
+			assertEquals(1, reported.get(0).getAttempts());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * Ensures a SOAPException is thrown if an IOException occurs when making a
 	 * request - including timeouts etc.
@@ -230,4 +919,222 @@ public class RequestTest extends BaseRequestTest<Response> {
 		
 		request.execute();
 	}
+
+	/**
+	 * Makes a request that's set up to be hedged after 50ms, and makes sure
+	 * that it isn't hedged when the requester can't abort its exchanges.
+	 * 
+	 * @param requester
+	 *            The requester that actually makes the exchange.
+	 * @param soapRequester
+	 *            The requester to make the request with - either requester,
+	 *            or something wrapping it.
+	 */
+	private void assertNotHedged(GatedRequester requester, SOAPRequester soapRequester) throws Exception {
+		LatencyHedgingPolicy hedgingPolicy = new LatencyHedgingPolicy(50);
+		hedgingPolicy.addHedgedAction(SOAP_ACTION);
+
+		RequestFactory factory = new RequestFactoryImpl(soapRequester);
+		factory.setHedgingPolicy(hedgingPolicy);
+		SOAP11Request<Response> request = factory.buildRequest(DUMMY_URL, getDummyEnvelope(), SOAP_ACTION,
+				Response.class);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		request.setExecutor(executor);
+
+		try {
+			RequestFuture<Response, SOAP11Fault> future = request.submit();
+			assertTrue(requester.entered.await(10, TimeUnit.SECONDS));
+
+			// Wait well past the hedge delay before letting the original finish
+			Thread.sleep(200);
+			requester.released.countDown();
+
+			assertEquals(expectedResponse, future.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, requester.calls.get());
+		assertEquals(0, hedgingPolicy.getHedgesSent());
+	}
+
+	/**
+	 * Requester that counts its requests, and holds them until it's released.
+	 */
+	private static class GatedRequester implements SOAPRequester {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		private final String responseXml;
+		private final int httpStatus;
+
+		public GatedRequester() {
+			this(SampleResponse.SINGLE_RESPONSE);
+		}
+
+		public GatedRequester(String responseXml) {
+			this(responseXml, 200);
+		}
+
+		public GatedRequester(String responseXml, int httpStatus) {
+			this.responseXml = responseXml;
+			this.httpStatus = httpStatus;
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+				String targetUrl, String soapAction) throws IOException {
+			calls.incrementAndGet();
+			entered.countDown();
+
+			try {
+				released.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			return new com.alexgilleran.icesoap.request.impl.Response(new ByteArrayInputStream(
+					responseXml.getBytes()), httpStatus);
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope, String targetUrl)
+				throws IOException {
+			return doSoapRequest(envelope, targetUrl, null);
+		}
+
+		@Override
+		public void setConnectionTimeout(int timeout) {
+		}
+
+		@Override
+		public void setSocketTimeout(int timeout) {
+		}
+	}
+
+	/**
+	 * Requester whose first request fails once the second has been sent, and
+	 * whose second request ignores aborts and waits to be released.
+	 */
+	private static class FailingFirstRequester implements AbortableSOAPRequester {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final CountDownLatch hedgeEntered = new CountDownLatch(1);
+		private final CountDownLatch originalFailed = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		private final CountDownLatch hedgeClosed = new CountDownLatch(1);
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+				String targetUrl, String soapAction, AbortHandle abortHandle) throws IOException {
+			try {
+				if (calls.incrementAndGet() == 1) {
+					hedgeEntered.await(10, TimeUnit.SECONDS);
+					originalFailed.countDown();
+					throw new ConnectException();
+				}
+
+				hedgeEntered.countDown();
+				released.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted");
+			}
+
+			return new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					hedgeClosed.countDown();
+				}
+			};
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+				String targetUrl, String soapAction) throws IOException {
+			return doSoapRequest(envelope, targetUrl, soapAction, new AbortHandle());
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope, String targetUrl)
+				throws IOException {
+			return doSoapRequest(envelope, targetUrl, null);
+		}
+
+		@Override
+		public void setConnectionTimeout(int timeout) {
+		}
+
+		@Override
+		public void setSocketTimeout(int timeout) {
+		}
+	}
+
+	/**
+	 * Requester whose first request hangs until it's aborted, and whose
+	 * subsequent requests return straight away.
+	 */
+	private static class SlowFirstRequester implements AbortableSOAPRequester {
+		private final AtomicInteger calls = new AtomicInteger();
+		private volatile boolean originalAborted = false;
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+				String targetUrl, String soapAction, AbortHandle abortHandle) throws IOException {
+			if (calls.incrementAndGet() > 1) {
+				return new com.alexgilleran.icesoap.request.impl.Response(SampleResponse.getSingleResponse(), 200);
+			}
+
+			final CountDownLatch aborted = new CountDownLatch(1);
+			abortHandle.setAbortAction(new Runnable() {
+				@Override
+				public void run() {
+					aborted.countDown();
+				}
+			});
+
+			try {
+				if (aborted.await(10, TimeUnit.SECONDS)) {
+					originalAborted = true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			throw new IOException("Aborted");
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope,
+				String targetUrl, String soapAction) throws IOException {
+			return doSoapRequest(envelope, targetUrl, soapAction, new AbortHandle());
+		}
+
+		@Override
+		public com.alexgilleran.icesoap.request.impl.Response doSoapRequest(SOAPEnvelope envelope, String targetUrl)
+				throws IOException {
+			return doSoapRequest(envelope, targetUrl, null);
+		}
+
+		@Override
+		public void setConnectionTimeout(int timeout) {
+		}
+
+		@Override
+		public void setSocketTimeout(int timeout) {
+		}
+	}
+
+	/**
+	 * Executor that runs tasks straight away and counts how many it's run.
+	 */
+	private static class CountingExecutor implements Executor {
+		private int count = 0;
+
+		@Override
+		public void execute(Runnable command) {
+			count++;
+			command.run();
+		}
+	}
 }
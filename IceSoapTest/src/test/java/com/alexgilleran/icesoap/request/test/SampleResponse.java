@@ -61,7 +61,7 @@ public class SampleResponse {
 			+ "</SOAP-1_2-ENV:Fault>" + "</SOAP-1_2-ENV:Body>"//
 			+ "</SOAP-1_2-ENV:Envelope>";
 
-	private final static String SOAP11_FAULT = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:response=\"http://example.com/response\">"
+	public final static String SOAP11_FAULT = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:response=\"http://example.com/response\">"
 			+ "<soapenv:Header/>"//
 			+ "<soapenv:Body>"//
 			+ "<soapenv:Fault>"//
@@ -111,6 +111,22 @@ public class SampleResponse {
 		return new ByteArrayInputStream(LIST_RESPONSE.getBytes());
 	}
 
+	public static InputStream getListResponse(int itemCount) {
+		StringBuilder response = new StringBuilder(
+				"<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:response=\"http://example.com/response\">"
+						+ "<soapenv:Header/>" + "<soapenv:Body>" + "<response:Response>");
+
+		for (int i = 1; i <= itemCount; i++) {
+			response.append("<response:Details id=\"").append(i).append("\">");
+			response.append("<response:TextField>Text").append(i).append("</response:TextField>");
+			response.append("</response:Details>");
+		}
+
+		response.append("</response:Response>" + "</soapenv:Body>" + "</soapenv:Envelope>");
+
+		return new ByteArrayInputStream(response.toString().getBytes());
+	}
+
 	public static InputStream getSoap11Fault() {
 		return new ByteArrayInputStream(SOAP11_FAULT.getBytes());
 	}
@@ -0,0 +1,164 @@
+package com.alexgilleran.icesoap.request.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.request.impl.Response;
+import com.alexgilleran.icesoap.request.impl.URLConnectionSOAPRequester;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class URLConnectionSOAPRequesterTest {
+	private HttpServer server;
+	private String url;
+	private int status = 200;
+	private String requestEncoding;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// Echo the envelope and headers back
+				requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+				InputStream requestBody = exchange.getRequestBody();
+				if ("gzip".equals(requestEncoding)) {
+					requestBody = new GZIPInputStream(requestBody);
+				}
+
+				byte[] body = readFully(requestBody);
+				exchange.getResponseHeaders().add("X-Content-Type",
+						exchange.getRequestHeaders().getFirst("Content-type"));
+				exchange.getResponseHeaders().add("X-SOAPAction", exchange.getRequestHeaders().getFirst("SOAPAction"));
+
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+					gzip.write(body);
+					gzip.close();
+					body = compressed.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+
+				exchange.sendResponseHeaders(status, body.length);
+
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+
+		url = "http://localhost:" + server.getAddress().getPort() + "/service";
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testRequest() throws IOException {
+		SOAPEnvelope envelope = buildEnvelope("UTF-8");
+
+		Response response = new URLConnectionSOAPRequester().doSoapRequest(envelope, url, "action");
+
+		assertEquals(200, response.getHttpStatus());
+		assertEquals(envelope.toString(), new String(readFully(response.getData()), "UTF-8"));
+		response.close();
+	}
+
+	/**
+	 * Ensures that the phases of the exchange are timed and the request body
+	 * is measured.
+	 */
+	@Test
+	public void testTimings() throws IOException {
+		SOAPEnvelope envelope = buildEnvelope("UTF-8");
+
+		Response response = new URLConnectionSOAPRequester().doSoapRequest(envelope, url, "action");
+		readFully(response.getData());
+		response.close();
+
+		assertTrue(response.getConnectTime() >= 0);
+		assertTrue(response.getSendTime() >= 0);
+		assertTrue(response.getWaitTime() >= 0);
+		assertEquals(envelope.toString().getBytes("UTF-8").length, response.getRequestBytes());
+	}
+
+	@Test
+	public void testErrorStatus() throws IOException {
+		status = 500;
+		SOAPEnvelope envelope = buildEnvelope("UTF-16");
+
+		Response response = new URLConnectionSOAPRequester().doSoapRequest(envelope, url);
+
+		assertEquals(500, response.getHttpStatus());
+		assertEquals(envelope.toString(), new String(readFully(response.getData()), "UTF-16"));
+		response.close();
+	}
+
+	@Test
+	public void testCompression() throws IOException {
+		SOAPEnvelope envelope = buildEnvelope("UTF-8");
+		URLConnectionSOAPRequester requester = new URLConnectionSOAPRequester();
+		requester.setCompressResponses(true);
+		requester.setRequestCompressionThreshold(0);
+
+		Response response = requester.doSoapRequest(envelope, url);
+
+		assertEquals("gzip", requestEncoding);
+		assertEquals(envelope.toString(), new String(readFully(response.getData()), "UTF-8"));
+		response.close();
+	}
+
+	@Test
+	public void testUnderCompressionThreshold() throws IOException {
+		SOAPEnvelope envelope = buildEnvelope("UTF-8");
+		URLConnectionSOAPRequester requester = new URLConnectionSOAPRequester();
+		requester.setRequestCompressionThreshold(1024 * 1024);
+
+		Response response = requester.doSoapRequest(envelope, url);
+
+		assertNull(requestEncoding);
+		assertEquals(envelope.toString(), new String(readFully(response.getData()), "UTF-8"));
+		response.close();
+	}
+
+	private SOAPEnvelope buildEnvelope(String encoding) {
+		SOAPEnvelope env = new BaseSOAP11Envelope();
+		env.setEncoding(encoding);
+		env.getBody().addTextNode(null, "ÀÁÂÃÄÅÆÇÈÉýÿĂĄ", "ɑɔʥʣʨʪɯ");
+		return env;
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,14 @@
+package com.alexgilleran.icesoap.request.test.xmlclasses;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+@XMLObject("//Details")
+public class ResponseText {
+	@XMLField("TextField")
+	private String textField;
+
+	public String getTextField() {
+		return textField;
+	}
+}
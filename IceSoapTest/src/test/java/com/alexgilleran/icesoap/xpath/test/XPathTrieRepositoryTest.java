@@ -0,0 +1,156 @@
+package com.alexgilleran.icesoap.xpath.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.exception.XPathParsingException;
+import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.parser.impl.XPathPullParserImpl;
+import com.alexgilleran.icesoap.xpath.PredicateNames;
+import com.alexgilleran.icesoap.xpath.XPathFactory;
+import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.XPathTrieRepository;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+public class XPathTrieRepositoryTest extends XPathTest {
+	private static final String XML = "<a><b type=\"x\"><c id=\"1\">text</c></b><b type=\"y\"><c>more</c><d><c>deep</c></d></b></a>";
+
+	private XPathRepository<String> repo;
+
+	@Before
+	public void setUp() {
+		repo = new XPathRepository<String>();
+	}
+
+	@Test
+	public void testBasic() throws XPathParsingException {
+		for (String xpath : getTestXPaths()) {
+			testPut(xpath, xpath);
+		}
+	}
+
+	@Test
+	public void testSingleSlashes() throws XPathParsingException {
+		testPut("/xpath", "/xpath");
+		testPut("/xpath", "/xpath[@predicate=\"predicate\"]");
+	}
+
+	@Test
+	public void testDoubleSlashes() throws XPathParsingException {
+		testPut("//xpath", "/herp/xpath");
+		testPut("//xpath", "/herp/xpath[@predicate=\"predicate\"]");
+		testPut("/herp//xpath", "/herp/derp/xpath");
+	}
+
+	@Test
+	public void testPredicateSelection() throws XPathParsingException {
+		final String xpath1 = "/xpath1/xpath2";
+		final String xpath2 = "/xpath1/xpath2[@predicate=\"wrongvalue\"]";
+		final String xpath3 = "/xpath1/xpath2[@predicate=\"rightvalue\"]";
+
+		put(xpath1);
+		put(xpath2);
+		put(xpath3);
+
+		XPathTrieRepository<String> trie = new XPathTrieRepository<String>(repo);
+
+		assertEquals(xpath1, trie.getFullRecord(compile(xpath1)).getValue());
+		assertEquals(xpath2, trie.getFullRecord(compile(xpath2)).getValue());
+		assertEquals(xpath3, trie.getFullRecord(compile(xpath3)).getValue());
+	}
+
+	@Test
+	public void testAttributeSelection() throws XPathParsingException {
+		final String nodeXPath = "/xpath1/xpath";
+		final String attributeXPath = "/xpath1/@xpath";
+
+		put(nodeXPath);
+		put(attributeXPath);
+
+		XPathTrieRepository<String> trie = new XPathTrieRepository<String>(repo);
+
+		assertEquals(nodeXPath, trie.getFullRecord(compile(nodeXPath)).getValue());
+		assertEquals(attributeXPath, trie.getFullRecord(compile(attributeXPath)).getValue());
+	}
+
+	@Test
+	public void testTracker() throws XPathParsingException, XmlPullParserException, XMLParsingException {
+		put("/a/b[@type=\"x\"]/c");
+		put("/a/b[@type=\"y\"]//c");
+		put("/a/b/@type");
+		put("//c/@id");
+
+		XPathTrieRepository<String> trie = new XPathTrieRepository<String>(repo);
+
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setInput(new ByteArrayInputStream(XML.getBytes()), null);
+
+		List<String> matches = new ArrayList<String>();
+		while (parser.next() != XPathPullParser.END_DOCUMENT) {
+			String match = trie.get(parser.getTracker());
+
+			// Should be the same as matching the whole xpath every time
+			assertEquals(parser.getCurrentElement().toString(), repo.get(parser.getCurrentElement()), match);
+
+			if (match != null) {
+				matches.add(match);
+			}
+		}
+
+		final String xc = "/a/b[@type=\"x\"]/c";
+		final String yc = "/a/b[@type=\"y\"]//c";
+		assertEquals(Arrays.asList("/a/b/@type", xc, "//c/@id", xc, xc, "/a/b/@type", yc, yc, yc, yc, yc, yc),
+				matches);
+	}
+
+	@Test
+	public void testOnlyRegisteredPredicatesCaptured() throws XPathParsingException, XmlPullParserException,
+			XMLParsingException {
+		put("/root/item[@registeredPredicate=\"yes\"]");
+
+		XPathTrieRepository<String> trie = new XPathTrieRepository<String>(repo);
+
+		XPathPullParser parser = new XPathPullParserImpl(PredicateNames.getInstance());
+		parser.setInput(new ByteArrayInputStream(
+				"<root><item unregisteredAttribute=\"1\" registeredPredicate=\"yes\"/></root>".getBytes()), null);
+
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+
+		Map<String, String> expectedPredicates = new HashMap<String, String>();
+		expectedPredicates.put("registeredPredicate", "yes");
+		assertEquals(expectedPredicates, parser.getCurrentElement().getPredicates());
+		assertEquals("/root/item[@registeredPredicate=\"yes\"]", trie.get(parser.getTracker()));
+	}
+
+	private void testPut(String xpathToGet, String xpathToPut) throws XPathParsingException {
+		repo = new XPathRepository<String>();
+
+		assertNull(new XPathTrieRepository<String>(repo).getFullRecord(compile(xpathToPut)));
+
+		repo.put(compile(xpathToGet), xpathToGet);
+
+		assertEquals(xpathToGet, new XPathTrieRepository<String>(repo).getFullRecord(compile(xpathToPut))
+				.getValue());
+	}
+
+	private void put(String xpath) throws XPathParsingException {
+		repo.put(compile(xpath), xpath);
+	}
+
+	private XPathElement compile(String xpath) throws XPathParsingException {
+		return XPathFactory.getInstance().compile(xpath).keySet().iterator().next();
+	}
+}